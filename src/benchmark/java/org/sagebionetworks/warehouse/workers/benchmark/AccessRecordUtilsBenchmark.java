@@ -0,0 +1,63 @@
+package org.sagebionetworks.warehouse.workers.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.snapshot.ClientClassifier;
+import org.sagebionetworks.warehouse.workers.utils.AccessRecordUtils;
+
+/**
+ * Measures the per record parsing done for PROCESSED_ACCESS_RECORD and
+ * USER_ACTIVITY_PER_CLIENT_PER_DAY. Each operation processes one record.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccessRecordUtilsBenchmark {
+
+	static final int NUMBER_OF_RECORDS = 1024;
+
+	List<AccessRecord> records;
+	ClientClassifier classifier;
+	int index;
+
+	@Setup
+	public void setup() {
+		records = BenchmarkData.createAccessRecords(NUMBER_OF_RECORDS);
+		classifier = new ClientClassifier(ClientClassifier.DEFAULT_RULES, NUMBER_OF_RECORDS);
+		index = 0;
+	}
+
+	private AccessRecord nextRecord() {
+		index = (index + 1) % NUMBER_OF_RECORDS;
+		return records.get(index);
+	}
+
+	@Benchmark
+	public void processAccessRecord(Blackhole blackhole) {
+		AccessRecord record = nextRecord();
+		blackhole.consume(AccessRecordUtils.processAccessRecord(record, classifier.classify(record.getUserAgent())));
+	}
+
+	@Benchmark
+	public void getUserActivityPerClientPerDay(Blackhole blackhole) {
+		AccessRecord record = nextRecord();
+		blackhole.consume(AccessRecordUtils.getUserActivityPerClientPerDay(record, classifier.classify(record.getUserAgent())));
+	}
+}
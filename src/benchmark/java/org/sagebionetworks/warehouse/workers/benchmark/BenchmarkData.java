@@ -0,0 +1,189 @@
+package org.sagebionetworks.warehouse.workers.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.sagebionetworks.csv.utils.ObjectCSVReader;
+import org.sagebionetworks.csv.utils.ObjectCSVWriter;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.repo.model.audit.ObjectRecord;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Generates the synthetic records and CSVs used by the benchmarks. A fixed
+ * seed is used so every run measures the same data.
+ *
+ */
+public class BenchmarkData {
+
+	public static final long SEED = 42L;
+	public static final String UTF8 = "UTF-8";
+	/**
+	 * Start of the generated timestamps.
+	 */
+	public static final long START_TIME_MS = 1438387200000L;
+
+	static final String[] USER_AGENTS = new String[] {
+		"Synapse-Web-Client/13.0  Synpase-Java-Client/2015-07-28-fbc93b5",
+		"Synpase-Java-Client/64.0-2-g6e9e35a  Synapse-Web-Client/64.0",
+		"synapseRClient/1.11-1",
+		"python-requests/2.5.1 CPython/2.7.9 Darwin/14.4.0",
+		"synapsecommandlineclient python-requests/2.4.3",
+		"ELB-HealthChecker/1.0",
+		"Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/41.0.2272.118 Safari/537.36"
+	};
+
+	static final String[] REQUEST_URLS = new String[] {
+		"/repo/v1/entity/syn2751737/bundle",
+		"/repo/v1/entity/2751737/version/3",
+		"/repo/v1/entity/syn123456/annotations",
+		"/repo/v1/query",
+		"/auth/v1/session",
+		"/repo/v1/userProfile",
+		"/file/v1/fileHandle/batch",
+		"/repo/v1/evaluation/submission/1234/status"
+	};
+
+	static final String[] METHODS = new String[] {"GET", "GET", "GET", "POST", "PUT", "DELETE"};
+
+	/**
+	 * Create access records with increasing timestamps.
+	 * 
+	 * @param count
+	 * @return
+	 */
+	public static List<AccessRecord> createAccessRecords(int count) {
+		Random random = new Random(SEED);
+		List<AccessRecord> records = new ArrayList<AccessRecord>(count);
+		long timestamp = START_TIME_MS;
+		for (int i = 0; i < count; i++) {
+			timestamp += random.nextInt(50);
+			AccessRecord ar = new AccessRecord();
+			ar.setSessionId(new UUID(random.nextLong(), random.nextLong()).toString());
+			ar.setElapseMS((long) random.nextInt(2000));
+			ar.setTimestamp(timestamp);
+			ar.setThreadId((long) random.nextInt(10000));
+			ar.setRequestURL(REQUEST_URLS[random.nextInt(REQUEST_URLS.length)]);
+			ar.setDate("2015-08-01");
+			ar.setMethod(METHODS[random.nextInt(METHODS.length)]);
+			ar.setVmId("1d4067ff518ed7a4:-3e005a0b:14c713c8d92:-7ffd");
+			ar.setInstance("84");
+			ar.setStack("prod");
+			ar.setSuccess(random.nextInt(20) > 0);
+			ar.setResponseStatus(200L);
+			ar.setHost("repo-prod.prod.sagebase.org");
+			ar.setUserAgent(USER_AGENTS[random.nextInt(USER_AGENTS.length)]);
+			ar.setUserId((long) random.nextInt(100000));
+			records.add(ar);
+		}
+		return records;
+	}
+
+	/**
+	 * Create object records of nodes with increasing timestamps.
+	 * 
+	 * @param count
+	 * @return
+	 */
+	public static List<ObjectRecord> createObjectRecords(int count) {
+		Random random = new Random(SEED);
+		List<ObjectRecord> records = new ArrayList<ObjectRecord>(count);
+		long timestamp = START_TIME_MS;
+		for (int i = 0; i < count; i++) {
+			timestamp += random.nextInt(50);
+			long id = random.nextInt(10000000);
+			ObjectRecord record = new ObjectRecord();
+			record.setTimestamp(timestamp);
+			record.setJsonClassName("org.sagebionetworks.repo.model.audit.NodeRecord");
+			record.setJsonString("{\"id\":\"" + id + "\",\"name\":\"file" + id + ".txt\",\"parentId\":\"" + (id / 10)
+					+ "\",\"benefactorId\":\"" + (id / 100) + "\",\"createdByPrincipalId\":" + random.nextInt(100000)
+					+ ",\"createdOn\":" + timestamp + ",\"modifiedOn\":" + timestamp
+					+ ",\"nodeType\":\"file\",\"eTag\":\"" + new UUID(random.nextLong(), random.nextLong())
+					+ "\",\"versionNumber\":1,\"isPublic\":false,\"isRestricted\":false,\"isControlled\":false}");
+			records.add(record);
+		}
+		return records;
+	}
+
+	/**
+	 * Write the records as a gzip CSV.
+	 * 
+	 * @param records
+	 * @param clazz
+	 * @param headers
+	 * @return the gzipped bytes
+	 * @throws IOException
+	 */
+	public static <T> byte[] toGzipCSV(List<T> records, Class<T> clazz, String[] headers) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ObjectCSVWriter<T> writer = new ObjectCSVWriter<T>(new OutputStreamWriter(new GZIPOutputStream(out), UTF8), clazz, headers);
+		try {
+			for (T record : records) {
+				writer.append(record);
+			}
+		} finally {
+			writer.close();
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Create a reader of a gzip CSV.
+	 * 
+	 * @param gzipCSV
+	 * @param clazz
+	 * @param headers
+	 * @return
+	 * @throws IOException
+	 */
+	public static <T> ObjectCSVReader<T> createReader(byte[] gzipCSV, Class<T> clazz, String[] headers) throws IOException {
+		return new ObjectCSVReader<T>(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(gzipCSV)), UTF8), clazz, headers);
+	}
+
+	/**
+	 * Create CSVs that are each sorted on the timestamp column, with the rows
+	 * of all CSVs interleaved in time, as the collate worker sees them.
+	 * 
+	 * @param numberOfCSVs
+	 * @param rowsPerCSV
+	 * @param timestampIndex
+	 * @return the text of each CSV
+	 * @throws IOException
+	 */
+	public static List<String> createSortedCSVs(int numberOfCSVs, int rowsPerCSV, int timestampIndex) throws IOException {
+		Random random = new Random(SEED);
+		List<String> csvs = new ArrayList<String>(numberOfCSVs);
+		for (int i = 0; i < numberOfCSVs; i++) {
+			List<Long> timestamps = new ArrayList<Long>(rowsPerCSV);
+			for (int j = 0; j < rowsPerCSV; j++) {
+				timestamps.add(START_TIME_MS + random.nextInt(60 * 60 * 1000));
+			}
+			Collections.sort(timestamps);
+			StringWriter text = new StringWriter();
+			CSVWriter writer = new CSVWriter(text);
+			String[] row = new String[timestampIndex + 3];
+			for (Long timestamp : timestamps) {
+				for (int k = 0; k < row.length; k++) {
+					row[k] = "value" + random.nextInt(1000);
+				}
+				row[timestampIndex] = timestamp.toString();
+				writer.writeNext(row);
+			}
+			writer.close();
+			csvs.add(text.toString());
+		}
+		return csvs;
+	}
+}
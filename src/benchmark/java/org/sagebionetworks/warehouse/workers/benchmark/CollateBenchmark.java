@@ -0,0 +1,72 @@
+package org.sagebionetworks.warehouse.workers.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sagebionetworks.common.util.progress.ProgressCallback;
+import org.sagebionetworks.warehouse.workers.collate.StreamingCollateUtils;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Measures the k-way merge of the collate workers. Each operation merges all
+ * of the CSVs, so rows/s is ops/s * numberOfCSVs * rowsPerCSV.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CollateBenchmark {
+
+	static final int TIMESTAMP_INDEX = 2;
+
+	@Param({"10", "100"})
+	int numberOfCSVs;
+
+	@Param({"1000"})
+	int rowsPerCSV;
+
+	List<String> csvs;
+
+	ProgressCallback<Void> callback = new ProgressCallback<Void>() {
+
+		@Override
+		public void progressMade(Void t) {
+		}
+	};
+
+	@Setup
+	public void setup() throws IOException {
+		csvs = BenchmarkData.createSortedCSVs(numberOfCSVs, rowsPerCSV, TIMESTAMP_INDEX);
+	}
+
+	@Benchmark
+	public void mergeSortedStreams() throws IOException {
+		List<CSVReader> readers = new ArrayList<CSVReader>(csvs.size());
+		for (String csv : csvs) {
+			readers.add(new CSVReader(new StringReader(csv)));
+		}
+		CSVWriter out = new CSVWriter(new NullWriter());
+		StreamingCollateUtils.mergeSortedStreams(callback, readers, out, TIMESTAMP_INDEX);
+		out.close();
+	}
+}
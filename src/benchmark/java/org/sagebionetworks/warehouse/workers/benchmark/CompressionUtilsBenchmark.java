@@ -0,0 +1,65 @@
+package org.sagebionetworks.warehouse.workers.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sagebionetworks.repo.model.audit.ObjectRecord;
+import org.sagebionetworks.warehouse.workers.utils.CompressionUtils;
+
+/**
+ * Measures the compression of the JSON strings stored in the snapshot tables.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompressionUtilsBenchmark {
+
+	/**
+	 * The number of node JSON strings joined into the compressed string.
+	 */
+	@Param({"1", "100"})
+	int numberOfObjects;
+
+	/**
+	 * The Deflater compression level.
+	 */
+	@Param({"-1", "1"})
+	int level;
+
+	String json;
+	byte[] compressed;
+
+	@Setup
+	public void setup() {
+		StringBuilder builder = new StringBuilder();
+		for (ObjectRecord record : BenchmarkData.createObjectRecords(numberOfObjects)) {
+			builder.append(record.getJsonString());
+		}
+		json = builder.toString();
+		compressed = CompressionUtils.compressStringUTF8(json);
+	}
+
+	@Benchmark
+	public byte[] compress() {
+		return CompressionUtils.compressStringUTF8(json, level);
+	}
+
+	@Benchmark
+	public String decompress() {
+		return CompressionUtils.decompressUTF8(compressed);
+	}
+}
@@ -0,0 +1,70 @@
+package org.sagebionetworks.warehouse.workers.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sagebionetworks.csv.utils.ObjectCSVReader;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.repo.model.audit.ObjectRecord;
+import org.sagebionetworks.warehouse.workers.model.SnapshotHeader;
+
+/**
+ * Measures reading the records of a gzip CSV snapshot file, as the snapshot
+ * workers do. Each operation reads the whole file.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ObjectCSVReaderBenchmark {
+
+	@Param({"10000"})
+	int numberOfRecords;
+
+	byte[] accessRecordCSV;
+	byte[] objectRecordCSV;
+
+	@Setup
+	public void setup() throws IOException {
+		accessRecordCSV = BenchmarkData.toGzipCSV(BenchmarkData.createAccessRecords(numberOfRecords),
+				AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS);
+		objectRecordCSV = BenchmarkData.toGzipCSV(BenchmarkData.createObjectRecords(numberOfRecords),
+				ObjectRecord.class, SnapshotHeader.OBJECT_RECORD_HEADERS);
+	}
+
+	@Benchmark
+	public void readAccessRecords(Blackhole blackhole) throws IOException {
+		readAll(BenchmarkData.createReader(accessRecordCSV, AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS), blackhole);
+	}
+
+	@Benchmark
+	public void readObjectRecords(Blackhole blackhole) throws IOException {
+		readAll(BenchmarkData.createReader(objectRecordCSV, ObjectRecord.class, SnapshotHeader.OBJECT_RECORD_HEADERS), blackhole);
+	}
+
+	private static <T> void readAll(ObjectCSVReader<T> reader, Blackhole blackhole) throws IOException {
+		try {
+			T record = null;
+			while ((record = reader.next()) != null) {
+				blackhole.consume(record);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package org.sagebionetworks.warehouse.workers.benchmark;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sagebionetworks.warehouse.workers.bucket.FileSubmissionMessage;
+import org.sagebionetworks.warehouse.workers.utils.XMLUtils;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Measures marshaling the file submission message that every snapshot worker
+ * reads from its queue. toXMLNewXStream is the cost of a call when a new
+ * XStream is configured for each message.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XMLUtilsBenchmark {
+
+	FileSubmissionMessage message;
+	String xml;
+
+	@Setup
+	public void setup() {
+		message = new FileSubmissionMessage("prod.access.record.sagebase.org",
+				"000000123/2015-08-01/12-34-56-789-07d8f2f0-2b6c-4ab8-a5e3-96a8b5c4b2f1.csv.gz");
+		xml = XMLUtils.toXML(message, FileSubmissionMessage.ALIAS);
+	}
+
+	@Benchmark
+	public String toXML() {
+		return XMLUtils.toXML(message, FileSubmissionMessage.ALIAS);
+	}
+
+	@Benchmark
+	public String toXMLNewXStream() {
+		XStream xStream = new XStream();
+		xStream.alias(FileSubmissionMessage.ALIAS, FileSubmissionMessage.class);
+		StringWriter writer = new StringWriter();
+		xStream.toXML(message, writer);
+		return writer.toString();
+	}
+
+	@Benchmark
+	public FileSubmissionMessage fromXML() {
+		return XMLUtils.fromXML(xml, FileSubmissionMessage.class, FileSubmissionMessage.ALIAS);
+	}
+
+	@Benchmark
+	public FileSubmissionMessage roundTrip() {
+		return XMLUtils.fromXML(XMLUtils.toXML(message, FileSubmissionMessage.ALIAS),
+				FileSubmissionMessage.class, FileSubmissionMessage.ALIAS);
+	}
+}
@@ -0,0 +1,114 @@
+package org.sagebionetworks.warehouse.workers;
+
+/**
+ * Decides how many workers of a message driven stack should run and how often
+ * the stack should poll its queue.
+ *
+ * The concurrency grows by one worker while the queue has more than
+ * backlogPerWorker messages for each running worker, and shrinks by one once
+ * the queue is empty. When the average time to process a message goes over
+ * the target latency the concurrency is halved, so an overloaded database
+ * recovers quickly. The poll period is the minimum while the queue has
+ * messages and doubles, up to the maximum, while it stays empty.
+ *
+ * All methods are thread safe.
+ */
+public class AdaptiveConcurrencyController {
+
+	/**
+	 * The weight of the latest message in the average latency.
+	 */
+	static final double LATENCY_WEIGHT = 0.2;
+	/**
+	 * The queue depth passed to update when it is not known.
+	 */
+	public static final long UNKNOWN_QUEUE_DEPTH = -1L;
+
+	private final AdaptiveConcurrencySettings settings;
+	private int concurrency;
+	private int periodMS;
+	private double averageLatencyMS;
+	private boolean hasLatency;
+
+	public AdaptiveConcurrencyController(AdaptiveConcurrencySettings settings) {
+		if (settings == null) {
+			throw new IllegalArgumentException("Settings cannot be null");
+		}
+		if (settings.getMinConcurrency() < 1 || settings.getMaxConcurrency() < settings.getMinConcurrency()) {
+			throw new IllegalArgumentException("Invalid concurrency bounds: " + settings);
+		}
+		if (settings.getMinPeriodMS() < 1 || settings.getMaxPeriodMS() < settings.getMinPeriodMS()) {
+			throw new IllegalArgumentException("Invalid period bounds: " + settings);
+		}
+		this.settings = settings;
+		this.concurrency = settings.getMinConcurrency();
+		this.periodMS = settings.getMinPeriodMS();
+	}
+
+	/**
+	 * Record the time it took a worker to process a message.
+	 *
+	 * @param latencyMS
+	 */
+	public synchronized void recordLatency(long latencyMS) {
+		if (hasLatency) {
+			averageLatencyMS = LATENCY_WEIGHT * latencyMS + (1 - LATENCY_WEIGHT) * averageLatencyMS;
+		} else {
+			averageLatencyMS = latencyMS;
+			hasLatency = true;
+		}
+	}
+
+	/**
+	 * Update the concurrency and period for the current depth of the queue.
+	 *
+	 * @param queueDepth
+	 *            The approximate number of messages in the queue, or
+	 *            UNKNOWN_QUEUE_DEPTH.
+	 */
+	public synchronized void update(long queueDepth) {
+		if (hasLatency && averageLatencyMS > settings.getTargetLatencyMS()) {
+			concurrency = Math.max(settings.getMinConcurrency(), concurrency / 2);
+			// start over once the slower pace has been measured.
+			hasLatency = false;
+		} else if (queueDepth > (long) concurrency * settings.getBacklogPerWorker()) {
+			concurrency = Math.min(settings.getMaxConcurrency(), concurrency + 1);
+		} else if (queueDepth == 0) {
+			concurrency = Math.max(settings.getMinConcurrency(), concurrency - 1);
+		}
+		if (queueDepth == 0) {
+			periodMS = (int) Math.min(settings.getMaxPeriodMS(), periodMS * 2L);
+		} else {
+			periodMS = settings.getMinPeriodMS();
+		}
+	}
+
+	/**
+	 * @return The number of workers that should run.
+	 */
+	public synchronized int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * @return The period between polls of the queue.
+	 */
+	public synchronized int getPeriodMS() {
+		return periodMS;
+	}
+
+	/**
+	 * @return The average time to process a message, or null if no message
+	 *         has been processed since the last decrease.
+	 */
+	public synchronized Double getAverageLatencyMS() {
+		return hasLatency ? averageLatencyMS : null;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "AdaptiveConcurrencyController [concurrency=" + concurrency
+				+ ", periodMS=" + periodMS + ", averageLatencyMS="
+				+ getAverageLatencyMS() + "]";
+	}
+}
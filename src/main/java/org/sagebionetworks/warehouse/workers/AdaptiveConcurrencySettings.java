@@ -0,0 +1,130 @@
+package org.sagebionetworks.warehouse.workers;
+
+/**
+ * The bounds within which an AdaptiveConcurrencyController may change the
+ * concurrency and poll period of a message driven worker stack.
+ *
+ */
+public class AdaptiveConcurrencySettings {
+
+	int minConcurrency;
+	int maxConcurrency;
+	int minPeriodMS;
+	int maxPeriodMS;
+	long targetLatencyMS;
+	int backlogPerWorker;
+
+	public AdaptiveConcurrencySettings() {
+	}
+
+	/**
+	 * A copy of the given settings, for a stack that overrides some of them.
+	 * @param other
+	 */
+	public AdaptiveConcurrencySettings(AdaptiveConcurrencySettings other) {
+		this.minConcurrency = other.minConcurrency;
+		this.maxConcurrency = other.maxConcurrency;
+		this.minPeriodMS = other.minPeriodMS;
+		this.maxPeriodMS = other.maxPeriodMS;
+		this.targetLatencyMS = other.targetLatencyMS;
+		this.backlogPerWorker = other.backlogPerWorker;
+	}
+
+	/**
+	 * A copy of the given settings that runs one worker at a time, for stacks
+	 * whose messages must not be processed concurrently.
+	 * @param other
+	 * @return
+	 */
+	public static AdaptiveConcurrencySettings serial(AdaptiveConcurrencySettings other) {
+		AdaptiveConcurrencySettings settings = new AdaptiveConcurrencySettings(other);
+		settings.setMinConcurrency(1);
+		settings.setMaxConcurrency(1);
+		return settings;
+	}
+
+	/**
+	 * The number of workers that process messages while the queue is idle.
+	 * @return
+	 */
+	public int getMinConcurrency() {
+		return minConcurrency;
+	}
+
+	public void setMinConcurrency(int minConcurrency) {
+		this.minConcurrency = minConcurrency;
+	}
+
+	/**
+	 * The maximum number of workers that process messages at the same time.
+	 * This is also the maximum lock count of the stack's semaphore, so it
+	 * bounds the workers of all instances.
+	 * @return
+	 */
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	public void setMaxConcurrency(int maxConcurrency) {
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	/**
+	 * The period between polls of the queue while it has a backlog.
+	 * @return
+	 */
+	public int getMinPeriodMS() {
+		return minPeriodMS;
+	}
+
+	public void setMinPeriodMS(int minPeriodMS) {
+		this.minPeriodMS = minPeriodMS;
+	}
+
+	/**
+	 * The period between polls of the queue once it has been idle for a while.
+	 * @return
+	 */
+	public int getMaxPeriodMS() {
+		return maxPeriodMS;
+	}
+
+	public void setMaxPeriodMS(int maxPeriodMS) {
+		this.maxPeriodMS = maxPeriodMS;
+	}
+
+	/**
+	 * The concurrency is halved when the average time to process a message is
+	 * longer than this, since the database is not keeping up.
+	 * @return
+	 */
+	public long getTargetLatencyMS() {
+		return targetLatencyMS;
+	}
+
+	public void setTargetLatencyMS(long targetLatencyMS) {
+		this.targetLatencyMS = targetLatencyMS;
+	}
+
+	/**
+	 * The concurrency is raised while each worker has more than this many
+	 * messages waiting in the queue.
+	 * @return
+	 */
+	public int getBacklogPerWorker() {
+		return backlogPerWorker;
+	}
+
+	public void setBacklogPerWorker(int backlogPerWorker) {
+		this.backlogPerWorker = backlogPerWorker;
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptiveConcurrencySettings [minConcurrency=" + minConcurrency
+				+ ", maxConcurrency=" + maxConcurrency + ", minPeriodMS="
+				+ minPeriodMS + ", maxPeriodMS=" + maxPeriodMS
+				+ ", targetLatencyMS=" + targetLatencyMS
+				+ ", backlogPerWorker=" + backlogPerWorker + "]";
+	}
+}
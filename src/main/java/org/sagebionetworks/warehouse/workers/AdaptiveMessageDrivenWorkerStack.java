@@ -0,0 +1,201 @@
+package org.sagebionetworks.warehouse.workers;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.common.util.progress.ProgressCallback;
+import org.sagebionetworks.database.semaphore.CountingSemaphore;
+import org.sagebionetworks.workers.util.aws.message.MessageDrivenRunner;
+import org.sagebionetworks.workers.util.aws.message.MessageDrivenWorkerStack;
+import org.sagebionetworks.workers.util.aws.message.MessageDrivenWorkerStackConfiguration;
+import org.sagebionetworks.workers.util.aws.message.RecoverableMessageException;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.Message;
+
+/**
+ * A message driven worker stack that runs between the minimum and maximum
+ * number of workers at a time, as decided by an AdaptiveConcurrencyController
+ * from the depth of the queue and the time it takes to process each message.
+ *
+ * Each worker is a MessageDrivenWorkerStack on the same queue and semaphore
+ * key, so the semaphore still bounds the workers of all instances.
+ *
+ * The WorkerScheduler holds the weight of the stack for each worker of a run.
+ * So a run uses at most the concurrency it had when it was queued, and a
+ * higher concurrency takes effect on the next run.
+ */
+public class AdaptiveMessageDrivenWorkerStack implements ConcurrentRunner {
+
+	public static final String APPROXIMATE_NUMBER_OF_MESSAGES = "ApproximateNumberOfMessages";
+
+	private static final Logger log = LogManager.getLogger(AdaptiveMessageDrivenWorkerStack.class);
+
+	private final List<Runnable> workers;
+	private final AmazonSQSClient awsSQSClient;
+	private final String queueName;
+	private final AdaptiveConcurrencyController controller;
+	private final ExecutorService executor;
+	private String queueUrl;
+	private long lastRunMS;
+
+	public AdaptiveMessageDrivenWorkerStack(CountingSemaphore semaphore,
+			AmazonSQSClient awsSQSClient, AmazonSNSClient awsSNClient,
+			MessageDrivenWorkerStackConfiguration config,
+			AdaptiveConcurrencySettings settings) {
+		this.controller = new AdaptiveConcurrencyController(settings);
+		config.setRunner(new TimedRunner(config.getRunner(), controller));
+		/*
+		 * The lock count of a stack cannot change once it is created, so the
+		 * stack is created with the upper bound and only the number of workers
+		 * that run is adapted.
+		 */
+		config.setSemaphoreMaxLockCount(settings.getMaxConcurrency());
+		this.workers = new ArrayList<Runnable>(settings.getMaxConcurrency());
+		for (int i = 0; i < settings.getMaxConcurrency(); i++) {
+			workers.add(new MessageDrivenWorkerStack(semaphore, awsSQSClient, awsSNClient, config));
+		}
+		this.awsSQSClient = awsSQSClient;
+		this.queueName = config.getQueueName();
+		this.executor = createExecutor(workers.size());
+	}
+
+	/**
+	 * For testing.
+	 */
+	AdaptiveMessageDrivenWorkerStack(List<Runnable> workers,
+			AmazonSQSClient awsSQSClient, String queueUrl,
+			AdaptiveConcurrencyController controller) {
+		this.workers = workers;
+		this.awsSQSClient = awsSQSClient;
+		this.queueName = queueUrl;
+		this.queueUrl = queueUrl;
+		this.controller = controller;
+		this.executor = createExecutor(workers.size());
+	}
+
+	/*
+	 * The first worker runs on the scheduler's thread, so the pool only needs
+	 * a thread for each of the others. Idle threads are released.
+	 */
+	private static ExecutorService createExecutor(int workerCount) {
+		if (workerCount < 2) {
+			return null;
+		}
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(workerCount - 1, workerCount - 1,
+				60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	@Override
+	public int getConcurrency() {
+		return Math.min(controller.getConcurrency(), workers.size());
+	}
+
+	@Override
+	public void run() {
+		long now = System.currentTimeMillis();
+		if (lastRunMS > 0 && now - lastRunMS < controller.getPeriodMS()) {
+			// the queue has been idle, so skip this tick.
+			return;
+		}
+		lastRunMS = now;
+		// the scheduler holds capacity for the concurrency this run was queued with.
+		int granted = getConcurrency();
+		controller.update(getQueueDepth());
+		int next = getConcurrency();
+		if (next != granted) {
+			log.info("Concurrency of " + queueName + " changed from " + granted + " to " + next + ": " + controller);
+		}
+		int concurrency = Math.min(granted, next);
+		List<Future<?>> futures = new LinkedList<Future<?>>();
+		for (int i = 1; i < concurrency; i++) {
+			futures.add(executor.submit(workers.get(i)));
+		}
+		try {
+			workers.get(0).run();
+		} finally {
+			// the capacity is released when the run returns.
+			waitFor(futures);
+		}
+	}
+
+	private void waitFor(List<Future<?>> futures) {
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				log.error("Worker of " + queueName + " failed", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * @return The approximate number of messages in the queue, or
+	 *         UNKNOWN_QUEUE_DEPTH if SQS could not be reached.
+	 */
+	long getQueueDepth() {
+		try {
+			GetQueueAttributesResult result = awsSQSClient.getQueueAttributes(
+					new GetQueueAttributesRequest(getQueueUrl()).withAttributeNames(APPROXIMATE_NUMBER_OF_MESSAGES));
+			String depth = result.getAttributes().get(APPROXIMATE_NUMBER_OF_MESSAGES);
+			if (depth == null) {
+				return AdaptiveConcurrencyController.UNKNOWN_QUEUE_DEPTH;
+			}
+			return Long.parseLong(depth);
+		} catch (AmazonClientException e) {
+			log.warn("Failed to get the depth of queue " + queueName + ": " + e.getMessage());
+			return AdaptiveConcurrencyController.UNKNOWN_QUEUE_DEPTH;
+		}
+	}
+
+	private String getQueueUrl() {
+		if (queueUrl == null) {
+			// the queue is created by the first worker that runs.
+			queueUrl = awsSQSClient.getQueueUrl(queueName).getQueueUrl();
+		}
+		return queueUrl;
+	}
+
+	/**
+	 * Records the time each message takes to process.
+	 */
+	static class TimedRunner implements MessageDrivenRunner {
+
+		private final MessageDrivenRunner runner;
+		private final AdaptiveConcurrencyController controller;
+
+		TimedRunner(MessageDrivenRunner runner, AdaptiveConcurrencyController controller) {
+			this.runner = runner;
+			this.controller = controller;
+		}
+
+		@Override
+		public void run(ProgressCallback<Message> progressCallback, Message message)
+				throws RecoverableMessageException, Exception {
+			long start = System.currentTimeMillis();
+			try {
+				runner.run(progressCallback, message);
+			} finally {
+				controller.recordLatency(System.currentTimeMillis() - start);
+			}
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package org.sagebionetworks.warehouse.workers;
 
+import java.util.List;
+
 import org.sagebionetworks.aws.utils.s3.BucketDao;
 
 /**
@@ -14,5 +16,12 @@ public interface BucketDaoProvider {
 	 * @return
 	 */
 	public BucketDao createBucketDao(String bucketName);
+	
+	/**
+	 * List the folders at the root of a bucket.
+	 * @param bucketName
+	 * @return The prefix of each folder, including the trailing '/'.
+	 */
+	public List<String> listTopLevelFolders(String bucketName);
 
 }
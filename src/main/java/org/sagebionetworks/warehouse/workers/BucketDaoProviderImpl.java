@@ -1,13 +1,20 @@
 package org.sagebionetworks.warehouse.workers;
 
+import java.util.LinkedList;
+import java.util.List;
+
 import org.sagebionetworks.aws.utils.s3.BucketDao;
 import org.sagebionetworks.aws.utils.s3.BucketDaoImpl;
 
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
 import com.google.inject.Inject;
 
 public class BucketDaoProviderImpl implements BucketDaoProvider {
 	
+	private static final String FOLDER_DELIMITER = "/";
+	
 	private AmazonS3Client awsS3Client;
 	
 	@Inject
@@ -21,4 +28,18 @@ public class BucketDaoProviderImpl implements BucketDaoProvider {
 		return new BucketDaoImpl(awsS3Client, bucketName);
 	}
 
+	@Override
+	public List<String> listTopLevelFolders(String bucketName) {
+		List<String> folders = new LinkedList<String>();
+		ObjectListing listing = awsS3Client.listObjects(new ListObjectsRequest()
+				.withBucketName(bucketName)
+				.withDelimiter(FOLDER_DELIMITER));
+		folders.addAll(listing.getCommonPrefixes());
+		while(listing.isTruncated()){
+			listing = awsS3Client.listNextBatchOfObjects(listing);
+			folders.addAll(listing.getCommonPrefixes());
+		}
+		return folders;
+	}
+
 }
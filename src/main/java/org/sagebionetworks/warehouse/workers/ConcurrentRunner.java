@@ -0,0 +1,18 @@
+package org.sagebionetworks.warehouse.workers;
+
+/**
+ * A runner that uses more than one thread per run. The WorkerScheduler holds
+ * the weight of the worker for each of these threads, so the capacity bounds
+ * the threads rather than the runs.
+ *
+ */
+public interface ConcurrentRunner extends Runnable {
+
+	/**
+	 * The number of threads the next run will use. A run must not use more
+	 * threads than this returned when the run was queued.
+	 *
+	 * @return
+	 */
+	public int getConcurrency();
+}
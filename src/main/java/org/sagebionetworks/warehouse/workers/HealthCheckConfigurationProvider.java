@@ -24,6 +24,7 @@ public class HealthCheckConfigurationProvider implements WorkerStackConfiguratio
 		this.config.setStartDelayMs(1013);
 		// run once per 10 seconds.
 		this.config.setPeriodMS(10*1000);
+		this.config.setPriority(WorkerPriority.HIGH);
 		this.config.setWorkerName(HealthCheckWorker.class.getName());
 	}
 
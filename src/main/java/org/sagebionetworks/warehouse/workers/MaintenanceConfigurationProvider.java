@@ -24,6 +24,7 @@ public class MaintenanceConfigurationProvider implements WorkerStackConfiguratio
 		this.config.setStartDelayMs(1013);
 		// run once per 10 minutes.
 		this.config.setPeriodMS(10*60*1000);
+		this.config.setPriority(WorkerPriority.LOW);
 		this.config.setWorkerName(MaintenanceWorker.class.getName());
 	}
 
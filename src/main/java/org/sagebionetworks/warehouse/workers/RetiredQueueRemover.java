@@ -0,0 +1,100 @@
+package org.sagebionetworks.warehouse.workers;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.warehouse.workers.config.Configuration;
+
+import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.services.sns.model.ListSubscriptionsResult;
+import com.amazonaws.services.sns.model.Subscription;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.QueueDoesNotExistException;
+import com.google.inject.Inject;
+
+/**
+ * Removes the queues of worker stacks that no longer exist. A retired queue
+ * would otherwise stay subscribed to its topic and fill up without a consumer.
+ * 
+ * Each queue is unsubscribed from every topic and then deleted. A queue that
+ * no longer exists is skipped, so only the first startup after a stack is
+ * retired does any work.
+ */
+public class RetiredQueueRemover {
+
+	public static final String QUEUE_ARN = "QueueArn";
+
+	private static Logger log = LogManager.getLogger(RetiredQueueRemover.class);
+
+	private AmazonSQSClient awsSQSClient;
+	private AmazonSNSClient awsSNSClient;
+	private List<String> queueNames;
+
+	@Inject
+	public RetiredQueueRemover(AmazonSQSClient awsSQSClient, AmazonSNSClient awsSNSClient, Configuration config) {
+		this(awsSQSClient, awsSNSClient, Arrays.asList(config.getProperty("org.sagebionetworks.warehouse.worker.retired.queues").split(",")));
+	}
+
+	public RetiredQueueRemover(AmazonSQSClient awsSQSClient, AmazonSNSClient awsSNSClient, List<String> queueNames) {
+		this.awsSQSClient = awsSQSClient;
+		this.awsSNSClient = awsSNSClient;
+		this.queueNames = new LinkedList<String>();
+		for (String queueName : queueNames) {
+			if (!queueName.trim().isEmpty()) {
+				this.queueNames.add(queueName.trim());
+			}
+		}
+	}
+
+	/**
+	 * Remove each retired queue. A failure is logged, so it does not stop the
+	 * application from starting.
+	 */
+	public void removeRetiredQueues() {
+		for (String queueName : queueNames) {
+			try {
+				removeQueue(queueName);
+			} catch (Exception e) {
+				log.error("Failed to remove retired queue: " + queueName, e);
+			}
+		}
+	}
+
+	private void removeQueue(String queueName) {
+		String queueUrl;
+		try {
+			queueUrl = awsSQSClient.getQueueUrl(queueName).getQueueUrl();
+		} catch (QueueDoesNotExistException e) {
+			// already removed.
+			return;
+		}
+		String queueArn = awsSQSClient.getQueueAttributes(queueUrl, Arrays.asList(QUEUE_ARN)).getAttributes().get(QUEUE_ARN);
+		for (String subscriptionArn : getSubscriptions(queueArn)) {
+			log.info("Unsubscribing retired queue: " + queueName + " from: " + subscriptionArn);
+			awsSNSClient.unsubscribe(subscriptionArn);
+		}
+		log.info("Deleting retired queue: " + queueName);
+		awsSQSClient.deleteQueue(queueUrl);
+	}
+
+	/**
+	 * @return the ARNs of the subscriptions that deliver to the given endpoint.
+	 */
+	private List<String> getSubscriptions(String endpoint) {
+		List<String> subscriptionArns = new LinkedList<String>();
+		String nextToken = null;
+		do {
+			ListSubscriptionsResult result = awsSNSClient.listSubscriptions(nextToken);
+			for (Subscription subscription : result.getSubscriptions()) {
+				if (endpoint.equals(subscription.getEndpoint())) {
+					subscriptionArns.add(subscription.getSubscriptionArn());
+				}
+			}
+			nextToken = result.getNextToken();
+		} while (nextToken != null);
+		return subscriptionArns;
+	}
+}
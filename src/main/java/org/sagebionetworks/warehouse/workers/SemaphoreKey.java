@@ -10,8 +10,6 @@ public enum SemaphoreKey {
 	REALTIME_BUCKET_LISTENER_WORKER,
 	PERIODIC_ROLLING_FOLDER_MESSAGE_GENERATOR,
 	FOLDER_COLLATE_WORKER,
-	ACCESS_RECORD_WORKER,
-	PROCESS_ACCESS_RECORD_WORKER,
 	NODE_SNAPSHOT_WORKER,
 	TEAM_SNAPSHOT_WORKER,
 	TEAM_MEMBER_SNAPSHOT_WORKER,
@@ -26,6 +24,6 @@ public enum SemaphoreKey {
 	VERIFICATION_SUBMISSION_RECORD_WORKER,
 	VERIFICATION_SUBMISSION_STATE_RECORD_WORKER,
 	BULK_FILE_DOWNLOAD_RECORD_WORKER,
-	USER_ACTIVITY_PER_CLIENT_PER_DAY_WORKER,
 	USER_ACTIVITY_PER_MONTH_WORKER,
+	ACCESS_RECORD_FAN_OUT_WORKER,
 }
@@ -26,6 +26,7 @@ public class TablePartitionConfigurationProvider implements WorkerStackConfigura
 		this.config.setStartDelayMs(1013);
 		// run once per 1 minutes.
 		this.config.setPeriodMS(60*1000);
+		this.config.setPriority(WorkerPriority.LOW);
 		this.config.setWorkerName(TablePartitionWorker.class.getName());
 	}
 
@@ -1,8 +1,9 @@
 package org.sagebionetworks.warehouse.workers;
 
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -43,20 +44,31 @@ public class TablePartitionWorker implements ProgressingRunner<Void> {
 			log.info("Checking partitions on table "+tableName+"...");
 			Map<String, Long> requiredPartitions = PartitionUtil.getPartitions(tableName, tableConfig.getPartitionPeriod(), startDate, endDate);
 			Set<String> existingPartitions = creator.getExistingPartitionsForTable(tableName);
-			Set<String> toDrop = new HashSet<String>(existingPartitions);
-			toDrop.removeAll(requiredPartitions.keySet());
-			Set<String> toAdd = requiredPartitions.keySet();
-			toAdd.removeAll(existingPartitions);
-			for (String partitionName : toAdd) {
-				log.info("Adding partition "+partitionName+"...");
-				creator.addPartition(tableName, partitionName, requiredPartitions.get(partitionName));
+			Map<String, Long> toAdd = new TreeMap<String, Long>();
+			for (Map.Entry<String, Long> partition : requiredPartitions.entrySet()) {
+				if (!existingPartitions.contains(partition.getKey())) {
+					toAdd.put(partition.getKey(), partition.getValue());
+				}
 			}
-			for (String partitionName : toDrop) {
-				if (partitionName != null && !partitionName.toLowerCase().equals("null")) {
-					log.info("Dropping partition "+partitionName+"...");
-					creator.dropPartition(tableName, partitionName);
+			Set<String> toDrop = new TreeSet<String>();
+			for (String partitionName : existingPartitions) {
+				if (partitionName != null && !partitionName.toLowerCase().equals("null")
+						&& !requiredPartitions.containsKey(partitionName)) {
+					toDrop.add(partitionName);
 				}
 			}
+			log.info("Planned to add " + toAdd.size() + " and drop " + toDrop.size() + " partitions on table " + tableName);
+			// each change is a single statement no matter how many partitions it has.
+			if (!toAdd.isEmpty()) {
+				long start = System.currentTimeMillis();
+				creator.addPartitions(tableName, toAdd);
+				log.info("Added partitions " + toAdd.keySet() + " in " + (System.currentTimeMillis() - start) + " ms");
+			}
+			if (!toDrop.isEmpty()) {
+				long start = System.currentTimeMillis();
+				creator.dropPartitions(tableName, toDrop);
+				log.info("Dropped partitions " + toDrop + " in " + (System.currentTimeMillis() - start) + " ms");
+			}
 		}
 	}
 
@@ -0,0 +1,12 @@
+package org.sagebionetworks.warehouse.workers;
+
+/**
+ * The order in which the WorkerScheduler runs workers that are waiting for
+ * capacity. Workers of the same priority run in the order their timers fired.
+ *
+ */
+public enum WorkerPriority {
+	HIGH,
+	NORMAL,
+	LOW
+}
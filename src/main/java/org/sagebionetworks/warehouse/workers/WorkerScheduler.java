@@ -0,0 +1,34 @@
+package org.sagebionetworks.warehouse.workers;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Owns the timers of all worker stacks and runs their workers with a shared,
+ * bounded capacity, so the number of workers running at the same time in one
+ * JVM does not depend on how many stacks there are.
+ *
+ */
+public interface WorkerScheduler {
+
+	/**
+	 * Run the given runner on the period of the given configuration. A tick
+	 * that fires while the previous run of the same worker is still waiting or
+	 * running is skipped.
+	 *
+	 * @param config
+	 * @param runner
+	 * @return Cancel this to stop the worker.
+	 */
+	public Future<?> schedule(WorkerStackConfiguration config, Runnable runner);
+
+	/**
+	 * @return A copy of the statistics of each scheduled worker.
+	 */
+	public List<WorkerStatistics> getStatistics();
+
+	/**
+	 * Stop all timers and workers.
+	 */
+	public void shutdown();
+}
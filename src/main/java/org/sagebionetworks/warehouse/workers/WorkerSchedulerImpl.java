@@ -0,0 +1,349 @@
+package org.sagebionetworks.warehouse.workers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A single timer thread fires the ticks of every worker. Each tick queues a
+ * run of its worker, and runs are started in priority order while their
+ * weight fits in the remaining capacity. A run holds its weight of the
+ * capacity until it finishes, so at most capacity light workers, or fewer
+ * heavy ones, run at the same time. A ConcurrentRunner holds its weight for
+ * each thread it will use, as reported when its run is queued.
+ *
+ * Runs are started strictly in priority order: a waiting heavy worker is not
+ * passed by lighter workers of a lower priority. Two things keep the lower
+ * priorities from starving:
+ * <ul>
+ * <li>HIGH runs hold at most the capacity less the reserved capacity, so
+ * NORMAL and LOW runs may pass a HIGH run that waits for its share.</li>
+ * <li>A run is raised one priority for each aging period it has waited.</li>
+ * </ul>
+ */
+public class WorkerSchedulerImpl implements WorkerScheduler {
+
+	private static final Logger log = LogManager.getLogger(WorkerSchedulerImpl.class);
+
+	private final int capacity;
+	private final int highCapacity;
+	private final long agingMS;
+	private final ScheduledExecutorService timer;
+	private final ExecutorService executor;
+	private final List<Run> waiting;
+	private final List<Worker> workers;
+	private int available;
+	private int highInUse;
+	private long sequence;
+
+	/**
+	 * A scheduler without reserved capacity or aging.
+	 *
+	 * @param capacity
+	 *            The total weight of the workers that may run at the same
+	 *            time.
+	 * @param statisticsLogPeriodMS
+	 *            How often the statistics are logged, or zero to never log
+	 *            them.
+	 */
+	public WorkerSchedulerImpl(int capacity, long statisticsLogPeriodMS) {
+		this(capacity, 0, 0, statisticsLogPeriodMS);
+	}
+
+	/**
+	 * @param capacity
+	 *            The total weight of the workers that may run at the same
+	 *            time.
+	 * @param reservedCapacity
+	 *            The share of the capacity that HIGH workers may not hold,
+	 *            so NORMAL and LOW workers always have room to run.
+	 * @param agingMS
+	 *            A waiting run is raised one priority each time it has waited
+	 *            this long, or zero to never raise it.
+	 * @param statisticsLogPeriodMS
+	 *            How often the statistics are logged, or zero to never log
+	 *            them.
+	 */
+	public WorkerSchedulerImpl(int capacity, int reservedCapacity, long agingMS, long statisticsLogPeriodMS) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least one");
+		}
+		if (reservedCapacity < 0 || reservedCapacity >= capacity) {
+			throw new IllegalArgumentException("Reserved capacity must be at least zero and less than the capacity");
+		}
+		if (agingMS < 0) {
+			throw new IllegalArgumentException("Aging period cannot be negative");
+		}
+		this.capacity = capacity;
+		this.highCapacity = capacity - reservedCapacity;
+		this.agingMS = agingMS;
+		this.available = capacity;
+		this.timer = Executors.newSingleThreadScheduledExecutor();
+		this.executor = Executors.newCachedThreadPool();
+		this.waiting = new LinkedList<Run>();
+		this.workers = new LinkedList<Worker>();
+		if (statisticsLogPeriodMS > 0) {
+			timer.scheduleAtFixedRate(new Runnable() {
+
+				@Override
+				public void run() {
+					logStatistics();
+				}
+			}, statisticsLogPeriodMS, statisticsLogPeriodMS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public Future<?> schedule(WorkerStackConfiguration config, Runnable runner) {
+		if (config == null) {
+			throw new IllegalArgumentException("Configuration cannot be null");
+		}
+		if (runner == null) {
+			throw new IllegalArgumentException("Runner cannot be null");
+		}
+		WorkerPriority priority = config.getPriority() == null ? WorkerPriority.NORMAL : config.getPriority();
+		// a worker heavier than its share of the capacity could never run.
+		int weight = Math.min(getCapacity(priority), Math.max(1, config.getWeight()));
+		final Worker worker = new Worker(runner, getConcurrentRunner(config, runner),
+				new WorkerStatistics(config.getWorkerName(), priority, weight));
+		synchronized (this) {
+			workers.add(worker);
+		}
+		worker.future = timer.scheduleAtFixedRate(new Runnable() {
+
+			@Override
+			public void run() {
+				tick(worker);
+			}
+		}, config.getStartDelayMs(), config.getPeriodMS(), TimeUnit.MILLISECONDS);
+		return worker.future;
+	}
+
+	/*
+	 * The stacks wrap their runners, so also look at the configured runner.
+	 */
+	private static ConcurrentRunner getConcurrentRunner(WorkerStackConfiguration config, Runnable runner) {
+		if (runner instanceof ConcurrentRunner) {
+			return (ConcurrentRunner) runner;
+		}
+		if (config.getRunner() instanceof ConcurrentRunner) {
+			return (ConcurrentRunner) config.getRunner();
+		}
+		return null;
+	}
+
+	synchronized void tick(Worker worker) {
+		if (worker.busy) {
+			worker.statistics.recordSkippedTick();
+			return;
+		}
+		worker.busy = true;
+		waiting.add(new Run(worker, getRunWeight(worker), System.currentTimeMillis(), sequence++));
+		dispatch();
+	}
+
+	/*
+	 * The share of the capacity the runs of the given priority may hold.
+	 */
+	private int getCapacity(WorkerPriority priority) {
+		return priority == WorkerPriority.HIGH ? highCapacity : capacity;
+	}
+
+	/*
+	 * The weight of the next run of the worker, capped at its share of the
+	 * capacity.
+	 */
+	private int getRunWeight(Worker worker) {
+		int weight = worker.statistics.getWeight();
+		if (worker.concurrent != null) {
+			weight *= Math.max(1, worker.concurrent.getConcurrency());
+		}
+		return Math.min(getCapacity(worker.statistics.getPriority()), weight);
+	}
+
+	/*
+	 * Start the waiting runs that fit in the available capacity.
+	 */
+	private synchronized void dispatch() {
+		if (waiting.isEmpty()) {
+			return;
+		}
+		List<Run> ordered = new ArrayList<Run>(waiting);
+		Collections.sort(ordered, new RunComparator(System.currentTimeMillis(), agingMS));
+		for (final Run run : ordered) {
+			if (run.weight > available) {
+				// nothing passes a run that waits for capacity.
+				return;
+			}
+			boolean high = run.worker.statistics.getPriority() == WorkerPriority.HIGH;
+			if (high && highInUse + run.weight > highCapacity) {
+				// the rest is reserved for the lower priorities.
+				continue;
+			}
+			waiting.remove(run);
+			available -= run.weight;
+			if (high) {
+				highInUse += run.weight;
+			}
+			try {
+				executor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						execute(run);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// shutting down.
+				release(run);
+				run.worker.busy = false;
+			}
+		}
+	}
+
+	private void release(Run run) {
+		available += run.weight;
+		if (run.worker.statistics.getPriority() == WorkerPriority.HIGH) {
+			highInUse -= run.weight;
+		}
+	}
+
+	private void execute(Run run) {
+		Worker worker = run.worker;
+		long start = System.currentTimeMillis();
+		try {
+			// the first tick can fire before schedule() has set the future.
+			Future<?> future = worker.future;
+			if (future == null || !future.isCancelled()) {
+				worker.runner.run();
+			}
+		} catch (Throwable e) {
+			log.error("Worker " + worker.statistics.getWorkerName() + " failed:", e);
+		} finally {
+			long end = System.currentTimeMillis();
+			synchronized (this) {
+				worker.statistics.recordQueued(start - run.queuedMS);
+				worker.statistics.recordRun(end - start);
+				worker.busy = false;
+				release(run);
+				dispatch();
+			}
+		}
+	}
+
+	@Override
+	public synchronized List<WorkerStatistics> getStatistics() {
+		List<WorkerStatistics> copy = new LinkedList<WorkerStatistics>();
+		for (Worker worker : workers) {
+			copy.add(new WorkerStatistics(worker.statistics));
+		}
+		return copy;
+	}
+
+	private void logStatistics() {
+		int waitingCount;
+		int availableCount;
+		synchronized (this) {
+			waitingCount = waiting.size();
+			availableCount = available;
+		}
+		log.info("Scheduler capacity: " + availableCount + " of " + capacity + " available, " + waitingCount + " waiting");
+		for (WorkerStatistics statistics : getStatistics()) {
+			log.info(statistics.toString());
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		timer.shutdownNow();
+		executor.shutdown();
+		logStatistics();
+	}
+
+	/**
+	 * A scheduled worker. Its fields are guarded by the scheduler.
+	 */
+	static class Worker {
+
+		final Runnable runner;
+		final ConcurrentRunner concurrent;
+		final WorkerStatistics statistics;
+		volatile Future<?> future;
+		boolean busy;
+
+		Worker(Runnable runner, ConcurrentRunner concurrent, WorkerStatistics statistics) {
+			this.runner = runner;
+			this.concurrent = concurrent;
+			this.statistics = statistics;
+		}
+	}
+
+	/**
+	 * A run of a worker waiting for capacity.
+	 */
+	static class Run {
+
+		final Worker worker;
+		final int weight;
+		final long queuedMS;
+		final long sequence;
+
+		Run(Worker worker, int weight, long queuedMS, long sequence) {
+			this.worker = worker;
+			this.weight = weight;
+			this.queuedMS = queuedMS;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * The ordinal of the priority of the run once it has been raised for
+		 * the time it has waited.
+		 *
+		 * @param now
+		 * @param agingMS
+		 * @return
+		 */
+		int getAgedPriority(long now, long agingMS) {
+			int priority = worker.statistics.getPriority().ordinal();
+			if (agingMS > 0) {
+				priority -= (int) Math.min(priority, (now - queuedMS) / agingMS);
+			}
+			return priority;
+		}
+	}
+
+	/**
+	 * Orders the runs by their aged priority, then by the order their timers
+	 * fired.
+	 */
+	static class RunComparator implements Comparator<Run> {
+
+		private final long now;
+		private final long agingMS;
+
+		RunComparator(long now, long agingMS) {
+			this.now = now;
+			this.agingMS = agingMS;
+		}
+
+		@Override
+		public int compare(Run one, Run two) {
+			int result = Integer.compare(one.getAgedPriority(now, agingMS), two.getAgedPriority(now, agingMS));
+			if (result != 0) {
+				return result;
+			}
+			return Long.compare(one.sequence, two.sequence);
+		}
+	}
+}
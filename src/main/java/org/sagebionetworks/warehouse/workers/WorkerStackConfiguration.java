@@ -11,6 +11,8 @@ public class WorkerStackConfiguration {
 	Runnable runner;
 	int startDelayMs;
 	int periodMS; 
+	WorkerPriority priority = WorkerPriority.NORMAL;
+	int weight = 1;
 
 	/**
 	 * The name of the worker.
@@ -74,11 +76,48 @@ public class WorkerStackConfiguration {
 		this.periodMS = periodMS;
 	}
 
+	/**
+	 * The order in which the worker runs when it waits for capacity with
+	 * other workers. Defaults to NORMAL.
+	 * @return
+	 */
+	public WorkerPriority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * The order in which the worker runs when it waits for capacity with
+	 * other workers. Defaults to NORMAL.
+	 * @param priority
+	 */
+	public void setPriority(WorkerPriority priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * The share of the scheduler's capacity the worker holds while it runs.
+	 * Use more than one for heavy workers. Defaults to one.
+	 * @return
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+	/**
+	 * The share of the scheduler's capacity the worker holds while it runs.
+	 * Use more than one for heavy workers. Defaults to one.
+	 * @param weight
+	 */
+	public void setWeight(int weight) {
+		this.weight = weight;
+	}
+
 	@Override
 	public String toString() {
 		return "WorkerStackConfiguration [workerName=" + workerName
 				+ ", runner=" + runner + ", startDelayMs=" + startDelayMs
-				+ ", periodMS=" + periodMS + "]";
+				+ ", periodMS=" + periodMS + ", priority=" + priority
+				+ ", weight=" + weight + "]";
 	}
 	
 }
@@ -1,27 +1,24 @@
 package org.sagebionetworks.warehouse.workers;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import java.util.concurrent.Future;
 
 /**
- * The worker stack is simply a runnable worker driven from a timer.
+ * The worker stack is simply a runnable worker driven from a timer of the
+ * shared WorkerScheduler.
  *
  */
 public class WorkerStackImpl implements WorkerStack {
 	
-	private static final Logger log = LogManager.getLogger(WorkerStackImpl.class);
-	
-	final ScheduledExecutorService scheduler;
+	final WorkerScheduler scheduler;
+	final WorkerStackConfiguration config;
 	final Runnable runner;
-	final int startDalayMS;
-	final int periodMS;
 	final String workerName;
+	Future<?> future;
 	
-	public WorkerStackImpl(final WorkerStackConfiguration config){
+	public WorkerStackImpl(final WorkerScheduler scheduler, final WorkerStackConfiguration config){
+		if(scheduler == null){
+			throw new IllegalArgumentException("Scheduler cannot be null");
+		}
 		if(config == null){
 			throw new IllegalArgumentException("Configuration cannot be null");
 		}
@@ -32,23 +29,23 @@ public class WorkerStackImpl implements WorkerStack {
 			throw new IllegalArgumentException("Worker name cannot be null");
 		}
 		this.workerName = config.getWorkerName();
-		this.scheduler = Executors.newScheduledThreadPool(1);
+		this.scheduler = scheduler;
+		this.config = config;
 		// Since exceptions will terminate the timer trap and log any exceptions.
 		this.runner = new ExceptionLoggingRunner(config.getRunner(), config.getWorkerName());
-		this.startDalayMS = config.getStartDelayMs();
-		this.periodMS = config.getPeriodMS();
 	}
 
 	@Override
 	public void start() {
 		// Start the worker.
-		scheduler.scheduleAtFixedRate(runner, startDalayMS, periodMS,
-				TimeUnit.MILLISECONDS);
+		future = scheduler.schedule(config, runner);
 	}
 
 	@Override
 	public void shutdown() {
-		scheduler.shutdown();
+		if(future != null){
+			future.cancel(false);
+		}
 	}
 
 	@Override
@@ -0,0 +1,108 @@
+package org.sagebionetworks.warehouse.workers;
+
+/**
+ * How often a worker ran, how long it waited for capacity and how long it ran.
+ *
+ */
+public class WorkerStatistics {
+
+	String workerName;
+	WorkerPriority priority;
+	int weight;
+	long runs;
+	long skippedTicks;
+	long totalQueueMS;
+	long maxQueueMS;
+	long totalRunMS;
+	long maxRunMS;
+
+	public WorkerStatistics(String workerName, WorkerPriority priority, int weight) {
+		this.workerName = workerName;
+		this.priority = priority;
+		this.weight = weight;
+	}
+
+	WorkerStatistics(WorkerStatistics other) {
+		this(other.workerName, other.priority, other.weight);
+		this.runs = other.runs;
+		this.skippedTicks = other.skippedTicks;
+		this.totalQueueMS = other.totalQueueMS;
+		this.maxQueueMS = other.maxQueueMS;
+		this.totalRunMS = other.totalRunMS;
+		this.maxRunMS = other.maxRunMS;
+	}
+
+	void recordQueued(long queueMS) {
+		totalQueueMS += queueMS;
+		maxQueueMS = Math.max(maxQueueMS, queueMS);
+	}
+
+	void recordRun(long runMS) {
+		runs++;
+		totalRunMS += runMS;
+		maxRunMS = Math.max(maxRunMS, runMS);
+	}
+
+	void recordSkippedTick() {
+		skippedTicks++;
+	}
+
+	public String getWorkerName() {
+		return workerName;
+	}
+
+	public WorkerPriority getPriority() {
+		return priority;
+	}
+
+	public int getWeight() {
+		return weight;
+	}
+
+	/**
+	 * The number of completed runs.
+	 * @return
+	 */
+	public long getRuns() {
+		return runs;
+	}
+
+	/**
+	 * The number of timer ticks skipped because the previous run had not
+	 * finished.
+	 * @return
+	 */
+	public long getSkippedTicks() {
+		return skippedTicks;
+	}
+
+	/**
+	 * The total time runs waited for capacity.
+	 * @return
+	 */
+	public long getTotalQueueMS() {
+		return totalQueueMS;
+	}
+
+	public long getMaxQueueMS() {
+		return maxQueueMS;
+	}
+
+	public long getTotalRunMS() {
+		return totalRunMS;
+	}
+
+	public long getMaxRunMS() {
+		return maxRunMS;
+	}
+
+	@Override
+	public String toString() {
+		return "WorkerStatistics [workerName=" + workerName + ", priority="
+				+ priority + ", weight=" + weight + ", runs=" + runs
+				+ ", skippedTicks=" + skippedTicks + ", totalQueueMS="
+				+ totalQueueMS + ", maxQueueMS=" + maxQueueMS
+				+ ", totalRunMS=" + totalRunMS + ", maxRunMS=" + maxRunMS
+				+ "]";
+	}
+}
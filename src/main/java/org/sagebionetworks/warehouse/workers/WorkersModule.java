@@ -3,6 +3,8 @@ package org.sagebionetworks.warehouse.workers;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.sagebionetworks.database.semaphore.CountingSemaphore;
 import org.sagebionetworks.warehouse.workers.audit.UserActivityPerMonthWorkerConfigurationProvider;
 import org.sagebionetworks.warehouse.workers.bucket.BucketInfo;
@@ -19,16 +21,22 @@ import org.sagebionetworks.warehouse.workers.collate.CollateMessageQueue;
 import org.sagebionetworks.warehouse.workers.collate.StreamResourceProvider;
 import org.sagebionetworks.warehouse.workers.collate.StreamResourceProviderImpl;
 import org.sagebionetworks.warehouse.workers.collate.FolderCollateWorker;
+import org.sagebionetworks.warehouse.workers.collate.GzipCodec;
+import org.sagebionetworks.warehouse.workers.collate.JdkGzipCodec;
 import org.sagebionetworks.warehouse.workers.collate.LockedFolderRunner;
+import org.sagebionetworks.warehouse.workers.collate.ParallelGzipCodec;
 import org.sagebionetworks.warehouse.workers.collate.PeriodicRollingFolderConfigurationProvider;
 import org.sagebionetworks.warehouse.workers.collate.S3ObjectCollator;
 import org.sagebionetworks.warehouse.workers.collate.S3ObjectCollatorImpl;
+import org.sagebionetworks.warehouse.workers.collate.StreamingS3ObjectCollatorImpl;
 import org.sagebionetworks.warehouse.workers.config.Configuration;
 import org.sagebionetworks.warehouse.workers.db.FileManager;
 import org.sagebionetworks.warehouse.workers.db.FileManagerImpl;
+import org.sagebionetworks.warehouse.workers.db.FileMetadataDao;
+import org.sagebionetworks.warehouse.workers.db.SubmittedFileFilter;
 import org.sagebionetworks.warehouse.workers.db.WarehouseWorkersStateDao;
-import org.sagebionetworks.warehouse.workers.snapshot.AccessRecordConfigurationProvider;
-import org.sagebionetworks.warehouse.workers.snapshot.AccessRecordTopicBucketInfo;
+import org.sagebionetworks.warehouse.workers.snapshot.AccessRecordFanOutConfigurationProvider;
+import org.sagebionetworks.warehouse.workers.snapshot.AccessRecordFanOutTopicBucketInfo;
 import org.sagebionetworks.warehouse.workers.snapshot.AclSnapshotConfigurationProvider;
 import org.sagebionetworks.warehouse.workers.snapshot.AclSnapshotTopicBucketInfo;
 import org.sagebionetworks.warehouse.workers.snapshot.BulkFileDownloadRecordConfigurationProvider;
@@ -37,16 +45,14 @@ import org.sagebionetworks.warehouse.workers.snapshot.CertifiedQuizQuestionRecor
 import org.sagebionetworks.warehouse.workers.snapshot.CertifiedQuizQuestionRecordTopicBucketInfo;
 import org.sagebionetworks.warehouse.workers.snapshot.CertifiedQuizRecordConfigurationProvider;
 import org.sagebionetworks.warehouse.workers.snapshot.CertifiedQuizRecordTopicBucketInfo;
+import org.sagebionetworks.warehouse.workers.snapshot.ClientClassifier;
+import org.sagebionetworks.warehouse.workers.snapshot.ClientRule;
 import org.sagebionetworks.warehouse.workers.snapshot.NodeSnapshotConfigurationProvider;
 import org.sagebionetworks.warehouse.workers.snapshot.NodeSnapshotTopicBucketInfo;
-import org.sagebionetworks.warehouse.workers.snapshot.ProcessAccessRecordConfigurationProvider;
-import org.sagebionetworks.warehouse.workers.snapshot.ProcessAccessRecordTopicBucketInfo;
 import org.sagebionetworks.warehouse.workers.snapshot.TeamMemberSnapshotConfigurationProvider;
 import org.sagebionetworks.warehouse.workers.snapshot.TeamMemberSnapshotTopicBucketInfo;
 import org.sagebionetworks.warehouse.workers.snapshot.TeamSnapshotConfigurationProvider;
 import org.sagebionetworks.warehouse.workers.snapshot.TeamSnapshotTopicBucketInfo;
-import org.sagebionetworks.warehouse.workers.snapshot.UserActivityPerClientPerDayConfigurationProvider;
-import org.sagebionetworks.warehouse.workers.snapshot.UserActivityPerClientPerDayTopicBucketInfo;
 import org.sagebionetworks.warehouse.workers.snapshot.UserGroupSnapshotConfigurationProvider;
 import org.sagebionetworks.warehouse.workers.snapshot.UserGroupSnapshotTopicBucketInfo;
 import org.sagebionetworks.warehouse.workers.snapshot.UserProfileSnapshotConfigurationProvider;
@@ -55,14 +61,18 @@ import org.sagebionetworks.warehouse.workers.snapshot.VerificationSubmissionReco
 import org.sagebionetworks.warehouse.workers.snapshot.VerificationSubmissionRecordTopicBucketInfo;
 import org.sagebionetworks.warehouse.workers.snapshot.VerificationSubmissionStateRecordConfigurationProvider;
 import org.sagebionetworks.warehouse.workers.snapshot.VerificationSubmissionStateRecordTopicBucketInfo;
+import org.sagebionetworks.warehouse.workers.utils.Clock;
+import org.sagebionetworks.warehouse.workers.utils.ClockImpl;
 import org.sagebionetworks.workers.util.aws.message.MessageQueueConfiguration;
 import org.sagebionetworks.workers.util.aws.message.MessageQueueImpl;
 
+import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.sns.AmazonSNSClient;
 import com.amazonaws.services.sqs.AmazonSQSClient;
 import com.google.inject.AbstractModule;
 import com.google.inject.Injector;
 import com.google.inject.Provides;
+import com.google.inject.Singleton;
 
 
 /**
@@ -71,6 +81,8 @@ import com.google.inject.Provides;
  */
 public class WorkersModule extends AbstractModule {
 
+	private static Logger log = LogManager.getLogger(WorkersModule.class);
+
 	@Override
 	protected void configure() {
 		bind(BucketDaoProvider.class).to(BucketDaoProviderImpl.class);
@@ -79,7 +91,7 @@ public class WorkersModule extends AbstractModule {
 		bind(FileManager.class).to(FileManagerImpl.class);
 		bind(LockedFolderRunner.class).to(FolderCollateWorker.class);
 		bind(StreamResourceProvider.class).to(StreamResourceProviderImpl.class);
-		bind(S3ObjectCollator.class).to(S3ObjectCollatorImpl.class);
+		bind(Clock.class).to(ClockImpl.class);
 	}
 
 	/**
@@ -104,35 +116,129 @@ public class WorkersModule extends AbstractModule {
 		return new BucketInfoList(list);
 	}
 	
+	/**
+	 * The collator used by the collate workers. In STREAMING mode the input
+	 * objects are downloaded in parallel and the result is uploaded with a
+	 * multipart upload instead of being staged on disk.
+	 * 
+	 * @param config
+	 * @param s3Client
+	 * @param streamResourceProvider
+	 * @return
+	 */
 	@Provides
-	public RealtimeBucketListenerTopicBucketInfo getBucketListenerConfig(Configuration config){
-		RealtimeBucketListenerTopicBucketInfo rtbls = new RealtimeBucketListenerTopicBucketInfo();
-		rtbls.setTopicName(config.getProperty("org.sagebionetworks.warehouse.worker.topic.all.bucket.events"));
-		rtbls.setQueueName(config.getProperty("org.sagebionetworks.warehouse.worker.queue.all.bucket.events"));
-		return rtbls;
+	public S3ObjectCollator getS3ObjectCollator(Configuration config, AmazonS3Client s3Client, StreamResourceProvider streamResourceProvider) {
+		if ("STREAMING".equals(config.getProperty("org.sagebionetworks.warehouse.worker.collate.mode"))) {
+			return new StreamingS3ObjectCollatorImpl(s3Client, streamResourceProvider,
+					Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.collate.download.threads")),
+					Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.collate.upload.part.size.bytes")));
+		}
+		return new S3ObjectCollatorImpl(s3Client, streamResourceProvider);
 	}
+	
+	/**
+	 * The codec of every gzip stream. Any codec that reads and writes standard
+	 * gzip can be bound here.
+	 * 
+	 * @param config
+	 * @return
+	 */
+	@Provides
+	@Singleton
+	public GzipCodec getGzipCodec(Configuration config) {
+		int bufferSize = Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.gzip.buffer.bytes"));
+		if ("PARALLEL".equals(config.getProperty("org.sagebionetworks.warehouse.worker.gzip.codec"))) {
+			return new ParallelGzipCodec(bufferSize,
+					Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.gzip.block.bytes")),
+					Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.gzip.threads")));
+		}
+		return new JdkGzipCodec(bufferSize);
+	}
+	
+	/**
+	 * The filter of files that have already been submitted, shared by all
+	 * FileManagers. It is loaded from FILE_STATE when it is first created, and
+	 * cleared when FILE_STATE is truncated.
+	 * 
+	 * @param config
+	 * @param fileMetadataDao
+	 * @return
+	 */
+	@Provides
+	@Singleton
+	public SubmittedFileFilter getSubmittedFileFilter(Configuration config, FileMetadataDao fileMetadataDao) {
+		final SubmittedFileFilter filter = new SubmittedFileFilter(
+				Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.submitted.file.filter.capacity")));
+		fileMetadataDao.streamSubmittedFiles(filter.getCapacity(), new FileMetadataDao.FileKeyHandler() {
 
+			@Override
+			public void handle(String bucket, String key) {
+				filter.add(bucket, key);
+			}
+		});
+		log.info("Loaded " + filter);
+		return filter;
+	}
+
+	/**
+	 * The client classifier shared by all access record workers. Rules are read
+	 * from org.sagebionetworks.warehouse.worker.client.rule.1 to
+	 * org.sagebionetworks.warehouse.worker.client.rule.N in order. When the
+	 * count is 0 the ClientClassifier.DEFAULT_RULES are used.
+	 * 
+	 * @param config
+	 * @return
+	 */
 	@Provides
-	public AccessRecordTopicBucketInfo getAccessRecordConfig(Configuration config){
-		AccessRecordTopicBucketInfo info = new AccessRecordTopicBucketInfo();
-		info.setTopicName(config.getProperty("org.sagebionetworks.warehouse.worker.topic.accessrecord.snapshot"));
-		info.setQueueName(config.getProperty("org.sagebionetworks.warehouse.worker.queue.accessrecord.snapshot"));
-		return info;
+	@Singleton
+	public ClientClassifier getClientClassifier(Configuration config) {
+		int count = Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.client.rule.count"));
+		List<ClientRule> rules = new LinkedList<ClientRule>();
+		for (int i = 1; i <= count; i++) {
+			rules.add(ClientRule.parse(config.getProperty("org.sagebionetworks.warehouse.worker.client.rule." + i)));
+		}
+		if (rules.isEmpty()) {
+			rules = ClientClassifier.DEFAULT_RULES;
+		}
+		log.info("Client rules: " + rules);
+		return new ClientClassifier(rules,
+				Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.client.cache.size")));
 	}
 
+	/**
+	 * The bounds of the concurrency and poll period of the message driven
+	 * snapshot worker stacks.
+	 * 
+	 * @param config
+	 * @return
+	 */
 	@Provides
-	public ProcessAccessRecordTopicBucketInfo getProcessedAccessRecordConfig(Configuration config){
-		ProcessAccessRecordTopicBucketInfo info = new ProcessAccessRecordTopicBucketInfo();
-		info.setTopicName(config.getProperty("org.sagebionetworks.warehouse.worker.topic.accessrecord.snapshot"));
-		info.setQueueName(config.getProperty("org.sagebionetworks.warehouse.worker.queue.processaccessrecord.snapshot"));
-		return info;
+	@Singleton
+	public AdaptiveConcurrencySettings getSnapshotConcurrencySettings(Configuration config) {
+		AdaptiveConcurrencySettings settings = new AdaptiveConcurrencySettings();
+		settings.setMinConcurrency(Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.snapshot.concurrency.min")));
+		settings.setMaxConcurrency(Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.snapshot.concurrency.max")));
+		settings.setMinPeriodMS(Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.snapshot.poll.period.min.ms")));
+		settings.setMaxPeriodMS(Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.snapshot.poll.period.max.ms")));
+		settings.setTargetLatencyMS(Long.parseLong(config.getProperty("org.sagebionetworks.warehouse.worker.snapshot.message.latency.target.ms")));
+		settings.setBacklogPerWorker(Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.snapshot.backlog.per.worker")));
+		log.info("Snapshot concurrency: " + settings);
+		return settings;
+	}
+	
+	@Provides
+	public RealtimeBucketListenerTopicBucketInfo getBucketListenerConfig(Configuration config){
+		RealtimeBucketListenerTopicBucketInfo rtbls = new RealtimeBucketListenerTopicBucketInfo();
+		rtbls.setTopicName(config.getProperty("org.sagebionetworks.warehouse.worker.topic.all.bucket.events"));
+		rtbls.setQueueName(config.getProperty("org.sagebionetworks.warehouse.worker.queue.all.bucket.events"));
+		return rtbls;
 	}
 
 	@Provides
-	public UserActivityPerClientPerDayTopicBucketInfo getUserActivityPerClientPerDayConfig(Configuration config){
-		UserActivityPerClientPerDayTopicBucketInfo info = new UserActivityPerClientPerDayTopicBucketInfo();
+	public AccessRecordFanOutTopicBucketInfo getAccessRecordFanOutConfig(Configuration config){
+		AccessRecordFanOutTopicBucketInfo info = new AccessRecordFanOutTopicBucketInfo();
 		info.setTopicName(config.getProperty("org.sagebionetworks.warehouse.worker.topic.accessrecord.snapshot"));
-		info.setQueueName(config.getProperty("org.sagebionetworks.warehouse.worker.queue.useractivityperclientperday.snapshot"));
+		info.setQueueName(config.getProperty("org.sagebionetworks.warehouse.worker.queue.accessrecordfanout.snapshot"));
 		return info;
 	}
 
@@ -237,8 +343,8 @@ public class WorkersModule extends AbstractModule {
 		list.add(BucketScanningConfigurationProvider.class);
 		list.add(PeriodicRollingFolderConfigurationProvider.class);
 		list.add(CollateFolderConfigurationProvider.class);
-		list.add(AccessRecordConfigurationProvider.class);
-		list.add(ProcessAccessRecordConfigurationProvider.class);
+		// ACCESS_RECORD, PROCESSED_ACCESS_RECORD and USER_ACTIVITY_PER_CLIENT_PER_DAY
+		list.add(AccessRecordFanOutConfigurationProvider.class);
 		list.add(NodeSnapshotConfigurationProvider.class);
 		list.add(TeamSnapshotConfigurationProvider.class);
 		list.add(TeamMemberSnapshotConfigurationProvider.class);
@@ -253,21 +359,36 @@ public class WorkersModule extends AbstractModule {
 		list.add(VerificationSubmissionRecordConfigurationProvider.class);
 		list.add(VerificationSubmissionStateRecordConfigurationProvider.class);
 		list.add(BulkFileDownloadRecordConfigurationProvider.class);
-		list.add(UserActivityPerClientPerDayConfigurationProvider.class);
 		list.add(UserActivityPerMonthWorkerConfigurationProvider.class);
 		return list;
 	}
 	
 	@Provides
-	public WorkerStackList buildWorkerStackList(Injector injetor, WorkerStackConfigurationProviderList providerList){
+	public WorkerStackList buildWorkerStackList(Injector injetor, WorkerStackConfigurationProviderList providerList, WorkerScheduler scheduler){
 		WorkerStackList list = new WorkerStackList();
 		// create each worker stack from the providers
 		for(Class<? extends WorkerStackConfigurationProvider> providerClass: providerList.getList()){
 			WorkerStackConfigurationProvider provider = injetor.getInstance(providerClass);
-			list.add(new WorkerStackImpl(provider.getWorkerConfiguration()));
+			list.add(new WorkerStackImpl(scheduler, provider.getWorkerConfiguration()));
 		}
 		return list;
 	}
+
+	/**
+	 * The scheduler shared by all worker stacks.
+	 * 
+	 * @param config
+	 * @return
+	 */
+	@Provides
+	@Singleton
+	public WorkerScheduler getWorkerScheduler(Configuration config){
+		return new WorkerSchedulerImpl(
+				Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.scheduler.capacity")),
+				Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.scheduler.reserved.capacity")),
+				Long.parseLong(config.getProperty("org.sagebionetworks.warehouse.worker.scheduler.aging.ms")),
+				Long.parseLong(config.getProperty("org.sagebionetworks.warehouse.worker.scheduler.statistics.log.period.ms")));
+	}
 	
 	@Provides
 	public SemaphoreGatedRunnerProvider createSemaphoreGatedRunnerProvider(CountingSemaphore semaphore){
@@ -17,6 +17,14 @@ import org.sagebionetworks.warehouse.workers.utils.DateTimeUtils;
 
 import com.google.inject.Inject;
 
+/**
+ * USER_ACTIVITY_PER_MONTH is kept up to date as daily user activity is
+ * inserted. This worker recomputes each month from
+ * USER_ACTIVITY_PER_CLIENT_PER_DAY once, which fills in the months without
+ * any rows and the month the rollup started to be maintained incrementally,
+ * whose days before that point were never added. The recomputed months are
+ * tracked in USER_ACTIVITY_PER_MONTH_BACKFILL.
+ */
 public class UserActivityPerMonthWorker implements ProgressingRunner<Void>{
 	public static final int MONTHS_TO_PROCESS = 24;
 	private static final int BATCH_SIZE = 1000;
@@ -43,8 +51,9 @@ public class UserActivityPerMonthWorker implements ProgressingRunner<Void>{
 			prevMonth = prevMonth.minusMonths(1);
 		}
 		for (int i = 0; i < MONTHS_TO_PROCESS; i++) {
-			if (!userActivityPerMonthDao.hasRecordForMonth(prevMonth.toDate())) {
+			if (!userActivityPerMonthDao.isBackfilled(prevMonth.toDate())) {
 				updateUserActivityForMonth(prevMonth, BATCH_SIZE);
+				userActivityPerMonthDao.setBackfilled(prevMonth.toDate());
 			}
 			prevMonth = prevMonth.minusMonths(1);
 		}
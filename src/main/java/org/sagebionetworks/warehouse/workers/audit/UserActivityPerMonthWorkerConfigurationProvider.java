@@ -2,6 +2,7 @@ package org.sagebionetworks.warehouse.workers.audit;
 
 import org.sagebionetworks.database.semaphore.CountingSemaphore;
 import org.sagebionetworks.warehouse.workers.SemaphoreKey;
+import org.sagebionetworks.warehouse.workers.WorkerPriority;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfiguration;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfigurationProvider;
 import org.sagebionetworks.workers.util.semaphore.SemaphoreGatedWorkerStack;
@@ -27,6 +28,7 @@ public class UserActivityPerMonthWorkerConfigurationProvider implements WorkerSt
 		this.config.setStartDelayMs(1013);
 		// run once per 4 hour.
 		this.config.setPeriodMS(4*60*60*1000);
+		this.config.setPriority(WorkerPriority.LOW);
 		this.config.setWorkerName(UserActivityPerMonthWorker.class.getName());
 	}
 
@@ -2,6 +2,7 @@ package org.sagebionetworks.warehouse.workers.bucket;
 
 import org.sagebionetworks.database.semaphore.CountingSemaphore;
 import org.sagebionetworks.warehouse.workers.SemaphoreKey;
+import org.sagebionetworks.warehouse.workers.WorkerPriority;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfiguration;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfigurationProvider;
 import org.sagebionetworks.workers.util.semaphore.SemaphoreGatedWorkerStack;
@@ -33,6 +34,7 @@ public class BucketScanningConfigurationProvider implements WorkerStackConfigura
 		this.config.setStartDelayMs(2987);
 		// run once per minute.
 		this.config.setPeriodMS(60*1000);
+		this.config.setPriority(WorkerPriority.HIGH);
 		this.config.setWorkerName(BucketScanningWorker.class.getName());
 	}
 
@@ -1,13 +1,20 @@
 package org.sagebionetworks.warehouse.workers.bucket;
 
+import java.sql.Timestamp;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 import org.sagebionetworks.aws.utils.s3.BucketDao;
 import org.sagebionetworks.warehouse.workers.BucketDaoProvider;
+import org.sagebionetworks.warehouse.workers.db.BucketScanStateDao;
 import org.sagebionetworks.warehouse.workers.db.FileManager;
+import org.sagebionetworks.warehouse.workers.model.BucketScanState;
 import org.sagebionetworks.common.util.progress.ProgressCallback;
 import org.sagebionetworks.common.util.progress.ProgressingRunner;
 
@@ -19,21 +26,40 @@ import com.google.inject.Inject;
  * not been discovered by the real time process. This worker's primary task is
  * to back-fill all S3 objects that existed before the stack start.
  * 
+ * Keys are prefixed with a stack folder and a date folder
+ * (000000123/2015-08-01/...), so once a bucket has been scanned only the date
+ * folders from its checkpoint onward are listed. The whole bucket is still
+ * scanned once per FULL_SCAN_PERIOD_MS to reconcile anything that was missed.
+ * 
  */
 public class BucketScanningWorker implements ProgressingRunner<Void> {
 
+	/**
+	 * How often each bucket is scanned from the beginning.
+	 */
+	public static final long FULL_SCAN_PERIOD_MS = 24*60*60*1000L;
+	/**
+	 * The checkpoint trails the start of a scan by this much, so files that
+	 * land in a date folder shortly after midnight are not missed.
+	 */
+	public static final long CHECKPOINT_OVERLAP_MS = 60*60*1000L;
+	public static final DateTimeFormatter DATE_FOLDER_FORMAT = DateTimeFormat.forPattern("yyyy-MM-dd").withZoneUTC();
+
 	private static Logger log = LogManager.getLogger(BucketScanningWorker.class);
 	BucketDaoProvider bucketDaoProvider;
 	List<BucketInfo> bucketList;
 	FileManager fileManager;
+	BucketScanStateDao bucketScanStateDao;
 
 	@Inject
 	public BucketScanningWorker(BucketDaoProvider bucketDaoProvider,
-			BucketInfoList toCollate, FileManager fileManager) {
+			BucketInfoList toCollate, FileManager fileManager,
+			BucketScanStateDao bucketScanStateDao) {
 		super();
 		this.bucketDaoProvider = bucketDaoProvider;
 		this.bucketList = toCollate.getBucketList();
 		this.fileManager = fileManager;
+		this.bucketScanStateDao = bucketScanStateDao;
 	}
 
 	@Override
@@ -42,21 +68,76 @@ public class BucketScanningWorker implements ProgressingRunner<Void> {
 		long start = System.currentTimeMillis();
 		// Scan each bucket looking for files to process
 		for (BucketInfo info : bucketList) {
+			String bucketName = info.getBucketName();
 			// Helper to scan the files
-			BucketDao bucketDao = bucketDaoProvider.createBucketDao(info
-					.getBucketName());
-			String nullPrefix = null;
+			BucketDao bucketDao = bucketDaoProvider.createBucketDao(bucketName);
 			Thread.sleep(1000);
-			Iterator<S3ObjectSummary> objectStream = bucketDao
-					.summaryIterator(nullPrefix);
-			// The manager will deal with this stream.
-			try {
-				this.fileManager.addS3Objects(objectStream, progressCallback);
-			} catch (IllegalArgumentException e) {
-				log.error(e.toString());
+			long now = System.currentTimeMillis();
+			BucketScanState state = bucketScanStateDao.getBucketScanState(bucketName);
+			boolean fullScan = state == null
+					|| now - state.getLastFullScanOn().getTime() >= FULL_SCAN_PERIOD_MS;
+			boolean completed;
+			if (fullScan) {
+				String nullPrefix = null;
+				completed = scan(bucketDao, nullPrefix, progressCallback);
+			} else {
+				completed = true;
+				List<String> dateFolders = listDateFolders(state.getCheckpoint(), now);
+				for (String stackFolder : bucketDaoProvider.listTopLevelFolders(bucketName)) {
+					for (String dateFolder : dateFolders) {
+						completed &= scan(bucketDao, stackFolder + dateFolder + "/", progressCallback);
+					}
+				}
+			}
+			// Only move the checkpoint forward if every file was processed.
+			if (completed) {
+				Timestamp lastFullScanOn = fullScan ? new Timestamp(now) : state.getLastFullScanOn();
+				String checkpoint = DATE_FOLDER_FORMAT.print(now - CHECKPOINT_OVERLAP_MS);
+				bucketScanStateDao.setBucketScanState(new BucketScanState(bucketName, checkpoint, lastFullScanOn));
 			}
 		}
 		log.info("Finish scanning in "+(System.currentTimeMillis()-start)+" mili seconds.");
 	}
 
+	/**
+	 * Pass all files with the given prefix to the file manager.
+	 * 
+	 * @param bucketDao
+	 * @param prefix
+	 * @param progressCallback
+	 * @return true if all files were processed.
+	 */
+	private boolean scan(BucketDao bucketDao, String prefix, ProgressCallback<Void> progressCallback) {
+		Iterator<S3ObjectSummary> objectStream = bucketDao.summaryIterator(prefix);
+		// The manager will deal with this stream.
+		try {
+			this.fileManager.addS3Objects(objectStream, progressCallback);
+			return true;
+		} catch (IllegalArgumentException e) {
+			log.error(e.toString());
+			return false;
+		}
+	}
+
+	/**
+	 * List each date folder from the checkpoint through the date of the given
+	 * time.
+	 * 
+	 * @param checkpoint
+	 * @param timeMS
+	 * @return
+	 */
+	public static List<String> listDateFolders(String checkpoint, long timeMS) {
+		List<String> folders = new LinkedList<String>();
+		String last = DATE_FOLDER_FORMAT.print(timeMS);
+		DateTime date = DATE_FOLDER_FORMAT.parseDateTime(checkpoint);
+		String folder = DATE_FOLDER_FORMAT.print(date);
+		while (folder.compareTo(last) <= 0) {
+			folders.add(folder);
+			date = date.plusDays(1);
+			folder = DATE_FOLDER_FORMAT.print(date);
+		}
+		return folders;
+	}
+
 }
@@ -6,6 +6,7 @@ import org.sagebionetworks.aws.utils.s3.BucketListener;
 import org.sagebionetworks.aws.utils.s3.BucketListenerConfiguration;
 import org.sagebionetworks.database.semaphore.CountingSemaphore;
 import org.sagebionetworks.warehouse.workers.SemaphoreKey;
+import org.sagebionetworks.warehouse.workers.WorkerPriority;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfiguration;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfigurationProvider;
 import org.sagebionetworks.workers.util.aws.message.MessageDrivenWorkerStack;
@@ -57,6 +58,7 @@ public class RealTimeBucketListenerConfigurationProvider implements WorkerStackC
 		this.config.setRunner(mainRunner);
 		this.config.setStartDelayMs(987);
 		this.config.setPeriodMS(10*1000);
+		this.config.setPriority(WorkerPriority.HIGH);
 		this.config.setWorkerName(RealTimeBucketWorker.class.getName());
 	}
 
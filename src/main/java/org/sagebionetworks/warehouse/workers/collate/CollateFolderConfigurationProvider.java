@@ -2,6 +2,7 @@ package org.sagebionetworks.warehouse.workers.collate;
 
 import org.sagebionetworks.database.semaphore.CountingSemaphore;
 import org.sagebionetworks.warehouse.workers.SemaphoreKey;
+import org.sagebionetworks.warehouse.workers.WorkerPriority;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfiguration;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfigurationProvider;
 import org.sagebionetworks.workers.util.aws.message.MessageDrivenWorkerStack;
@@ -33,6 +34,8 @@ public class CollateFolderConfigurationProvider implements WorkerStackConfigurat
 		config.setPeriodMS(1000*2);
 		config.setRunner(stack);
 		config.setStartDelayMs(1333);
+		config.setPriority(WorkerPriority.HIGH);
+		config.setWeight(2);
 		config.setWorkerName(FolderLockingWorker.class.getName());
 	}
 	
@@ -0,0 +1,38 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Abstraction for the compression of the CSV streams.
+ *
+ * Every implementation must read and write standard gzip, so a codec can be
+ * swapped for a faster one without changing the files seen by downstream
+ * consumers.
+ *
+ */
+public interface GzipCodec {
+
+	/**
+	 * Wrap the given stream with a stream that decompresses it. Closing the
+	 * returned stream will close the given stream.
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public InputStream decompress(InputStream in) throws IOException;
+
+	/**
+	 * Wrap the given stream with a stream that compresses to it. Closing the
+	 * returned stream finishes the compressed data and closes the given
+	 * stream.
+	 *
+	 * @param out
+	 * @return
+	 * @throws IOException
+	 */
+	public OutputStream compress(OutputStream out) throws IOException;
+
+}
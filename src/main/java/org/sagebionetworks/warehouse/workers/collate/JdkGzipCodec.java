@@ -0,0 +1,42 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A GzipCodec that uses the JDK gzip streams with large buffers. The default
+ * 512 byte buffers of the JDK streams turn every file read or write into many
+ * small system calls.
+ *
+ */
+public class JdkGzipCodec implements GzipCodec {
+
+	int bufferSize;
+
+	/**
+	 *
+	 * @param bufferSize The number of bytes read from, or written to, the underlying stream at a time.
+	 */
+	public JdkGzipCodec(int bufferSize) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("bufferSize must be at least 1");
+		}
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	public InputStream decompress(InputStream in) throws IOException {
+		return new GZIPInputStream(in, bufferSize);
+	}
+
+	@Override
+	public OutputStream compress(OutputStream out) throws IOException {
+		// the deflater writes whatever it has after each chunk of input.
+		return new GZIPOutputStream(new BufferedOutputStream(out, bufferSize), bufferSize);
+	}
+
+}
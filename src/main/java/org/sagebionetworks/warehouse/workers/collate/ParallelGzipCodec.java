@@ -0,0 +1,46 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * A GzipCodec that compresses with a {@link ParallelGzipOutputStream}.
+ * Decompression cannot be split across threads, so it is left to the JDK.
+ *
+ * Every stream deflates its blocks on a single pool owned by the codec, so
+ * the threads compressing at the same time are bounded by the codec rather
+ * than by the number of open writers.
+ *
+ */
+public class ParallelGzipCodec extends JdkGzipCodec {
+
+	int blockSize;
+	int threads;
+	ThreadPoolExecutor executor;
+
+	/**
+	 *
+	 * @param bufferSize The number of bytes read from the underlying stream at a time.
+	 * @param blockSize The number of bytes compressed by each thread at a time.
+	 * @param threads The number of threads shared by all the streams.
+	 */
+	public ParallelGzipCodec(int bufferSize, int blockSize, int threads) {
+		super(bufferSize);
+		if (blockSize < ParallelGzipOutputStream.DICTIONARY_SIZE) {
+			throw new IllegalArgumentException("Block size must be at least " + ParallelGzipOutputStream.DICTIONARY_SIZE + " bytes");
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		this.blockSize = blockSize;
+		this.threads = threads;
+		this.executor = ParallelGzipOutputStream.createExecutor(threads);
+	}
+
+	@Override
+	public OutputStream compress(OutputStream out) throws IOException {
+		return new ParallelGzipOutputStream(out, blockSize, threads, executor);
+	}
+
+}
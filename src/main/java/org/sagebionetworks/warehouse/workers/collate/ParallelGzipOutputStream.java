@@ -0,0 +1,291 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * An OutputStream that gzips its data using several threads.
+ *
+ * The data is split into blocks that are deflated in parallel. Each block is
+ * primed with the last 32 KB of the block before it and ends on a byte
+ * boundary, so the compressed blocks are simply concatenated into a single
+ * standard gzip member. The CRC and size in the trailer are computed as the
+ * data is written.
+ *
+ * At most twice as many blocks as threads are held in memory. The blocks are
+ * deflated by the stream's own threads, which are released by
+ * {@link #close()}, or by an executor shared with other streams.
+ *
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	/**
+	 * The size of the deflate window.
+	 */
+	public static final int DICTIONARY_SIZE = 32 * 1024;
+	/**
+	 * The same header written by java.util.zip.GZIPOutputStream.
+	 */
+	private static final byte[] HEADER = new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+	private static final int DEFLATE_BUFFER_SIZE = 64 * 1024;
+
+	OutputStream out;
+	int blockSize;
+	int maxPendingBlocks;
+	ExecutorService executor;
+	boolean ownsExecutor;
+	LinkedList<Future<byte[]>> pending;
+	CRC32 crc;
+	long size;
+	byte[] block;
+	int position;
+	byte[] dictionary;
+	boolean closed;
+
+	/**
+	 * Write the gzip header to the given stream.
+	 *
+	 * @param out
+	 * @param blockSize The number of bytes deflated by each task.
+	 * @param threads The number of threads deflating at the same time.
+	 * @throws IOException
+	 */
+	public ParallelGzipOutputStream(OutputStream out, int blockSize, int threads) throws IOException {
+		this(out, blockSize, threads, createExecutor(threads), true);
+	}
+
+	/**
+	 * Write the gzip header to the given stream. The blocks are deflated by
+	 * the given executor, which is left running when the stream is closed.
+	 *
+	 * @param out
+	 * @param blockSize The number of bytes deflated by each task.
+	 * @param threads The number of blocks deflated at the same time.
+	 * @param executor Deflates the blocks.
+	 * @throws IOException
+	 */
+	public ParallelGzipOutputStream(OutputStream out, int blockSize, int threads, ExecutorService executor) throws IOException {
+		this(out, blockSize, threads, executor, false);
+	}
+
+	private ParallelGzipOutputStream(OutputStream out, int blockSize, int threads, ExecutorService executor, boolean ownsExecutor) throws IOException {
+		if (blockSize < DICTIONARY_SIZE) {
+			throw new IllegalArgumentException("Block size must be at least " + DICTIONARY_SIZE + " bytes");
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		this.out = out;
+		this.blockSize = blockSize;
+		this.maxPendingBlocks = threads * 2;
+		if (executor == null) {
+			throw new IllegalArgumentException("executor cannot be null");
+		}
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.pending = new LinkedList<Future<byte[]>>();
+		this.crc = new CRC32();
+		this.size = 0;
+		this.block = new byte[blockSize];
+		this.position = 0;
+		this.closed = false;
+		out.write(HEADER);
+	}
+
+	/**
+	 * A pool of the given number of threads that are released once they have
+	 * been idle for a minute.
+	 *
+	 * @param threads
+	 * @return
+	 */
+	public static ThreadPoolExecutor createExecutor(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>());
+		// do not keep the threads of a stream that was never closed.
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		checkOpen();
+		block[position++] = (byte) b;
+		if (position == block.length) {
+			submitBlock(false);
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		while (len > 0) {
+			int count = Math.min(len, block.length - position);
+			System.arraycopy(b, off, block, position, count);
+			position += count;
+			off += count;
+			len -= count;
+			if (position == block.length) {
+				submitBlock(false);
+			}
+		}
+	}
+
+	/**
+	 * Writes the blocks that have been deflated. The current block is not cut
+	 * short, so frequent flushes do not hurt the compression.
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkOpen();
+		while (!pending.isEmpty() && pending.getFirst().isDone()) {
+			writeNextBlock();
+		}
+		out.flush();
+	}
+
+	/**
+	 * Deflate the current block, writing out the oldest blocks if too many
+	 * are waiting.
+	 */
+	private void submitBlock(final boolean last) throws IOException {
+		final byte[] data = block;
+		final int length = position;
+		final byte[] previous = dictionary;
+		crc.update(data, 0, length);
+		size += length;
+		if (!last) {
+			// only the last block can be shorter than the dictionary.
+			dictionary = new byte[DICTIONARY_SIZE];
+			System.arraycopy(data, length - DICTIONARY_SIZE, dictionary, 0, DICTIONARY_SIZE);
+			block = new byte[blockSize];
+			position = 0;
+		}
+		pending.add(executor.submit(new Callable<byte[]>() {
+
+			@Override
+			public byte[] call() throws Exception {
+				return deflate(data, length, previous, last);
+			}
+		}));
+		while (pending.size() > maxPendingBlocks) {
+			writeNextBlock();
+		}
+	}
+
+	/**
+	 * Deflate a single block. Every block but the last ends with a sync
+	 * flush, which leaves the output on a byte boundary.
+	 */
+	static byte[] deflate(byte[] data, int length, byte[] dictionary, boolean last) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			if (dictionary != null) {
+				deflater.setDictionary(dictionary);
+			}
+			deflater.setInput(data, 0, length);
+			ByteArrayOutputStream result = new ByteArrayOutputStream(length / 2 + 64);
+			byte[] buffer = new byte[DEFLATE_BUFFER_SIZE];
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					int count = deflater.deflate(buffer);
+					result.write(buffer, 0, count);
+				}
+			} else {
+				int count;
+				do {
+					count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+					result.write(buffer, 0, count);
+				} while (count == buffer.length);
+			}
+			return result.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private void writeNextBlock() throws IOException {
+		Future<byte[]> future = pending.removeFirst();
+		try {
+			out.write(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while compressing");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private void writeTrailer() throws IOException {
+		writeInt((int) crc.getValue());
+		writeInt((int) size);
+	}
+
+	/*
+	 * gzip stores integers in little-endian order.
+	 */
+	private void writeInt(int value) throws IOException {
+		out.write(value & 0xff);
+		out.write((value >> 8) & 0xff);
+		out.write((value >> 16) & 0xff);
+		out.write((value >> 24) & 0xff);
+	}
+
+	/**
+	 * Deflate the last block, write the trailer and close the underlying
+	 * stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			submitBlock(true);
+			while (!pending.isEmpty()) {
+				writeNextBlock();
+			}
+			writeTrailer();
+		} finally {
+			if (ownsExecutor) {
+				executor.shutdownNow();
+			} else {
+				// do not leave the blocks of a failed stream to a shared executor.
+				for (Future<byte[]> future : pending) {
+					future.cancel(true);
+				}
+				pending.clear();
+			}
+			out.close();
+		}
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream is closed");
+		}
+	}
+}
@@ -2,6 +2,7 @@ package org.sagebionetworks.warehouse.workers.collate;
 
 import org.sagebionetworks.database.semaphore.CountingSemaphore;
 import org.sagebionetworks.warehouse.workers.SemaphoreKey;
+import org.sagebionetworks.warehouse.workers.WorkerPriority;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfiguration;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfigurationProvider;
 import org.sagebionetworks.workers.util.semaphore.SemaphoreGatedWorkerStack;
@@ -36,6 +37,7 @@ public class PeriodicRollingFolderConfigurationProvider implements
 		this.config.setStartDelayMs(3);
 		// This worker only runs every 20 mins.
 		this.config.setPeriodMS(60*1000*20);
+		this.config.setPriority(WorkerPriority.HIGH);
 		this.config.setWorkerName(PeriodicRollingFolderMessageGeneratorWorker.class.getName());
 	}
 
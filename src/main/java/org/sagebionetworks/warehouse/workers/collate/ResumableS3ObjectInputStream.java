@@ -0,0 +1,149 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+
+/**
+ * An InputStream that reads an S3 object straight from the connection, so the
+ * object never needs to be staged on local disk.
+ *
+ * If the connection fails part way through, the object is opened again with a
+ * range request that starts at the first byte not yet read, up to maxRetries
+ * times in a row. The range request must match the ETag of the first request,
+ * so the bytes of a replaced object are never appended to those of the
+ * original. Closing the stream before the end aborts the connection rather
+ * than reading the rest of the object.
+ *
+ */
+public class ResumableS3ObjectInputStream extends InputStream {
+
+	private static final Logger log = LogManager.getLogger(ResumableS3ObjectInputStream.class);
+
+	AmazonS3Client s3Client;
+	String bucket;
+	String key;
+	int maxRetries;
+	long length;
+	String etag;
+	long position;
+	S3ObjectInputStream current;
+	boolean closed;
+
+	/**
+	 * Open the object.
+	 *
+	 * @param s3Client
+	 * @param bucket
+	 * @param key
+	 * @param maxRetries The number of times in a row a failed read is resumed.
+	 */
+	public ResumableS3ObjectInputStream(AmazonS3Client s3Client, String bucket, String key, int maxRetries) {
+		if (maxRetries < 0) {
+			throw new IllegalArgumentException("maxRetries cannot be negative");
+		}
+		this.s3Client = s3Client;
+		this.bucket = bucket;
+		this.key = key;
+		this.maxRetries = maxRetries;
+		this.position = 0;
+		this.closed = false;
+		S3Object object = s3Client.getObject(new GetObjectRequest(bucket, key));
+		this.length = object.getObjectMetadata().getContentLength();
+		this.etag = object.getObjectMetadata().getETag();
+		this.current = object.getObjectContent();
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] one = new byte[1];
+		int count = read(one, 0, 1);
+		return count < 0 ? -1 : one[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		if (len == 0) {
+			return 0;
+		}
+		int failures = 0;
+		while (true) {
+			if (position >= length) {
+				return -1;
+			}
+			try {
+				int count = current.read(b, off, len);
+				if (count < 0) {
+					if (position < length) {
+						throw new IOException("Connection ended at byte " + position + " of " + length);
+					}
+					return -1;
+				}
+				position += count;
+				return count;
+			} catch (IOException e) {
+				failures++;
+				if (failures > maxRetries) {
+					throw e;
+				}
+				log.warn("Resuming " + bucket + "/" + key + " at byte " + position + " after: " + e.getMessage());
+				resume(e);
+			}
+		}
+	}
+
+	/*
+	 * Open the same version of the object again from the current position.
+	 */
+	private void resume(IOException cause) throws IOException {
+		current.abort();
+		GetObjectRequest request = new GetObjectRequest(bucket, key).withRange(position, length - 1);
+		if (etag != null) {
+			request.withMatchingETagConstraint(etag);
+		}
+		S3Object object;
+		try {
+			object = s3Client.getObject(request);
+		} catch (AmazonClientException e) {
+			IOException failure = new IOException("Failed to resume " + bucket + "/" + key, e);
+			failure.addSuppressed(cause);
+			throw failure;
+		}
+		if (object == null) {
+			// S3 returns nothing when the constraint is not met.
+			IOException failure = new IOException(bucket + "/" + key + " changed while it was read");
+			failure.addSuppressed(cause);
+			throw failure;
+		}
+		current = object.getObjectContent();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (position < length) {
+			// do not read the rest of the object just to close the connection.
+			current.abort();
+		} else {
+			current.close();
+		}
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream is closed");
+		}
+	}
+}
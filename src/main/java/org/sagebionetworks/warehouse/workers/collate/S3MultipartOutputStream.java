@@ -0,0 +1,151 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+/**
+ * An OutputStream that writes to an S3 object using a multipart upload, so the
+ * data never needs to be staged on local disk.
+ *
+ * Data is buffered in memory until a full part is available. The upload is
+ * completed by {@link #close()}. If the data should not be saved,
+ * {@link #abort()} must be called before the stream is closed.
+ *
+ */
+public class S3MultipartOutputStream extends OutputStream {
+
+	/**
+	 * S3 rejects parts smaller than 5 MB, except the last part.
+	 */
+	public static final int MINIMUM_PART_SIZE = 5 * 1024 * 1024;
+
+	AmazonS3Client s3Client;
+	String bucket;
+	String key;
+	String uploadId;
+	byte[] buffer;
+	int position;
+	List<PartETag> partETags;
+	boolean closed;
+
+	/**
+	 * Start a new multipart upload.
+	 *
+	 * @param s3Client
+	 * @param bucket
+	 * @param key
+	 * @param acl The canned ACL of the resulting object.
+	 * @param partSize The number of bytes in each part except the last.
+	 */
+	public S3MultipartOutputStream(AmazonS3Client s3Client, String bucket,
+			String key, CannedAccessControlList acl, int partSize) {
+		if (partSize < MINIMUM_PART_SIZE) {
+			throw new IllegalArgumentException("Part size must be at least " + MINIMUM_PART_SIZE + " bytes");
+		}
+		this.s3Client = s3Client;
+		this.bucket = bucket;
+		this.key = key;
+		this.buffer = new byte[partSize];
+		this.position = 0;
+		this.partETags = new LinkedList<PartETag>();
+		this.closed = false;
+		this.uploadId = s3Client.initiateMultipartUpload(
+				new InitiateMultipartUploadRequest(bucket, key).withCannedACL(acl)).getUploadId();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		checkOpen();
+		if (position == buffer.length) {
+			uploadPart();
+		}
+		buffer[position++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		while (len > 0) {
+			if (position == buffer.length) {
+				uploadPart();
+			}
+			int count = Math.min(len, buffer.length - position);
+			System.arraycopy(b, off, buffer, position, count);
+			position += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	/**
+	 * Upload the buffered data and complete the upload. The upload is aborted
+	 * if it cannot be completed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			// The last part may be smaller than the minimum, and S3 requires at least one part.
+			if (position > 0 || partETags.isEmpty()) {
+				uploadPart();
+			}
+			s3Client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, partETags));
+			closed = true;
+		} finally {
+			if (!closed) {
+				try {
+					abort();
+				} catch (RuntimeException e) {
+					// the original failure is more useful to the caller.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Abort the upload and discard all data written to this stream. Once
+	 * aborted, closing the stream will have no effect.
+	 */
+	public void abort() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+	}
+
+	/**
+	 * Upload the current buffer as the next part.
+	 */
+	private void uploadPart() {
+		int partNumber = partETags.size() + 1;
+		UploadPartRequest request = new UploadPartRequest()
+				.withBucketName(bucket)
+				.withKey(key)
+				.withUploadId(uploadId)
+				.withPartNumber(partNumber)
+				.withPartSize(position)
+				.withInputStream(new ByteArrayInputStream(buffer, 0, position));
+		partETags.add(s3Client.uploadPart(request).getPartETag());
+		position = 0;
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream is closed");
+		}
+	}
+}
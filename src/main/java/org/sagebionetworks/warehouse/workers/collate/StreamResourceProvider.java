@@ -2,11 +2,14 @@ package org.sagebionetworks.warehouse.workers.collate;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 import org.sagebionetworks.csv.utils.ObjectCSVReader;
 import org.sagebionetworks.csv.utils.ObjectCSVWriter;
 
+import com.amazonaws.services.s3.AmazonS3Client;
+
 import au.com.bytecode.opencsv.CSVReader;
 import au.com.bytecode.opencsv.CSVWriter;
 
@@ -40,6 +43,14 @@ public interface StreamResourceProvider {
 	 */
 	public CSVWriter createGzipWriter(File file);
 	
+	/**
+	 * Create a GZIP wrapped CSVWritter for the given stream. Closing the
+	 * writer will close the stream.
+	 * @param out
+	 * @return
+	 */
+	public CSVWriter createGzipWriter(OutputStream out);
+	
 	/**
 	 * Create a ObjectCSVReader for the given file.
 	 * @param file
@@ -49,6 +60,20 @@ public interface StreamResourceProvider {
 	 */
 	public <T> ObjectCSVReader<T> createObjectCSVReader(File file, Class<T> clazz, String[] header);
 	
+	/**
+	 * Create a GZIP wrapped ObjectCSVReader for the given S3 object. Depending
+	 * on the configured mode the object is either streamed from S3 as it is
+	 * read, or first downloaded to a temporary file. Closing the reader
+	 * releases the connection or deletes the file.
+	 * @param s3Client
+	 * @param bucket
+	 * @param key
+	 * @param clazz
+	 * @param header
+	 * @return
+	 */
+	public <T> ObjectCSVReader<T> createObjectCSVReader(AmazonS3Client s3Client, String bucket, String key, Class<T> clazz, String[] header);
+	
 	/**
 	 * Create a ObjectCSVWritter for the given file.
 	 * @param file
@@ -1,17 +1,25 @@
 package org.sagebionetworks.warehouse.workers.collate;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.sagebionetworks.csv.utils.ObjectCSVReader;
+import org.apache.commons.io.IOUtils;
 import org.sagebionetworks.csv.utils.ObjectCSVWriter;
+import org.sagebionetworks.warehouse.workers.config.Configuration;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.google.inject.Inject;
 
 import au.com.bytecode.opencsv.CSVReader;
 import au.com.bytecode.opencsv.CSVWriter;
@@ -19,11 +27,55 @@ import au.com.bytecode.opencsv.CSVWriter;
 import org.sagebionetworks.common.util.progress.ProgressCallback;
 
 /**
- * A simple wrapper for resource generation.
+ * A simple wrapper for resource generation. All gzip streams are created by
+ * the bound GzipCodec.
  * 
  */
 public class StreamResourceProviderImpl implements StreamResourceProvider {
 
+	/**
+	 * S3 objects are read straight from the connection.
+	 */
+	public static final String STREAMING_MODE = "STREAMING";
+	/**
+	 * S3 objects are downloaded to a temporary file before they are read.
+	 */
+	public static final String FILE_MODE = "FILE";
+	public static final String TEMP_FILE_NAME_PREFIX = "snapshot";
+	public static final String TEMP_FILE_NAME_SUFFIX = ".csv.gz";
+
+	GzipCodec codec;
+	boolean streaming;
+	int readBufferSize;
+	int maxRetries;
+
+	@Inject
+	public StreamResourceProviderImpl(GzipCodec codec, Configuration config) {
+		this(codec, !FILE_MODE.equals(config.getProperty("org.sagebionetworks.warehouse.worker.snapshot.read.mode")),
+				Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.snapshot.read.buffer.bytes")),
+				Integer.parseInt(config.getProperty("org.sagebionetworks.warehouse.worker.snapshot.read.max.retries")));
+	}
+
+	/**
+	 * 
+	 * @param codec Compresses and decompresses every stream.
+	 * @param streaming True to read S3 objects straight from the connection.
+	 * @param readBufferSize The number of bytes read ahead of the parser.
+	 * @param maxRetries The number of times in a row a failed read of a streamed object is resumed.
+	 */
+	public StreamResourceProviderImpl(GzipCodec codec, boolean streaming, int readBufferSize, int maxRetries) {
+		if (codec == null) {
+			throw new IllegalArgumentException("codec cannot be null");
+		}
+		if (readBufferSize < 1) {
+			throw new IllegalArgumentException("readBufferSize must be at least 1");
+		}
+		this.codec = codec;
+		this.streaming = streaming;
+		this.readBufferSize = readBufferSize;
+		this.maxRetries = maxRetries;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.sagebionetworks.warehouse.workers.collate.CollateProvider#createTempFile(java.lang.String, java.lang.String)
@@ -44,7 +96,7 @@ public class StreamResourceProviderImpl implements StreamResourceProvider {
 	@Override
 	public CSVReader createGzipReader(File file) {
 		try {
-			return new CSVReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), "UTF-8"));
+			return new CSVReader(new InputStreamReader(codec.decompress(new FileInputStream(file)), "UTF-8"));
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
@@ -57,12 +109,25 @@ public class StreamResourceProviderImpl implements StreamResourceProvider {
 	@Override
 	public CSVWriter createGzipWriter(File file) {
 		try {
-			return new CSVWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)), "UTF-8"));
+			return new CSVWriter(new OutputStreamWriter(codec.compress(new FileOutputStream(file)), "UTF-8"));
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		} 
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.sagebionetworks.warehouse.workers.collate.StreamResourceProvider#createGzipWriter(java.io.OutputStream)
+	 */
+	@Override
+	public CSVWriter createGzipWriter(OutputStream out) {
+		try {
+			return new CSVWriter(new OutputStreamWriter(codec.compress(out), "UTF-8"));
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.sagebionetworks.warehouse.workers.collate.CollateProvider#mergeSortedStreams(org.sagebionetworks.workers.util.progress.ProgressCallback, java.util.List, au.com.bytecode.opencsv.CSVWriter, int)
@@ -83,8 +148,51 @@ public class StreamResourceProviderImpl implements StreamResourceProvider {
 	@Override
 	public <T> ObjectCSVReader<T> createObjectCSVReader(File file, Class<T> clazz, String[] headers) {
 		try {
-			return new ObjectCSVReader<T>(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), "UTF-8"), clazz, headers);
+			return new ObjectCSVReader<T>(new InputStreamReader(codec.decompress(new FileInputStream(file)), "UTF-8"), clazz, headers);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.sagebionetworks.warehouse.workers.collate.StreamResourceProvider#createObjectCSVReader(com.amazonaws.services.s3.AmazonS3Client, java.lang.String, java.lang.String, java.lang.Class, java.lang.String[])
+	 */
+	@Override
+	public <T> ObjectCSVReader<T> createObjectCSVReader(AmazonS3Client s3Client, String bucket, String key, Class<T> clazz, String[] headers) {
+		InputStream in = streaming ? new ResumableS3ObjectInputStream(s3Client, bucket, key, maxRetries) : download(s3Client, bucket, key);
+		try {
+			return new ObjectCSVReader<T>(new InputStreamReader(codec.decompress(new BufferedInputStream(in, readBufferSize)), "UTF-8"), clazz, headers);
+		} catch (Exception e) {
+			IOUtils.closeQuietly(in);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Download the object to a temporary file that is deleted when the
+	 * returned stream is closed.
+	 */
+	private InputStream download(AmazonS3Client s3Client, String bucket, String key) {
+		final File file = createTempFile(TEMP_FILE_NAME_PREFIX, TEMP_FILE_NAME_SUFFIX);
+		try {
+			s3Client.getObject(new GetObjectRequest(bucket, key), file);
+			return new FilterInputStream(new FileInputStream(file)) {
+
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						file.delete();
+					}
+				}
+			};
 		} catch (Exception e) {
+			file.delete();
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException) e;
+			}
 			throw new RuntimeException(e);
 		}
 	}
@@ -96,7 +204,7 @@ public class StreamResourceProviderImpl implements StreamResourceProvider {
 	@Override
 	public <T> ObjectCSVWriter<T> createObjectCSVWriter(File file, Class<T> clazz, String[] headers) {
 		try {
-			return new ObjectCSVWriter<T>(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)), "UTF-8"), clazz, headers);
+			return new ObjectCSVWriter<T>(new OutputStreamWriter(codec.compress(new FileOutputStream(file)), "UTF-8"), clazz, headers);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
@@ -2,6 +2,7 @@ package org.sagebionetworks.warehouse.workers.collate;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import org.sagebionetworks.common.util.progress.ProgressCallback;
 
@@ -21,7 +22,10 @@ public class StreamingCollateUtils {
 	 * portion of the merge-sort algorithm.
 	 * 
 	 * Note: This utility is memory efficient and will never keep more than one
-	 * row from each input stream in memory at a time.
+	 * row from each input stream in memory at a time. The timestamp of each row
+	 * is parsed once and the next row is picked from a heap, so each row costs
+	 * O(log k) for k input streams. Rows with the same timestamp are written in
+	 * the order of their input streams.
 	 * 
 	 * @param progressCallback
 	 *            progressMade() will be called for ever row written to the
@@ -43,70 +47,84 @@ public class StreamingCollateUtils {
 			ProgressCallback<Void> progressCallback,
 			List<CSVReader> sortedInputStreams, CSVWriter out,
 			int timestampIndex) throws IOException {
-		// Create a stack for each reader
-		CSVReaderStack[] stacks = new CSVReaderStack[sortedInputStreams.size()];
+		/*
+		 * Keep the non-empty stack of each reader in a heap ordered by the
+		 * timestamp of its top row. Ties go to the reader that comes first in
+		 * the input list.
+		 */
+		PriorityQueue<CSVReaderStack> heap = new PriorityQueue<CSVReaderStack>(
+				Math.max(1, sortedInputStreams.size()));
 		for (int i = 0; i < sortedInputStreams.size(); i++) {
-			stacks[i] = new CSVReaderStack(sortedInputStreams.get(i));
+			CSVReaderStack stack = new CSVReaderStack(sortedInputStreams.get(i), i, timestampIndex);
+			if (!stack.isEmpty()) {
+				heap.add(stack);
+			}
 		}
 		// Keep reading as long as there is data.
-		int minimumIndex = -1;
-		while ((minimumIndex = findMiniumnIndex(stacks, timestampIndex)) >= 0) {
+		CSVReaderStack minimum = null;
+		while ((minimum = heap.poll()) != null) {
 			progressCallback.progressMade(null);
-			String[] nextOut = stacks[minimumIndex].pop();
+			String[] nextOut = minimum.pop();
 			out.writeNext(nextOut);
+			if (!minimum.isEmpty()) {
+				heap.add(minimum);
+			}
 		}
 		out.close();
 		// done
 	}
 
 	/**
-	 * Given an array of CSVReaderStack find the index of the stack with the
-	 * smallest time stamp.
+	 * Read the timestamp column of a row.
 	 * 
-	 * @param stacks
+	 * @param row
 	 * @param timestampIndex
 	 *            The index of the time stamp column in the CSV.
 	 * @return
 	 */
-	private static int findMiniumnIndex(CSVReaderStack[] stacks,
-			int timestampIndex) {
-		long minimumTimestamp = Long.MAX_VALUE;
-		int minIndex = -1;
-		for (int i = 0; i < stacks.length; i++) {
-			// only read from non-empty stacks.
-			if (!stacks[i].isEmpty()) {
-				String value = null;
-				try {
-					value = stacks[i].peak()[timestampIndex];
-					long thisTimestamp = Long.parseLong(value);
-					if (thisTimestamp < minimumTimestamp) {
-						minimumTimestamp = thisTimestamp;
-						minIndex = i;
-					}
-				} catch (NumberFormatException e) {
-					throw new IllegalArgumentException(
-							"Unable to read the timestamp column from the input CSV.  Given timestampIndex = "
-									+ timestampIndex
-									+ ". Value at this index was: " + value);
-				}
-			}
+	private static long parseTimestamp(String[] row, int timestampIndex) {
+		String value = null;
+		try {
+			value = row[timestampIndex];
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(
+					"Unable to read the timestamp column from the input CSV.  Given timestampIndex = "
+							+ timestampIndex
+							+ ". Value at this index was: " + value);
 		}
-		return minIndex;
 	}
 
 	/**
 	 * Wrap a CSVReader in a stack-like interface.
 	 * 
 	 */
-	private static class CSVReaderStack {
+	private static class CSVReaderStack implements Comparable<CSVReaderStack> {
 
 		CSVReader wrapped;
+		int streamIndex;
+		int timestampIndex;
 		String[] lastRow;
+		long lastTimestamp;
 
-		public CSVReaderStack(CSVReader wrapped) throws IOException {
+		public CSVReaderStack(CSVReader wrapped, int streamIndex, int timestampIndex) throws IOException {
 			super();
 			this.wrapped = wrapped;
+			this.streamIndex = streamIndex;
+			this.timestampIndex = timestampIndex;
+			readNext();
+		}
+
+		/**
+		 * Read the next row and parse its timestamp once.
+		 * 
+		 * @throws IOException
+		 */
+		private void readNext() throws IOException {
 			this.lastRow = wrapped.readNext();
+			if (this.lastRow != null) {
+				this.lastTimestamp = parseTimestamp(this.lastRow, timestampIndex);
+			}
 		}
 
 		/**
@@ -125,7 +143,7 @@ public class StreamingCollateUtils {
 		 */
 		public String[] pop() throws IOException {
 			String[] last = this.lastRow;
-			this.lastRow = wrapped.readNext();
+			readNext();
 			return last;
 		}
 
@@ -137,5 +155,17 @@ public class StreamingCollateUtils {
 		public boolean isEmpty() {
 			return this.lastRow == null;
 		}
+
+		/**
+		 * Order by the timestamp of the top row, then by the position of the
+		 * reader in the input list.
+		 */
+		@Override
+		public int compareTo(CSVReaderStack other) {
+			if (this.lastTimestamp != other.lastTimestamp) {
+				return this.lastTimestamp < other.lastTimestamp ? -1 : 1;
+			}
+			return this.streamIndex < other.streamIndex ? -1 : (this.streamIndex == other.streamIndex ? 0 : 1);
+		}
 	}
 }
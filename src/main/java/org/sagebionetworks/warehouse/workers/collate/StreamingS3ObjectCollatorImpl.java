@@ -0,0 +1,208 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.io.IOUtils;
+import org.sagebionetworks.common.util.progress.ProgressCallback;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * A collator that downloads the input objects concurrently and streams the
+ * collated result straight to S3 with a multipart upload, so the result is
+ * never written to local disk.
+ *
+ */
+public class StreamingS3ObjectCollatorImpl implements S3ObjectCollator {
+
+	/**
+	 * How long to wait on a download before making progress again.
+	 */
+	static final long HEARTBEAT_WAIT_MS = 1000L;
+
+	AmazonS3Client s3Client;
+	StreamResourceProvider collateProvider;
+	int downloadThreads;
+	int partSize;
+
+	/**
+	 *
+	 * @param s3Client
+	 * @param collateProvider
+	 * @param downloadThreads The maximum number of objects downloaded at the same time.
+	 * @param partSize The size of each part of the multipart upload.
+	 */
+	public StreamingS3ObjectCollatorImpl(AmazonS3Client s3Client,
+			StreamResourceProvider collateProvider, int downloadThreads, int partSize) {
+		super();
+		if (downloadThreads < 1) {
+			throw new IllegalArgumentException("downloadThreads must be at least 1");
+		}
+		if (partSize < S3MultipartOutputStream.MINIMUM_PART_SIZE) {
+			throw new IllegalArgumentException("partSize must be at least " + S3MultipartOutputStream.MINIMUM_PART_SIZE);
+		}
+		this.s3Client = s3Client;
+		this.collateProvider = collateProvider;
+		this.downloadThreads = downloadThreads;
+		this.partSize = partSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.sagebionetworks.warehouse.workers.collate.S3ObjectCollator#replaceCSVsWithCollatedCSV(org.sagebionetworks.common.util.progress.ProgressCallback, java.lang.String, java.util.List, java.lang.String, int)
+	 */
+	@Override
+	public void replaceCSVsWithCollatedCSV(ProgressCallback<Void> progressCallback, String bucket, List<String> keysToCollate,
+			String destinationKey, int sortColumnIndex) throws IOException {
+		List<File> inputFiles = new LinkedList<File>();
+		try{
+			// download all input files in parallel.
+			downloadAll(progressCallback, bucket, keysToCollate, inputFiles);
+			// collate the files.
+			collateCSVObjects(progressCallback, bucket, inputFiles, destinationKey, sortColumnIndex);
+			// Collation was successful so delete the original files.
+			for(String toDelete: keysToCollate){
+				s3Client.deleteObject(bucket, toDelete);
+			}
+		}finally{
+			// unconditionally delete the temp files.
+			for(File file: inputFiles){
+				try {
+					file.delete();
+				} catch (Exception e) {}
+			}
+		}
+	}
+
+	/**
+	 * Download each key to a temporary file using at most downloadThreads
+	 * threads. Each temporary file is added to inputFiles, in the order of the
+	 * keys, as soon as it is created so the caller can always clean up.
+	 *
+	 * @param progressCallback
+	 * @param bucket
+	 * @param keys
+	 * @param inputFiles
+	 * @throws IOException
+	 */
+	private void downloadAll(ProgressCallback<Void> progressCallback, String bucket, List<String> keys,
+			List<File> inputFiles) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(downloadThreads, keys.size())));
+		try {
+			List<Future<Void>> futures = new LinkedList<Future<Void>>();
+			for (final String key : keys) {
+				final File temp = collateProvider.createTempFile("inputCollate", ".csv.gz");
+				inputFiles.add(temp);
+				final GetObjectRequest request = new GetObjectRequest(bucket, key);
+				futures.add(executor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						s3Client.getObject(request, temp);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				waitFor(future, progressCallback);
+			}
+		} finally {
+			// stops the remaining downloads if any download failed.
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Wait for a download to finish, making progress while it runs.
+	 */
+	private static void waitFor(Future<Void> future, ProgressCallback<Void> progressCallback) throws IOException {
+		while (true) {
+			try {
+				future.get(HEARTBEAT_WAIT_MS, TimeUnit.MILLISECONDS);
+				return;
+			} catch (TimeoutException e) {
+				progressCallback.progressMade(null);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while downloading files to collate");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Collate the input files and stream the result to S3.
+	 *
+	 * @param progressCallback
+	 * @param bucket
+	 * @param inputFiles
+	 * @param destinationKey
+	 * @param sortColumnIndex
+	 * @throws IOException
+	 */
+	private void collateCSVObjects(ProgressCallback<Void> progressCallback, String bucket, List<File> inputFiles,
+			String destinationKey, int sortColumnIndex) throws IOException {
+		List<CSVReader> readers = new LinkedList<CSVReader>();
+		S3MultipartOutputStream upload = null;
+		CSVWriter writer = null;
+		boolean success = false;
+		try{
+			// Stream each input file to a CSVReader
+			for(File file: inputFiles){
+				CSVReader reader = collateProvider.createGzipReader(file);
+				readers.add(reader);
+			}
+			// Both the object owner and the bucket owner get FULL_CONTROL over the object.
+			upload = new S3MultipartOutputStream(s3Client, bucket, destinationKey,
+					CannedAccessControlList.BucketOwnerFullControl, partSize);
+			writer = collateProvider.createGzipWriter(upload);
+			// This is where collation actually occurs.
+			collateProvider.mergeSortedStreams(progressCallback, readers, writer, sortColumnIndex);
+			progressCallback.progressMade(null);
+			// closing the writer completes the upload.
+			writer.close();
+			success = true;
+		}finally{
+			// unconditionally close all readers.
+			for(CSVReader reader: readers){
+				IOUtils.closeQuietly(reader);
+			}
+			if(!success && upload != null){
+				// discard the partial result before the writer is closed.
+				try {
+					upload.abort();
+				} catch (Exception e) {}
+			}
+			if(writer != null){
+				IOUtils.closeQuietly(writer);
+			}
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import org.sagebionetworks.warehouse.workers.model.BucketScanState;
+
+/**
+ * Persists the scanning checkpoint of each bucket so a scan can resume where
+ * the last one finished instead of listing the whole bucket.
+ */
+public interface BucketScanStateDao {
+
+	/**
+	 * Get the scan state of a bucket.
+	 * 
+	 * @param bucket
+	 * @return null if the bucket has never been scanned.
+	 */
+	public BucketScanState getBucketScanState(String bucket);
+
+	/**
+	 * Create or update the scan state of a bucket.
+	 * 
+	 * @param state
+	 */
+	public void setBucketScanState(BucketScanState state);
+
+	/**
+	 * Truncate all of the data.
+	 */
+	public void truncateAll();
+}
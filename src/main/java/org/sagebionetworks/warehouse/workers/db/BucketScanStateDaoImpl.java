@@ -0,0 +1,100 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import static org.sagebionetworks.warehouse.workers.db.Sql.COL_BUCKET_SCAN_STATE_BUCKET;
+import static org.sagebionetworks.warehouse.workers.db.Sql.COL_BUCKET_SCAN_STATE_CHECKPOINT;
+import static org.sagebionetworks.warehouse.workers.db.Sql.COL_BUCKET_SCAN_STATE_LAST_FULL_SCAN_ON;
+import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_BUCKET_SCAN_STATE;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.sagebionetworks.warehouse.workers.model.BucketScanState;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+@Singleton
+public class BucketScanStateDaoImpl implements BucketScanStateDao {
+
+	private static final String BUCKET_SCAN_STATE_DDL_SQL = "BucketScanState.ddl.sql";
+
+	private static final String TRUNCATE = "TRUNCATE TABLE " + TABLE_BUCKET_SCAN_STATE;
+
+	private static final String SQL_SELECT = "SELECT * FROM "
+			+ TABLE_BUCKET_SCAN_STATE + " WHERE "
+			+ COL_BUCKET_SCAN_STATE_BUCKET + " = ?";
+
+	private static final String SQL_INSERT_OR_UPDATE = "INSERT INTO "
+			+ TABLE_BUCKET_SCAN_STATE
+			+ " ("
+			+ COL_BUCKET_SCAN_STATE_BUCKET
+			+ ","
+			+ COL_BUCKET_SCAN_STATE_CHECKPOINT
+			+ ","
+			+ COL_BUCKET_SCAN_STATE_LAST_FULL_SCAN_ON
+			+ ") VALUES (?,?,?) ON DUPLICATE KEY UPDATE "
+			+ COL_BUCKET_SCAN_STATE_CHECKPOINT
+			+ " = ?, "
+			+ COL_BUCKET_SCAN_STATE_LAST_FULL_SCAN_ON
+			+ " = ?";
+
+	JdbcTemplate template;
+
+	/*
+	 * Map all columns to the dbo.
+	 */
+	RowMapper<BucketScanState> rowMapper = new RowMapper<BucketScanState>() {
+
+		public BucketScanState mapRow(ResultSet rs, int arg1) throws SQLException {
+			BucketScanState state = new BucketScanState();
+			state.setBucket(rs.getString(COL_BUCKET_SCAN_STATE_BUCKET));
+			state.setCheckpoint(rs.getString(COL_BUCKET_SCAN_STATE_CHECKPOINT));
+			state.setLastFullScanOn(rs.getTimestamp(COL_BUCKET_SCAN_STATE_LAST_FULL_SCAN_ON));
+			return state;
+		}
+	};
+
+	@Inject
+	BucketScanStateDaoImpl(JdbcTemplate template, TableCreator creator) {
+		super();
+		this.template = template;
+		// Create the table
+		creator.createTable(BUCKET_SCAN_STATE_DDL_SQL);
+	}
+
+	@Override
+	public BucketScanState getBucketScanState(String bucket) {
+		List<BucketScanState> results = template.query(SQL_SELECT, this.rowMapper, bucket);
+		if(results.isEmpty()){
+			return null;
+		}
+		return results.get(0);
+	}
+
+	@Override
+	public void setBucketScanState(BucketScanState state) {
+		if(state == null){
+			throw new IllegalArgumentException("State cannot be null");
+		}
+		if(state.getBucket() == null){
+			throw new IllegalArgumentException("Bucket cannot be null");
+		}
+		if(state.getCheckpoint() == null){
+			throw new IllegalArgumentException("Checkpoint cannot be null");
+		}
+		if(state.getLastFullScanOn() == null){
+			throw new IllegalArgumentException("LastFullScanOn cannot be null");
+		}
+		template.update(SQL_INSERT_OR_UPDATE, state.getBucket(),
+				state.getCheckpoint(), state.getLastFullScanOn(),
+				state.getCheckpoint(), state.getLastFullScanOn());
+	}
+
+	@Override
+	public void truncateAll() {
+		template.update(TRUNCATE);
+	}
+}
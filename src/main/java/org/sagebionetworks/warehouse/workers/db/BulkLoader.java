@@ -0,0 +1,255 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+
+/**
+ * Writes batches of records to a table with LOAD DATA LOCAL INFILE ... IGNORE.
+ *
+ * Each batch is written as tab separated rows to an in-memory stream which is
+ * handed to the MySQL driver in place of a local file, so a batch travels to
+ * the server as a single stream instead of one row at a time. Rows that
+ * duplicate an existing key are skipped, the same as INSERT IGNORE.
+ *
+ * LOAD DATA LOCAL must be allowed by both the driver, with
+ * allowLoadLocalInfile=true on the JDBC URL, and the server, with
+ * local_infile=ON. Use {@link #checkEnabled(JdbcTemplate)} to fail at startup
+ * rather than on the first batch, or {@link #selectInsertMode(InsertMode, JdbcTemplate)}
+ * to fall back to batch inserts.
+ *
+ * @param <T> the type of record that is written to the table
+ */
+public class BulkLoader<T> {
+
+	private static Logger log = LogManager.getLogger(BulkLoader.class);
+
+	/**
+	 * Provides the column values of a record in the order of the columns the
+	 * loader was created with.
+	 */
+	public interface ValuesProvider<T> {
+
+		/**
+		 * @param record
+		 * @return the value of each column for the record
+		 */
+		public Object[] getValues(T record);
+	}
+
+	/*
+	 * The driver reads from the stream set on the statement, so the file name
+	 * is never opened.
+	 */
+	private static final String LOAD_DATA = "LOAD DATA LOCAL INFILE 'stream' IGNORE INTO TABLE %1$s"
+			+ " CHARACTER SET utf8"
+			+ " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'"
+			+ " LINES TERMINATED BY '\\n'"
+			+ " (%2$s)";
+	static final String SQL_LOCAL_INFILE = "SELECT @@GLOBAL.local_infile";
+	private static final String SET = " SET ";
+	private static final String SET_BIT = "%1$s = CAST(@%1$s AS UNSIGNED)";
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	static final String NULL = "\\N";
+	static final char FIELD_SEPARATOR = '\t';
+	static final char LINE_SEPARATOR = '\n';
+
+	private String loadSql;
+	private int numberOfColumns;
+	private ValuesProvider<T> provider;
+
+	/**
+	 *
+	 * @param tableName
+	 * @param columns - the columns in the order of the values returned by provider
+	 * @param bitColumns - the columns of type BIT. Their values are loaded as
+	 *        numbers rather than strings.
+	 * @param provider
+	 */
+	public BulkLoader(String tableName, List<String> columns, Set<String> bitColumns, ValuesProvider<T> provider) {
+		if (tableName == null || columns == null || columns.isEmpty() || bitColumns == null || provider == null) {
+			throw new IllegalArgumentException();
+		}
+		StringBuilder columnList = new StringBuilder();
+		StringBuilder setList = new StringBuilder();
+		for (String column : columns) {
+			if (columnList.length() > 0) {
+				columnList.append(",");
+			}
+			if (bitColumns.contains(column)) {
+				columnList.append("@").append(column);
+				setList.append(setList.length() == 0 ? SET : ",");
+				setList.append(String.format(SET_BIT, column));
+			} else {
+				columnList.append(column);
+			}
+		}
+		this.loadSql = String.format(LOAD_DATA, tableName, columnList.toString()) + setList.toString();
+		this.numberOfColumns = columns.size();
+		this.provider = provider;
+	}
+
+	/**
+	 * Load a batch of records into the table using the connection of the
+	 * given template.
+	 *
+	 * @param template
+	 * @param batch
+	 * @return the number of rows that were inserted
+	 */
+	public int load(JdbcTemplate template, List<T> batch) {
+		if (batch.isEmpty()) {
+			return 0;
+		}
+		final byte[] data = toTabSeparatedValues(batch);
+		return template.execute(new StatementCallback<Integer>() {
+
+			@Override
+			public Integer doInStatement(Statement stmt) throws SQLException {
+				com.mysql.jdbc.Statement mysqlStatement = stmt.unwrap(com.mysql.jdbc.Statement.class);
+				mysqlStatement.setLocalInfileInputStream(new ByteArrayInputStream(data));
+				try {
+					return stmt.executeUpdate(loadSql);
+				} finally {
+					mysqlStatement.setLocalInfileInputStream(null);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Check that both the driver and the server allow LOAD DATA LOCAL.
+	 *
+	 * @param template
+	 * @throws IllegalStateException if either of them does not
+	 */
+	public static void checkEnabled(JdbcTemplate template) {
+		boolean driverAllows = template.execute(new ConnectionCallback<Boolean>() {
+
+			@Override
+			public Boolean doInConnection(Connection connection) throws SQLException {
+				return connection.unwrap(com.mysql.jdbc.Connection.class).getAllowLoadLocalInfile();
+			}
+		});
+		if (!driverAllows) {
+			throw new IllegalStateException("Bulk load requires allowLoadLocalInfile=true on the JDBC connection URL");
+		}
+		Integer serverAllows = template.queryForObject(SQL_LOCAL_INFILE, Integer.class);
+		if (serverAllows == null || serverAllows != 1) {
+			throw new IllegalStateException("Bulk load requires local_infile=ON on the MySQL server");
+		}
+	}
+
+	/**
+	 * The insert mode to use for the requested one. Falls back to
+	 * {@link InsertMode#BATCH_INSERT} with a warning if bulk load is
+	 * requested but not allowed.
+	 *
+	 * @param requested
+	 * @param template
+	 * @return
+	 */
+	public static InsertMode selectInsertMode(InsertMode requested, JdbcTemplate template) {
+		if (requested != InsertMode.BULK_LOAD) {
+			return requested;
+		}
+		try {
+			checkEnabled(template);
+			return InsertMode.BULK_LOAD;
+		} catch (IllegalStateException | DataAccessException e) {
+			log.warn("Bulk load is not available, using batch inserts instead: " + e.getMessage());
+			return InsertMode.BATCH_INSERT;
+		}
+	}
+
+	/**
+	 * @return the LOAD DATA statement used by this loader
+	 */
+	String getLoadSql() {
+		return loadSql;
+	}
+
+	/**
+	 * Write the batch as UTF-8 encoded tab separated rows.
+	 *
+	 * @param batch
+	 * @return
+	 */
+	byte[] toTabSeparatedValues(List<T> batch) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(batch.size() * 64 * numberOfColumns);
+		Writer writer = new OutputStreamWriter(out, UTF8);
+		try {
+			for (T record : batch) {
+				Object[] values = provider.getValues(record);
+				if (values.length != numberOfColumns) {
+					throw new IllegalArgumentException("Expected " + numberOfColumns + " values but found " + values.length);
+				}
+				for (int i = 0; i < values.length; i++) {
+					if (i > 0) {
+						writer.write(FIELD_SEPARATOR);
+					}
+					writeValue(writer, values[i]);
+				}
+				writer.write(LINE_SEPARATOR);
+			}
+			writer.flush();
+		} catch (IOException e) {
+			// writing to memory does not throw
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Write a single value, escaping the characters that LOAD DATA treats as
+	 * separators or escapes.
+	 */
+	static void writeValue(Writer writer, Object value) throws IOException {
+		if (value == null) {
+			writer.write(NULL);
+			return;
+		}
+		if (value instanceof Boolean) {
+			writer.write(((Boolean) value) ? '1' : '0');
+			return;
+		}
+		String string = value.toString();
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			switch (c) {
+			case '\\':
+				writer.write("\\\\");
+				break;
+			case '\t':
+				writer.write("\\t");
+				break;
+			case '\n':
+				writer.write("\\n");
+				break;
+			case '\r':
+				writer.write("\\r");
+				break;
+			case '\0':
+				writer.write("\\0");
+				break;
+			default:
+				writer.write(c);
+			}
+		}
+	}
+}
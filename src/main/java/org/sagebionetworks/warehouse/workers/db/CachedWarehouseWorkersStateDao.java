@@ -0,0 +1,162 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.warehouse.workers.config.Configuration;
+import org.sagebionetworks.warehouse.workers.model.WarehouseWorkersState;
+import org.sagebionetworks.warehouse.workers.utils.Clock;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Every gated worker stack checks the state on every poll, so the state is
+ * served from memory and only read from the database once it is older than
+ * the TTL. Changes made through this DAO, such as by the MaintenanceWorker,
+ * are applied to the cache immediately. Changes made by other instances are
+ * seen within the TTL plus the time of one refresh: while a refresh is in
+ * progress other callers get the previous state rather than waiting for the
+ * database. The time taken by the refreshes is logged on the same period as
+ * the scheduler statistics.
+ */
+@Singleton
+public class CachedWarehouseWorkersStateDao implements WarehouseWorkersStateDao {
+
+	private static Logger log = LogManager.getLogger(CachedWarehouseWorkersStateDao.class);
+
+	private final WarehouseWorkersStateDao dao;
+	private final long ttlMS;
+	private final long statisticsLogPeriodMS;
+	private final Clock clock;
+	private final ReentrantLock refreshLock = new ReentrantLock();
+	private volatile CachedState cached;
+	// guarded by refreshLock
+	private long refreshCount;
+	private long totalRefreshMS;
+	private long maxRefreshMS;
+	private long lastLoggedMS;
+
+	@Inject
+	CachedWarehouseWorkersStateDao(WarehouseWorkersStateDaoImpl dao, Configuration config, Clock clock) {
+		this(dao, Long.parseLong(config.getProperty("org.sagebionetworks.warehouse.worker.state.cache.ttl.ms")),
+				Long.parseLong(config.getProperty("org.sagebionetworks.warehouse.worker.scheduler.statistics.log.period.ms")),
+				clock);
+	}
+
+	/**
+	 * @param dao
+	 * @param ttlMS
+	 * @param statisticsLogPeriodMS
+	 *            How often the refresh times are logged, or zero to never log
+	 *            them.
+	 * @param clock
+	 */
+	CachedWarehouseWorkersStateDao(WarehouseWorkersStateDao dao, long ttlMS, long statisticsLogPeriodMS, Clock clock) {
+		this.dao = dao;
+		this.ttlMS = ttlMS;
+		this.statisticsLogPeriodMS = statisticsLogPeriodMS;
+		this.clock = clock;
+		this.lastLoggedMS = clock.currentTimeMillis();
+	}
+
+	@Override
+	public WarehouseWorkersState getState() {
+		CachedState current = cached;
+		if (current != null && clock.currentTimeMillis() - current.loadedMS < ttlMS) {
+			return current.state;
+		}
+		if (current == null) {
+			// nothing to serve until the first load.
+			refreshLock.lock();
+		} else if (!refreshLock.tryLock()) {
+			// another caller is refreshing.
+			return current.state;
+		}
+		try {
+			current = cached;
+			if (current != null && clock.currentTimeMillis() - current.loadedMS < ttlMS) {
+				return current.state;
+			}
+			long start = clock.currentTimeMillis();
+			WarehouseWorkersState state = dao.getState();
+			long end = clock.currentTimeMillis();
+			long elapsed = end - start;
+			refreshCount++;
+			totalRefreshMS += elapsed;
+			maxRefreshMS = Math.max(maxRefreshMS, elapsed);
+			if (elapsed > ttlMS) {
+				log.warn("Reading the warehouse workers state took " + elapsed + " ms");
+			}
+			if (statisticsLogPeriodMS > 0 && end - lastLoggedMS >= statisticsLogPeriodMS) {
+				lastLoggedMS = end;
+				log.info("Warehouse workers state refreshes: " + refreshCount + ", average ms: "
+						+ (((double) totalRefreshMS) / refreshCount) + ", max ms: " + maxRefreshMS);
+			}
+			cached = new CachedState(state, start);
+			return state;
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	@Override
+	public void setState(WarehouseWorkersState state) {
+		dao.setState(state);
+		cached = new CachedState(state, clock.currentTimeMillis());
+	}
+
+	@Override
+	public void truncateAll() {
+		dao.truncateAll();
+		cached = null;
+	}
+
+	/**
+	 * @return The number of times the state was read from the database.
+	 */
+	public long getRefreshCount() {
+		refreshLock.lock();
+		try {
+			return refreshCount;
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	/**
+	 * @return The average time it took to read the state from the database.
+	 */
+	public double getAverageRefreshMS() {
+		refreshLock.lock();
+		try {
+			return refreshCount == 0 ? 0 : ((double) totalRefreshMS) / refreshCount;
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	/**
+	 * @return The longest time it took to read the state from the database.
+	 */
+	public long getMaxRefreshMS() {
+		refreshLock.lock();
+		try {
+			return maxRefreshMS;
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	private static class CachedState {
+
+		final WarehouseWorkersState state;
+		final long loadedMS;
+
+		CachedState(WarehouseWorkersState state, long loadedMS) {
+			this.state = state;
+			this.loadedMS = loadedMS;
+		}
+	}
+}
@@ -26,6 +26,8 @@ import org.sagebionetworks.warehouse.workers.db.snapshot.TeamMemberSnapshotDao;
 import org.sagebionetworks.warehouse.workers.db.snapshot.TeamMemberSnapshotDaoImpl;
 import org.sagebionetworks.warehouse.workers.db.snapshot.TeamSnapshotDao;
 import org.sagebionetworks.warehouse.workers.db.snapshot.TeamSnapshotDaoImpl;
+import org.sagebionetworks.warehouse.workers.db.snapshot.UserActivityBitmapDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.UserActivityBitmapDaoImpl;
 import org.sagebionetworks.warehouse.workers.db.snapshot.UserActivityPerClientPerDayDao;
 import org.sagebionetworks.warehouse.workers.db.snapshot.UserActivityPerClientPerDayDaoImpl;
 import org.sagebionetworks.warehouse.workers.db.snapshot.UserGroupDao;
@@ -64,6 +66,8 @@ public class DatabaseModule extends AbstractModule {
 		bind(TableCreator.class).to(TableCreatorImpl.class);
 		bind(FileMetadataDao.class).to(FileMetadataDaoImpl.class);
 		bind(FolderMetadataDao.class).to(FolderMetadataDaoImpl.class);
+		bind(FileSinkStateDao.class).to(FileSinkStateDaoImpl.class);
+		bind(BucketScanStateDao.class).to(BucketScanStateDaoImpl.class);
 		bind(AccessRecordDao.class).to(AccessRecordDaoImpl.class);
 		bind(ProcessedAccessRecordDao.class).to(ProcessedAccessRecordDaoImpl.class);
 		bind(NodeSnapshotDao.class).to(NodeSnapshotDaoImpl.class);
@@ -71,7 +75,7 @@ public class DatabaseModule extends AbstractModule {
 		bind(TeamMemberSnapshotDao.class).to(TeamMemberSnapshotDaoImpl.class);
 		bind(UserProfileSnapshotDao.class).to(UserProfileSnapshotDaoImpl.class);
 		bind(AclSnapshotDao.class).to(AclSnapshotDaoImpl.class);
-		bind(WarehouseWorkersStateDao.class).to(WarehouseWorkersStateDaoImpl.class);
+		bind(WarehouseWorkersStateDao.class).to(CachedWarehouseWorkersStateDao.class);
 		bind(UserGroupDao.class).to(UserGroupDaoImpl.class);
 		bind(CertifiedQuizRecordDao.class).to(CertifiedQuizRecordDaoImpl.class);
 		bind(CertifiedQuizQuestionRecordDao.class).to(CertifiedQuizQuestionRecordDaoImpl.class);
@@ -80,6 +84,7 @@ public class DatabaseModule extends AbstractModule {
 		bind(BulkFileDownloadRecordDao.class).to(BulkFileDownloadRecordDaoImpl.class);
 		bind(UserActivityPerClientPerDayDao.class).to(UserActivityPerClientPerDayDaoImpl.class);
 		bind(UserActivityPerMonthDao.class).to(UserActivityPerMonthDaoImpl.class);
+		bind(UserActivityBitmapDao.class).to(UserActivityBitmapDaoImpl.class);
 	}
 	
 	/**
@@ -169,6 +174,7 @@ public class DatabaseModule extends AbstractModule {
 		tableConfigList.add(BulkFileDownloadRecordDaoImpl.CONFIG);
 		tableConfigList.add(UserActivityPerClientPerDayDaoImpl.CONFIG);
 		tableConfigList.add(UserActivityPerMonthDaoImpl.CONFIG);
+		tableConfigList.add(UserActivityBitmapDaoImpl.CONFIG);
 		return tableConfigList;
 	}
 }
@@ -1,7 +1,10 @@
 package org.sagebionetworks.warehouse.workers.db;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -23,17 +26,24 @@ import com.google.inject.Inject;
 public class FileManagerImpl implements FileManager{
 	
 	private static Logger log = LogManager.getLogger(FileManagerImpl.class);
+	/**
+	 * The maximum number of files looked up in the database at a time.
+	 */
+	public static final int BATCH_SIZE = 1000;
 	private FolderMetadataDao folderMetadataDao;
 	private FileMetadataDao fileMetadataDao;
 	private BucketTopicPublisher bucketToTopicManager;
+	private SubmittedFileFilter submittedFileFilter;
 	
 	@Inject
 	public FileManagerImpl(FolderMetadataDao folderMetadataDao,
-			FileMetadataDao fileMetadataDao, BucketTopicPublisher bucketToTopicManager) {
+			FileMetadataDao fileMetadataDao, BucketTopicPublisher bucketToTopicManager,
+			SubmittedFileFilter submittedFileFilter) {
 		super();
 		this.folderMetadataDao = folderMetadataDao;
 		this.fileMetadataDao = fileMetadataDao;
 		this.bucketToTopicManager = bucketToTopicManager;
+		this.submittedFileFilter = submittedFileFilter;
 	}
 
 	@Override
@@ -41,6 +51,9 @@ public class FileManagerImpl implements FileManager{
 			ProgressCallback<Void> progressCallback) {
 		// Keep track of the last rolling path added.
 		String lastRollingPath = null;
+		// Non-rolling files are looked up in batches from the same bucket.
+		String batchBucket = null;
+		List<S3ObjectSummary> batch = new ArrayList<S3ObjectSummary>(BATCH_SIZE);
 		// stream through the files
 		while(objectStream.hasNext()){
 			// make progress for each files.
@@ -62,28 +75,63 @@ public class FileManagerImpl implements FileManager{
 					lastRollingPath = keyData.getPath();
 				}else{
 					// This is not a rolling file.
-					FileState state = fileMetadataDao.getFileState(summary.getBucketName(), summary.getKey());
-					if(FileState.State.UNKNOWN.equals(state.getState())){
-						// This is the fist time this file has been found.
-						submitFileToBeProcessed(summary);
+					if(submittedFileFilter.isSubmitted(summary.getBucketName(), summary.getKey())){
+						// No need to ask the database about files that are already submitted.
+						continue;
+					}
+					if(batchBucket != null && !batchBucket.equals(summary.getBucketName())){
+						submitNewFiles(batchBucket, batch);
+					}
+					batchBucket = summary.getBucketName();
+					batch.add(summary);
+					if(batch.size() >= BATCH_SIZE){
+						submitNewFiles(batchBucket, batch);
 					}
 				}
 			} catch (IllegalArgumentException e) {
 				log.error(e.toString());
 			}
 		}
+		submitNewFiles(batchBucket, batch);
 	}
-	
+
 	/**
-	 * Submit a file to be processed.
+	 * Submit each file of the batch that has not been seen before to be
+	 * processed, then clear the batch.
 	 * 
-	 * @param toSubmit
+	 * @param bucket The bucket of all files in the batch.
+	 * @param batch
 	 */
-	private void submitFileToBeProcessed(S3ObjectSummary toSubmit){
-		// First push to the topic
-		bucketToTopicManager.publishS3ObjectToTopic(toSubmit.getBucketName(), toSubmit.getKey());
-		// Set the state of the file.
-		fileMetadataDao.setFileState(toSubmit.getBucketName(), toSubmit.getKey(), State.SUBMITTED);
+	private void submitNewFiles(String bucket, List<S3ObjectSummary> batch){
+		if(batch.isEmpty()){
+			return;
+		}
+		List<String> keys = new ArrayList<String>(batch.size());
+		for(S3ObjectSummary summary: batch){
+			keys.add(summary.getKey());
+		}
+		batch.clear();
+		Map<String, FileState> states = fileMetadataDao.getFileStates(bucket, keys);
+		List<String> submitted = new ArrayList<String>(keys.size());
+		try {
+			for(String key: keys){
+				FileState state = states.get(key);
+				if(state != null && FileState.State.UNKNOWN.equals(state.getState())){
+					// This is the fist time this file has been found.
+					bucketToTopicManager.publishS3ObjectToTopic(bucket, key);
+					submitted.add(key);
+				}else if(state != null){
+					// This file was submitted by an earlier scan.
+					submittedFileFilter.add(bucket, key);
+				}
+			}
+		} finally {
+			// Set the state of each file that was pushed to the topic.
+			fileMetadataDao.setFileStates(bucket, submitted, State.SUBMITTED);
+			for(String key: submitted){
+				submittedFileFilter.add(bucket, key);
+			}
+		}
 	}
 
 	/**
@@ -1,10 +1,25 @@
 package org.sagebionetworks.warehouse.workers.db;
 
+import java.util.List;
+import java.util.Map;
+
 import org.sagebionetworks.warehouse.workers.model.FileState;
 import org.sagebionetworks.warehouse.workers.model.FileState.State;
 
 public interface FileMetadataDao {
 
+	/**
+	 * Handles the files streamed from the database.
+	 */
+	public interface FileKeyHandler {
+
+		/**
+		 * @param bucket
+		 * @param key
+		 */
+		public void handle(String bucket, String key);
+	}
+
 	/**
 	 * Get the state of a file tracked in the database.
 	 * 
@@ -15,7 +30,19 @@ public interface FileMetadataDao {
 	public FileState getFileState(String bucket, String key);
 
 	/**
-	 * Truncate all of the data.
+	 * Get the state of each of the given files in a bucket with a single
+	 * insert and a single query. Files that are not tracked yet will be added
+	 * with a state of UNKNOWN.
+	 * 
+	 * @param bucket
+	 * @param keys
+	 * @return The state of each file mapped by its key.
+	 */
+	public Map<String, FileState> getFileStates(String bucket, List<String> keys);
+
+	/**
+	 * Truncate all of the data, and forget the files remembered by the
+	 * SubmittedFileFilter.
 	 */
 	public void truncateAll();
 
@@ -39,6 +66,15 @@ public interface FileMetadataDao {
 	 * @param state
 	 */
 	public void setFileState(String bucket, String key, State state);
+
+	/**
+	 * Set the state of each of the given files in a bucket with a single
+	 * update. Note: This will clear any error message and details.
+	 * @param bucket
+	 * @param keys
+	 * @param state
+	 */
+	public void setFileStates(String bucket, List<String> keys, State state);
 	
 	/**
 	 * Does the given file exist?
@@ -48,4 +84,14 @@ public interface FileMetadataDao {
 	 */
 	public boolean doesFileExist(String bucket, String key);
 
+	/**
+	 * Stream the bucket and key of each file that has been submitted for
+	 * processing, that is each file that is not in the UNKNOWN state. The
+	 * results are streamed from the database rather than loaded into memory.
+	 * 
+	 * @param limit The maximum number of files to stream.
+	 * @param handler
+	 */
+	public void streamSubmittedFiles(int limit, FileKeyHandler handler);
+
 }
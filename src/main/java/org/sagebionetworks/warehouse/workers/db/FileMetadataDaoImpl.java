@@ -1,19 +1,27 @@
 package org.sagebionetworks.warehouse.workers.db;
 
 import java.io.UnsupportedEncodingException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.sagebionetworks.warehouse.workers.model.FileState;
 import org.sagebionetworks.warehouse.workers.model.FileState.State;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 
 import static org.sagebionetworks.warehouse.workers.db.Sql.*;
 import static org.sagebionetworks.warehouse.workers.model.FileState.State.*;
 
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import com.google.inject.Singleton;
 
 @Singleton
@@ -29,6 +37,12 @@ public class FileMetadataDaoImpl implements FileMetadataDao {
 			+ COL_FILE_STATE_BUCKET + " = ? AND " + COL_FILE_STATE_KEY
 			+ " = ?";
 
+	private static final String SQL_UPDATE_STATES = "UPDATE " + TABLE_FILE_STATE + " SET "
+			+ COL_FILE_STATE_STATE + " = ? , " + COL_FILE_STATE_ERROR
+			+ " = NULL, " + COL_FILE_STATE_ERROR_DETAILS + " = NULL WHERE "
+			+ COL_FILE_STATE_BUCKET + " = ? AND " + COL_FILE_STATE_KEY
+			+ " IN (%1$s)";
+
 	private static final String TRUNCATE = "TRUNCATE TABLE " + TABLE_FILE_STATE;
 
 	private static final String FILE_STATE_DDL_SQL = "FileState.ddl.sql";
@@ -36,7 +50,16 @@ public class FileMetadataDaoImpl implements FileMetadataDao {
 	private static final String SQL_SELECT_BY_PRIMARY = "SELECT * FROM "
 			+ TABLE_FILE_STATE + " WHERE " + COL_FILE_STATE_BUCKET
 			+ " = ? AND " + COL_FILE_STATE_KEY + " = ?";
+
+	private static final String SQL_SELECT_BY_KEYS = "SELECT * FROM "
+			+ TABLE_FILE_STATE + " WHERE " + COL_FILE_STATE_BUCKET
+			+ " = ? AND " + COL_FILE_STATE_KEY + " IN (%1$s)";
 	
+	private static final String SQL_SELECT_SUBMITTED = "SELECT "
+			+ COL_FILE_STATE_BUCKET + ", " + COL_FILE_STATE_KEY + " FROM "
+			+ TABLE_FILE_STATE + " WHERE " + COL_FILE_STATE_STATE
+			+ " <> ? LIMIT ?";
+
 	private static final String INSERT_IGNORE_FILE_STATE = "INSERT IGNORE INTO "
 			+ TABLE_FILE_STATE
 			+ " ("
@@ -47,6 +70,16 @@ public class FileMetadataDaoImpl implements FileMetadataDao {
 			+ COL_FILE_STATE_STATE
 			+ ") VALUES (?,?,?)";
 
+	private static final String INSERT_IGNORE_FILE_STATES = "INSERT IGNORE INTO "
+			+ TABLE_FILE_STATE
+			+ " ("
+			+ COL_FILE_STATE_BUCKET
+			+ ","
+			+ COL_FILE_STATE_KEY
+			+ ","
+			+ COL_FILE_STATE_STATE
+			+ ") VALUES %1$s";
+
 	JdbcTemplate template;
 	
 	/*
@@ -66,10 +99,18 @@ public class FileMetadataDaoImpl implements FileMetadataDao {
 		}
 	};
 
+	/*
+	 * The filter is loaded from this DAO, so it is only looked up once it is
+	 * needed.
+	 */
+	private Provider<SubmittedFileFilter> submittedFileFilterProvider;
+
 	@Inject
-	FileMetadataDaoImpl(JdbcTemplate template, TableCreator creator) throws SQLException {
+	FileMetadataDaoImpl(JdbcTemplate template, TableCreator creator,
+			Provider<SubmittedFileFilter> submittedFileFilterProvider) throws SQLException {
 		super();
 		this.template = template;
+		this.submittedFileFilterProvider = submittedFileFilterProvider;
 		// Create the table
 		creator.createTable(FILE_STATE_DDL_SQL);
 	}
@@ -89,6 +130,77 @@ public class FileMetadataDaoImpl implements FileMetadataDao {
 				bucket, key);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.sagebionetworks.warehouse.workers.db.FileMetadataDao#getFileStates(java.lang.String, java.util.List)
+	 */
+	@Override
+	public Map<String, FileState> getFileStates(String bucket, List<String> keys) {
+		if(bucket == null){
+			throw new IllegalArgumentException("Bucket cannot be null");
+		}
+		if(keys == null){
+			throw new IllegalArgumentException("Keys cannot be null");
+		}
+		Map<String, FileState> states = new HashMap<String, FileState>(keys.size());
+		if(keys.isEmpty()){
+			return states;
+		}
+		// first ensure a row exists for each file
+		Object[] insertArgs = new Object[keys.size()*3];
+		StringBuilder values = new StringBuilder();
+		int index = 0;
+		for(String key: keys){
+			if(index > 0){
+				values.append(",");
+			}
+			values.append("(?,?,?)");
+			insertArgs[index++] = bucket;
+			insertArgs[index++] = key;
+			insertArgs[index++] = UNKNOWN.name();
+		}
+		template.update(String.format(INSERT_IGNORE_FILE_STATES, values.toString()), insertArgs);
+		// Return the objects from the DB.
+		List<FileState> results = template.query(String.format(SQL_SELECT_BY_KEYS, createPlaceholders(keys.size())),
+				this.rowMapper, createBucketAndKeysArgs(bucket, keys));
+		for(FileState state: results){
+			states.put(state.getKey(), state);
+		}
+		return states;
+	}
+
+	/**
+	 * Create the arguments for a query on a bucket and a list of keys.
+	 * @param bucket
+	 * @param keys
+	 * @return
+	 */
+	private static Object[] createBucketAndKeysArgs(String bucket, List<String> keys){
+		Object[] args = new Object[keys.size()+1];
+		args[0] = bucket;
+		int index = 1;
+		for(String key: keys){
+			args[index++] = key;
+		}
+		return args;
+	}
+
+	/**
+	 * Create a comma separated list of count '?'.
+	 * @param count
+	 * @return
+	 */
+	private static String createPlaceholders(int count){
+		StringBuilder builder = new StringBuilder();
+		for(int i=0; i<count; i++){
+			if(i > 0){
+				builder.append(",");
+			}
+			builder.append("?");
+		}
+		return builder.toString();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -97,6 +209,8 @@ public class FileMetadataDaoImpl implements FileMetadataDao {
 	 */
 	public void truncateAll() {
 		template.update(TRUNCATE);
+		// none of the files it remembers are submitted anymore.
+		submittedFileFilterProvider.get().clear();
 	}
 
 	/*
@@ -115,6 +229,30 @@ public class FileMetadataDaoImpl implements FileMetadataDao {
 		setFileState(bucket, key, state, null);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.sagebionetworks.warehouse.workers.db.FileMetadataDao#setFileStates(java.lang.String, java.util.List, org.sagebionetworks.warehouse.workers.model.FileState.State)
+	 */
+	@Override
+	public void setFileStates(String bucket, List<String> keys, State state) {
+		if(bucket == null){
+			throw new IllegalArgumentException("Bucket cannot be null");
+		}
+		if(keys == null){
+			throw new IllegalArgumentException("Keys cannot be null");
+		}
+		if(state == null){
+			throw new IllegalArgumentException("State cannot be null");
+		}
+		if(keys.isEmpty()){
+			return;
+		}
+		Object[] args = new Object[keys.size()+2];
+		args[0] = state.name();
+		System.arraycopy(createBucketAndKeysArgs(bucket, keys), 0, args, 1, keys.size()+1);
+		template.update(String.format(SQL_UPDATE_STATES, createPlaceholders(keys.size())), args);
+	}
+
 	/**
 	 * Update the state of a file.
 	 * @param bucket Bucket of the file.
@@ -161,4 +299,34 @@ public class FileMetadataDaoImpl implements FileMetadataDao {
 		return count > 0;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.sagebionetworks.warehouse.workers.db.FileMetadataDao#streamSubmittedFiles(int, org.sagebionetworks.warehouse.workers.db.FileMetadataDao.FileKeyHandler)
+	 */
+	@Override
+	public void streamSubmittedFiles(final int limit, final FileKeyHandler handler) {
+		if(handler == null){
+			throw new IllegalArgumentException("Handler cannot be null");
+		}
+		template.query(new PreparedStatementCreator() {
+
+			@Override
+			public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+				PreparedStatement ps = con.prepareStatement(SQL_SELECT_SUBMITTED,
+						ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				// The MySQL driver streams the rows one at a time for this fetch size.
+				ps.setFetchSize(Integer.MIN_VALUE);
+				ps.setString(1, UNKNOWN.name());
+				ps.setInt(2, limit);
+				return ps;
+			}
+		}, new RowCallbackHandler() {
+
+			@Override
+			public void processRow(ResultSet rs) throws SQLException {
+				handler.handle(rs.getString(COL_FILE_STATE_BUCKET), rs.getString(COL_FILE_STATE_KEY));
+			}
+		});
+	}
+
 }
@@ -0,0 +1,42 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import java.util.Set;
+
+/**
+ * Tracks which sinks have completed processing a file. A file that is fanned
+ * out to more than one table can then be retried for the failed sinks only.
+ */
+public interface FileSinkStateDao {
+
+	/**
+	 * Get the names of all sinks that have completed processing the given file.
+	 * 
+	 * @param bucket
+	 * @param key
+	 * @return
+	 */
+	public Set<String> getCompletedSinks(String bucket, String key);
+
+	/**
+	 * Mark the given sink as completed for the given file.
+	 * 
+	 * @param bucket
+	 * @param key
+	 * @param sink
+	 */
+	public void setSinkCompleted(String bucket, String key, String sink);
+
+	/**
+	 * Delete the completed sinks of the given file, once every sink has
+	 * completed it.
+	 * 
+	 * @param bucket
+	 * @param key
+	 */
+	public void deleteSinks(String bucket, String key);
+
+	/**
+	 * Truncate all of the data.
+	 */
+	public void truncateAll();
+}
@@ -0,0 +1,97 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import static org.sagebionetworks.warehouse.workers.db.Sql.COL_FILE_SINK_STATE_BUCKET;
+import static org.sagebionetworks.warehouse.workers.db.Sql.COL_FILE_SINK_STATE_KEY;
+import static org.sagebionetworks.warehouse.workers.db.Sql.COL_FILE_SINK_STATE_SINK;
+import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_FILE_SINK_STATE;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+@Singleton
+public class FileSinkStateDaoImpl implements FileSinkStateDao {
+
+	private static final String FILE_SINK_STATE_DDL_SQL = "FileSinkState.ddl.sql";
+
+	private static final String TRUNCATE = "TRUNCATE TABLE " + TABLE_FILE_SINK_STATE;
+
+	private static final String SQL_SELECT_SINKS = "SELECT "
+			+ COL_FILE_SINK_STATE_SINK + " FROM " + TABLE_FILE_SINK_STATE
+			+ " WHERE " + COL_FILE_SINK_STATE_BUCKET + " = ? AND "
+			+ COL_FILE_SINK_STATE_KEY + " = ?";
+
+	private static final String SQL_DELETE_SINKS = "DELETE FROM "
+			+ TABLE_FILE_SINK_STATE + " WHERE " + COL_FILE_SINK_STATE_BUCKET
+			+ " = ? AND " + COL_FILE_SINK_STATE_KEY + " = ?";
+
+	private static final String INSERT_IGNORE = "INSERT IGNORE INTO "
+			+ TABLE_FILE_SINK_STATE
+			+ " ("
+			+ COL_FILE_SINK_STATE_BUCKET
+			+ ","
+			+ COL_FILE_SINK_STATE_KEY
+			+ ","
+			+ COL_FILE_SINK_STATE_SINK
+			+ ") VALUES (?,?,?)";
+
+	JdbcTemplate template;
+
+	@Inject
+	FileSinkStateDaoImpl(JdbcTemplate template, TableCreator creator) {
+		super();
+		this.template = template;
+		// Create the table
+		creator.createTable(FILE_SINK_STATE_DDL_SQL);
+	}
+
+	@Override
+	public Set<String> getCompletedSinks(String bucket, String key) {
+		return new HashSet<String>(template.query(SQL_SELECT_SINKS,
+				new RowMapper<String>() {
+
+					@Override
+					public String mapRow(ResultSet rs, int rowNum)
+							throws SQLException {
+						return rs.getString(COL_FILE_SINK_STATE_SINK);
+					}
+				}, bucket, key));
+	}
+
+	@Override
+	public void setSinkCompleted(String bucket, String key, String sink) {
+		if(bucket == null){
+			throw new IllegalArgumentException("Bucket cannot be null");
+		}
+		if(key == null){
+			throw new IllegalArgumentException("Key cannot be null");
+		}
+		if(sink == null){
+			throw new IllegalArgumentException("Sink cannot be null");
+		}
+		template.update(INSERT_IGNORE, bucket, key, sink);
+	}
+
+	@Override
+	public void deleteSinks(String bucket, String key) {
+		if(bucket == null){
+			throw new IllegalArgumentException("Bucket cannot be null");
+		}
+		if(key == null){
+			throw new IllegalArgumentException("Key cannot be null");
+		}
+		template.update(SQL_DELETE_SINKS, bucket, key);
+	}
+
+	@Override
+	public void truncateAll() {
+		template.update(TRUNCATE);
+	}
+}
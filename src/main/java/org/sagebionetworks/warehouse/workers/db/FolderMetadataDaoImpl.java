@@ -8,6 +8,7 @@ import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_FOLDER_STATE;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Iterator;
 
 import org.sagebionetworks.warehouse.workers.model.FolderState;
@@ -23,7 +24,8 @@ public class FolderMetadataDaoImpl implements FolderMetadataDao {
 
 	private static final String SQL_LIST_FOLDER_FOR_BUCKET_AND_STATE = "SELECT * FROM "
 			+ TABLE_FOLDER_STATE + " WHERE " + COL_FOLDER_STATE_BUCKET
-			+ " = ? AND " + COL_FOLDER_STATE_STATE + " = ?";
+			+ " = ? AND " + COL_FOLDER_STATE_STATE + " = ?"
+			+ KeysetPagingQueryIterator.KEYSET_CONDITION;
 
 	private static final String SQL_INSERT_DUPLICATE_UPDATE = "INSERT INTO "
 			+ TABLE_FOLDER_STATE + " (" + COL_FOLDER_STATE_BUCKET + ", "
@@ -39,6 +41,17 @@ public class FolderMetadataDaoImpl implements FolderMetadataDao {
 	private static final String FOLDER_STATE_DDL_SQL = "FolderState.ddl.sql";
 	JdbcTemplate template;
 
+	/*
+	 * Folders of a bucket are paged by path.
+	 */
+	KeysetPagingQueryIterator.KeyProvider<FolderState> pathProvider = new KeysetPagingQueryIterator.KeyProvider<FolderState>() {
+
+		@Override
+		public Object[] getKeys(FolderState row) {
+			return new Object[] { row.getPath() };
+		}
+	};
+
 	RowMapper<FolderState> rowMapper = new RowMapper<FolderState>() {
 
 		public FolderState mapRow(ResultSet rs, int arg1) throws SQLException {
@@ -81,7 +94,8 @@ public class FolderMetadataDaoImpl implements FolderMetadataDao {
 	@Override
 	public Iterator<FolderState> listFolders(String bucketName, State state) {
 		// return the query with an iterator.
-		return new PagingQueryIterator<FolderState>(MAX_PAGE_SIZE, template, SQL_LIST_FOLDER_FOR_BUCKET_AND_STATE, rowMapper, bucketName, state.name());
+		return new KeysetPagingQueryIterator<FolderState>(MAX_PAGE_SIZE, template, SQL_LIST_FOLDER_FOR_BUCKET_AND_STATE,
+				Arrays.asList(COL_FOLDER_STATE_PATH), pathProvider, rowMapper, bucketName, state.name());
 	}
 
 }
@@ -0,0 +1,17 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+/**
+ * How batches of records are written to a table.
+ */
+public enum InsertMode {
+	/**
+	 * Batched INSERT IGNORE statements.
+	 */
+	BATCH_INSERT,
+	/**
+	 * LOAD DATA LOCAL INFILE ... IGNORE, streamed from memory. See
+	 * {@link BulkLoader#checkEnabled(org.springframework.jdbc.core.JdbcTemplate)}
+	 * for what the driver and server must allow.
+	 */
+	BULK_LOAD
+}
@@ -0,0 +1,206 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * A wrapper for a non-paginated query that pages over the results using keyset
+ * (seek) pagination. Each page starts after the key of the last row of the
+ * previous page rather than at an offset, so every page costs the same no
+ * matter how deep the iteration goes, and rows are neither skipped nor
+ * repeated when rows before the current position change between pages.
+ *
+ * The key columns must uniquely identify a row of the results. The keyset
+ * condition is written as (k1 > ?) OR (k1 = ? AND k2 > ?) ... rather than a
+ * row constructor so MySQL can use an index range scan.
+ *
+ * @param <T>
+ *            The type of the query results.
+ */
+public class KeysetPagingQueryIterator<T> implements Iterator<T> {
+
+	/**
+	 * Marks the place in the query where the keyset condition is added. It
+	 * must follow the WHERE clause of the query and come before any GROUP BY.
+	 */
+	public static final String KEYSET_CONDITION = "%1$s";
+	public static final String ORDER_BY = " ORDER BY ";
+	public static final String LIMIT = " LIMIT ?";
+
+	/**
+	 * Provides the key column values of a row in the order of the key columns.
+	 */
+	public interface KeyProvider<T> {
+
+		/**
+		 * @param row
+		 * @return the value of each key column of the row
+		 */
+		public Object[] getKeys(T row);
+	}
+
+	final Long pageSize;
+	final JdbcTemplate template;
+	final RowMapper<T> rowMapper;
+	final KeyProvider<T> keyProvider;
+	final String firstPageQuery;
+	final String nextPageQuery;
+	final Object[] args;
+	final int numberOfKeys;
+	boolean isLastPage;
+	T lastRow;
+	Iterator<T> currentPageIterator;
+
+	/**
+	 * Create a new iterator for each use.
+	 *
+	 * @param pageSize
+	 *            Sets the number of rows fetched for each page of the query.
+	 * @param template
+	 *            Template used to execute the query.
+	 * @param query
+	 *            The SQL query to page over. It must have a WHERE clause
+	 *            followed by {@link #KEYSET_CONDITION}, so any other '%'
+	 *            must be written as '%%'. Note: The passed query must not
+	 *            include order by, limit or offset.
+	 * @param keyColumns
+	 *            The columns that uniquely identify each row, in the order of
+	 *            the results.
+	 * @param keyProvider
+	 *            Provides the value of each key column of a row.
+	 * @param rowMapper
+	 * @param args
+	 *            The arguments passed to the query. Note: The passed arguments
+	 *            must not include the keys or the limit.
+	 */
+	public KeysetPagingQueryIterator(Long pageSize, JdbcTemplate template, String query,
+			List<String> keyColumns, KeyProvider<T> keyProvider, RowMapper<T> rowMapper, Object... args) {
+		super();
+		if (query == null || !query.contains(KEYSET_CONDITION)) {
+			throw new IllegalArgumentException("The query must contain the keyset condition: " + KEYSET_CONDITION);
+		}
+		if (keyColumns == null || keyColumns.isEmpty()) {
+			throw new IllegalArgumentException("At least one key column is required");
+		}
+		this.pageSize = pageSize;
+		this.template = template;
+		this.rowMapper = rowMapper;
+		this.keyProvider = keyProvider;
+		this.args = args;
+		this.numberOfKeys = keyColumns.size();
+		String orderByLimit = createOrderBy(keyColumns) + LIMIT;
+		this.firstPageQuery = String.format(query, "") + orderByLimit;
+		this.nextPageQuery = String.format(query, createKeysetCondition(keyColumns)) + orderByLimit;
+		// query for the first page
+		queryNextPage();
+	}
+
+	@Override
+	public boolean hasNext() {
+		// Is next result on the current page.
+		if (currentPageIterator.hasNext()) {
+			return true;
+		}
+		// all data from the current page has been read.
+		// If this is the last page then done.
+		if(isLastPage){
+			return false;
+		}
+		// Need to fetch the page after the last row from the DB.
+		queryNextPage();
+		return hasNext();
+	}
+
+	/**
+	 * Query for the page that follows the last row.
+	 */
+	private void queryNextPage() {
+		List<T> page;
+		if (lastRow == null) {
+			page = template.query(firstPageQuery, rowMapper, ArrayUtils.add(args, pageSize));
+		} else {
+			page = template.query(nextPageQuery, rowMapper,
+					ArrayUtils.add(ArrayUtils.addAll(args, createKeysetArgs(keyProvider.getKeys(lastRow))), pageSize));
+		}
+		// This is the last page if the size is less than the page size.
+		isLastPage = page.size() < pageSize;
+		if (!page.isEmpty()) {
+			lastRow = page.get(page.size() - 1);
+		}
+		currentPageIterator = page.iterator();
+	}
+
+	@Override
+	public T next() {
+		return currentPageIterator.next();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Not supported");
+	}
+
+	/**
+	 * Create the ORDER BY clause for the key columns.
+	 *
+	 * @param keyColumns
+	 * @return
+	 */
+	static String createOrderBy(List<String> keyColumns) {
+		StringBuilder builder = new StringBuilder(ORDER_BY);
+		for (int i = 0; i < keyColumns.size(); i++) {
+			if (i > 0) {
+				builder.append(",");
+			}
+			builder.append(keyColumns.get(i));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Create the condition that selects the rows after a key. For (k1,k2):
+	 * " AND ((k1 > ?) OR (k1 = ? AND k2 > ?))"
+	 *
+	 * @param keyColumns
+	 * @return
+	 */
+	static String createKeysetCondition(List<String> keyColumns) {
+		StringBuilder builder = new StringBuilder(" AND (");
+		for (int i = 0; i < keyColumns.size(); i++) {
+			if (i > 0) {
+				builder.append(" OR ");
+			}
+			builder.append("(");
+			for (int j = 0; j < i; j++) {
+				builder.append(keyColumns.get(j)).append(" = ? AND ");
+			}
+			builder.append(keyColumns.get(i)).append(" > ?)");
+		}
+		builder.append(")");
+		return builder.toString();
+	}
+
+	/**
+	 * Create the arguments of the keyset condition for the given keys.
+	 *
+	 * @param keys
+	 * @return
+	 */
+	Object[] createKeysetArgs(Object[] keys) {
+		if (keys.length != numberOfKeys) {
+			throw new IllegalArgumentException("Expected " + numberOfKeys + " keys but found " + keys.length);
+		}
+		List<Object> keysetArgs = new ArrayList<Object>();
+		for (int i = 0; i < keys.length; i++) {
+			for (int j = 0; j <= i; j++) {
+				keysetArgs.add(keys[j]);
+			}
+		}
+		return keysetArgs.toArray();
+	}
+}
@@ -15,6 +15,19 @@ public class Sql {
 	public static final String COL_FILE_STATE_ERROR = 			"ERROR_MESSAGE";
 	public static final String COL_FILE_STATE_ERROR_DETAILS = 	"ERROR_DETAILS";
 
+	// FILE_SINK_STATE
+	public static final String TABLE_FILE_SINK_STATE = 			"FILE_SINK_STATE";
+	public static final String COL_FILE_SINK_STATE_BUCKET = 	"S3_BUCKET";
+	public static final String COL_FILE_SINK_STATE_KEY = 		"S3_KEY";
+	public static final String COL_FILE_SINK_STATE_SINK = 		"SINK";
+	public static final String COL_FILE_SINK_STATE_UPDATED_ON = "UPDATED_ON";
+
+	// BUCKET_SCAN_STATE
+	public static final String TABLE_BUCKET_SCAN_STATE = 					"BUCKET_SCAN_STATE";
+	public static final String COL_BUCKET_SCAN_STATE_BUCKET = 				"S3_BUCKET";
+	public static final String COL_BUCKET_SCAN_STATE_CHECKPOINT = 			"CHECKPOINT";
+	public static final String COL_BUCKET_SCAN_STATE_LAST_FULL_SCAN_ON = 	"LAST_FULL_SCAN_ON";
+
 	// FOLDER_STATE
 	public static final String TABLE_FOLDER_STATE = 			"FOLDER_STATE";
 	public static final String COL_FOLDER_STATE_BUCKET = 		"S3_BUCKET";
@@ -164,4 +177,16 @@ public class Sql {
 	public static final String COL_USER_ACTIVITY_PER_MONTH_USER_ID = "USER_ID";
 	public static final String COL_USER_ACTIVITY_PER_MONTH_MONTH = "MONTH";
 	public static final String COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAY_COUNT = "ACTIVE_DAY_COUNT";
+	public static final String COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS = "ACTIVE_DAYS";
+
+	// USER_ACTIVITY_PER_MONTH_BACKFILL
+	public static final String TABLE_USER_ACTIVITY_PER_MONTH_BACKFILL = "USER_ACTIVITY_PER_MONTH_BACKFILL";
+	public static final String COL_USER_ACTIVITY_PER_MONTH_BACKFILL_MONTH = "MONTH";
+	public static final String COL_USER_ACTIVITY_PER_MONTH_BACKFILL_UPDATED_ON = "UPDATED_ON";
+
+	// USER_ACTIVITY_BITMAP
+	public static final String TABLE_USER_ACTIVITY_BITMAP = "USER_ACTIVITY_BITMAP";
+	public static final String COL_USER_ACTIVITY_BITMAP_DATE = "DATE";
+	public static final String COL_USER_ACTIVITY_BITMAP_CLIENT = "CLIENT";
+	public static final String COL_USER_ACTIVITY_BITMAP_USERS = "USERS";
 }
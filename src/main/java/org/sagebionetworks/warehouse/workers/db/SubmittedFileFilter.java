@@ -0,0 +1,191 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import java.util.Arrays;
+
+/**
+ * A memory bounded set of the files that have already been submitted for
+ * processing, so a rescan of a bucket does not need to ask FILE_STATE about
+ * files that were handled long ago.
+ *
+ * Each file is stored as a 64 bit fingerprint of its bucket and key in an
+ * open addressing table. Unlike a Bloom filter, which could report a new file
+ * as submitted often enough to lose files, a false positive requires two files
+ * to share a 64 bit fingerprint, so the chance that a new file is skipped is
+ * about size()/2^64. Once the filter is full new files are no longer added and
+ * the callers fall back to the database for them.
+ *
+ * All methods are thread safe.
+ */
+public class SubmittedFileFilter {
+
+	/**
+	 * The table is never filled beyond this load factor.
+	 */
+	static final double MAX_LOAD_FACTOR = 0.75;
+	private static final long EMPTY = 0L;
+	private static final double TWO_TO_THE_64 = Math.pow(2, 64);
+
+	private final long[] table;
+	private final int mask;
+	private final int capacity;
+	private int size;
+	private long hits;
+	private long misses;
+
+	/**
+	 *
+	 * @param capacity The maximum number of files tracked by this filter.
+	 */
+	public SubmittedFileFilter(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		}
+		int tableSize = Integer.highestOneBit((int) Math.ceil(capacity / MAX_LOAD_FACTOR));
+		if (tableSize < capacity / MAX_LOAD_FACTOR) {
+			tableSize <<= 1;
+		}
+		this.table = new long[tableSize];
+		this.mask = tableSize - 1;
+		this.capacity = capacity;
+		this.size = 0;
+	}
+
+	/**
+	 * Is the given file known to be submitted?
+	 *
+	 * @param bucket
+	 * @param key
+	 * @return false if the file might not have been submitted yet.
+	 */
+	public synchronized boolean isSubmitted(String bucket, String key) {
+		long fingerprint = fingerprint(bucket, key);
+		for (int i = index(fingerprint);; i = (i + 1) & mask) {
+			if (table[i] == fingerprint) {
+				hits++;
+				return true;
+			}
+			if (table[i] == EMPTY) {
+				misses++;
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Add a file that has been submitted.
+	 *
+	 * @param bucket
+	 * @param key
+	 * @return false if the filter is full and the file was not added.
+	 */
+	public synchronized boolean add(String bucket, String key) {
+		long fingerprint = fingerprint(bucket, key);
+		int i = index(fingerprint);
+		for (; table[i] != EMPTY; i = (i + 1) & mask) {
+			if (table[i] == fingerprint) {
+				return true;
+			}
+		}
+		if (size >= capacity) {
+			return false;
+		}
+		table[i] = fingerprint;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Remove all files from the filter.
+	 */
+	public synchronized void clear() {
+		Arrays.fill(table, EMPTY);
+		size = 0;
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * @return The number of files in the filter.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @return The maximum number of files tracked by this filter.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return The number of bytes used by the table of the filter.
+	 */
+	public long getMemoryBytes() {
+		return table.length * 8L;
+	}
+
+	/**
+	 * @return The probability that a file that was never added is reported as
+	 *         submitted at the current size.
+	 */
+	public synchronized double getFalsePositiveRate() {
+		return size / TWO_TO_THE_64;
+	}
+
+	/**
+	 * @return The number of lookups that found a submitted file.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return The number of lookups that had to fall back to the database.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SubmittedFileFilter [size=" + size + ", capacity=" + capacity
+				+ ", memoryBytes=" + getMemoryBytes() + ", falsePositiveRate="
+				+ getFalsePositiveRate() + ", hits=" + hits + ", misses="
+				+ misses + "]";
+	}
+
+	private int index(long fingerprint) {
+		return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+	}
+
+	/**
+	 * 64 bit FNV-1a hash of the bucket and key followed by the MurmurHash3
+	 * finalizer. Zero marks an empty slot so it is never returned.
+	 */
+	static long fingerprint(String bucket, String key) {
+		long hash = 0xcbf29ce484222325L;
+		hash = hashChars(hash, bucket);
+		// separate the bucket from the key
+		hash ^= 0xFFFF;
+		hash *= 0x100000001b3L;
+		hash = hashChars(hash, key);
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash == EMPTY ? 1L : hash;
+	}
+
+	private static long hashChars(long hash, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			hash ^= (c & 0xFF);
+			hash *= 0x100000001b3L;
+			hash ^= (c >>> 8);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+}
@@ -1,5 +1,7 @@
 package org.sagebionetworks.warehouse.workers.db;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 import org.sagebionetworks.warehouse.workers.utils.PartitionUtil.Period;
@@ -48,12 +50,23 @@ public interface TableCreator {
 	 */
 	public void createTableWithoutPartitions(String fileName);
 
+	/**
+	 * Add a column to an existing table unless the table already has it.
+	 * 
+	 * @param tableName
+	 * @param columnName
+	 * @param columnDefinition the type and options of the column, for example "int DEFAULT NULL"
+	 * @return true if the column was added.
+	 */
+	public boolean addColumnIfMissing(String tableName, String columnName, String columnDefinition);
+
 	/**
 	 * 
 	 * @param tableName
 	 * @param partitionName
 	 * @return true is tableName has partition partitionName,
-	 *         false otherwise.
+	 *         false otherwise. The answer may come from a cached catalog of
+	 *         the partitions of the table.
 	 */
 	public boolean doesPartitionExist(String tableName, String partitionName);
 
@@ -68,9 +81,22 @@ public interface TableCreator {
 	public void addPartition(String tableName, String partitionName, long value);
 
 	/**
+	 * Alter table tableName once to add all of the given partitions by range.
+	 * The partitions are added in increasing order of their values, which
+	 * must all be greater than the values of the existing partitions.
 	 * 
 	 * @param tableName
-	 * @return a set of existing partitions for the given table
+	 * @param partitions
+	 *            the value each partition holds values less than, by
+	 *            partition name
+	 */
+	public void addPartitions(String tableName, Map<String, Long> partitions);
+
+	/**
+	 * 
+	 * @param tableName
+	 * @return a set of existing partitions for the given table, read from
+	 *         the database.
 	 */
 	public Set<String> getExistingPartitionsForTable(String tableName);
 
@@ -82,6 +108,14 @@ public interface TableCreator {
 	 */
 	public void dropPartition(String tableName, String partitionName);
 
+	/**
+	 * Alter table tableName once to drop all of the given partitions.
+	 * 
+	 * @param tableName
+	 * @param partitionNames
+	 */
+	public void dropPartitions(String tableName, Collection<String> partitionNames);
+
 	/**
 	 * 
 	 * @param tableName
@@ -2,8 +2,14 @@ package org.sagebionetworks.warehouse.workers.db;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.joda.time.DateTime;
 import org.sagebionetworks.warehouse.workers.config.Configuration;
@@ -15,28 +21,53 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.ParameterizedRowMapper;
 
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 
+/**
+ * Partition checks are answered from an in-memory catalog of the partitions
+ * of each table, so workers do not query INFORMATION_SCHEMA.PARTITIONS for
+ * every message. The catalog of a table is loaded on first use, kept up to
+ * date by addPartition and dropPartition, and reloaded when it is older than
+ * CATALOG_TTL_MS. Since another instance may have added a partition, a
+ * partition that is not in the catalog causes a reload, at most once every
+ * MISS_RELOAD_MS for each table.
+ */
+@Singleton
 public class TableCreatorImpl implements TableCreator {
+	public static final long CATALOG_TTL_MS = 10 * 60 * 1000L;
+	public static final long MISS_RELOAD_MS = 30 * 1000L;
 	private JdbcTemplate template;
 	private DateTime startDate;
 	private DateTime endDate;
 	private String schema;
-	public static final String CHECK_PARTITION = "SELECT COUNT(*) "
-			+ "FROM INFORMATION_SCHEMA.PARTITIONS "
-			+ "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? AND PARTITION_NAME = ?";
+	private final long catalogTtlMS;
+	private final long missReloadMS;
+	private final ConcurrentMap<String, PartitionCatalog> catalogs = new ConcurrentHashMap<String, PartitionCatalog>();
 	public static final String ALL_PARTITIONS = "SELECT PARTITION_NAME "
 			+ "FROM INFORMATION_SCHEMA.PARTITIONS "
 			+ "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?";
 	public static final String ADD_PARTITION = "ALTER TABLE %1$S "
 			+ "ADD PARTITION (PARTITION %2$S VALUES LESS THAN (%3$d))";
+	public static final String ADD_PARTITIONS = "ALTER TABLE %1$S ADD PARTITION (%2$s)";
+	public static final String PARTITION_LESS_THAN = "PARTITION %1$S VALUES LESS THAN (%2$d)";
 	public static final String DROP_PARTITION = "ALTER TABLE %1$S DROP PARTITION %2$S";
+	public static final String CHECK_COLUMN = "SELECT COUNT(*) "
+			+ "FROM INFORMATION_SCHEMA.COLUMNS "
+			+ "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+	public static final String ADD_COLUMN = "ALTER TABLE %1$S ADD COLUMN %2$S %3$S";
 
 	@Inject
 	TableCreatorImpl (JdbcTemplate template, Configuration config) {
+		this(template, config, CATALOG_TTL_MS, MISS_RELOAD_MS);
+	}
+
+	TableCreatorImpl (JdbcTemplate template, Configuration config, long catalogTtlMS, long missReloadMS) {
 		this.template = template;
 		startDate = config.getStartDate();
 		endDate = config.getEndDate();
 		schema = config.getProperty("org.sagebionetworks.warehouse.worker.schema");
+		this.catalogTtlMS = catalogTtlMS;
+		this.missReloadMS = missReloadMS;
 	}
 
 	@Override
@@ -52,6 +83,7 @@ public class TableCreatorImpl implements TableCreator {
 		String partitionString = PartitionUtil.buildPartitions(tableName, fieldName, period, startDate, endDate);
 		query += partitionString;
 		template.update(query);
+		catalogs.remove(tableName);
 	}
 
 	@Override
@@ -62,6 +94,7 @@ public class TableCreatorImpl implements TableCreator {
 		String partitionString = PartitionUtil.buildPartitions(tableName, fieldName, period, startDate, startDate);
 		query += partitionString;
 		template.update(query);
+		catalogs.remove(tableName);
 	}
 
 	@Override
@@ -84,19 +117,101 @@ public class TableCreatorImpl implements TableCreator {
 		template.update(query);
 	}
 
+	@Override
+	public boolean addColumnIfMissing(String tableName, String columnName, String columnDefinition) {
+		if (tableName == null || columnName == null || columnDefinition == null)
+			throw new IllegalArgumentException();
+		if (template.queryForLong(CHECK_COLUMN, schema, tableName, columnName) > 0) {
+			return false;
+		}
+		template.execute(String.format(ADD_COLUMN, tableName, columnName, columnDefinition));
+		return true;
+	}
+
 	@Override
 	public boolean doesPartitionExist(String tableName, String partitionName) {
-		return template.queryForLong(CHECK_PARTITION, schema, tableName, partitionName) == 1;
+		PartitionCatalog catalog = catalogs.get(tableName);
+		long now = System.currentTimeMillis();
+		if (catalog == null || now - catalog.loadedOn >= catalogTtlMS) {
+			catalog = loadCatalog(tableName);
+		}
+		if (catalog.partitions.contains(partitionName)) {
+			return true;
+		}
+		if (now - catalog.loadedOn >= missReloadMS) {
+			// the partition may have been added by another instance.
+			catalog = loadCatalog(tableName);
+		}
+		return catalog.partitions.contains(partitionName);
 	}
 
 	@Override
 	public void addPartition(String tableName, String partitionName, long value) {
 		template.execute(String.format(ADD_PARTITION, tableName, partitionName, value));
+		updateCatalog(tableName, Collections.singleton(partitionName), true);
+	}
+
+	@Override
+	public void addPartitions(String tableName, Map<String, Long> partitions) {
+		if (tableName == null || partitions == null)
+			throw new IllegalArgumentException();
+		if (partitions.isEmpty()) {
+			return;
+		}
+		// range partitions must be listed in increasing order of their values.
+		TreeMap<Long, String> byValue = new TreeMap<Long, String>();
+		for (Map.Entry<String, Long> partition : partitions.entrySet()) {
+			byValue.put(partition.getValue(), partition.getKey());
+		}
+		if (byValue.size() != partitions.size()) {
+			throw new IllegalArgumentException("Partitions must have distinct values: " + partitions);
+		}
+		StringBuilder definitions = new StringBuilder();
+		for (Map.Entry<Long, String> partition : byValue.entrySet()) {
+			if (definitions.length() > 0) {
+				definitions.append(", ");
+			}
+			definitions.append(String.format(PARTITION_LESS_THAN, partition.getValue(), partition.getKey()));
+		}
+		template.execute(String.format(ADD_PARTITIONS, tableName, definitions));
+		updateCatalog(tableName, partitions.keySet(), true);
 	}
 
 	@Override
 	public Set<String> getExistingPartitionsForTable(String tableName) {
-		return new HashSet<String>(template.query(ALL_PARTITIONS,
+		return new HashSet<String>(loadCatalog(tableName).partitions);
+	}
+
+	@Override
+	public void dropPartition(String tableName, String partitionName) {
+		template.execute(String.format(DROP_PARTITION, tableName, partitionName));
+		updateCatalog(tableName, Collections.singleton(partitionName), false);
+	}
+
+	@Override
+	public void dropPartitions(String tableName, Collection<String> partitionNames) {
+		if (tableName == null || partitionNames == null)
+			throw new IllegalArgumentException();
+		if (partitionNames.isEmpty()) {
+			return;
+		}
+		StringBuilder names = new StringBuilder();
+		for (String partitionName : partitionNames) {
+			if (names.length() > 0) {
+				names.append(", ");
+			}
+			names.append(partitionName);
+		}
+		template.execute(String.format(DROP_PARTITION, tableName, names));
+		updateCatalog(tableName, partitionNames, false);
+	}
+
+	/**
+	 * Load the partitions of a table from INFORMATION_SCHEMA into the catalog.
+	 */
+	private PartitionCatalog loadCatalog(String tableName) {
+		long loadedOn = System.currentTimeMillis();
+		Set<String> partitions = new HashSet<String>(template.query(ALL_PARTITIONS,
 				new RowMapper<String>() {
 
 					@Override
@@ -105,11 +220,28 @@ public class TableCreatorImpl implements TableCreator {
 						return rs.getString(1);
 					}
 				}, schema, tableName));
+		// a table without partitions has a single row with a null name.
+		partitions.remove(null);
+		PartitionCatalog catalog = new PartitionCatalog(partitions, loadedOn);
+		catalogs.put(tableName, catalog);
+		return catalog;
 	}
 
-	@Override
-	public void dropPartition(String tableName, String partitionName) {
-		template.execute(String.format(DROP_PARTITION, tableName, partitionName));
+	/**
+	 * Apply partitions this instance added or dropped to a loaded catalog.
+	 */
+	private synchronized void updateCatalog(String tableName, Collection<String> partitionNames, boolean added) {
+		PartitionCatalog catalog = catalogs.get(tableName);
+		if (catalog == null) {
+			return;
+		}
+		Set<String> partitions = new HashSet<String>(catalog.partitions);
+		if (added) {
+			partitions.addAll(partitionNames);
+		} else {
+			partitions.removeAll(partitionNames);
+		}
+		catalogs.put(tableName, new PartitionCatalog(partitions, catalog.loadedOn));
 	}
 
 	@Override
@@ -130,4 +262,18 @@ public class TableCreatorImpl implements TableCreator {
 		String nextDatePartition = PartitionUtil.getPartitionName(tableName, nextDate, partitionPeriod);
 		return doesPartitionExist(tableName, sameDatePartition) && doesPartitionExist(tableName, nextDatePartition);
 	}
+
+	/**
+	 * The partitions of a table at the time they were loaded. Never modified
+	 * once created.
+	 */
+	private static class PartitionCatalog {
+		final Set<String> partitions;
+		final long loadedOn;
+
+		PartitionCatalog(Set<String> partitions, long loadedOn) {
+			this.partitions = Collections.unmodifiableSet(partitions);
+			this.loadedOn = loadedOn;
+		}
+	}
 }
@@ -3,6 +3,7 @@ package org.sagebionetworks.warehouse.workers.db.audit;
 import java.util.Date;
 import java.util.List;
 
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
 import org.sagebionetworks.warehouse.workers.model.UserActivityPerMonth;
 
 public interface UserActivityPerMonthDao {
@@ -21,10 +22,17 @@ public interface UserActivityPerMonthDao {
 	/**
 	 * 
 	 * @param month
-	 * @return true if there exists records for prevMonth in the database,
-	 *         false otherwise.
+	 * @return true if the given month was recomputed from the daily user
+	 *         activity, false otherwise.
 	 */
-	public boolean hasRecordForMonth(Date month);
+	public boolean isBackfilled(Date month);
+
+	/**
+	 * Record that the given month was recomputed from the daily user activity.
+	 * 
+	 * @param month
+	 */
+	public void setBackfilled(Date month);
 
 	/**
 	 * Insert on duplicate key update a batch of UserActivityPerMonth to the DB.
@@ -32,4 +40,14 @@ public interface UserActivityPerMonthDao {
 	 * @param batch
 	 */
 	public void insert(List<UserActivityPerMonth> batch);
+
+	/**
+	 * Add the days of a batch of daily user activity to the active days of
+	 * each user and month, and update the active day count. Adding the same
+	 * day again does not change the count. Rows written without active days
+	 * are left as they are.
+	 * 
+	 * @param batch
+	 */
+	public void addActiveDays(List<UserActivityPerClientPerDay> batch);
 }
@@ -1,18 +1,30 @@
 package org.sagebionetworks.warehouse.workers.db.audit;
 
+import static org.sagebionetworks.warehouse.workers.db.Sql.COL_USER_ACTIVITY_PER_MONTH_BACKFILL_MONTH;
 import static org.sagebionetworks.warehouse.workers.db.Sql.COL_USER_ACTIVITY_PER_MONTH_MONTH;
 import static org.sagebionetworks.warehouse.workers.db.Sql.COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAY_COUNT;
+import static org.sagebionetworks.warehouse.workers.db.Sql.COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS;
 import static org.sagebionetworks.warehouse.workers.db.Sql.COL_USER_ACTIVITY_PER_MONTH_USER_ID;
 import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_USER_ACTIVITY_PER_MONTH;
+import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_USER_ACTIVITY_PER_MONTH_BACKFILL;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.List;
+import java.sql.Types;
 
+import org.joda.time.LocalDate;
 import org.sagebionetworks.warehouse.workers.db.TableConfiguration;
+import org.sagebionetworks.warehouse.workers.db.TableCreator;
 import org.sagebionetworks.warehouse.workers.db.transaction.RequiresNew;
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
 import org.sagebionetworks.warehouse.workers.model.UserActivityPerMonth;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
@@ -29,6 +41,7 @@ import com.google.inject.Singleton;
 public class UserActivityPerMonthDaoImpl implements UserActivityPerMonthDao {
 
 	public static final String USER_ACTIVITY_PER_MONTH_DDL_SQL = "UserActivityPerMonth.ddl.sql";
+	public static final String USER_ACTIVITY_PER_MONTH_BACKFILL_DDL_SQL = "UserActivityPerMonthBackfill.ddl.sql";
 	public static final TableConfiguration CONFIG = new TableConfiguration(
 			TABLE_USER_ACTIVITY_PER_MONTH,
 			USER_ACTIVITY_PER_MONTH_DDL_SQL,
@@ -37,30 +50,57 @@ public class UserActivityPerMonthDaoImpl implements UserActivityPerMonthDao {
 			null);
 
 	private static final String TRUNCATE = "TRUNCATE TABLE " + TABLE_USER_ACTIVITY_PER_MONTH;
+	private static final String TRUNCATE_BACKFILL = "TRUNCATE TABLE " + TABLE_USER_ACTIVITY_PER_MONTH_BACKFILL;
 	private static final String INSERT = "INSERT INTO " + TABLE_USER_ACTIVITY_PER_MONTH + " ("
 			+ COL_USER_ACTIVITY_PER_MONTH_USER_ID + ","
 			+ COL_USER_ACTIVITY_PER_MONTH_MONTH + ","
-			+ COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAY_COUNT + ")"
-			+ " VALUES (?,?,?) ON DUPLICATE KEY UPDATE "
-			+ COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAY_COUNT + " = ?";
+			+ COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAY_COUNT + ","
+			+ COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS + ")"
+			+ " VALUES (?,?,?,?) ON DUPLICATE KEY UPDATE "
+			+ COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAY_COUNT + " = ?, "
+			+ COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS + " = ?";
+	public static final String ACTIVE_DAYS_DEFINITION = "int unsigned DEFAULT NULL";
+	/*
+	 * The count is updated before the days so it sees the days that were
+	 * already counted. Rows without active days were computed from the full
+	 * month and are not changed.
+	 */
+	private static final String ADD_ACTIVE_DAYS = "INSERT INTO " + TABLE_USER_ACTIVITY_PER_MONTH + " ("
+			+ COL_USER_ACTIVITY_PER_MONTH_USER_ID + ","
+			+ COL_USER_ACTIVITY_PER_MONTH_MONTH + ","
+			+ COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAY_COUNT + ","
+			+ COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS + ")"
+			+ " VALUES (?,?,?,?) ON DUPLICATE KEY UPDATE "
+			+ COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAY_COUNT + " = IF(" + COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS + " IS NULL, "
+				+ COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAY_COUNT + ", BIT_COUNT(" + COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS
+				+ " | VALUES(" + COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS + "))), "
+			+ COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS + " = IF(" + COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS + " IS NULL, NULL, "
+				+ COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS + " | VALUES(" + COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS + "))";
 	private static final String SQL_GET = "SELECT *"
 			+ " FROM " + TABLE_USER_ACTIVITY_PER_MONTH
 			+ " WHERE " + COL_USER_ACTIVITY_PER_MONTH_USER_ID + " = ?"
 			+ " AND " + COL_USER_ACTIVITY_PER_MONTH_MONTH + " = ?";
-	private static final String SQL_CHECK_RECORD_FOR_MONTH =
-			"SELECT " + COL_USER_ACTIVITY_PER_MONTH_MONTH
-			+ " FROM " + TABLE_USER_ACTIVITY_PER_MONTH
-			+ " WHERE " + COL_USER_ACTIVITY_PER_MONTH_MONTH + " >= ?"
-			+ " LIMIT 1";
+	private static final String SQL_CHECK_BACKFILLED =
+			"SELECT " + COL_USER_ACTIVITY_PER_MONTH_BACKFILL_MONTH
+			+ " FROM " + TABLE_USER_ACTIVITY_PER_MONTH_BACKFILL
+			+ " WHERE " + COL_USER_ACTIVITY_PER_MONTH_BACKFILL_MONTH + " = ?";
+	private static final String SQL_SET_BACKFILLED = "INSERT IGNORE INTO "
+			+ TABLE_USER_ACTIVITY_PER_MONTH_BACKFILL + " ("
+			+ COL_USER_ACTIVITY_PER_MONTH_BACKFILL_MONTH + ") VALUES (?)";
 
 	private JdbcTemplate template;
 	private TransactionTemplate transactionTemplate;
 
 	@Inject
-	UserActivityPerMonthDaoImpl(JdbcTemplate template, @RequiresNew TransactionTemplate transactionTemplate) throws SQLException {
+	UserActivityPerMonthDaoImpl(JdbcTemplate template, @RequiresNew TransactionTemplate transactionTemplate,
+			TableCreator creator) throws SQLException {
 		super();
 		this.template = template;
 		this.transactionTemplate = transactionTemplate;
+		creator.createTable(USER_ACTIVITY_PER_MONTH_DDL_SQL);
+		creator.createTable(USER_ACTIVITY_PER_MONTH_BACKFILL_DDL_SQL);
+		// tables created before active days were tracked.
+		creator.addColumnIfMissing(TABLE_USER_ACTIVITY_PER_MONTH, COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS, ACTIVE_DAYS_DEFINITION);
 	}
 
 	@Override
@@ -83,7 +123,9 @@ public class UserActivityPerMonthDaoImpl implements UserActivityPerMonthDao {
 						ps.setLong(1, uar.getUserId());
 						ps.setString(2, uar.getMonth());
 						ps.setLong(3, uar.getUniqueDate());
-						ps.setLong(4, uar.getUniqueDate());
+						setActiveDays(ps, 4, uar.getActiveDays());
+						ps.setLong(5, uar.getUniqueDate());
+						setActiveDays(ps, 6, uar.getActiveDays());
 					}
 				});
 				return null;
@@ -91,9 +133,89 @@ public class UserActivityPerMonthDaoImpl implements UserActivityPerMonthDao {
 		});
 	}
 
+	private static void setActiveDays(PreparedStatement ps, int index, Integer activeDays) throws SQLException {
+		if (activeDays == null) {
+			ps.setNull(index, Types.INTEGER);
+		} else {
+			ps.setLong(index, activeDays & 0xFFFFFFFFL);
+		}
+	}
+
+	@Override
+	public void addActiveDays(List<UserActivityPerClientPerDay> batch) {
+		final List<UserActivityPerMonth> months = toActiveDays(batch);
+		if (months.isEmpty()) {
+			return;
+		}
+		transactionTemplate.execute(new TransactionCallback<Void>() {
+
+			@Override
+			public Void doInTransaction(TransactionStatus status) {
+				template.batchUpdate(ADD_ACTIVE_DAYS, new BatchPreparedStatementSetter() {
+
+					@Override
+					public int getBatchSize() {
+						return months.size();
+					}
+
+					@Override
+					public void setValues(PreparedStatement ps, int i)
+							throws SQLException {
+						UserActivityPerMonth uapm = months.get(i);
+						ps.setLong(1, uapm.getUserId());
+						ps.setString(2, uapm.getMonth());
+						ps.setLong(3, uapm.getUniqueDate());
+						setActiveDays(ps, 4, uapm.getActiveDays());
+					}
+				});
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Combine the days of each user and month of the batch. The result is
+	 * sorted by user and month so concurrent batches lock rows in the same
+	 * order.
+	 * 
+	 * @param batch
+	 * @return
+	 */
+	static List<UserActivityPerMonth> toActiveDays(List<UserActivityPerClientPerDay> batch) {
+		Map<String, UserActivityPerMonth> byUserAndMonth = new HashMap<String, UserActivityPerMonth>();
+		for (UserActivityPerClientPerDay activity : batch) {
+			LocalDate day = LocalDate.parse(activity.getDate());
+			String month = day.withDayOfMonth(1).toString();
+			String key = activity.getUserId() + "/" + month;
+			UserActivityPerMonth uapm = byUserAndMonth.get(key);
+			if (uapm == null) {
+				uapm = new UserActivityPerMonth();
+				uapm.setUserId(activity.getUserId());
+				uapm.setMonth(month);
+				uapm.setActiveDays(0);
+				byUserAndMonth.put(key, uapm);
+			}
+			uapm.setActiveDays(uapm.getActiveDays() | (1 << (day.getDayOfMonth() - 1)));
+		}
+		List<UserActivityPerMonth> months = new ArrayList<UserActivityPerMonth>(byUserAndMonth.values());
+		for (UserActivityPerMonth uapm : months) {
+			uapm.setUniqueDate((long) Integer.bitCount(uapm.getActiveDays()));
+		}
+		Collections.sort(months, new Comparator<UserActivityPerMonth>() {
+
+			@Override
+			public int compare(UserActivityPerMonth one, UserActivityPerMonth two) {
+				int result = one.getUserId().compareTo(two.getUserId());
+				return result != 0 ? result : one.getMonth().compareTo(two.getMonth());
+			}
+		});
+		return months;
+	}
+
 	@Override
 	public void truncateAll() {
 		template.update(TRUNCATE);
+		template.update(TRUNCATE_BACKFILL);
 	}
 
 	@Override
@@ -111,17 +233,27 @@ public class UserActivityPerMonthDaoImpl implements UserActivityPerMonthDao {
 			uar.setUserId(rs.getLong(COL_USER_ACTIVITY_PER_MONTH_USER_ID));
 			uar.setMonth(rs.getString(COL_USER_ACTIVITY_PER_MONTH_MONTH));
 			uar.setUniqueDate(rs.getLong(COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAY_COUNT));
+			long activeDays = rs.getLong(COL_USER_ACTIVITY_PER_MONTH_ACTIVE_DAYS);
+			uar.setActiveDays(rs.wasNull() ? null : (int) activeDays);
 			return uar;
 		}
 	};
 
 	@Override
-	public boolean hasRecordForMonth(Date month) {
+	public boolean isBackfilled(Date month) {
 		try {
-			template.queryForObject(SQL_CHECK_RECORD_FOR_MONTH, String.class, month);
+			template.queryForObject(SQL_CHECK_BACKFILLED, String.class, month);
 			return true;
 		} catch (EmptyResultDataAccessException e) {
 			return false;
 		}
 	}
+
+	@Override
+	public void setBackfilled(Date month) {
+		if (month == null) {
+			throw new IllegalArgumentException("Month cannot be null");
+		}
+		template.update(SQL_SET_BACKFILLED, month);
+	}
 }
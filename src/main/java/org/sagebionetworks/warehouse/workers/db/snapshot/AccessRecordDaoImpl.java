@@ -26,9 +26,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.config.Configuration;
+import org.sagebionetworks.warehouse.workers.db.BulkLoader;
+import org.sagebionetworks.warehouse.workers.db.InsertMode;
 import org.sagebionetworks.warehouse.workers.db.TableConfiguration;
 import org.sagebionetworks.warehouse.workers.db.TableCreator;
 import org.sagebionetworks.warehouse.workers.db.transaction.RequiresNew;
@@ -94,6 +99,58 @@ public class AccessRecordDaoImpl implements AccessRecordDao{
 			+ ","
 			+ COL_ACCESS_RECORD_RESPONSE_STATUS
 			+ ") VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+	private static final BulkLoader<AccessRecord> BULK_LOADER = new BulkLoader<AccessRecord>(
+			TABLE_ACCESS_RECORD,
+			Arrays.asList(
+					COL_ACCESS_RECORD_SESSION_ID,
+					COL_ACCESS_RECORD_RETURN_OBJECT_ID,
+					COL_ACCESS_RECORD_ELAPSE_MS,
+					COL_ACCESS_RECORD_TIMESTAMP,
+					COL_ACCESS_RECORD_VIA,
+					COL_ACCESS_RECORD_HOST,
+					COL_ACCESS_RECORD_THREAD_ID,
+					COL_ACCESS_RECORD_USER_AGENT,
+					COL_ACCESS_RECORD_QUERY_STRING,
+					COL_ACCESS_RECORD_X_FORWARDED_FOR,
+					COL_ACCESS_RECORD_REQUEST_URL,
+					COL_ACCESS_RECORD_USER_ID,
+					COL_ACCESS_RECORD_ORIGIN,
+					COL_ACCESS_RECORD_DATE,
+					COL_ACCESS_RECORD_METHOD,
+					COL_ACCESS_RECORD_VM_ID,
+					COL_ACCESS_RECORD_INSTANCE,
+					COL_ACCESS_RECORD_STACK,
+					COL_ACCESS_RECORD_SUCCESS,
+					COL_ACCESS_RECORD_RESPONSE_STATUS),
+			Collections.singleton(COL_ACCESS_RECORD_SUCCESS),
+			new BulkLoader.ValuesProvider<AccessRecord>() {
+
+				@Override
+				public Object[] getValues(AccessRecord ar) {
+					return new Object[] {
+							ar.getSessionId(),
+							ar.getReturnObjectId(),
+							ar.getElapseMS(),
+							ar.getTimestamp(),
+							ar.getVia(),
+							ar.getHost(),
+							ar.getThreadId(),
+							ar.getUserAgent(),
+							ar.getQueryString(),
+							ar.getXForwardedFor(),
+							ar.getRequestURL(),
+							ar.getUserId(),
+							ar.getOrigin(),
+							ar.getDate(),
+							ar.getMethod(),
+							ar.getVmId(),
+							ar.getInstance(),
+							ar.getStack(),
+							ar.getSuccess(),
+							ar.getResponseStatus()
+					};
+				}
+			});
 	private static final String SQL_GET = "SELECT * FROM "
 			+ TABLE_ACCESS_RECORD
 			+ " WHERE "
@@ -106,6 +163,7 @@ public class AccessRecordDaoImpl implements AccessRecordDao{
 	private JdbcTemplate template;
 	private TransactionTemplate transactionTemplate;
 	private TableCreator creator;
+	private InsertMode insertMode;
 
 	/*
 	 * Map all columns to the dbo.
@@ -142,11 +200,14 @@ public class AccessRecordDaoImpl implements AccessRecordDao{
 	};
 
 	@Inject
-	AccessRecordDaoImpl(JdbcTemplate template, @RequiresNew TransactionTemplate transactionTemplate, TableCreator creator) throws SQLException {
+	AccessRecordDaoImpl(JdbcTemplate template, @RequiresNew TransactionTemplate transactionTemplate, TableCreator creator,
+			Configuration config) throws SQLException {
 		super();
 		this.template = template;
 		this.transactionTemplate = transactionTemplate;
 		this.creator = creator;
+		this.insertMode = BulkLoader.selectInsertMode(
+				InsertMode.valueOf(config.getProperty("org.sagebionetworks.warehouse.worker.access.record.insert.mode")), template);
 	}
 
 	@Override
@@ -155,6 +216,10 @@ public class AccessRecordDaoImpl implements AccessRecordDao{
 
 			@Override
 			public Void doInTransaction(TransactionStatus status) {
+				if (insertMode == InsertMode.BULK_LOAD) {
+					BULK_LOADER.load(template, batch);
+					return null;
+				}
 				template.batchUpdate(INSERT_IGNORE, new BatchPreparedStatementSetter() {
 
 					@Override
@@ -7,21 +7,18 @@ import static org.sagebionetworks.warehouse.workers.db.Sql.COL_ACL_SNAPSHOT_RESO
 import static org.sagebionetworks.warehouse.workers.db.Sql.COL_ACL_SNAPSHOT_TIMESTAMP;
 import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_ACL_SNAPSHOT;
 
-import java.sql.Blob;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.Date;
 import java.util.List;
-import java.util.Set;
 
 import org.sagebionetworks.repo.model.ObjectType;
 import org.sagebionetworks.warehouse.workers.db.TableConfiguration;
 import org.sagebionetworks.warehouse.workers.model.AclSnapshot;
-import org.sagebionetworks.warehouse.workers.utils.CompressionUtils;
 import org.sagebionetworks.warehouse.workers.utils.ObjectSnapshotUtils;
-import org.sagebionetworks.warehouse.workers.utils.XMLUtils;
+import org.sagebionetworks.warehouse.workers.utils.ResourceAccessCodec;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
@@ -77,10 +74,9 @@ public class AclSnapshotDaoImpl implements AclSnapshotDao{
 			if (!rs.wasNull()) {
 				snapshot.setCreationDate(new Date(createdOn));
 			}
-			Blob resourceAccessBlob = rs.getBlob(COL_ACL_SNAPSHOT_RESOURCE_ACCESS);
-			if (resourceAccessBlob != null && resourceAccessBlob.length() > 0) {
-				String resourceAccess = CompressionUtils.decompressUTF8(resourceAccessBlob.getBytes(1, (int) resourceAccessBlob.length()));
-				snapshot.setResourceAccess(XMLUtils.fromXML(resourceAccess, Set.class, AclSnapshot.RESOURCE_ACCESS_ALIAS));
+			byte[] resourceAccess = rs.getBytes(COL_ACL_SNAPSHOT_RESOURCE_ACCESS);
+			if (resourceAccess != null && resourceAccess.length > 0) {
+				snapshot.setResourceAccess(ResourceAccessCodec.decode(resourceAccess));
 			}
 			return snapshot;
 		}
@@ -114,8 +110,7 @@ public class AclSnapshotDaoImpl implements AclSnapshotDao{
 					ps.setNull(4, Types.BIGINT);
 				}
 				if (snapshot.getResourceAccess() != null) {
-					String xml = XMLUtils.toXML(snapshot.getResourceAccess(), AclSnapshot.RESOURCE_ACCESS_ALIAS);
-					ps.setBytes(5, CompressionUtils.compressStringUTF8(xml));
+					ps.setBytes(5, ResourceAccessCodec.encode(snapshot.getResourceAccess()));
 				} else {
 					ps.setNull(5, Types.BLOB);
 				}
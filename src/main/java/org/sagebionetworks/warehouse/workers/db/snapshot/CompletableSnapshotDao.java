@@ -0,0 +1,16 @@
+package org.sagebionetworks.warehouse.workers.db.snapshot;
+
+/**
+ * A SnapshotDao for a single file that holds back part of its writes until
+ * every batch of the file has been inserted.
+ *
+ * @param <T>
+ */
+public interface CompletableSnapshotDao<T> extends SnapshotDao<T> {
+
+	/**
+	 * Write what was held back. Called once, after the last batch of the file
+	 * was inserted.
+	 */
+	public void complete();
+}
@@ -0,0 +1,87 @@
+package org.sagebionetworks.warehouse.workers.db.snapshot;
+
+import java.util.List;
+
+import org.sagebionetworks.warehouse.workers.model.Client;
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
+import org.sagebionetworks.warehouse.workers.utils.CompressedBitmap;
+
+/**
+ * The users that were active on each day with each client, stored as a
+ * compressed bitmap of user IDs for each day and client. Questions about
+ * active users over any range of days are answered by combining bitmaps
+ * instead of grouping USER_ACTIVITY_PER_CLIENT_PER_DAY.
+ *
+ * The bitmaps only hold the activity of files processed since the table was
+ * created. USER_ACTIVITY_PER_CLIENT_PER_DAY history is not backfilled, so
+ * days before then, and the day the table was created, count fewer users.
+ *
+ * All dates are formatted as yyyy-MM-dd.
+ */
+public interface UserActivityBitmapDao {
+
+	/**
+	 * Add the users of a batch of daily user activity to the bitmaps of their
+	 * days and clients. Adding the same activity again has no effect. Each
+	 * (date, client) row is locked and rewritten, so add the activity of a
+	 * whole file at once rather than batch by batch.
+	 *
+	 * @param batch
+	 */
+	public void addUserActivity(List<UserActivityPerClientPerDay> batch);
+
+	/**
+	 * @param startDate
+	 * @param endDate
+	 * @param client
+	 *            null for all clients.
+	 * @return the users that were active between the start and end dates,
+	 *         inclusive.
+	 */
+	public CompressedBitmap getActiveUsers(String startDate, String endDate, Client client);
+
+	/**
+	 * @param date
+	 * @return the number of users that were active on the given date.
+	 */
+	public long getDailyActiveUsers(String date);
+
+	/**
+	 * @param date
+	 * @return the number of users that were active in the seven days that end
+	 *         on the given date.
+	 */
+	public long getWeeklyActiveUsers(String date);
+
+	/**
+	 * @param date
+	 * @return the number of users that were active in the calendar month of
+	 *         the given date.
+	 */
+	public long getMonthlyActiveUsers(String date);
+
+	/**
+	 * @param startDate
+	 * @param endDate
+	 * @param returnStartDate
+	 * @param returnEndDate
+	 * @return the number of users that were active between the start and end
+	 *         dates and again between the return start and end dates.
+	 */
+	public long getRetainedUsers(String startDate, String endDate, String returnStartDate, String returnEndDate);
+
+	/**
+	 * @param startDate
+	 * @param endDate
+	 * @param one
+	 * @param two
+	 * @return the number of users that used both clients between the start
+	 *         and end dates.
+	 */
+	public long getClientOverlap(String startDate, String endDate, Client one, Client two);
+
+	/**
+	 * Truncate all of the data.
+	 */
+	public void truncateAll();
+}
@@ -0,0 +1,183 @@
+package org.sagebionetworks.warehouse.workers.db.snapshot;
+
+import static org.sagebionetworks.warehouse.workers.db.Sql.COL_USER_ACTIVITY_BITMAP_CLIENT;
+import static org.sagebionetworks.warehouse.workers.db.Sql.COL_USER_ACTIVITY_BITMAP_DATE;
+import static org.sagebionetworks.warehouse.workers.db.Sql.COL_USER_ACTIVITY_BITMAP_USERS;
+import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_USER_ACTIVITY_BITMAP;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.joda.time.LocalDate;
+import org.sagebionetworks.warehouse.workers.db.TableConfiguration;
+import org.sagebionetworks.warehouse.workers.db.transaction.RequiresNew;
+import org.sagebionetworks.warehouse.workers.model.Client;
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
+import org.sagebionetworks.warehouse.workers.utils.CompressedBitmap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+@Singleton
+public class UserActivityBitmapDaoImpl implements UserActivityBitmapDao {
+
+	public static final String USER_ACTIVITY_BITMAP_DDL_SQL = "UserActivityBitmap.ddl.sql";
+	public static final TableConfiguration CONFIG = new TableConfiguration(
+			TABLE_USER_ACTIVITY_BITMAP,
+			USER_ACTIVITY_BITMAP_DDL_SQL,
+			false,
+			null,
+			null);
+	private static final byte[] EMPTY_BITMAP = new CompressedBitmap().serialize();
+
+	private static final String TRUNCATE = "TRUNCATE TABLE " + TABLE_USER_ACTIVITY_BITMAP;
+	/*
+	 * A row is created before it is read so that concurrent writers of a new
+	 * day lock the same row rather than both inserting it.
+	 */
+	private static final String INSERT_EMPTY = "INSERT IGNORE INTO " + TABLE_USER_ACTIVITY_BITMAP + " ("
+			+ COL_USER_ACTIVITY_BITMAP_DATE + ","
+			+ COL_USER_ACTIVITY_BITMAP_CLIENT + ","
+			+ COL_USER_ACTIVITY_BITMAP_USERS + ")"
+			+ " VALUES (?,?,?)";
+	private static final String SQL_GET_FOR_UPDATE = "SELECT " + COL_USER_ACTIVITY_BITMAP_USERS
+			+ " FROM " + TABLE_USER_ACTIVITY_BITMAP
+			+ " WHERE " + COL_USER_ACTIVITY_BITMAP_DATE + " = ?"
+			+ " AND " + COL_USER_ACTIVITY_BITMAP_CLIENT + " = ?"
+			+ " FOR UPDATE";
+	private static final String UPDATE = "UPDATE " + TABLE_USER_ACTIVITY_BITMAP
+			+ " SET " + COL_USER_ACTIVITY_BITMAP_USERS + " = ?"
+			+ " WHERE " + COL_USER_ACTIVITY_BITMAP_DATE + " = ?"
+			+ " AND " + COL_USER_ACTIVITY_BITMAP_CLIENT + " = ?";
+	private static final String SQL_GET_RANGE = "SELECT " + COL_USER_ACTIVITY_BITMAP_USERS
+			+ " FROM " + TABLE_USER_ACTIVITY_BITMAP
+			+ " WHERE " + COL_USER_ACTIVITY_BITMAP_DATE + " BETWEEN ? AND ?";
+	private static final String SQL_GET_RANGE_FOR_CLIENT = SQL_GET_RANGE
+			+ " AND " + COL_USER_ACTIVITY_BITMAP_CLIENT + " = ?";
+
+	private JdbcTemplate template;
+	private TransactionTemplate transactionTemplate;
+
+	@Inject
+	UserActivityBitmapDaoImpl(JdbcTemplate template, @RequiresNew TransactionTemplate transactionTemplate) {
+		super();
+		this.template = template;
+		this.transactionTemplate = transactionTemplate;
+	}
+
+	@Override
+	public void addUserActivity(List<UserActivityPerClientPerDay> batch) {
+		// sorted by date and client so concurrent batches lock rows in the same order.
+		final Map<String, Map<Client, CompressedBitmap>> byDate = new TreeMap<String, Map<Client, CompressedBitmap>>();
+		for (UserActivityPerClientPerDay activity : batch) {
+			if (activity.getUserId() == null) {
+				continue;
+			}
+			Map<Client, CompressedBitmap> byClient = byDate.get(activity.getDate());
+			if (byClient == null) {
+				byClient = new EnumMap<Client, CompressedBitmap>(Client.class);
+				byDate.put(activity.getDate(), byClient);
+			}
+			CompressedBitmap users = byClient.get(activity.getClient());
+			if (users == null) {
+				users = new CompressedBitmap();
+				byClient.put(activity.getClient(), users);
+			}
+			users.add(activity.getUserId());
+		}
+		if (byDate.isEmpty()) {
+			return;
+		}
+		transactionTemplate.execute(new TransactionCallback<Void>() {
+
+			@Override
+			public Void doInTransaction(TransactionStatus status) {
+				for (Map.Entry<String, Map<Client, CompressedBitmap>> date : byDate.entrySet()) {
+					for (Map.Entry<Client, CompressedBitmap> client : date.getValue().entrySet()) {
+						addUsers(date.getKey(), client.getKey(), client.getValue());
+					}
+				}
+				return null;
+			}
+		});
+	}
+
+	private void addUsers(String date, Client client, CompressedBitmap added) {
+		template.update(INSERT_EMPTY, date, client.name(), EMPTY_BITMAP);
+		byte[] bytes = template.queryForObject(SQL_GET_FOR_UPDATE, byte[].class, date, client.name());
+		CompressedBitmap stored = CompressedBitmap.deserialize(bytes);
+		if (stored.andCardinality(added) == added.getCardinality()) {
+			// every user is already stored.
+			return;
+		}
+		template.update(UPDATE, stored.or(added).serialize(), date, client.name());
+	}
+
+	@Override
+	public CompressedBitmap getActiveUsers(String startDate, String endDate, Client client) {
+		List<CompressedBitmap> bitmaps;
+		if (client == null) {
+			bitmaps = template.query(SQL_GET_RANGE, rowMapper, startDate, endDate);
+		} else {
+			bitmaps = template.query(SQL_GET_RANGE_FOR_CLIENT, rowMapper, startDate, endDate, client.name());
+		}
+		return CompressedBitmap.or(bitmaps);
+	}
+
+	@Override
+	public long getDailyActiveUsers(String date) {
+		return getActiveUsers(date, date, null).getCardinality();
+	}
+
+	@Override
+	public long getWeeklyActiveUsers(String date) {
+		LocalDate endDate = LocalDate.parse(date);
+		return getActiveUsers(endDate.minusDays(6).toString(), endDate.toString(), null).getCardinality();
+	}
+
+	@Override
+	public long getMonthlyActiveUsers(String date) {
+		LocalDate day = LocalDate.parse(date);
+		return getActiveUsers(day.dayOfMonth().withMinimumValue().toString(),
+				day.dayOfMonth().withMaximumValue().toString(), null).getCardinality();
+	}
+
+	@Override
+	public long getRetainedUsers(String startDate, String endDate, String returnStartDate, String returnEndDate) {
+		CompressedBitmap cohort = getActiveUsers(startDate, endDate, null);
+		return cohort.andCardinality(getActiveUsers(returnStartDate, returnEndDate, null));
+	}
+
+	@Override
+	public long getClientOverlap(String startDate, String endDate, Client one, Client two) {
+		if (one == null || two == null) {
+			throw new IllegalArgumentException("Clients cannot be null");
+		}
+		CompressedBitmap first = getActiveUsers(startDate, endDate, one);
+		return first.andCardinality(getActiveUsers(startDate, endDate, two));
+	}
+
+	@Override
+	public void truncateAll() {
+		template.update(TRUNCATE);
+	}
+
+	/*
+	 * Map the users column to a bitmap.
+	 */
+	RowMapper<CompressedBitmap> rowMapper = new RowMapper<CompressedBitmap>() {
+
+		public CompressedBitmap mapRow(ResultSet rs, int arg1) throws SQLException {
+			return CompressedBitmap.deserialize(rs.getBytes(COL_USER_ACTIVITY_BITMAP_USERS));
+		}
+	};
+}
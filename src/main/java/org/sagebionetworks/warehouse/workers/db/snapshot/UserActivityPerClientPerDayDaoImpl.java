@@ -5,6 +5,7 @@ import static org.sagebionetworks.warehouse.workers.db.Sql.COL_USER_ACTIVITY_PER
 import static org.sagebionetworks.warehouse.workers.db.Sql.COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_CLIENT;
 import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_USER_ACTIVITY_PER_CLIENT_PER_DAY;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.sql.PreparedStatement;
@@ -12,9 +13,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
 
-import org.sagebionetworks.warehouse.workers.db.PagingQueryIterator;
+import org.sagebionetworks.warehouse.workers.db.KeysetPagingQueryIterator;
 import org.sagebionetworks.warehouse.workers.db.TableConfiguration;
 import org.sagebionetworks.warehouse.workers.db.TableCreator;
+import org.sagebionetworks.warehouse.workers.db.audit.UserActivityPerMonthDao;
 import org.sagebionetworks.warehouse.workers.db.transaction.RequiresNew;
 import org.sagebionetworks.warehouse.workers.model.Client;
 import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
@@ -54,24 +56,30 @@ public class UserActivityPerClientPerDayDaoImpl implements UserActivityPerClient
 			+ " AND " + COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_DATE + " = ?"
 			+ " AND " + COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_CLIENT + " = ?";
 	private static final String UNIQUE_DATE = "UNIQUE_DATE";
+	private static final String ACTIVE_DAYS = "ACTIVE_DAYS";
 	private static final String SQL_GET_USER_ACTIVITY_PER_MONTH = "SELECT "
 			+ COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_USER_ID + ","
-			+ " COUNT(DISTINCT " + COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_DATE + ") AS " + UNIQUE_DATE
+			+ " COUNT(DISTINCT " + COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_DATE + ") AS " + UNIQUE_DATE + ","
+			+ " BIT_OR(1 << (DAYOFMONTH(" + COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_DATE + ") - 1)) AS " + ACTIVE_DAYS
 			+ " FROM " + TABLE_USER_ACTIVITY_PER_CLIENT_PER_DAY
-			+ " WHERE " + COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_DATE
-			+ " BETWEEN ? AND ?"
+			+ " WHERE " + COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_DATE + " >= ?"
+			+ " AND " + COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_DATE + " < ?"
+			+ KeysetPagingQueryIterator.KEYSET_CONDITION
 			+ " GROUP BY " + COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_USER_ID;
 
 	private JdbcTemplate template;
 	private TransactionTemplate transactionTemplate;
 	private TableCreator creator;
+	private UserActivityPerMonthDao userActivityPerMonthDao;
 
 	@Inject
-	UserActivityPerClientPerDayDaoImpl(JdbcTemplate template, @RequiresNew TransactionTemplate transactionTemplate, TableCreator creator) throws SQLException {
+	UserActivityPerClientPerDayDaoImpl(JdbcTemplate template, @RequiresNew TransactionTemplate transactionTemplate,
+			TableCreator creator, UserActivityPerMonthDao userActivityPerMonthDao) throws SQLException {
 		super();
 		this.template = template;
 		this.transactionTemplate = transactionTemplate;
 		this.creator = creator;
+		this.userActivityPerMonthDao = userActivityPerMonthDao;
 	}
 
 	@Override
@@ -99,6 +107,12 @@ public class UserActivityPerClientPerDayDaoImpl implements UserActivityPerClient
 				return null;
 			}
 		});
+		/*
+		 * Adding days is idempotent, so a batch that is retried after this
+		 * point does not change the rollup again. The bitmaps of active users
+		 * are updated once per file by UserActivityFileDao.
+		 */
+		userActivityPerMonthDao.addActiveDays(batch);
 	}
 
 	@Override
@@ -128,14 +142,23 @@ public class UserActivityPerClientPerDayDaoImpl implements UserActivityPerClient
 	@Override
 	public Iterator<UserActivityPerMonth> getUserActivityPerMonth(final Date month) {
 		Date nextMonth = DateTimeUtils.getNextMonth(month);
-		return new PagingQueryIterator<UserActivityPerMonth>(MAX_PAGE_SIZE,
-				template, SQL_GET_USER_ACTIVITY_PER_MONTH, new RowMapper<UserActivityPerMonth>(){
+		return new KeysetPagingQueryIterator<UserActivityPerMonth>(MAX_PAGE_SIZE,
+				template, SQL_GET_USER_ACTIVITY_PER_MONTH,
+				Arrays.asList(COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_USER_ID),
+				new KeysetPagingQueryIterator.KeyProvider<UserActivityPerMonth>() {
+
+			@Override
+			public Object[] getKeys(UserActivityPerMonth row) {
+				return new Object[] { row.getUserId() };
+			}
+		}, new RowMapper<UserActivityPerMonth>(){
 
 			@Override
 			public UserActivityPerMonth mapRow(ResultSet rs, int rowNum) throws SQLException {
 				UserActivityPerMonth uapm = new UserActivityPerMonth();
 				uapm.setMonth(DateTimeUtils.toDateString(month));
 				uapm.setUniqueDate(rs.getLong(UNIQUE_DATE));
+				uapm.setActiveDays((int) rs.getLong(ACTIVE_DAYS));
 				uapm.setUserId(rs.getLong(COL_USER_ACTIVITY_PER_CLIENT_PER_DAY_USER_ID));
 				return uapm;
 			}
@@ -0,0 +1,126 @@
+package org.sagebionetworks.warehouse.workers.model;
+
+import java.sql.Timestamp;
+
+/**
+ * Represents how far the scanning of a single bucket has progressed.
+ *
+ */
+public class BucketScanState {
+
+	private String bucket;
+	private String checkpoint;
+	private Timestamp lastFullScanOn;
+
+	public BucketScanState(){
+	}
+
+	/**
+	 * 
+	 * @param bucket The name of the bucket.
+	 * @param checkpoint The first date folder (yyyy-MM-dd) that the next incremental scan must list.
+	 * @param lastFullScanOn When the whole bucket was last scanned.
+	 */
+	public BucketScanState(String bucket, String checkpoint,
+			Timestamp lastFullScanOn) {
+		super();
+		this.bucket = bucket;
+		this.checkpoint = checkpoint;
+		this.lastFullScanOn = lastFullScanOn;
+	}
+
+	/**
+	 * The name of the bucket.
+	 * @return
+	 */
+	public String getBucket() {
+		return bucket;
+	}
+
+	/**
+	 * The name of the bucket.
+	 * @param bucket
+	 */
+	public void setBucket(String bucket) {
+		this.bucket = bucket;
+	}
+
+	/**
+	 * The first date folder (yyyy-MM-dd) that the next incremental scan must
+	 * list. All files in earlier date folders have been processed.
+	 * @return
+	 */
+	public String getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * The first date folder (yyyy-MM-dd) that the next incremental scan must
+	 * list.
+	 * @param checkpoint
+	 */
+	public void setCheckpoint(String checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * When the whole bucket was last scanned.
+	 * @return
+	 */
+	public Timestamp getLastFullScanOn() {
+		return lastFullScanOn;
+	}
+
+	/**
+	 * When the whole bucket was last scanned.
+	 * @param lastFullScanOn
+	 */
+	public void setLastFullScanOn(Timestamp lastFullScanOn) {
+		this.lastFullScanOn = lastFullScanOn;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((bucket == null) ? 0 : bucket.hashCode());
+		result = prime * result
+				+ ((checkpoint == null) ? 0 : checkpoint.hashCode());
+		result = prime * result
+				+ ((lastFullScanOn == null) ? 0 : lastFullScanOn.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		BucketScanState other = (BucketScanState) obj;
+		if (bucket == null) {
+			if (other.bucket != null)
+				return false;
+		} else if (!bucket.equals(other.bucket))
+			return false;
+		if (checkpoint == null) {
+			if (other.checkpoint != null)
+				return false;
+		} else if (!checkpoint.equals(other.checkpoint))
+			return false;
+		if (lastFullScanOn == null) {
+			if (other.lastFullScanOn != null)
+				return false;
+		} else if (!lastFullScanOn.equals(other.lastFullScanOn))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "BucketScanState [bucket=" + bucket + ", checkpoint="
+				+ checkpoint + ", lastFullScanOn=" + lastFullScanOn + "]";
+	}
+}
@@ -5,6 +5,7 @@ public class UserActivityPerMonth {
 	private Long userId;
 	private String month;
 	private Long uniqueDate;
+	private Integer activeDays;
 	public Long getUserId() {
 		return userId;
 	}
@@ -23,10 +24,21 @@ public class UserActivityPerMonth {
 	public void setUniqueDate(Long uniqueDate) {
 		this.uniqueDate = uniqueDate;
 	}
+	/**
+	 * @return a bit mask of the active days of the month, with bit 0 for the
+	 *         first day, or null if the days are not known.
+	 */
+	public Integer getActiveDays() {
+		return activeDays;
+	}
+	public void setActiveDays(Integer activeDays) {
+		this.activeDays = activeDays;
+	}
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		result = prime * result + ((activeDays == null) ? 0 : activeDays.hashCode());
 		result = prime * result + ((month == null) ? 0 : month.hashCode());
 		result = prime * result + ((uniqueDate == null) ? 0 : uniqueDate.hashCode());
 		result = prime * result + ((userId == null) ? 0 : userId.hashCode());
@@ -41,6 +53,11 @@ public class UserActivityPerMonth {
 		if (getClass() != obj.getClass())
 			return false;
 		UserActivityPerMonth other = (UserActivityPerMonth) obj;
+		if (activeDays == null) {
+			if (other.activeDays != null)
+				return false;
+		} else if (!activeDays.equals(other.activeDays))
+			return false;
 		if (month == null) {
 			if (other.month != null)
 				return false;
@@ -60,6 +77,6 @@ public class UserActivityPerMonth {
 	}
 	@Override
 	public String toString() {
-		return "UserActivityPerMonth [userId=" + userId + ", month=" + month + ", uniqueDate=" + uniqueDate + "]";
+		return "UserActivityPerMonth [userId=" + userId + ", month=" + month + ", uniqueDate=" + uniqueDate + ", activeDays=" + activeDays + "]";
 	}
 }
@@ -0,0 +1,28 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.utils.AccessRecordUtils;
+
+/**
+ * Converts the records of a collated access record file to the rows of the
+ * ACCESS_RECORD table.
+ */
+public class AccessRecordConverter implements SnapshotWorker<AccessRecord, AccessRecord> {
+
+	private static Logger log = LogManager.getLogger(AccessRecordConverter.class);
+
+	@Override
+	public List<AccessRecord> convert(AccessRecord record) {
+		if (!AccessRecordUtils.isValidAccessRecord(record)) {
+			log.error("Invalid Access Record: " + record.toString());
+			return null;
+		}
+		return Arrays.asList(record);
+	}
+
+}
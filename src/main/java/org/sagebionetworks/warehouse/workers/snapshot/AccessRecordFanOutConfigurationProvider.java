@@ -3,26 +3,28 @@ package org.sagebionetworks.warehouse.workers.snapshot;
 import java.util.Arrays;
 
 import org.sagebionetworks.database.semaphore.CountingSemaphore;
+import org.sagebionetworks.warehouse.workers.AdaptiveConcurrencySettings;
+import org.sagebionetworks.warehouse.workers.AdaptiveMessageDrivenWorkerStack;
 import org.sagebionetworks.warehouse.workers.RunDuringNormalStateGate;
 import org.sagebionetworks.warehouse.workers.SemaphoreKey;
+import org.sagebionetworks.warehouse.workers.WorkerPriority;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfiguration;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfigurationProvider;
-import org.sagebionetworks.workers.util.aws.message.MessageDrivenWorkerStack;
 import org.sagebionetworks.workers.util.aws.message.MessageDrivenWorkerStackConfiguration;
 
 import com.amazonaws.services.sns.AmazonSNSClient;
 import com.amazonaws.services.sqs.AmazonSQSClient;
 import com.google.inject.Inject;
 
-public class ProcessAccessRecordConfigurationProvider implements WorkerStackConfigurationProvider {
+public class AccessRecordFanOutConfigurationProvider implements WorkerStackConfigurationProvider {
 
 	final WorkerStackConfiguration config;
 
 	@Inject
-	public ProcessAccessRecordConfigurationProvider (CountingSemaphore semaphore,
+	public AccessRecordFanOutConfigurationProvider (CountingSemaphore semaphore,
 			AmazonSQSClient awsSQSClient, AmazonSNSClient awsSNClient,
-			ProcessAccessRecordWorker worker, ProcessAccessRecordTopicBucketInfo config,
-			RunDuringNormalStateGate gate) {
+			AccessRecordFanOutWorker worker, AccessRecordFanOutTopicBucketInfo config,
+			RunDuringNormalStateGate gate, AdaptiveConcurrencySettings settings) {
 
 		MessageDrivenWorkerStackConfiguration mdwsc = new MessageDrivenWorkerStackConfiguration();
 		mdwsc.setGate(gate);
@@ -30,16 +32,21 @@ public class ProcessAccessRecordConfigurationProvider implements WorkerStackConf
 		mdwsc.setTopicNamesToSubscribe(Arrays.asList(config.getTopicName()));
 		mdwsc.setRunner(worker);
 		mdwsc.setSemaphoreLockAndMessageVisibilityTimeoutSec(10*60);
-		mdwsc.setSemaphoreLockKey(SemaphoreKey.PROCESS_ACCESS_RECORD_WORKER.name());
-		mdwsc.setSemaphoreMaxLockCount(1);
-
-		Runnable runner = new MessageDrivenWorkerStack(semaphore, awsSQSClient,
-				awsSNClient, mdwsc);
+		mdwsc.setSemaphoreLockKey(SemaphoreKey.ACCESS_RECORD_FAN_OUT_WORKER.name());
+
+		/*
+		 * The fan-out upserts processed access records and updates the active
+		 * user bitmaps, which must each be written by one worker at a time.
+		 */
+		Runnable runner = new AdaptiveMessageDrivenWorkerStack(semaphore, awsSQSClient,
+				awsSNClient, mdwsc, AdaptiveConcurrencySettings.serial(settings));
 		this.config = new WorkerStackConfiguration();
 		this.config.setRunner(runner);
-		this.config.setStartDelayMs(317);
-		this.config.setPeriodMS(10*1000);
-		this.config.setWorkerName(ProcessAccessRecordWorker.class.getName());
+		this.config.setStartDelayMs(313);
+		this.config.setPeriodMS(settings.getMinPeriodMS());
+		this.config.setPriority(WorkerPriority.HIGH);
+		this.config.setWeight(2);
+		this.config.setWorkerName(AccessRecordFanOutWorker.class.getName());
 	}
 
 	@Override
@@ -2,6 +2,6 @@ package org.sagebionetworks.warehouse.workers.snapshot;
 
 import org.sagebionetworks.warehouse.workers.bucket.TopicBucketInfo;
 
-public class AccessRecordTopicBucketInfo extends TopicBucketInfo {
+public class AccessRecordFanOutTopicBucketInfo extends TopicBucketInfo {
 
 }
@@ -0,0 +1,196 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_ACCESS_RECORD;
+import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_PROCESSED_ACCESS_RECORD;
+import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_USER_ACTIVITY_PER_CLIENT_PER_DAY;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.aws.utils.s3.KeyData;
+import org.sagebionetworks.aws.utils.s3.KeyGeneratorUtil;
+import org.sagebionetworks.aws.utils.sns.MessageUtil;
+import org.sagebionetworks.common.util.progress.ProgressCallback;
+import org.sagebionetworks.csv.utils.ObjectCSVReader;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.bucket.FileSubmissionMessage;
+import org.sagebionetworks.warehouse.workers.collate.StreamResourceProvider;
+import org.sagebionetworks.warehouse.workers.db.FileSinkStateDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.AccessRecordDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.ProcessedAccessRecordDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.UserActivityBitmapDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.UserActivityPerClientPerDayDao;
+import org.sagebionetworks.warehouse.workers.model.SnapshotHeader;
+import org.sagebionetworks.warehouse.workers.utils.XMLUtils;
+import org.sagebionetworks.workers.util.aws.message.MessageDrivenRunner;
+import org.sagebionetworks.workers.util.aws.message.RecoverableMessageException;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.sqs.model.Message;
+import com.google.inject.Inject;
+
+/**
+ * This worker reads a collated access record file from S3 once and writes it
+ * to ACCESS_RECORD, PROCESSED_ACCESS_RECORD and USER_ACTIVITY_PER_CLIENT_PER_DAY.
+ * 
+ * The completion of each table is tracked separately, so when one of them fails
+ * the message is put back and only the failed tables are written on the retry.
+ * Once every table has the file its completion rows are deleted. If the file
+ * itself cannot be read, the message is put back for every pending table.
+ */
+public class AccessRecordFanOutWorker implements MessageDrivenRunner {
+
+	private static final int BATCH_SIZE = 25000;
+	private static Logger log = LogManager.getLogger(AccessRecordFanOutWorker.class);
+	private AmazonS3Client s3Client;
+	private AccessRecordDao accessRecordDao;
+	private ProcessedAccessRecordDao processedAccessRecordDao;
+	private UserActivityPerClientPerDayDao userActivityDao;
+	private UserActivityBitmapDao userActivityBitmapDao;
+	private FileSinkStateDao sinkStateDao;
+	private StreamResourceProvider streamResourceProvider;
+	private AccessRecordConverter accessRecordConverter;
+	private ProcessAccessRecordConverter processedAccessRecordConverter;
+	private UserActivityPerClientPerDayConverter userActivityConverter;
+
+	@Inject
+	public AccessRecordFanOutWorker(AmazonS3Client s3Client, AccessRecordDao accessRecordDao,
+			ProcessedAccessRecordDao processedAccessRecordDao, UserActivityPerClientPerDayDao userActivityDao,
+			UserActivityBitmapDao userActivityBitmapDao, FileSinkStateDao sinkStateDao, StreamResourceProvider streamResourceProvider,
+			AccessRecordConverter accessRecordConverter, ProcessAccessRecordConverter processedAccessRecordConverter,
+			UserActivityPerClientPerDayConverter userActivityConverter) {
+		super();
+		this.s3Client = s3Client;
+		this.accessRecordDao = accessRecordDao;
+		this.processedAccessRecordDao = processedAccessRecordDao;
+		this.userActivityDao = userActivityDao;
+		this.userActivityBitmapDao = userActivityBitmapDao;
+		this.sinkStateDao = sinkStateDao;
+		this.streamResourceProvider = streamResourceProvider;
+		this.accessRecordConverter = accessRecordConverter;
+		this.processedAccessRecordConverter = processedAccessRecordConverter;
+		this.userActivityConverter = userActivityConverter;
+	}
+
+	@Override
+	public void run(ProgressCallback<Message> callback, Message message)
+			throws RecoverableMessageException, IOException {
+		callback.progressMade(message);
+
+		// extract the bucket and key from the message
+		String xml = MessageUtil.extractMessageBodyAsString(message);
+		FileSubmissionMessage fileSubmissionMessage = XMLUtils.fromXML(xml, FileSubmissionMessage.class, FileSubmissionMessage.ALIAS);
+		String bucket = fileSubmissionMessage.getBucket();
+		String key = fileSubmissionMessage.getKey();
+
+		log.info("Received message for key: "+ bucket + "/" + key);
+
+		List<SnapshotSink<AccessRecord, ?>> sinks = createPendingSinks(bucket, key);
+		if (sinks.isEmpty()) {
+			log.info("All tables are up to date for " + bucket + "/" + key);
+			sinkStateDao.deleteSinks(bucket, key);
+			return;
+		}
+
+		KeyData keyData = KeyGeneratorUtil.parseKey(key);
+		if (!isPartitionReady(sinks, keyData.getTimeMS())) {
+			log.info("Missing partition for timestamp: "+keyData.getTimeMS()+". Putting message back...");
+			throw new RecoverableMessageException();
+		}
+
+		// read the file as a stream
+		ObjectCSVReader<AccessRecord> reader = null;
+		try {
+			log.info("Opening file: "+ bucket + "/" + key);
+			reader = streamResourceProvider.createObjectCSVReader(s3Client, bucket, key, AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS);
+
+			log.info("Processing " + bucket + "/" + key);
+			long start = System.currentTimeMillis();
+			SnapshotWriter.writePipelined(reader, sinks, callback, message);
+			for (SnapshotSink<AccessRecord, ?> sink : sinks) {
+				if (sink.hasFailed()) {
+					log.error("Failed to write " + bucket + "/" + key + " to " + sink.getName(), sink.getFailure());
+				} else {
+					log.info("Inserted (ignore) " + sink.getNumberOfRecords() + " records to " + sink.getName()
+							+ " in " + (System.currentTimeMillis() - start) + " mili seconds");
+				}
+			}
+		} catch (Exception e) {
+			if (SnapshotWriter.isReadFailure(e)) {
+				// none of the pending tables are known to have the whole file.
+				log.error("Failed to read " + bucket + "/" + key + ". Putting message back...", e);
+				throw new RecoverableMessageException();
+			}
+			// reading the file again fails the same way.
+			log.error("Failed to process " + bucket + "/" + key + ". Dropping message...", e);
+			sinkStateDao.deleteSinks(bucket, key);
+			return;
+		} finally {
+			if (reader != null) 	reader.close();
+		}
+
+		if (!hasFailedSink(sinks)) {
+			// every table has the file, so there is nothing left to retry.
+			sinkStateDao.deleteSinks(bucket, key);
+			return;
+		}
+		for (SnapshotSink<AccessRecord, ?> sink : sinks) {
+			if (!sink.hasFailed()) {
+				sinkStateDao.setSinkCompleted(bucket, key, sink.getName());
+			}
+		}
+		// only the failed sinks will be written when the message comes back.
+		throw new RecoverableMessageException();
+	}
+
+	private static boolean hasFailedSink(List<SnapshotSink<AccessRecord, ?>> sinks) {
+		for (SnapshotSink<AccessRecord, ?> sink : sinks) {
+			if (sink.hasFailed()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return a sink for each table that has not completed the given file yet.
+	 */
+	List<SnapshotSink<AccessRecord, ?>> createPendingSinks(String bucket, String key) {
+		Set<String> completed = sinkStateDao.getCompletedSinks(bucket, key);
+		List<SnapshotSink<AccessRecord, ?>> sinks = new LinkedList<SnapshotSink<AccessRecord, ?>>();
+		if (!completed.contains(TABLE_ACCESS_RECORD)) {
+			sinks.add(SnapshotSink.create(TABLE_ACCESS_RECORD, accessRecordConverter, accessRecordDao, BATCH_SIZE));
+		}
+		if (!completed.contains(TABLE_PROCESSED_ACCESS_RECORD)) {
+			sinks.add(SnapshotSink.create(TABLE_PROCESSED_ACCESS_RECORD, processedAccessRecordConverter, processedAccessRecordDao, BATCH_SIZE));
+		}
+		if (!completed.contains(TABLE_USER_ACTIVITY_PER_CLIENT_PER_DAY)) {
+			// each file gets its own converter to drop the duplicates within the file.
+			sinks.add(SnapshotSink.create(TABLE_USER_ACTIVITY_PER_CLIENT_PER_DAY,
+					new DistinctUserActivityConverter(userActivityConverter),
+					new UserActivityFileDao(userActivityDao, userActivityBitmapDao), BATCH_SIZE));
+		}
+		return sinks;
+	}
+
+	/**
+	 * @return true if every pending partitioned table has a partition for the given time.
+	 */
+	private boolean isPartitionReady(List<SnapshotSink<AccessRecord, ?>> sinks, long timeMS) {
+		for (SnapshotSink<AccessRecord, ?> sink : sinks) {
+			if (TABLE_ACCESS_RECORD.equals(sink.getName())
+					&& !accessRecordDao.doesPartitionExistForTimestamp(timeMS)) {
+				return false;
+			}
+			if (TABLE_PROCESSED_ACCESS_RECORD.equals(sink.getName())
+					&& !processedAccessRecordDao.doesPartitionExistForTimestamp(timeMS)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -3,11 +3,12 @@ package org.sagebionetworks.warehouse.workers.snapshot;
 import java.util.Arrays;
 
 import org.sagebionetworks.database.semaphore.CountingSemaphore;
+import org.sagebionetworks.warehouse.workers.AdaptiveConcurrencySettings;
+import org.sagebionetworks.warehouse.workers.AdaptiveMessageDrivenWorkerStack;
 import org.sagebionetworks.warehouse.workers.RunDuringNormalStateGate;
 import org.sagebionetworks.warehouse.workers.SemaphoreKey;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfiguration;
 import org.sagebionetworks.warehouse.workers.WorkerStackConfigurationProvider;
-import org.sagebionetworks.workers.util.aws.message.MessageDrivenWorkerStack;
 import org.sagebionetworks.workers.util.aws.message.MessageDrivenWorkerStackConfiguration;
 
 import com.amazonaws.services.sns.AmazonSNSClient;
@@ -22,7 +23,7 @@ public class AclSnapshotConfigurationProvider implements WorkerStackConfiguratio
 	public AclSnapshotConfigurationProvider (CountingSemaphore semaphore,
 			AmazonSQSClient awsSQSClient, AmazonSNSClient awsSNClient,
 			AclSnapshotWorker worker, AclSnapshotTopicBucketInfo config,
-			RunDuringNormalStateGate gate) {
+			RunDuringNormalStateGate gate, AdaptiveConcurrencySettings settings) {
 
 		MessageDrivenWorkerStackConfiguration mdwsc = new MessageDrivenWorkerStackConfiguration();
 		mdwsc.setGate(gate);
@@ -31,14 +32,13 @@ public class AclSnapshotConfigurationProvider implements WorkerStackConfiguratio
 		mdwsc.setRunner(worker);
 		mdwsc.setSemaphoreLockAndMessageVisibilityTimeoutSec(60);
 		mdwsc.setSemaphoreLockKey(SemaphoreKey.ACL_RECORD_SNAPSHOT_WORKER.name());
-		mdwsc.setSemaphoreMaxLockCount(1);
 
-		Runnable runner = new MessageDrivenWorkerStack(semaphore, awsSQSClient,
-				awsSNClient, mdwsc);
+		Runnable runner = new AdaptiveMessageDrivenWorkerStack(semaphore, awsSQSClient,
+				awsSNClient, mdwsc, settings);
 		this.config = new WorkerStackConfiguration();
 		this.config.setRunner(runner);
 		this.config.setStartDelayMs(419);
-		this.config.setPeriodMS(10*1000);
+		this.config.setPeriodMS(settings.getMinPeriodMS());
 		this.config.setWorkerName(AclSnapshotWorker.class.getName());
 	}
 
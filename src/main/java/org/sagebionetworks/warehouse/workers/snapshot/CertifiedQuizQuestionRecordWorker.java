@@ -1,6 +1,5 @@
 package org.sagebionetworks.warehouse.workers.snapshot;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
@@ -21,14 +20,11 @@ import org.sagebionetworks.workers.util.aws.message.MessageDrivenRunner;
 import org.sagebionetworks.workers.util.aws.message.RecoverableMessageException;
 
 import com.amazonaws.services.s3.AmazonS3Client;
-import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.sqs.model.Message;
 import com.google.inject.Inject;
 
 public class CertifiedQuizQuestionRecordWorker implements MessageDrivenRunner, SnapshotWorker<ObjectRecord, CertifiedQuizQuestionRecord> {
 
-	public static final String TEMP_FILE_NAME_PREFIX = "collatedCertifiedQuizQuestionRecord";
-	public static final String TEMP_FILE_NAME_SUFFIX = ".csv.gz";
 	private static final int BATCH_SIZE = 25000;
 	private static Logger log = LogManager.getLogger(CertifiedQuizQuestionRecordWorker.class);
 	private AmazonS3Client s3Client;
@@ -56,25 +52,24 @@ public class CertifiedQuizQuestionRecordWorker implements MessageDrivenRunner, S
 		log.info("Received message for key: "+ fileSubmissionMessage.getBucket() + "/" + fileSubmissionMessage.getKey());
 
 		// read the file as a stream
-		File file = null;
 		ObjectCSVReader<ObjectRecord> reader = null;
 		try {
-			file = streamResourceProvider.createTempFile(TEMP_FILE_NAME_PREFIX, TEMP_FILE_NAME_SUFFIX);
-			log.info("Downloading file: "+ fileSubmissionMessage.getBucket() + "/" + fileSubmissionMessage.getKey());
-			s3Client.getObject(new GetObjectRequest(fileSubmissionMessage.getBucket(), fileSubmissionMessage.getKey()), file);
-			log.info("Download completed.");
-			reader = streamResourceProvider.createObjectCSVReader(file, ObjectRecord.class, SnapshotHeader.OBJECT_RECORD_HEADERS);
+			log.info("Opening file: "+ fileSubmissionMessage.getBucket() + "/" + fileSubmissionMessage.getKey());
+			reader = streamResourceProvider.createObjectCSVReader(s3Client, fileSubmissionMessage.getBucket(), fileSubmissionMessage.getKey(), ObjectRecord.class, SnapshotHeader.OBJECT_RECORD_HEADERS);
 
 			log.info("Processing " + fileSubmissionMessage.getBucket() + "/" + fileSubmissionMessage.getKey());
 			long start = System.currentTimeMillis();
-			int noRecords = SnapshotWriter.write(reader, dao, BATCH_SIZE, callback, message, this);
+			int noRecords = SnapshotWriter.writePipelined(reader, dao, BATCH_SIZE, callback, message, this);
 			log.info("Inserted (ignore) " + noRecords + " records in " + (System.currentTimeMillis() - start) + " mili seconds");
 
 		} catch (Exception e) {
+			if (SnapshotWriter.isReadFailure(e)) {
+				log.error("Failed to read " + fileSubmissionMessage.getBucket() + "/" + fileSubmissionMessage.getKey() + ". Putting message back...", e);
+				throw new RecoverableMessageException();
+			}
 			log.info(e.toString());
 		} finally {
 			if (reader != null) 	reader.close();
-			if (file != null) 		file.delete();
 		}
 	}
 
@@ -0,0 +1,97 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.sagebionetworks.warehouse.workers.model.Client;
+
+/**
+ * Identifies the client of a user agent with an ordered list of rules. The
+ * first rule that matches wins.
+ *
+ * There are few distinct user agents compared to the number of access
+ * records, so each result is remembered and most lookups are a single hash
+ * probe. Once the cache is full new user agents are classified without being
+ * cached. A single instance is shared by all access record workers.
+ */
+public class ClientClassifier {
+
+	/**
+	 * The rules used when none are configured. The order of web and java
+	 * client matters since all web client is java client, but not all java
+	 * client is web client. The order of python and command line client
+	 * matters.
+	 */
+	public static final List<ClientRule> DEFAULT_RULES = Collections.unmodifiableList(Arrays.asList(
+			ClientRule.contains(Client.WEB, "Synapse-Web-Client"),
+			ClientRule.contains(Client.JAVA, "Synpase-Java-Client"),
+			ClientRule.contains(Client.R, "synapseRClient"),
+			ClientRule.contains(Client.PYTHON, "python-requests"),
+			ClientRule.contains(Client.COMMAND_LINE, "synapsecommandlineclient"),
+			ClientRule.contains(Client.ELB_HEALTHCHECKER, "ELB-HealthChecker")));
+
+	private final List<ClientRule> rules;
+	private final int maxCacheSize;
+	private final ConcurrentMap<String, Client> cache;
+
+	/**
+	 *
+	 * @param rules The rules in the order they are tried.
+	 * @param maxCacheSize The maximum number of user agents remembered.
+	 */
+	public ClientClassifier(List<ClientRule> rules, int maxCacheSize) {
+		if (rules == null) {
+			throw new IllegalArgumentException("Rules cannot be null");
+		}
+		if (maxCacheSize < 0) {
+			throw new IllegalArgumentException("maxCacheSize cannot be negative");
+		}
+		this.rules = new ArrayList<ClientRule>(rules);
+		this.maxCacheSize = maxCacheSize;
+		this.cache = new ConcurrentHashMap<String, Client>();
+	}
+
+	/**
+	 * Determine the client of a user agent.
+	 *
+	 * @param userAgent
+	 * @return UNKNOWN if no rule matches.
+	 */
+	public Client classify(String userAgent) {
+		if (userAgent == null) {
+			return Client.UNKNOWN;
+		}
+		Client client = cache.get(userAgent);
+		if (client == null) {
+			client = applyRules(userAgent);
+			if (cache.size() < maxCacheSize) {
+				cache.putIfAbsent(userAgent, client);
+			}
+		}
+		return client;
+	}
+
+	private Client applyRules(String userAgent) {
+		for (ClientRule rule : rules) {
+			if (rule.matches(userAgent)) {
+				return rule.getClient();
+			}
+		}
+		return Client.UNKNOWN;
+	}
+
+	/**
+	 * @return The number of user agents remembered.
+	 */
+	public int getCacheSize() {
+		return cache.size();
+	}
+
+	public List<ClientRule> getRules() {
+		return Collections.unmodifiableList(rules);
+	}
+}
@@ -0,0 +1,98 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import java.util.regex.Pattern;
+
+import org.sagebionetworks.warehouse.workers.model.Client;
+
+/**
+ * A rule that identifies the client of a user agent, either by a substring
+ * or by a regular expression found anywhere in the user agent.
+ *
+ * A rule is written as CLIENT:contains:text or CLIENT:regex:expression, for
+ * example WEB:contains:Synapse-Web-Client.
+ */
+public class ClientRule {
+
+	public static final String CONTAINS = "contains";
+	public static final String REGEX = "regex";
+	private static final String SEPARATOR = ":";
+
+	private final Client client;
+	private final String substring;
+	private final Pattern pattern;
+
+	private ClientRule(Client client, String substring, Pattern pattern) {
+		this.client = client;
+		this.substring = substring;
+		this.pattern = pattern;
+	}
+
+	/**
+	 * @param client
+	 * @param substring
+	 * @return a rule that matches user agents containing the substring.
+	 */
+	public static ClientRule contains(Client client, String substring) {
+		if (client == null || substring == null || substring.isEmpty()) {
+			throw new IllegalArgumentException("Client and substring are required");
+		}
+		return new ClientRule(client, substring, null);
+	}
+
+	/**
+	 * @param client
+	 * @param regex
+	 * @return a rule that matches user agents in which the expression is found.
+	 */
+	public static ClientRule regex(Client client, String regex) {
+		if (client == null || regex == null || regex.isEmpty()) {
+			throw new IllegalArgumentException("Client and regex are required");
+		}
+		return new ClientRule(client, null, Pattern.compile(regex));
+	}
+
+	/**
+	 * Parse a rule written as CLIENT:contains:text or CLIENT:regex:expression.
+	 *
+	 * @param rule
+	 * @return
+	 */
+	public static ClientRule parse(String rule) {
+		if (rule == null) {
+			throw new IllegalArgumentException("Rule cannot be null");
+		}
+		String[] parts = rule.split(SEPARATOR, 3);
+		if (parts.length != 3) {
+			throw new IllegalArgumentException("Expected CLIENT:contains:text or CLIENT:regex:expression but found: " + rule);
+		}
+		Client client = Client.valueOf(parts[0].trim());
+		String type = parts[1].trim();
+		if (CONTAINS.equals(type)) {
+			return contains(client, parts[2]);
+		}
+		if (REGEX.equals(type)) {
+			return regex(client, parts[2]);
+		}
+		throw new IllegalArgumentException("Unknown rule type: " + type);
+	}
+
+	/**
+	 * @param userAgent
+	 * @return true if this rule identifies the user agent.
+	 */
+	public boolean matches(String userAgent) {
+		if (substring != null) {
+			return userAgent.indexOf(substring) >= 0;
+		}
+		return pattern.matcher(userAgent).find();
+	}
+
+	public Client getClient() {
+		return client;
+	}
+
+	@Override
+	public String toString() {
+		return client + SEPARATOR + (substring != null ? CONTAINS + SEPARATOR + substring : REGEX + SEPARATOR + pattern.pattern());
+	}
+}
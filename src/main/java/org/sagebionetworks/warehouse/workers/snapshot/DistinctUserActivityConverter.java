@@ -0,0 +1,121 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.model.Client;
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
+import org.sagebionetworks.warehouse.workers.utils.LongHashSet;
+
+/**
+ * Converts the access records of a single file to user activity, dropping
+ * each (user, date, client) that was already converted from the same file.
+ * The table ignores duplicates anyway, so this only saves sending them to
+ * the database. Create a new instance for each file.
+ *
+ * Each activity is remembered as one non-negative long: the user ID in 39
+ * bits, the ordinal of the date within the file in the next 20 bits and the
+ * client ordinal in the low 4 bits. Activities that do not fit are remembered
+ * as objects.
+ *
+ * Not thread safe.
+ */
+public class DistinctUserActivityConverter implements SnapshotWorker<AccessRecord, UserActivityPerClientPerDay> {
+
+	static final int CLIENT_BITS = 4;
+	static final int DATE_BITS = 20;
+	static final int USER_ID_BITS = 63 - DATE_BITS - CLIENT_BITS;
+	static final long MAX_USER_ID = (1L << USER_ID_BITS) - 1;
+	static final int MAX_DATES = 1 << DATE_BITS;
+
+	private final SnapshotWorker<AccessRecord, UserActivityPerClientPerDay> converter;
+	private final LongHashSet packed = new LongHashSet();
+	private final Set<UserActivityPerClientPerDay> unpacked = new HashSet<UserActivityPerClientPerDay>();
+	private final Map<String, Integer> dateOrdinals = new HashMap<String, Integer>();
+	private long duplicates = 0;
+
+	/**
+	 *
+	 * @param converter Converts each access record to user activity.
+	 */
+	public DistinctUserActivityConverter(SnapshotWorker<AccessRecord, UserActivityPerClientPerDay> converter) {
+		this.converter = converter;
+	}
+
+	@Override
+	public List<UserActivityPerClientPerDay> convert(AccessRecord record) {
+		List<UserActivityPerClientPerDay> activities = converter.convert(record);
+		if (activities == null) {
+			return null;
+		}
+		List<UserActivityPerClientPerDay> distinct = null;
+		for (int i = 0; i < activities.size(); i++) {
+			UserActivityPerClientPerDay activity = activities.get(i);
+			if (isNew(activity)) {
+				if (distinct != null) {
+					distinct.add(activity);
+				}
+			} else {
+				duplicates++;
+				if (distinct == null) {
+					// copy the new activities seen so far.
+					distinct = new ArrayList<UserActivityPerClientPerDay>(activities.subList(0, i));
+				}
+			}
+		}
+		if (distinct == null) {
+			return activities;
+		}
+		return distinct.isEmpty() ? null : distinct;
+	}
+
+	/**
+	 * @return The number of activities dropped as duplicates.
+	 */
+	public long getDuplicates() {
+		return duplicates;
+	}
+
+	/**
+	 * @return The number of distinct activities converted.
+	 */
+	public int getDistinct() {
+		return packed.size() + unpacked.size();
+	}
+
+	private boolean isNew(UserActivityPerClientPerDay activity) {
+		long key = pack(activity);
+		if (key < 0) {
+			return unpacked.add(activity);
+		}
+		return packed.add(key);
+	}
+
+	/**
+	 * @param activity
+	 * @return the packed activity, or -1 if the activity cannot be packed.
+	 */
+	long pack(UserActivityPerClientPerDay activity) {
+		Long userId = activity.getUserId();
+		Client client = activity.getClient();
+		String date = activity.getDate();
+		if (userId == null || userId < 0 || userId > MAX_USER_ID || client == null
+				|| client.ordinal() >= (1 << CLIENT_BITS) || date == null) {
+			return -1;
+		}
+		Integer dateOrdinal = dateOrdinals.get(date);
+		if (dateOrdinal == null) {
+			if (dateOrdinals.size() >= MAX_DATES) {
+				return -1;
+			}
+			dateOrdinal = dateOrdinals.size();
+			dateOrdinals.put(date, dateOrdinal);
+		}
+		return (userId << (DATE_BITS + CLIENT_BITS)) | ((long) dateOrdinal << CLIENT_BITS) | client.ordinal();
+	}
+}
@@ -0,0 +1,37 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.model.ProcessedAccessRecord;
+import org.sagebionetworks.warehouse.workers.utils.AccessRecordUtils;
+
+import com.google.inject.Inject;
+
+/**
+ * Converts the records of a collated access record file to the rows of the
+ * PROCESSED_ACCESS_RECORD table.
+ */
+public class ProcessAccessRecordConverter implements SnapshotWorker<AccessRecord, ProcessedAccessRecord> {
+
+	private static Logger log = LogManager.getLogger(ProcessAccessRecordConverter.class);
+	private ClientClassifier clientClassifier;
+
+	@Inject
+	public ProcessAccessRecordConverter(ClientClassifier clientClassifier) {
+		super();
+		this.clientClassifier = clientClassifier;
+	}
+
+	@Override
+	public List<ProcessedAccessRecord> convert(AccessRecord record) {
+		if (!AccessRecordUtils.isValidAccessRecord(record)) {
+			log.error("Invalid Access Record: " + record.toString());
+			return null;
+		}
+		return Arrays.asList(AccessRecordUtils.processAccessRecord(record, clientClassifier.classify(record.getUserAgent())));
+	}
+}
@@ -0,0 +1,140 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sagebionetworks.warehouse.workers.db.snapshot.CompletableSnapshotDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.SnapshotDao;
+
+/**
+ * One destination of a snapshot file that is read once and written to several
+ * tables. Each sink converts and batches the records it is given on the
+ * reading thread, and its full batches are inserted with its own dao on an
+ * insert thread. A failure in one sink is captured so that the other sinks
+ * can carry on.
+ * 
+ * @param <K> the type of input record from snapshot file
+ * @param <V> the type of record that is written to the sink's table
+ */
+public class SnapshotSink<K,V> {
+
+	private final String name;
+	private final SnapshotWorker<K,V> converter;
+	private final SnapshotDao<V> dao;
+	private final int batchSize;
+	private List<V> batch;
+	private volatile int noRecords = 0;
+	private volatile RuntimeException failure = null;
+
+	/**
+	 * 
+	 * @param name the name used to track the completion of this sink
+	 * @param converter
+	 * @param dao
+	 * @param batchSize
+	 */
+	public SnapshotSink(String name, SnapshotWorker<K,V> converter, SnapshotDao<V> dao, int batchSize) {
+		this.name = name;
+		this.converter = converter;
+		this.dao = dao;
+		this.batchSize = batchSize;
+		this.batch = new ArrayList<V>(batchSize);
+	}
+
+	/**
+	 * Create a new sink, inferring the record types.
+	 */
+	public static <K,V> SnapshotSink<K,V> create(String name, SnapshotWorker<K,V> converter, SnapshotDao<V> dao, int batchSize) {
+		return new SnapshotSink<K,V>(name, converter, dao, batchSize);
+	}
+
+	/**
+	 * Convert the record and add it to the current batch. Records are ignored
+	 * once this sink has failed.
+	 * 
+	 * @param record
+	 * @return true if the batch is full and should be taken.
+	 */
+	public boolean accept(K record) {
+		if (hasFailed()) {
+			return false;
+		}
+		List<V> converted = converter.convert(record);
+		if (converted != null)
+			batch.addAll(converted);
+		return batch.size() >= batchSize;
+	}
+
+	/**
+	 * Take the current batch and start a new one.
+	 * 
+	 * @return the insert of the batch, which captures its own failure, or
+	 *         null if there is nothing to insert.
+	 */
+	public Runnable takeBatch() {
+		if (hasFailed() || batch.isEmpty()) {
+			return null;
+		}
+		final List<V> toInsert = batch;
+		batch = new ArrayList<V>(batchSize);
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				insert(toInsert);
+			}
+		};
+	}
+
+	/*
+	 * Only called by one insert thread at a time.
+	 */
+	private void insert(List<V> toInsert) {
+		if (hasFailed()) {
+			return;
+		}
+		try {
+			dao.insert(toInsert);
+			noRecords += toInsert.size();
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Called once every batch of the file was inserted, so a
+	 * CompletableSnapshotDao can write what it held back.
+	 */
+	public void complete() {
+		if (hasFailed() || !(dao instanceof CompletableSnapshotDao)) {
+			return;
+		}
+		try {
+			((CompletableSnapshotDao<V>) dao).complete();
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of records written by this sink
+	 */
+	public int getNumberOfRecords() {
+		return noRecords;
+	}
+
+	public boolean hasFailed() {
+		return failure != null;
+	}
+
+	/**
+	 * @return the exception that stopped this sink, null if it has not failed
+	 */
+	public RuntimeException getFailure() {
+		return failure;
+	}
+}
@@ -1,13 +1,29 @@
 package org.sagebionetworks.warehouse.workers.snapshot;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.sagebionetworks.csv.utils.ObjectCSVReader;
 import org.sagebionetworks.warehouse.workers.db.snapshot.SnapshotDao;
 import org.sagebionetworks.common.util.progress.ProgressCallback;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.sqs.model.Message;
 
 /**
@@ -16,6 +32,93 @@ import com.amazonaws.services.sqs.model.Message;
  */
 public class SnapshotWriter {
 
+	/**
+	 * The default number of threads inserting batches in pipelined mode.
+	 */
+	public static final int DEFAULT_INSERT_THREADS = 2;
+	/**
+	 * The default number of converted batches that can wait for an insert
+	 * thread in pipelined mode.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 2;
+	/**
+	 * The number of threads inserting batches for all the pipelined writes of
+	 * the process, well below the size of the connection pool.
+	 */
+	public static final int INSERT_POOL_SIZE = 16;
+	/**
+	 * How long the reader will wait on a full queue or a running insert before
+	 * it makes progress on the message again.
+	 */
+	static final long HEARTBEAT_WAIT_MS = 1000L;
+	/**
+	 * How long an idle insert thread waits for a batch before it checks for
+	 * the end of the stream.
+	 */
+	static final long POLL_WAIT_MS = 100L;
+
+	/**
+	 * The insert threads shared by every pipelined write. A write whose
+	 * insert threads are all waiting for the pool still reads ahead up to
+	 * its queue capacity, and then waits for the writes ahead of it.
+	 */
+	private static final ExecutorService INSERT_EXECUTOR = createInsertExecutor(INSERT_POOL_SIZE);
+
+	/**
+	 * Runs the inserts of the sinks, which capture their own failures.
+	 */
+	private static final SnapshotDao<Runnable> RUN_INSERTS = new SnapshotDao<Runnable>() {
+
+		@Override
+		public void insert(List<Runnable> batch) {
+			for (Runnable insert : batch) {
+				insert.run();
+			}
+		}
+	};
+
+	/**
+	 * A pool of the given number of threads that are released once they have
+	 * been idle for a minute.
+	 *
+	 * @param threads
+	 * @return
+	 */
+	static ThreadPoolExecutor createInsertExecutor(int threads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Whether a failure to write a file came from reading it, such as a
+	 * dropped connection to S3, rather than from its content. Such a message
+	 * should be put back so the file is read again. The reader wraps its
+	 * IOExceptions in RuntimeExceptions, so the causes are checked too.
+	 *
+	 * An error from S3 decides on its own: only server errors and retryable
+	 * client errors are transient, while a missing object or a denied
+	 * request fails the same way every time it is read.
+	 *
+	 * @param e
+	 * @return
+	 */
+	public static boolean isReadFailure(Throwable e) {
+		boolean readFailed = false;
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof AmazonServiceException) {
+				return ((AmazonServiceException) cause).getStatusCode() >= 500;
+			}
+			if (cause instanceof AmazonClientException) {
+				return ((AmazonClientException) cause).isRetryable();
+			}
+			if (cause instanceof IOException) {
+				readFailed = true;
+			}
+		}
+		return readFailed;
+	}
+
 	/**
 	 * Read K records from reader, convert K to V, and write V records to a table using dao
 	 * 
@@ -55,4 +158,355 @@ public class SnapshotWriter {
 		}
 		return noRecords;
 	}
+
+	/**
+	 * Pipelined version of
+	 * {@link #write(ObjectCSVReader, SnapshotDao, int, ProgressCallback, Message, SnapshotWorker)}
+	 * using the default number of insert threads and queue capacity.
+	 *
+	 * @see #writePipelined(ObjectCSVReader, SnapshotDao, int, ProgressCallback, Message, SnapshotWorker, int, int)
+	 */
+	public static <K,V> int writePipelined(ObjectCSVReader<K> reader, SnapshotDao<V> dao,
+			int batchSize, ProgressCallback<Message> callback, Message message,
+			SnapshotWorker<K,V> worker) throws IOException {
+		return writePipelined(reader, dao, batchSize, callback, message, worker,
+				DEFAULT_INSERT_THREADS, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Read K records from reader, convert K to V, and write V records to a table
+	 * using dao, overlapping the reading and converting with the inserts.
+	 *
+	 * The calling thread reads and converts records and hands each full batch
+	 * to a bounded queue that is drained by insertThreads tasks running on the
+	 * insert threads shared by all writes. When the
+	 * queue is full the calling thread blocks until an insert thread catches
+	 * up, but keeps calling progressMade() while it waits. If any insert fails
+	 * no more batches are queued and the failure of the earliest failed batch
+	 * is thrown from this method once all insert threads have stopped.
+	 *
+	 * With more than one insert thread batches can be inserted out of order.
+	 * That is only safe for DAOs that ignore duplicates of identical rows. A
+	 * DAO whose last write must win, such as one that uses ON DUPLICATE KEY
+	 * UPDATE, must be given a single insert thread.
+	 *
+	 * @param <K> the type of input record from snapshot file
+	 * @param <V> the type of record that is written to a table
+	 * @param reader
+	 * @param dao
+	 * @param batchSize
+	 * @param callback
+	 * @param message
+	 * @param worker
+	 * @param insertThreads the number of threads inserting batches
+	 * @param queueCapacity the maximum number of batches waiting to be inserted
+	 * @return the number of records written
+	 * @throws IOException
+	 */
+	public static <K,V> int writePipelined(ObjectCSVReader<K> reader, SnapshotDao<V> dao,
+			int batchSize, ProgressCallback<Message> callback, Message message,
+			SnapshotWorker<K,V> worker, int insertThreads, int queueCapacity) throws IOException {
+		if (insertThreads < 1) {
+			throw new IllegalArgumentException("insertThreads must be at least 1");
+		}
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("queueCapacity must be at least 1");
+		}
+		return writePipelined(reader, dao, batchSize, callback, message, worker,
+				insertThreads, new ArrayBlockingQueue<Batch<V>>(queueCapacity));
+	}
+
+	/**
+	 * @see #writePipelined(ObjectCSVReader, SnapshotDao, int, ProgressCallback, Message, SnapshotWorker, int, int)
+	 */
+	static <K,V> int writePipelined(ObjectCSVReader<K> reader, SnapshotDao<V> dao,
+			int batchSize, ProgressCallback<Message> callback, Message message,
+			SnapshotWorker<K,V> worker, int insertThreads, BlockingQueue<Batch<V>> queue) throws IOException {
+		return writePipelined(reader, dao, batchSize, callback, message, worker, insertThreads, queue, INSERT_EXECUTOR);
+	}
+
+	/**
+	 * @see #writePipelined(ObjectCSVReader, SnapshotDao, int, ProgressCallback, Message, SnapshotWorker, int, int)
+	 */
+	static <K,V> int writePipelined(ObjectCSVReader<K> reader, SnapshotDao<V> dao,
+			int batchSize, ProgressCallback<Message> callback, Message message,
+			SnapshotWorker<K,V> worker, int insertThreads, BlockingQueue<Batch<V>> queue,
+			ExecutorService executor) throws IOException {
+		InsertStage<V> stage = new InsertStage<V>(dao, queue);
+		List<Future<Void>> futures = new LinkedList<Future<Void>>();
+		try {
+			for (int i = 0; i < insertThreads; i++) {
+				futures.add(executor.submit(stage));
+			}
+			K record = null;
+			List<V> batch = new ArrayList<V>(batchSize);
+			long sequence = 0;
+			while (!stage.hasFailed() && (record = reader.next()) != null) {
+				List<V> snapshot = worker.convert(record);
+				if (snapshot != null)
+					batch.addAll(snapshot);
+				if (batch.size() >= batchSize) {
+					callback.progressMade(message);
+					enqueue(queue, new Batch<V>(sequence++, batch), stage, callback, message);
+					batch = new ArrayList<V>(batchSize);
+				}
+			}
+			if (batch.size() > 0 && !stage.hasFailed()) {
+				callback.progressMade(message);
+				enqueue(queue, new Batch<V>(sequence++, batch), stage, callback, message);
+			}
+			// insert tasks stop once the queue is drained.
+			stage.endOfStream();
+			for (Future<Void> future : futures) {
+				waitFor(future, stage, callback, message);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing snapshot batches");
+		} finally {
+			// stops the insert tasks if the reader failed.
+			stop(stage, futures);
+		}
+		stage.throwFirstFailure();
+		return stage.getRecordsWritten();
+	}
+
+	/**
+	 * Read K records from reader once and pass each of them to every sink,
+	 * overlapping the reading and converting with the inserts of the sinks.
+	 *
+	 * The full batches of all the sinks go through a single bounded queue
+	 * that is drained by one insert task, so the batches of each sink are
+	 * inserted in order and a sink's dao is only used by one thread at a
+	 * time. A sink that fails stops taking records while the other sinks
+	 * carry on. Once every batch was inserted each sink is completed.
+	 *
+	 * @param <K> the type of input record from snapshot file
+	 * @param reader
+	 * @param sinks
+	 * @param callback
+	 * @param message
+	 * @throws IOException
+	 */
+	public static <K> void writePipelined(ObjectCSVReader<K> reader, List<? extends SnapshotSink<K,?>> sinks,
+			ProgressCallback<Message> callback, Message message) throws IOException {
+		writePipelined(reader, sinks, callback, message,
+				new ArrayBlockingQueue<Batch<Runnable>>(DEFAULT_QUEUE_CAPACITY), INSERT_EXECUTOR);
+	}
+
+	/**
+	 * @see #writePipelined(ObjectCSVReader, List, ProgressCallback, Message)
+	 */
+	static <K> void writePipelined(ObjectCSVReader<K> reader, List<? extends SnapshotSink<K,?>> sinks,
+			ProgressCallback<Message> callback, Message message, BlockingQueue<Batch<Runnable>> queue,
+			ExecutorService executor) throws IOException {
+		InsertStage<Runnable> stage = new InsertStage<Runnable>(RUN_INSERTS, queue);
+		List<Future<Void>> futures = new LinkedList<Future<Void>>();
+		try {
+			futures.add(executor.submit(stage));
+			K record = null;
+			long sequence = 0;
+			while (!stage.hasFailed() && (record = reader.next()) != null) {
+				for (SnapshotSink<K,?> sink : sinks) {
+					if (sink.accept(record)) {
+						sequence = enqueue(queue, sink, sequence, stage, callback, message);
+					}
+				}
+			}
+			for (SnapshotSink<K,?> sink : sinks) {
+				sequence = enqueue(queue, sink, sequence, stage, callback, message);
+			}
+			// the insert task stops once the queue is drained.
+			stage.endOfStream();
+			for (Future<Void> future : futures) {
+				waitFor(future, stage, callback, message);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing snapshot batches");
+		} finally {
+			// stops the insert task if the reader failed.
+			stop(stage, futures);
+		}
+		stage.throwFirstFailure();
+		for (SnapshotSink<K,?> sink : sinks) {
+			sink.complete();
+		}
+	}
+
+	/**
+	 * Queue the current batch of a sink, if it has one.
+	 *
+	 * @return the sequence of the next batch
+	 */
+	private static long enqueue(BlockingQueue<Batch<Runnable>> queue, SnapshotSink<?,?> sink, long sequence,
+			InsertStage<Runnable> stage, ProgressCallback<Message> callback, Message message)
+			throws InterruptedException {
+		// null once the sink has failed on the insert thread.
+		Runnable insert = sink.takeBatch();
+		if (insert == null || stage.hasFailed()) {
+			return sequence;
+		}
+		callback.progressMade(message);
+		enqueue(queue, new Batch<Runnable>(sequence, Collections.singletonList(insert)), stage, callback, message);
+		return sequence + 1;
+	}
+
+	/**
+	 * Stop the insert tasks of a write, including those still waiting for a
+	 * thread, so they do not hold the shared threads.
+	 */
+	private static void stop(InsertStage<?> stage, List<Future<Void>> futures) {
+		stage.stop();
+		for (Future<Void> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * Put a batch on the queue, making progress while the queue is full.
+	 * Gives up if the stage has already failed.
+	 */
+	private static <V> void enqueue(BlockingQueue<Batch<V>> queue, Batch<V> batch,
+			InsertStage<V> stage, ProgressCallback<Message> callback, Message message)
+			throws InterruptedException {
+		while (!queue.offer(batch, HEARTBEAT_WAIT_MS, TimeUnit.MILLISECONDS)) {
+			if (stage.hasFailed()) {
+				return;
+			}
+			callback.progressMade(message);
+		}
+	}
+
+	/**
+	 * Wait for an insert task to finish, making progress while it runs. A task
+	 * still waiting for a shared thread is not waited for once the other tasks
+	 * have drained the queue.
+	 */
+	private static void waitFor(Future<Void> future, InsertStage<?> stage,
+			ProgressCallback<Message> callback, Message message) throws InterruptedException {
+		while (!stage.isDrained()) {
+			try {
+				future.get(HEARTBEAT_WAIT_MS, TimeUnit.MILLISECONDS);
+				return;
+			} catch (TimeoutException e) {
+				callback.progressMade(message);
+			} catch (ExecutionException e) {
+				// failures are captured by the InsertStage.
+				return;
+			}
+		}
+	}
+
+	/**
+	 * A numbered batch of records.
+	 */
+	static class Batch<V> {
+		final long sequence;
+		final List<V> records;
+
+		Batch(long sequence, List<V> records) {
+			this.sequence = sequence;
+			this.records = records;
+		}
+	}
+
+	/**
+	 * Takes batches from the queue and inserts them until the queue is drained
+	 * after the end of the stream, until any batch fails, or until it is
+	 * stopped.
+	 */
+	private static class InsertStage<V> implements Callable<Void> {
+		final SnapshotDao<V> dao;
+		final BlockingQueue<Batch<V>> queue;
+		final AtomicInteger recordsWritten = new AtomicInteger(0);
+		final AtomicInteger active = new AtomicInteger(0);
+		// guarded by this
+		Throwable firstFailure;
+		long firstFailureSequence = Long.MAX_VALUE;
+		volatile boolean failed = false;
+		volatile boolean endOfStream = false;
+		volatile boolean stopped = false;
+
+		InsertStage(SnapshotDao<V> dao, BlockingQueue<Batch<V>> queue) {
+			this.dao = dao;
+			this.queue = queue;
+		}
+
+		@Override
+		public Void call() throws Exception {
+			active.incrementAndGet();
+			try {
+				while (!failed && !stopped) {
+					Batch<V> batch = queue.poll(POLL_WAIT_MS, TimeUnit.MILLISECONDS);
+					if (batch == null) {
+						// the last batch can be queued after the poll timed out
+						// but before the end of the stream was signaled.
+						if (endOfStream && queue.isEmpty()) {
+							return null;
+						}
+						continue;
+					}
+					try {
+						dao.insert(batch.records);
+						recordsWritten.addAndGet(batch.records.size());
+					} catch (Throwable e) {
+						recordFailure(batch.sequence, e);
+						return null;
+					}
+				}
+				return null;
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+
+		void endOfStream() {
+			endOfStream = true;
+		}
+
+		void stop() {
+			stopped = true;
+		}
+
+		synchronized void recordFailure(long sequence, Throwable e) {
+			if (sequence < firstFailureSequence) {
+				firstFailureSequence = sequence;
+				firstFailure = e;
+			}
+			failed = true;
+		}
+
+		boolean hasFailed() {
+			return failed;
+		}
+
+		/**
+		 * @return true once no task is running and none has anything left to
+		 *         insert.
+		 */
+		boolean isDrained() {
+			return endOfStream && active.get() == 0 && (failed || queue.isEmpty());
+		}
+
+		int getRecordsWritten() {
+			return recordsWritten.get();
+		}
+
+		synchronized void throwFirstFailure() throws IOException {
+			if (firstFailure == null) {
+				return;
+			}
+			if (firstFailure instanceof RuntimeException) {
+				throw (RuntimeException) firstFailure;
+			}
+			if (firstFailure instanceof Error) {
+				throw (Error) firstFailure;
+			}
+			if (firstFailure instanceof IOException) {
+				throw (IOException) firstFailure;
+			}
+			throw new RuntimeException(firstFailure);
+		}
+	}
 }
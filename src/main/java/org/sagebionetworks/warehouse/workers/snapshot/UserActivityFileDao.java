@@ -0,0 +1,53 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sagebionetworks.warehouse.workers.db.snapshot.CompletableSnapshotDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.UserActivityBitmapDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.UserActivityPerClientPerDayDao;
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
+
+/**
+ * Writes the user activity of a single file. Each batch is inserted into
+ * USER_ACTIVITY_PER_CLIENT_PER_DAY as it comes, while the bitmaps of active
+ * users are updated once for the whole file by {@link #complete()}. Each
+ * (date, client) bitmap row is then locked and rewritten once per file
+ * rather than once per batch.
+ *
+ * The activity is expected to be distinct, as written by a
+ * DistinctUserActivityConverter, so only the distinct activity of the file is
+ * held in memory. Create a new instance for each file.
+ *
+ * Not thread safe.
+ */
+public class UserActivityFileDao implements CompletableSnapshotDao<UserActivityPerClientPerDay> {
+
+	private final UserActivityPerClientPerDayDao dao;
+	private final UserActivityBitmapDao bitmapDao;
+	private final List<UserActivityPerClientPerDay> activity = new ArrayList<UserActivityPerClientPerDay>();
+
+	/**
+	 *
+	 * @param dao
+	 * @param bitmapDao
+	 */
+	public UserActivityFileDao(UserActivityPerClientPerDayDao dao, UserActivityBitmapDao bitmapDao) {
+		this.dao = dao;
+		this.bitmapDao = bitmapDao;
+	}
+
+	@Override
+	public void insert(List<UserActivityPerClientPerDay> batch) {
+		dao.insert(batch);
+		activity.addAll(batch);
+	}
+
+	@Override
+	public void complete() {
+		if (!activity.isEmpty()) {
+			bitmapDao.addUserActivity(activity);
+			activity.clear();
+		}
+	}
+}
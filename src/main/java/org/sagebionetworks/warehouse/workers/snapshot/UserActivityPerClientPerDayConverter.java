@@ -0,0 +1,38 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
+import org.sagebionetworks.warehouse.workers.utils.AccessRecordUtils;
+
+import com.google.inject.Inject;
+
+/**
+ * Converts the records of a collated access record file to the rows of the
+ * USER_ACTIVITY_PER_CLIENT_PER_DAY table.
+ */
+public class UserActivityPerClientPerDayConverter implements SnapshotWorker<AccessRecord, UserActivityPerClientPerDay> {
+
+	private static Logger log = LogManager.getLogger(UserActivityPerClientPerDayConverter.class);
+	private ClientClassifier clientClassifier;
+
+	@Inject
+	public UserActivityPerClientPerDayConverter(ClientClassifier clientClassifier) {
+		super();
+		this.clientClassifier = clientClassifier;
+	}
+
+	@Override
+	public List<UserActivityPerClientPerDay> convert(AccessRecord record) {
+		if (!AccessRecordUtils.isValidAccessRecord(record)) {
+			log.error("Invalid Access Record: " + record.toString());
+			return null;
+		}
+		return Arrays.asList(AccessRecordUtils.getUserActivityPerClientPerDay(record, clientClassifier.classify(record.getUserAgent())));
+	}
+
+}
@@ -1,7 +0,0 @@
-package org.sagebionetworks.warehouse.workers.snapshot;
-
-import org.sagebionetworks.warehouse.workers.bucket.TopicBucketInfo;
-
-public class UserActivityPerClientPerDayTopicBucketInfo extends TopicBucketInfo {
-
-}
@@ -1,8 +1,5 @@
 package org.sagebionetworks.warehouse.workers.utils;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import org.sagebionetworks.common.util.PathNormalizer;
 import org.sagebionetworks.repo.model.audit.AccessRecord;
 import org.sagebionetworks.warehouse.workers.model.Client;
@@ -11,77 +8,172 @@ import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
 
 public class AccessRecordUtils {
 
-	private static final String R_CLIENT = "synapseRClient";
-	private static final String PYTHON_CLIENT = "python-requests";
-	private static final String WEB_CLIENT = "Synapse-Web-Client";
-	private static final String JAVA_CLIENT = "Synpase-Java-Client";
-	private static final String COMMAND_LINE_CLIENT = "synapsecommandlineclient";
-	private static final String ELB_CLIENT = "ELB-HealthChecker";
-	
 	public static final String NON_NORMALIZABLE_SIGNATURE = "NON_NORMALIZABLE";
 
-	private static final Pattern ENTITY_PATTERN = Pattern.compile("/entity/(syn\\d+|\\d+)");
+	private static final String ENTITY_PATH = "/entity/";
+	private static final String SYN_PREFIX = "syn";
+	/**
+	 * Longer runs of digits may not fit in a long.
+	 */
+	private static final int MAX_SAFE_DIGITS = 18;
+	private static final char ID_SEGMENT = '#';
+
+	/**
+	 * The maximum number of normalized method signatures kept in memory.
+	 */
+	public static final int MAX_CACHED_SIGNATURES = 10000;
+	private static final LRUCache<String, String> SIGNATURE_CACHE = new LRUCache<String, String>(MAX_CACHED_SIGNATURES);
 
 	/**
 	 * Extract useful information from the access record.
 	 * 
 	 * @param accessRecord
+	 * @param client The client that made the request, as found by the
+	 *            ClientClassifier.
 	 * @return processedAccessRecord
 	 */
-	public static ProcessedAccessRecord processAccessRecord(AccessRecord accessRecord) {
+	public static ProcessedAccessRecord processAccessRecord(AccessRecord accessRecord, Client client) {
 		ProcessedAccessRecord processed = new ProcessedAccessRecord();
 		processed.setSessionId(accessRecord.getSessionId());
 		processed.setTimestamp(accessRecord.getTimestamp());
-		processed.setClient(getClient(accessRecord.getUserAgent()));
+		processed.setClient(client);
 		processed.setEntityId(getEntityId(accessRecord.getRequestURL()));
-		try {
-			processed.setNormalizedMethodSignature(accessRecord.getMethod() + " " +PathNormalizer.normalizeMethodSignature(accessRecord.getRequestURL()));
-		} catch (IllegalArgumentException e) {
-			processed.setNormalizedMethodSignature(NON_NORMALIZABLE_SIGNATURE);
-		}
+		processed.setNormalizedMethodSignature(getNormalizedMethodSignature(accessRecord.getMethod(), accessRecord.getRequestURL()));
 		return processed;
 	}
 
 	/**
-	 * Extract the entityId from the access record's request URL
+	 * Extract the entityId from the access record's request URL: the first
+	 * "/entity/syn123" or "/entity/123", ignoring case.
 	 * 
 	 * @param requestURL
 	 * @return
 	 */
 	public static Long getEntityId(String requestURL) {
-		requestURL = requestURL.toLowerCase();
-		Matcher matcher = ENTITY_PATTERN.matcher(requestURL);
-        if (!matcher.find()) {
-        	return null;
-        }
-        String entityId = matcher.group(1);
-        if (entityId.startsWith("syn")) {
-        	entityId = entityId.substring(3);
-        }
-        return Long.parseLong(entityId);
+		for (int index = requestURL.indexOf('/'); index >= 0; index = requestURL.indexOf('/', index + 1)) {
+			if (!requestURL.regionMatches(true, index, ENTITY_PATH, 0, ENTITY_PATH.length())) {
+				continue;
+			}
+			int start = index + ENTITY_PATH.length();
+			if (requestURL.regionMatches(true, start, SYN_PREFIX, 0, SYN_PREFIX.length())
+					&& isDigit(requestURL, start + SYN_PREFIX.length())) {
+				start += SYN_PREFIX.length();
+			}
+			int end = start;
+			while (isDigit(requestURL, end)) {
+				end++;
+			}
+			if (end > start) {
+				return parseDigits(requestURL, start, end);
+			}
+		}
+		return null;
+	}
+
+	private static boolean isDigit(String value, int index) {
+		if (index >= value.length()) {
+			return false;
+		}
+		char c = value.charAt(index);
+		return c >= '0' && c <= '9';
+	}
+
+	private static long parseDigits(String value, int start, int end) {
+		if (end - start > MAX_SAFE_DIGITS) {
+			return Long.parseLong(value.substring(start, end));
+		}
+		long result = 0L;
+		for (int i = start; i < end; i++) {
+			result = result * 10 + (value.charAt(i) - '0');
+		}
+		return result;
+	}
+
+	/**
+	 * Normalize the method signature of a request. Signatures are cached by
+	 * the method and the shape of the URL, so requests that only differ by
+	 * their IDs are normalized once. This relies on PathNormalizer giving the
+	 * same signature for every ID in a segment; AccessRecordUtilsTest checks
+	 * that against the sample access records.
+	 * 
+	 * @param method
+	 * @param requestURL
+	 * @return
+	 */
+	public static String getNormalizedMethodSignature(String method, String requestURL) {
+		String key = method + " " + getURLShape(requestURL);
+		String signature = SIGNATURE_CACHE.get(key);
+		if (signature == null) {
+			signature = normalizeMethodSignature(method, requestURL);
+			SIGNATURE_CACHE.put(key, signature);
+		}
+		return signature;
 	}
 
 	/**
-	 * Determine the client from the access record's userAgent
+	 * Normalize the method signature of a request without the cache.
 	 * 
-	 * @param userAgent
+	 * @param method
+	 * @param requestURL
 	 * @return
 	 */
-	public static Client getClient(String userAgent) {
-		/*
-		 * The order of web and java client matters since all web client is java client,
-		 * but not all java client is web client.
-		 */
-		if (userAgent.indexOf(WEB_CLIENT) >= 0) return Client.WEB;
-		if (userAgent.indexOf(JAVA_CLIENT) >= 0) return Client.JAVA;
-		if (userAgent.indexOf(R_CLIENT) >= 0) return Client.R;
-		/*
-		 * The order of python and command line client matters.
-		 */
-		if (userAgent.indexOf(PYTHON_CLIENT) >= 0) return Client.PYTHON;
-		if (userAgent.indexOf(COMMAND_LINE_CLIENT) >= 0) return Client.COMMAND_LINE;
-		if (userAgent.indexOf(ELB_CLIENT) >= 0) return Client.ELB_HEALTHCHECKER;
-		return Client.UNKNOWN;
+	static String normalizeMethodSignature(String method, String requestURL) {
+		try {
+			return method + " " + PathNormalizer.normalizeMethodSignature(requestURL);
+		} catch (IllegalArgumentException e) {
+			return NON_NORMALIZABLE_SIGNATURE;
+		}
+	}
+
+	static void clearSignatureCache() {
+		SIGNATURE_CACHE.clear();
+	}
+
+	/**
+	 * Replace each path segment that is an ID (123 or syn123, ignoring case)
+	 * with '#'.
+	 * 
+	 * @param requestURL
+	 * @return
+	 */
+	static String getURLShape(String requestURL) {
+		StringBuilder builder = null;
+		int segmentStart = 0;
+		for (int i = 0; i <= requestURL.length(); i++) {
+			if (i < requestURL.length() && requestURL.charAt(i) != '/') {
+				continue;
+			}
+			if (isIdSegment(requestURL, segmentStart, i)) {
+				if (builder == null) {
+					builder = new StringBuilder(requestURL.length());
+					builder.append(requestURL, 0, segmentStart);
+				}
+				builder.append(ID_SEGMENT);
+			} else if (builder != null) {
+				builder.append(requestURL, segmentStart, i);
+			}
+			if (builder != null && i < requestURL.length()) {
+				builder.append('/');
+			}
+			segmentStart = i + 1;
+		}
+		// URLs without IDs are their own shape.
+		return builder == null ? requestURL : builder.toString();
+	}
+
+	private static boolean isIdSegment(String value, int start, int end) {
+		if (value.regionMatches(true, start, SYN_PREFIX, 0, SYN_PREFIX.length())) {
+			start += SYN_PREFIX.length();
+		}
+		if (start >= end) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (!isDigit(value, i)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -106,9 +198,16 @@ public class AccessRecordUtils {
 		return true;
 	}
 
-	public static UserActivityPerClientPerDay getUserActivityPerClientPerDay(AccessRecord accessRecord) {
+	/**
+	 * 
+	 * @param accessRecord
+	 * @param client The client that made the request, as found by the
+	 *            ClientClassifier.
+	 * @return
+	 */
+	public static UserActivityPerClientPerDay getUserActivityPerClientPerDay(AccessRecord accessRecord, Client client) {
 		UserActivityPerClientPerDay uar = new UserActivityPerClientPerDay();
-		uar.setClient(getClient(accessRecord.getUserAgent()));
+		uar.setClient(client);
 		uar.setUserId(accessRecord.getUserId());
 		uar.setDate(accessRecord.getDate());
 		return uar;
@@ -0,0 +1,13 @@
+package org.sagebionetworks.warehouse.workers.utils;
+
+/**
+ * Abstraction of the system time, so tests can control it.
+ *
+ */
+public interface Clock {
+
+	/**
+	 * @return The current time in MS.
+	 */
+	public long currentTimeMillis();
+}
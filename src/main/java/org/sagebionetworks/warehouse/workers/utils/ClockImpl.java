@@ -0,0 +1,13 @@
+package org.sagebionetworks.warehouse.workers.utils;
+
+/**
+ * The system time.
+ *
+ */
+public class ClockImpl implements Clock {
+
+	@Override
+	public long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+}
@@ -0,0 +1,519 @@
+package org.sagebionetworks.warehouse.workers.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A compressed set of non-negative long values, such as user IDs, in the
+ * style of a Roaring bitmap.
+ *
+ * Each value is split into a key (all but the low 16 bits) and its low 16
+ * bits. The values that share a key are kept in one container: a sorted array
+ * of the low bits while the container holds at most ARRAY_MAX values, and a
+ * bitmap of all 2^16 low bits once it holds more. A sparse container costs two
+ * bytes a value and a dense one a single bit, and AND and OR work one
+ * container at a time.
+ *
+ * Version 1 of the serialized format is a version byte followed by the number
+ * of containers, then for each container the difference of its key from the
+ * previous key and its cardinality, all written as unsigned varints. An array
+ * container is followed by the differences between its values as varints, a
+ * bitmap container by its 1024 words as big endian longs.
+ *
+ * Not thread safe.
+ */
+public class CompressedBitmap {
+
+	public static final byte VERSION_1 = 1;
+	/**
+	 * The maximum cardinality of an array container.
+	 */
+	static final int ARRAY_MAX = 4096;
+	static final int CONTAINER_BITS = 16;
+	static final int MAX_CONTAINER_CARDINALITY = 1 << CONTAINER_BITS;
+	static final int BITMAP_WORDS = MAX_CONTAINER_CARDINALITY / 64;
+
+	private long[] keys;
+	private Container[] containers;
+	private int size;
+
+	public CompressedBitmap() {
+		this(4);
+	}
+
+	private CompressedBitmap(int capacity) {
+		keys = new long[capacity];
+		containers = new Container[capacity];
+		size = 0;
+	}
+
+	/**
+	 * Add a value to the set.
+	 *
+	 * @param value
+	 */
+	public void add(long value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Value cannot be negative: " + value);
+		}
+		long key = value >>> CONTAINER_BITS;
+		int index = Arrays.binarySearch(keys, 0, size, key);
+		if (index < 0) {
+			index = -index - 1;
+			insert(index, key, new Container());
+		}
+		containers[index].add((char) value);
+	}
+
+	/**
+	 * @param value
+	 * @return true if the value is in the set.
+	 */
+	public boolean contains(long value) {
+		if (value < 0) {
+			return false;
+		}
+		int index = Arrays.binarySearch(keys, 0, size, value >>> CONTAINER_BITS);
+		return index >= 0 && containers[index].contains((char) value);
+	}
+
+	/**
+	 * @return The number of values in the set.
+	 */
+	public long getCardinality() {
+		long cardinality = 0L;
+		for (int i = 0; i < size; i++) {
+			cardinality += containers[i].cardinality;
+		}
+		return cardinality;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param other
+	 * @return A new set of the values that are in both sets.
+	 */
+	public CompressedBitmap and(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap(Math.max(1, Math.min(size, other.size)));
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				Container container = containers[i].and(other.containers[j]);
+				if (container.cardinality > 0) {
+					result.insert(result.size, keys[i], container);
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param other
+	 * @return The number of values that are in both sets, without creating
+	 *         their intersection.
+	 */
+	public long andCardinality(CompressedBitmap other) {
+		long cardinality = 0L;
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				cardinality += containers[i].andCardinality(other.containers[j]);
+				i++;
+				j++;
+			}
+		}
+		return cardinality;
+	}
+
+	/**
+	 * @param other
+	 * @return A new set of the values that are in either set.
+	 */
+	public CompressedBitmap or(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap(Math.max(1, size + other.size));
+		int i = 0;
+		int j = 0;
+		while (i < size || j < other.size) {
+			if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+				result.insert(result.size, keys[i], containers[i].copy());
+				i++;
+			} else if (i == size || keys[i] > other.keys[j]) {
+				result.insert(result.size, other.keys[j], other.containers[j].copy());
+				j++;
+			} else {
+				result.insert(result.size, keys[i], containers[i].or(other.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param bitmaps
+	 * @return A new set of the values that are in any of the sets.
+	 */
+	public static CompressedBitmap or(Collection<CompressedBitmap> bitmaps) {
+		CompressedBitmap result = new CompressedBitmap();
+		for (CompressedBitmap bitmap : bitmaps) {
+			result = result.or(bitmap);
+		}
+		return result;
+	}
+
+	/**
+	 * @return The values of the set in ascending order.
+	 */
+	public long[] toArray() {
+		long[] values = new long[(int) getCardinality()];
+		int index = 0;
+		for (int i = 0; i < size; i++) {
+			long high = keys[i] << CONTAINER_BITS;
+			Container container = containers[i];
+			if (container.bits == null) {
+				for (int k = 0; k < container.cardinality; k++) {
+					values[index++] = high | container.array[k];
+				}
+			} else {
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					long word = container.bits[w];
+					while (word != 0) {
+						values[index++] = high | (w * 64 + Long.numberOfTrailingZeros(word));
+						word &= word - 1;
+					}
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Write the set in the current version of the format.
+	 *
+	 * @return
+	 */
+	public byte[] serialize() {
+		// Size the result exactly so it is the only allocation.
+		int length = 1 + VarintUtils.varintSize(size);
+		long previousKey = 0L;
+		for (int i = 0; i < size; i++) {
+			Container container = containers[i];
+			length += VarintUtils.varintSize(keys[i] - previousKey);
+			length += VarintUtils.varintSize(container.cardinality);
+			if (container.bits == null) {
+				int previous = 0;
+				for (int k = 0; k < container.cardinality; k++) {
+					length += VarintUtils.varintSize(container.array[k] - previous);
+					previous = container.array[k];
+				}
+			} else {
+				length += BITMAP_WORDS * 8;
+			}
+			previousKey = keys[i];
+		}
+		byte[] bytes = new byte[length];
+		bytes[0] = VERSION_1;
+		int index = VarintUtils.writeVarint(bytes, 1, size);
+		previousKey = 0L;
+		for (int i = 0; i < size; i++) {
+			Container container = containers[i];
+			index = VarintUtils.writeVarint(bytes, index, keys[i] - previousKey);
+			index = VarintUtils.writeVarint(bytes, index, container.cardinality);
+			if (container.bits == null) {
+				int previous = 0;
+				for (int k = 0; k < container.cardinality; k++) {
+					index = VarintUtils.writeVarint(bytes, index, container.array[k] - previous);
+					previous = container.array[k];
+				}
+			} else {
+				for (long word : container.bits) {
+					for (int shift = 56; shift >= 0; shift -= 8) {
+						bytes[index++] = (byte) (word >>> shift);
+					}
+				}
+			}
+			previousKey = keys[i];
+		}
+		return bytes;
+	}
+
+	/**
+	 * Read a set written by {@link #serialize()}.
+	 *
+	 * @param bytes
+	 * @return
+	 */
+	public static CompressedBitmap deserialize(byte[] bytes) {
+		if (bytes == null || bytes.length == 0) {
+			throw new IllegalArgumentException("Bytes cannot be null or empty");
+		}
+		if (bytes[0] != VERSION_1) {
+			throw new IllegalArgumentException("Unknown bitmap version: " + bytes[0]);
+		}
+		int[] cursor = new int[] { 1 };
+		long count = VarintUtils.readVarint(bytes, cursor);
+		if (count > bytes.length) {
+			throw new IllegalArgumentException("Malformed bitmap");
+		}
+		CompressedBitmap bitmap = new CompressedBitmap(Math.max(1, (int) count));
+		long key = 0L;
+		for (int i = 0; i < count; i++) {
+			long delta = VarintUtils.readVarint(bytes, cursor);
+			if (i > 0 && delta == 0) {
+				throw new IllegalArgumentException("Malformed bitmap");
+			}
+			key += delta;
+			long cardinality = VarintUtils.readVarint(bytes, cursor);
+			if (cardinality < 1 || cardinality > MAX_CONTAINER_CARDINALITY) {
+				throw new IllegalArgumentException("Malformed bitmap");
+			}
+			Container container = new Container();
+			if (cardinality <= ARRAY_MAX) {
+				container.array = new char[(int) cardinality];
+				long value = 0L;
+				for (int k = 0; k < cardinality; k++) {
+					long difference = VarintUtils.readVarint(bytes, cursor);
+					value += difference;
+					if ((k > 0 && difference == 0) || value >= MAX_CONTAINER_CARDINALITY) {
+						throw new IllegalArgumentException("Malformed bitmap");
+					}
+					container.array[k] = (char) value;
+				}
+				container.cardinality = (int) cardinality;
+			} else {
+				int index = cursor[0];
+				if (bytes.length - index < BITMAP_WORDS * 8) {
+					throw new IllegalArgumentException("Malformed bitmap");
+				}
+				container.array = null;
+				container.bits = new long[BITMAP_WORDS];
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					long word = 0L;
+					for (int b = 0; b < 8; b++) {
+						word = (word << 8) | (bytes[index++] & 0xFF);
+					}
+					container.bits[w] = word;
+					container.cardinality += Long.bitCount(word);
+				}
+				cursor[0] = index;
+				if (container.cardinality != cardinality) {
+					throw new IllegalArgumentException("Malformed bitmap");
+				}
+			}
+			bitmap.insert(bitmap.size, key, container);
+		}
+		if (cursor[0] != bytes.length) {
+			throw new IllegalArgumentException("Unexpected bytes after bitmap");
+		}
+		return bitmap;
+	}
+
+	private void insert(int index, long key, Container container) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(containers, index, containers, index + 1, size - index);
+		keys[index] = key;
+		containers[index] = container;
+		size++;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(toArray());
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		return Arrays.equals(toArray(), ((CompressedBitmap) obj).toArray());
+	}
+
+	@Override
+	public String toString() {
+		return "CompressedBitmap [containers=" + size + ", cardinality=" + getCardinality() + "]";
+	}
+
+	/**
+	 * The low bits of the values that share a key. The bits are set only
+	 * when the cardinality is greater than ARRAY_MAX, so two containers with
+	 * the same values always have the same form.
+	 */
+	private static final class Container {
+
+		char[] array = new char[4];
+		long[] bits;
+		int cardinality;
+
+		void add(char low) {
+			if (bits != null) {
+				long mask = 1L << low;
+				if ((bits[low >>> 6] & mask) == 0) {
+					bits[low >>> 6] |= mask;
+					cardinality++;
+				}
+				return;
+			}
+			int index = Arrays.binarySearch(array, 0, cardinality, low);
+			if (index >= 0) {
+				return;
+			}
+			if (cardinality == ARRAY_MAX) {
+				bits = toBits();
+				array = null;
+				add(low);
+				return;
+			}
+			index = -index - 1;
+			if (cardinality == array.length) {
+				array = Arrays.copyOf(array, Math.min(ARRAY_MAX, Math.max(4, array.length * 2)));
+			}
+			System.arraycopy(array, index, array, index + 1, cardinality - index);
+			array[index] = low;
+			cardinality++;
+		}
+
+		boolean contains(char low) {
+			if (bits != null) {
+				return (bits[low >>> 6] & (1L << low)) != 0;
+			}
+			return Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+		}
+
+		Container and(Container other) {
+			if (bits != null && other.bits != null) {
+				long[] words = new long[BITMAP_WORDS];
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					words[w] = bits[w] & other.bits[w];
+				}
+				return fromBits(words);
+			}
+			Container small = bits == null ? this : other;
+			Container large = small == this ? other : this;
+			Container result = new Container();
+			result.array = new char[Math.max(1, small.cardinality)];
+			for (int k = 0; k < small.cardinality; k++) {
+				if (large.contains(small.array[k])) {
+					result.array[result.cardinality++] = small.array[k];
+				}
+			}
+			return result;
+		}
+
+		int andCardinality(Container other) {
+			int cardinality = 0;
+			if (bits != null && other.bits != null) {
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					cardinality += Long.bitCount(bits[w] & other.bits[w]);
+				}
+				return cardinality;
+			}
+			Container small = bits == null ? this : other;
+			Container large = small == this ? other : this;
+			for (int k = 0; k < small.cardinality; k++) {
+				if (large.contains(small.array[k])) {
+					cardinality++;
+				}
+			}
+			return cardinality;
+		}
+
+		Container or(Container other) {
+			if (bits == null && other.bits == null && cardinality + other.cardinality <= ARRAY_MAX) {
+				// merge the sorted arrays
+				Container result = new Container();
+				result.array = new char[cardinality + other.cardinality];
+				int i = 0;
+				int j = 0;
+				while (i < cardinality || j < other.cardinality) {
+					char next;
+					if (j == other.cardinality || (i < cardinality && array[i] < other.array[j])) {
+						next = array[i++];
+					} else if (i == cardinality || array[i] > other.array[j]) {
+						next = other.array[j++];
+					} else {
+						next = array[i++];
+						j++;
+					}
+					result.array[result.cardinality++] = next;
+				}
+				return result;
+			}
+			long[] words = bits != null ? bits.clone() : toBits();
+			if (other.bits != null) {
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					words[w] |= other.bits[w];
+				}
+			} else {
+				for (int k = 0; k < other.cardinality; k++) {
+					words[other.array[k] >>> 6] |= 1L << other.array[k];
+				}
+			}
+			return fromBits(words);
+		}
+
+		Container copy() {
+			Container result = new Container();
+			result.array = array == null ? null : Arrays.copyOf(array, cardinality);
+			result.bits = bits == null ? null : bits.clone();
+			result.cardinality = cardinality;
+			return result;
+		}
+
+		private long[] toBits() {
+			long[] words = new long[BITMAP_WORDS];
+			for (int k = 0; k < cardinality; k++) {
+				words[array[k] >>> 6] |= 1L << array[k];
+			}
+			return words;
+		}
+
+		/**
+		 * A container of the given bits in the form that matches its
+		 * cardinality.
+		 */
+		private static Container fromBits(long[] words) {
+			Container result = new Container();
+			for (long word : words) {
+				result.cardinality += Long.bitCount(word);
+			}
+			if (result.cardinality > ARRAY_MAX) {
+				result.array = null;
+				result.bits = words;
+				return result;
+			}
+			result.array = new char[Math.max(1, result.cardinality)];
+			int index = 0;
+			for (int w = 0; w < BITMAP_WORDS; w++) {
+				long word = words[w];
+				while (word != 0) {
+					result.array[index++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return result;
+		}
+	}
+}
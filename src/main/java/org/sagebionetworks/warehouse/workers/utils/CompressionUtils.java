@@ -1,44 +1,186 @@
 package org.sagebionetworks.warehouse.workers.utils;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
+/**
+ * Compresses strings to gzip byte arrays and back.
+ *
+ * Deflaters, Inflaters, CRC32s and buffers are kept in a small shared pool, so
+ * compressing a value does not create new native zlib state or grow a new
+ * output stream. The pool is not tied to threads: a Codec that does not fit
+ * back in the pool is ended right away, so the native zlib memory never waits
+ * for finalization. The output is a standard gzip member, so values written before and after pooling can be
+ * read either way.
+ */
 public class CompressionUtils {
 
+	/**
+	 * The level used when no compression level is given.
+	 */
+	public static final int DEFAULT_COMPRESSION_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+	static final int GZIP_MAGIC = 0x8b1f;
+	static final int GZIP_HEADER_SIZE = 10;
+	static final int GZIP_TRAILER_SIZE = 8;
+	/**
+	 * The OS byte for "unknown" in RFC 1952.
+	 */
+	static final int GZIP_OS_UNKNOWN = 0xFF;
+	/**
+	 * Magic, deflate, no flags, no time, no extra flags, unknown OS. This is
+	 * the header GZIPOutputStream writes, except that older JDKs write OS 0
+	 * (FAT). Readers ignore the OS byte.
+	 */
+	private static final byte[] GZIP_HEADER = new byte[] { (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8),
+			Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) GZIP_OS_UNKNOWN };
+	static final int INITIAL_BUFFER_SIZE = 1024;
+	/**
+	 * Buffers larger than this are not kept between calls.
+	 */
+	static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * The most Codecs kept between calls.
+	 */
+	static final int MAX_POOLED_CODECS = Runtime.getRuntime().availableProcessors() * 2;
+
+	private static final BlockingQueue<Codec> CODECS = new ArrayBlockingQueue<Codec>(MAX_POOLED_CODECS);
+
 	/**
 	 * Compress a string to a gzip byte array using UTF-8 encoding
-	 * 
+	 *
 	 * @param tobeCompressed
 	 * @return
 	 */
 	public static byte[] compressStringUTF8(String tobeCompressed) {
+		return compressStringUTF8(tobeCompressed, DEFAULT_COMPRESSION_LEVEL);
+	}
+
+	/**
+	 * Compress a string to a gzip byte array using UTF-8 encoding
+	 *
+	 * @param tobeCompressed
+	 * @param level
+	 *            The Deflater compression level, 0-9 or -1 for the default.
+	 * @return
+	 */
+	public static byte[] compressStringUTF8(String tobeCompressed, int level) {
 		if (tobeCompressed == null) throw new IllegalArgumentException();
-		byte[] tobeZipped = tobeCompressed.getBytes(StandardCharsets.UTF_8);
+		validateLevel(level);
+		Codec codec = borrowCodec();
 		try {
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
-			GZIPOutputStream zipper = new GZIPOutputStream(out);
-			zipper.write(tobeZipped);
-			zipper.close();
-			return out.toByteArray();
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+			return codec.compress(tobeCompressed.getBytes(StandardCharsets.UTF_8), level);
+		} finally {
+			returnCodec(codec);
+		}
+	}
+
+	/**
+	 * Compress each string of a batch to a gzip byte array using UTF-8
+	 * encoding. Each result is sized exactly to its compressed length.
+	 *
+	 * @param batch
+	 * @param level
+	 *            The Deflater compression level, 0-9 or -1 for the default.
+	 * @return the compressed strings in the order of the batch.
+	 */
+	public static List<byte[]> compressStringsUTF8(List<String> batch, int level) {
+		if (batch == null) throw new IllegalArgumentException();
+		validateLevel(level);
+		Codec codec = borrowCodec();
+		try {
+			List<byte[]> results = new ArrayList<byte[]>(batch.size());
+			for (String tobeCompressed : batch) {
+				if (tobeCompressed == null) throw new IllegalArgumentException();
+				results.add(codec.compress(tobeCompressed.getBytes(StandardCharsets.UTF_8), level));
+			}
+			return results;
+		} finally {
+			returnCodec(codec);
 		}
 	}
 
 	/**
 	 * Decompress a zipped byte array to a string using UTF-8 encoding
-	 * 
+	 *
 	 * @param zippedBytes
 	 * @return
 	 */
 	public static String decompressUTF8(byte[] zippedBytes){
 		if (zippedBytes == null) throw new IllegalArgumentException();
+		if (!hasSimpleHeader(zippedBytes)) {
+			// optional header fields or multiple members.
+			return decompressUTF8Stream(zippedBytes);
+		}
+		Codec codec = borrowCodec();
+		try {
+			return codec.decompress(zippedBytes);
+		} finally {
+			returnCodec(codec);
+		}
+	}
+
+	/**
+	 * @return a pooled Codec, or a new one when the pool is empty.
+	 */
+	private static Codec borrowCodec() {
+		Codec codec = CODECS.poll();
+		return codec != null ? codec : new Codec();
+	}
+
+	/**
+	 * Put the Codec back in the pool, or free its native memory when the pool
+	 * is full.
+	 */
+	private static void returnCodec(Codec codec) {
+		if (!CODECS.offer(codec)) {
+			codec.end();
+		}
+	}
+
+	/**
+	 * @return the number of Codecs waiting in the pool.
+	 */
+	static int getPooledCodecCount() {
+		return CODECS.size();
+	}
+
+	/**
+	 * Does the gzip member have a header without optional fields?
+	 */
+	static boolean hasSimpleHeader(byte[] zippedBytes) {
+		return zippedBytes.length >= GZIP_HEADER_SIZE + GZIP_TRAILER_SIZE
+				&& (zippedBytes[0] & 0xFF) == (GZIP_MAGIC & 0xFF)
+				&& (zippedBytes[1] & 0xFF) == (GZIP_MAGIC >> 8)
+				&& zippedBytes[2] == Deflater.DEFLATED
+				&& zippedBytes[3] == 0;
+	}
+
+	private static void validateLevel(int level) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+	}
+
+	/**
+	 * Decompress with GZIPInputStream for input the pooled Inflater does not
+	 * handle.
+	 */
+	static String decompressUTF8Stream(byte[] zippedBytes) {
 		try {
 			ByteArrayInputStream in = new ByteArrayInputStream(zippedBytes);
 			GZIPInputStream unZipper = new GZIPInputStream(in);
@@ -56,4 +198,106 @@ public class CompressionUtils {
 			throw new RuntimeException(e);
 		}
 	}
+
+	/**
+	 * The zlib state and buffers used by one call at a time.
+	 */
+	private static class Codec {
+
+		final Deflater deflater = new Deflater(DEFAULT_COMPRESSION_LEVEL, true);
+		final Inflater inflater = new Inflater(true);
+		final CRC32 crc = new CRC32();
+		byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+		byte[] compress(byte[] input, int level) {
+			crc.reset();
+			crc.update(input, 0, input.length);
+			deflater.reset();
+			deflater.setLevel(level);
+			deflater.setInput(input);
+			deflater.finish();
+			// Deflate into the pooled buffer after the header.
+			int length = GZIP_HEADER_SIZE;
+			while (!deflater.finished()) {
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+			byte[] result = new byte[length + GZIP_TRAILER_SIZE];
+			System.arraycopy(GZIP_HEADER, 0, result, 0, GZIP_HEADER_SIZE);
+			System.arraycopy(buffer, GZIP_HEADER_SIZE, result, GZIP_HEADER_SIZE, length - GZIP_HEADER_SIZE);
+			writeIntLE(result, length, (int) crc.getValue());
+			writeIntLE(result, length + 4, input.length);
+			releaseBuffer();
+			return result;
+		}
+
+		String decompress(byte[] zippedBytes) {
+			int trailer = zippedBytes.length - GZIP_TRAILER_SIZE;
+			// The trailer holds the uncompressed size modulo 2^32.
+			int size = readIntLE(zippedBytes, trailer + 4);
+			if (size > buffer.length && size <= MAX_POOLED_BUFFER_SIZE) {
+				buffer = new byte[size];
+			}
+			inflater.reset();
+			inflater.setInput(zippedBytes, GZIP_HEADER_SIZE, trailer - GZIP_HEADER_SIZE);
+			int length = 0;
+			try {
+				while (!inflater.finished()) {
+					if (length == buffer.length) {
+						buffer = Arrays.copyOf(buffer, buffer.length * 2);
+					}
+					int count = inflater.inflate(buffer, length, buffer.length - length);
+					if (count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+						throw new RuntimeException(new IOException("Unexpected end of gzip input"));
+					}
+					length += count;
+				}
+			} catch (DataFormatException e) {
+				throw new RuntimeException(new IOException(e));
+			}
+			if (inflater.getRemaining() > 0) {
+				// another gzip member follows this one.
+				return decompressUTF8Stream(zippedBytes);
+			}
+			crc.reset();
+			crc.update(buffer, 0, length);
+			if (readIntLE(zippedBytes, trailer) != (int) crc.getValue() || size != length) {
+				throw new RuntimeException(new IOException("Corrupt gzip trailer"));
+			}
+			String result = new String(buffer, 0, length, StandardCharsets.UTF_8);
+			releaseBuffer();
+			return result;
+		}
+
+		/**
+		 * Free the native zlib memory. The Codec cannot be used afterwards.
+		 */
+		void end() {
+			deflater.end();
+			inflater.end();
+		}
+
+		/**
+		 * Do not hold on to the memory of an unusually large value.
+		 */
+		private void releaseBuffer() {
+			if (buffer.length > MAX_POOLED_BUFFER_SIZE) {
+				buffer = new byte[INITIAL_BUFFER_SIZE];
+			}
+		}
+	}
+
+	private static void writeIntLE(byte[] bytes, int index, int value) {
+		bytes[index] = (byte) value;
+		bytes[index + 1] = (byte) (value >> 8);
+		bytes[index + 2] = (byte) (value >> 16);
+		bytes[index + 3] = (byte) (value >> 24);
+	}
+
+	private static int readIntLE(byte[] bytes, int index) {
+		return (bytes[index] & 0xFF) | (bytes[index + 1] & 0xFF) << 8 | (bytes[index + 2] & 0xFF) << 16
+				| (bytes[index + 3] & 0xFF) << 24;
+	}
 }
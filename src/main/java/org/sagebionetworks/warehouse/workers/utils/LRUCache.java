@@ -0,0 +1,66 @@
+package org.sagebionetworks.warehouse.workers.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread safe map of bounded size that evicts the least recently used
+ * entry when full.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class LRUCache<K, V> {
+
+	private final LinkedHashMap<K, V> map;
+	private final int maxSize;
+
+	/**
+	 *
+	 * @param maxSize The maximum number of entries kept by the cache.
+	 */
+	public LRUCache(final int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be at least 1");
+		}
+		this.maxSize = maxSize;
+		this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @param key
+	 * @return the cached value or null if the key is not cached.
+	 */
+	public synchronized V get(K key) {
+		return map.get(key);
+	}
+
+	/**
+	 * Cache a value, evicting the least recently used entry if full.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public synchronized void put(K key, V value) {
+		map.put(key, value);
+	}
+
+	public synchronized int size() {
+		return map.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized void clear() {
+		map.clear();
+	}
+}
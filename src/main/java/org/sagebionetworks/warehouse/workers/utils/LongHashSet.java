@@ -0,0 +1,125 @@
+package org.sagebionetworks.warehouse.workers.utils;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive longs backed by an open addressing table, so adding a
+ * value does not box it or allocate an entry.
+ *
+ * Not thread safe.
+ */
+public class LongHashSet {
+
+	static final int DEFAULT_INITIAL_CAPACITY = 1024;
+	static final double MAX_LOAD_FACTOR = 0.5;
+	/**
+	 * Marks an empty slot. Zero itself is tracked by containsZero.
+	 */
+	private static final long EMPTY = 0L;
+
+	private long[] table;
+	private int mask;
+	private int size;
+	private boolean containsZero;
+
+	public LongHashSet() {
+		this(DEFAULT_INITIAL_CAPACITY);
+	}
+
+	/**
+	 *
+	 * @param initialCapacity The number of values the set can hold before it grows.
+	 */
+	public LongHashSet(int initialCapacity) {
+		if (initialCapacity < 1) {
+			throw new IllegalArgumentException("initialCapacity must be at least 1");
+		}
+		int tableSize = Integer.highestOneBit((int) Math.ceil(initialCapacity / MAX_LOAD_FACTOR));
+		if (tableSize < initialCapacity / MAX_LOAD_FACTOR) {
+			tableSize <<= 1;
+		}
+		this.table = new long[tableSize];
+		this.mask = tableSize - 1;
+	}
+
+	/**
+	 * Add a value to the set.
+	 *
+	 * @param value
+	 * @return true if the value was not already in the set.
+	 */
+	public boolean add(long value) {
+		if (value == EMPTY) {
+			if (containsZero) {
+				return false;
+			}
+			containsZero = true;
+			size++;
+			return true;
+		}
+		int i = index(value, mask);
+		for (; table[i] != EMPTY; i = (i + 1) & mask) {
+			if (table[i] == value) {
+				return false;
+			}
+		}
+		table[i] = value;
+		size++;
+		if (size > table.length * MAX_LOAD_FACTOR) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * @param value
+	 * @return true if the value is in the set.
+	 */
+	public boolean contains(long value) {
+		if (value == EMPTY) {
+			return containsZero;
+		}
+		for (int i = index(value, mask); table[i] != EMPTY; i = (i + 1) & mask) {
+			if (table[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(table, EMPTY);
+		containsZero = false;
+		size = 0;
+	}
+
+	private void grow() {
+		long[] old = table;
+		table = new long[old.length * 2];
+		mask = table.length - 1;
+		for (long value : old) {
+			if (value != EMPTY) {
+				int i = index(value, mask);
+				while (table[i] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				table[i] = value;
+			}
+		}
+	}
+
+	/**
+	 * Spread the bits of the value with the MurmurHash3 finalizer so packed
+	 * values that only differ in their high bits do not collide.
+	 */
+	private static int index(long value, int mask) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		return (int) value & mask;
+	}
+}
@@ -0,0 +1,189 @@
+package org.sagebionetworks.warehouse.workers.utils;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.sagebionetworks.repo.model.ACCESS_TYPE;
+import org.sagebionetworks.repo.model.ResourceAccess;
+import org.sagebionetworks.warehouse.workers.model.AclSnapshot;
+
+/**
+ * Encodes the resource access of an ACL for ACL_SNAPSHOT.RESOURCE_ACCESS.
+ *
+ * Version 1 of the format is a version byte followed by the number of
+ * entries, then the principal ID and a bit mask of the access types of each
+ * entry, all written as unsigned varints. Bits are assigned by access type
+ * name in ACCESS_TYPE_BITS, not by enum ordinal, so the encoding does not
+ * change when new access types are added to ACCESS_TYPE.
+ *
+ * A set that cannot be written in the current version (a null principal ID
+ * or access type, or an access type that has no bit) is written in the
+ * legacy format: gzipped XStream XML. Both formats can be read, so rows
+ * written before this codec remain readable.
+ *
+ */
+public class ResourceAccessCodec {
+
+	public static final byte VERSION_1 = 1;
+	/**
+	 * The first two bytes of every gzip stream.
+	 */
+	static final int GZIP_MAGIC_FIRST = 0x1f;
+	static final int GZIP_MAGIC_SECOND = 0x8b;
+	/**
+	 * The bit of each access type, by index. Types may only be appended.
+	 */
+	static final String[] ACCESS_TYPE_BITS = new String[] {
+		"CREATE",
+		"READ",
+		"UPDATE",
+		"DELETE",
+		"CHANGE_PERMISSIONS",
+		"DOWNLOAD",
+		"UPLOAD",
+		"PARTICIPATE",
+		"SUBMIT",
+		"READ_PRIVATE_SUBMISSION",
+		"UPDATE_SUBMISSION",
+		"DELETE_SUBMISSION",
+		"TEAM_MEMBERSHIP_UPDATE",
+		"SEND_MESSAGE",
+		"CHANGE_SETTINGS",
+		"MODERATE",
+		"CHANGE_CERTIFICATION",
+		"DELETE_ANY_VERSION"
+	};
+
+	private static final Map<ACCESS_TYPE, Long> BIT_BY_TYPE = new HashMap<ACCESS_TYPE, Long>();
+	private static final ACCESS_TYPE[] TYPE_BY_BIT = new ACCESS_TYPE[ACCESS_TYPE_BITS.length];
+	static {
+		for (ACCESS_TYPE type : ACCESS_TYPE.values()) {
+			for (int i = 0; i < ACCESS_TYPE_BITS.length; i++) {
+				if (ACCESS_TYPE_BITS[i].equals(type.name())) {
+					BIT_BY_TYPE.put(type, 1L << i);
+					TYPE_BY_BIT[i] = type;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Encode a set of resource access.
+	 *
+	 * @param resourceAccess
+	 * @return
+	 */
+	public static byte[] encode(Set<ResourceAccess> resourceAccess) {
+		if (resourceAccess == null) {
+			throw new IllegalArgumentException("ResourceAccess cannot be null");
+		}
+		// Size the result exactly so it is the only allocation.
+		int size = 1 + VarintUtils.varintSize(resourceAccess.size());
+		for (ResourceAccess ra : resourceAccess) {
+			Long mask = accessTypeMask(ra);
+			if (mask == null) {
+				return encodeLegacy(resourceAccess);
+			}
+			size += VarintUtils.varintSize(ra.getPrincipalId()) + VarintUtils.varintSize(mask);
+		}
+		byte[] bytes = new byte[size];
+		bytes[0] = VERSION_1;
+		int index = VarintUtils.writeVarint(bytes, 1, resourceAccess.size());
+		for (ResourceAccess ra : resourceAccess) {
+			index = VarintUtils.writeVarint(bytes, index, ra.getPrincipalId());
+			index = VarintUtils.writeVarint(bytes, index, accessTypeMask(ra));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Decode a set of resource access written in any version of the format.
+	 *
+	 * @param bytes
+	 * @return
+	 */
+	public static Set<ResourceAccess> decode(byte[] bytes) {
+		if (bytes == null || bytes.length == 0) {
+			throw new IllegalArgumentException("Bytes cannot be null or empty");
+		}
+		if (isLegacy(bytes)) {
+			return decodeLegacy(bytes);
+		}
+		if (bytes[0] != VERSION_1) {
+			throw new IllegalArgumentException("Unknown resource access version: " + bytes[0]);
+		}
+		int[] cursor = new int[] { 1 };
+		int count = (int) VarintUtils.readVarint(bytes, cursor);
+		Set<ResourceAccess> resourceAccess = new HashSet<ResourceAccess>(Math.max(16, count * 2));
+		for (int i = 0; i < count; i++) {
+			ResourceAccess ra = new ResourceAccess();
+			ra.setPrincipalId(VarintUtils.readVarint(bytes, cursor));
+			ra.setAccessType(accessTypes(VarintUtils.readVarint(bytes, cursor)));
+			resourceAccess.add(ra);
+		}
+		if (cursor[0] != bytes.length) {
+			throw new IllegalArgumentException("Unexpected bytes after resource access");
+		}
+		return resourceAccess;
+	}
+
+	/**
+	 * Were the bytes written in the legacy gzip XML format?
+	 *
+	 * @param bytes
+	 * @return
+	 */
+	static boolean isLegacy(byte[] bytes) {
+		return bytes.length >= 2 && (bytes[0] & 0xFF) == GZIP_MAGIC_FIRST && (bytes[1] & 0xFF) == GZIP_MAGIC_SECOND;
+	}
+
+	static byte[] encodeLegacy(Set<ResourceAccess> resourceAccess) {
+		String xml = XMLUtils.toXML(resourceAccess, AclSnapshot.RESOURCE_ACCESS_ALIAS);
+		return CompressionUtils.compressStringUTF8(xml);
+	}
+
+	@SuppressWarnings("unchecked")
+	static Set<ResourceAccess> decodeLegacy(byte[] bytes) {
+		String xml = CompressionUtils.decompressUTF8(bytes);
+		return XMLUtils.fromXML(xml, Set.class, AclSnapshot.RESOURCE_ACCESS_ALIAS);
+	}
+
+	/**
+	 * @param ra
+	 * @return The bit mask of the access types, or null if the resource access
+	 *         cannot be written in the current version.
+	 */
+	private static Long accessTypeMask(ResourceAccess ra) {
+		if (ra == null || ra.getPrincipalId() == null || ra.getAccessType() == null) {
+			return null;
+		}
+		long mask = 0L;
+		for (ACCESS_TYPE type : ra.getAccessType()) {
+			Long bit = BIT_BY_TYPE.get(type);
+			if (bit == null) {
+				return null;
+			}
+			mask |= bit;
+		}
+		return mask;
+	}
+
+	private static Set<ACCESS_TYPE> accessTypes(long mask) {
+		Set<ACCESS_TYPE> types = EnumSet.noneOf(ACCESS_TYPE.class);
+		for (int i = 0; i < TYPE_BY_BIT.length; i++) {
+			if ((mask & (1L << i)) != 0) {
+				if (TYPE_BY_BIT[i] == null) {
+					throw new IllegalArgumentException("Unknown access type bit: " + i);
+				}
+				types.add(TYPE_BY_BIT[i]);
+			}
+		}
+		if ((mask >>> TYPE_BY_BIT.length) != 0) {
+			throw new IllegalArgumentException("Unknown access type bits: " + mask);
+		}
+		return types;
+	}
+}
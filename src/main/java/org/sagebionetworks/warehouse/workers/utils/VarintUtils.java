@@ -0,0 +1,62 @@
+package org.sagebionetworks.warehouse.workers.utils;
+
+/**
+ * Unsigned LEB128 varints: seven bits per byte, least significant group
+ * first, with the high bit set on every byte but the last. Used by the
+ * binary encodings that are stored in the warehouse, such as
+ * {@link ResourceAccessCodec} and {@link CompressedBitmap}.
+ */
+public class VarintUtils {
+
+	/**
+	 * @param value
+	 * @return the number of bytes the unsigned varint of value takes.
+	 */
+	public static int varintSize(long value) {
+		int size = 1;
+		while ((value & ~0x7FL) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Write an unsigned varint.
+	 *
+	 * @return the index after the varint.
+	 */
+	public static int writeVarint(byte[] bytes, int index, long value) {
+		while ((value & ~0x7FL) != 0) {
+			bytes[index++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[index++] = (byte) value;
+		return index;
+	}
+
+	/**
+	 * Read an unsigned varint at cursor[0] and move the cursor past it.
+	 *
+	 * @throws IllegalArgumentException if the varint is truncated or longer
+	 *             than 64 bits.
+	 */
+	public static long readVarint(byte[] bytes, int[] cursor) {
+		long value = 0L;
+		int shift = 0;
+		int index = cursor[0];
+		while (true) {
+			if (index >= bytes.length || shift > 63) {
+				throw new IllegalArgumentException("Malformed varint");
+			}
+			byte b = bytes[index++];
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+			shift += 7;
+		}
+		cursor[0] = index;
+		return value;
+	}
+}
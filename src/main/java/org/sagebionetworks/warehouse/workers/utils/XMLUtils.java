@@ -2,15 +2,45 @@ package org.sagebionetworks.warehouse.workers.utils;
 
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.thoughtworks.xstream.XStream;
 
 /**
  * Utilities for XML marshaling that wraps Xstream
+ * 
+ * Creating an XStream is expensive, so one instance is configured for each
+ * alias and class and then shared. An XStream is thread safe once it is
+ * configured, so the cached instances are never changed after they are
+ * created.
  *
  */
 public class XMLUtils {
 
+	private static final ConcurrentMap<String, XStream> X_STREAMS = new ConcurrentHashMap<String, XStream>();
+
+	/**
+	 * Get the shared XStream that uses the given alias for the given class.
+	 * 
+	 * @param alias
+	 * @param clazz
+	 * @return
+	 */
+	static XStream getXStream(String alias, Class<?> clazz) {
+		String cacheKey = alias + "|" + clazz.getName();
+		XStream xStream = X_STREAMS.get(cacheKey);
+		if (xStream == null) {
+			XStream newXStream = new XStream();
+			newXStream.alias(alias, clazz);
+			xStream = X_STREAMS.putIfAbsent(cacheKey, newXStream);
+			if (xStream == null) {
+				xStream = newXStream;
+			}
+		}
+		return xStream;
+	}
+
 	/**
 	 * Write the passed object to XML.
 	 * 
@@ -28,8 +58,7 @@ public class XMLUtils {
 		if (alias == null) {
 			throw new IllegalArgumentException("Alais cannot be null");
 		}
-		XStream xStream = new XStream();
-		xStream.alias(alias, object.getClass());
+		XStream xStream = getXStream(alias, object.getClass());
 		StringWriter writer = new StringWriter();
 		xStream.toXML(object, writer);
 		return writer.toString();
@@ -61,8 +90,7 @@ public class XMLUtils {
 		if (alias == null) {
 			throw new IllegalArgumentException("Alais cannot be null");
 		}
-		XStream xStream = new XStream();
-		xStream.alias(alias, clazz);
+		XStream xStream = getXStream(alias, clazz);
 		StringReader reader = new StringReader(xml);
 		return (T) xStream.fromXML(reader);
 	}
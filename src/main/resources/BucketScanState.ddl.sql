@@ -0,0 +1,6 @@
+CREATE TABLE IF NOT EXISTS `BUCKET_SCAN_STATE` (
+  `S3_BUCKET` varchar(256) CHARACTER SET latin1 COLLATE latin1_bin NOT NULL,
+  `CHECKPOINT` varchar(700) CHARACTER SET latin1 COLLATE latin1_bin NOT NULL,
+  `LAST_FULL_SCAN_ON` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`S3_BUCKET`)
+)
\ No newline at end of file
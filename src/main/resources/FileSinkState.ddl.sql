@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS `FILE_SINK_STATE` (
+  `S3_BUCKET` varchar(256) CHARACTER SET latin1 COLLATE latin1_bin NOT NULL,
+  `S3_KEY` varchar(700) CHARACTER SET latin1 COLLATE latin1_bin NOT NULL,
+  `SINK` varchar(100) CHARACTER SET latin1 COLLATE latin1_bin NOT NULL,
+  `UPDATED_ON` TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`S3_BUCKET`,`S3_KEY`,`SINK`)
+)
\ No newline at end of file
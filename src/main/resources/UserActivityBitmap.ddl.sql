@@ -0,0 +1,6 @@
+CREATE TABLE IF NOT EXISTS `USER_ACTIVITY_BITMAP` (
+  `DATE` date NOT NULL,
+  `CLIENT` ENUM('R','PYTHON','WEB', 'JAVA', 'COMMAND_LINE', 'ELB_HEALTHCHECKER', 'UNKNOWN') NOT NULL,
+  `USERS` mediumblob NOT NULL,
+  PRIMARY KEY (`DATE`, `CLIENT`)
+)
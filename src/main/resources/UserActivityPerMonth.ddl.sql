@@ -2,6 +2,7 @@ CREATE TABLE IF NOT EXISTS `USER_ACTIVITY_PER_MONTH` (
   `USER_ID` bigint DEFAULT NULL,
   `MONTH` date NOT NULL,
   `ACTIVE_DAY_COUNT` bigint NOT NULL,
+  `ACTIVE_DAYS` int unsigned DEFAULT NULL,
   PRIMARY KEY (`USER_ID`, `MONTH`),
   INDEX (MONTH),
   INDEX (USER_ID)
@@ -0,0 +1,5 @@
+CREATE TABLE IF NOT EXISTS `USER_ACTIVITY_PER_MONTH_BACKFILL` (
+  `MONTH` date NOT NULL,
+  `UPDATED_ON` TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`MONTH`)
+)
\ No newline at end of file
@@ -0,0 +1,112 @@
+package org.sagebionetworks.warehouse.workers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveConcurrencyControllerTest {
+
+	private AdaptiveConcurrencySettings settings;
+	private AdaptiveConcurrencyController controller;
+
+	@Before
+	public void before() {
+		settings = new AdaptiveConcurrencySettings();
+		settings.setMinConcurrency(1);
+		settings.setMaxConcurrency(4);
+		settings.setMinPeriodMS(1000);
+		settings.setMaxPeriodMS(5000);
+		settings.setTargetLatencyMS(100);
+		settings.setBacklogPerWorker(2);
+		controller = new AdaptiveConcurrencyController(settings);
+	}
+
+	@Test
+	public void testInitial() {
+		assertEquals(1, controller.getConcurrency());
+		assertEquals(1000, controller.getPeriodMS());
+		assertNull(controller.getAverageLatencyMS());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testInvalidConcurrency() {
+		settings.setMaxConcurrency(0);
+		new AdaptiveConcurrencyController(settings);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testInvalidPeriod() {
+		settings.setMaxPeriodMS(10);
+		new AdaptiveConcurrencyController(settings);
+	}
+
+	@Test
+	public void testSerial() {
+		AdaptiveConcurrencySettings serial = AdaptiveConcurrencySettings.serial(settings);
+		assertEquals(4, settings.getMaxConcurrency());
+		controller = new AdaptiveConcurrencyController(serial);
+		controller.update(100L);
+		assertEquals(1, controller.getConcurrency());
+		assertEquals(1000, controller.getPeriodMS());
+	}
+
+	@Test
+	public void testGrowWithBacklog() {
+		controller.update(3L);
+		assertEquals(2, controller.getConcurrency());
+		// 4 messages for 2 workers is not a backlog
+		controller.update(4L);
+		assertEquals(2, controller.getConcurrency());
+		controller.update(100L);
+		controller.update(100L);
+		controller.update(100L);
+		assertEquals(4, controller.getConcurrency());
+		assertEquals(1000, controller.getPeriodMS());
+	}
+
+	@Test
+	public void testShrinkAndBackOffWhenEmpty() {
+		controller.update(100L);
+		controller.update(100L);
+		assertEquals(3, controller.getConcurrency());
+		controller.update(0L);
+		assertEquals(2, controller.getConcurrency());
+		assertEquals(2000, controller.getPeriodMS());
+		controller.update(0L);
+		controller.update(0L);
+		assertEquals(1, controller.getConcurrency());
+		assertEquals(5000, controller.getPeriodMS());
+		// a new message resets the period
+		controller.update(1L);
+		assertEquals(1, controller.getConcurrency());
+		assertEquals(1000, controller.getPeriodMS());
+	}
+
+	@Test
+	public void testUnknownDepth() {
+		controller.update(100L);
+		controller.update(AdaptiveConcurrencyController.UNKNOWN_QUEUE_DEPTH);
+		assertEquals(2, controller.getConcurrency());
+		assertEquals(1000, controller.getPeriodMS());
+	}
+
+	@Test
+	public void testHalveWhenSlow() {
+		controller.update(100L);
+		controller.update(100L);
+		controller.update(100L);
+		assertEquals(4, controller.getConcurrency());
+		controller.recordLatency(50L);
+		controller.recordLatency(1050L);
+		assertEquals(250.0, controller.getAverageLatencyMS(), 0.001);
+		controller.update(100L);
+		assertEquals(2, controller.getConcurrency());
+		assertNull(controller.getAverageLatencyMS());
+		// grows again once the latency is back under the target
+		controller.recordLatency(50L);
+		controller.update(100L);
+		assertEquals(3, controller.getConcurrency());
+	}
+}
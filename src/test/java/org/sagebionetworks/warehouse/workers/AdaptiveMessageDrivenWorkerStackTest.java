@@ -0,0 +1,98 @@
+package org.sagebionetworks.warehouse.workers;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+
+public class AdaptiveMessageDrivenWorkerStackTest {
+
+	private AmazonSQSClient mockSQSClient;
+	private Runnable mockWorkerOne;
+	private Runnable mockWorkerTwo;
+	private AdaptiveConcurrencyController controller;
+	private AdaptiveMessageDrivenWorkerStack stack;
+
+	@Before
+	public void before() {
+		mockSQSClient = mock(AmazonSQSClient.class);
+		mockWorkerOne = mock(Runnable.class);
+		mockWorkerTwo = mock(Runnable.class);
+		AdaptiveConcurrencySettings settings = new AdaptiveConcurrencySettings();
+		settings.setMinConcurrency(1);
+		settings.setMaxConcurrency(2);
+		settings.setMinPeriodMS(1);
+		settings.setMaxPeriodMS(1);
+		settings.setTargetLatencyMS(1000);
+		settings.setBacklogPerWorker(1);
+		controller = new AdaptiveConcurrencyController(settings);
+		List<Runnable> workers = Arrays.asList(mockWorkerOne, mockWorkerTwo);
+		stack = new AdaptiveMessageDrivenWorkerStack(workers, mockSQSClient, "queueUrl", controller);
+	}
+
+	private void setQueueDepth(String depth) {
+		GetQueueAttributesResult result = new GetQueueAttributesResult()
+				.withAttributes(Collections.singletonMap(AdaptiveMessageDrivenWorkerStack.APPROXIMATE_NUMBER_OF_MESSAGES, depth));
+		when(mockSQSClient.getQueueAttributes(any(GetQueueAttributesRequest.class))).thenReturn(result);
+	}
+
+	@Test
+	public void testIdle() {
+		setQueueDepth("0");
+		stack.run();
+		verify(mockWorkerOne).run();
+		verify(mockWorkerTwo, never()).run();
+		assertEquals(1, controller.getConcurrency());
+	}
+
+	@Test
+	public void testBacklog() throws InterruptedException {
+		setQueueDepth("10");
+		assertEquals(1, stack.getConcurrency());
+		stack.run();
+		assertEquals(2, stack.getConcurrency());
+		// the run was queued with a concurrency of one.
+		verify(mockWorkerOne).run();
+		verify(mockWorkerTwo, never()).run();
+		Thread.sleep(5);
+		stack.run();
+		verify(mockWorkerOne, times(2)).run();
+		verify(mockWorkerTwo).run();
+	}
+
+	@Test
+	public void testDecreaseTakesEffectImmediately() throws InterruptedException {
+		setQueueDepth("10");
+		stack.run();
+		Thread.sleep(5);
+		setQueueDepth("0");
+		stack.run();
+		assertEquals(1, stack.getConcurrency());
+		verify(mockWorkerOne, times(2)).run();
+		verify(mockWorkerTwo, never()).run();
+	}
+
+	@Test
+	public void testQueueDepthFailure() {
+		when(mockSQSClient.getQueueAttributes(any(GetQueueAttributesRequest.class))).thenThrow(new AmazonClientException("failed"));
+		assertEquals(AdaptiveConcurrencyController.UNKNOWN_QUEUE_DEPTH, stack.getQueueDepth());
+		stack.run();
+		verify(mockWorkerOne).run();
+		verify(mockWorkerTwo, never()).run();
+	}
+}
@@ -0,0 +1,75 @@
+package org.sagebionetworks.warehouse.workers;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.services.sns.model.ListSubscriptionsResult;
+import com.amazonaws.services.sns.model.Subscription;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.GetQueueUrlResult;
+import com.amazonaws.services.sqs.model.QueueDoesNotExistException;
+
+public class RetiredQueueRemoverTest {
+
+	private static final String QUEUE_NAME = "dev-accessrecord-snapshot-queue";
+	private static final String QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/123/" + QUEUE_NAME;
+	private static final String QUEUE_ARN = "arn:aws:sqs:us-east-1:123:" + QUEUE_NAME;
+
+	AmazonSQSClient mockSQSClient;
+	AmazonSNSClient mockSNSClient;
+	RetiredQueueRemover remover;
+
+	@Before
+	public void before() {
+		mockSQSClient = mock(AmazonSQSClient.class);
+		mockSNSClient = mock(AmazonSNSClient.class);
+		remover = new RetiredQueueRemover(mockSQSClient, mockSNSClient, Arrays.asList(QUEUE_NAME, " "));
+		when(mockSQSClient.getQueueUrl(QUEUE_NAME)).thenReturn(new GetQueueUrlResult().withQueueUrl(QUEUE_URL));
+		when(mockSQSClient.getQueueAttributes(QUEUE_URL, Arrays.asList(RetiredQueueRemover.QUEUE_ARN))).thenReturn(
+				new GetQueueAttributesResult().withAttributes(Collections.singletonMap(RetiredQueueRemover.QUEUE_ARN, QUEUE_ARN)));
+		// the subscriptions are listed over two pages.
+		when(mockSNSClient.listSubscriptions((String) null)).thenReturn(new ListSubscriptionsResult()
+				.withSubscriptions(new Subscription().withEndpoint(QUEUE_ARN).withSubscriptionArn("subscriptionOne"),
+						new Subscription().withEndpoint("arn:aws:sqs:us-east-1:123:other").withSubscriptionArn("other"))
+				.withNextToken("next"));
+		when(mockSNSClient.listSubscriptions("next")).thenReturn(new ListSubscriptionsResult()
+				.withSubscriptions(new Subscription().withEndpoint(QUEUE_ARN).withSubscriptionArn("subscriptionTwo")));
+	}
+
+	@Test
+	public void testRemove() {
+		remover.removeRetiredQueues();
+		verify(mockSNSClient).unsubscribe("subscriptionOne");
+		verify(mockSNSClient).unsubscribe("subscriptionTwo");
+		verify(mockSNSClient, never()).unsubscribe("other");
+		verify(mockSQSClient).deleteQueue(QUEUE_URL);
+	}
+
+	@Test
+	public void testAlreadyRemoved() {
+		when(mockSQSClient.getQueueUrl(QUEUE_NAME)).thenThrow(new QueueDoesNotExistException("gone"));
+		remover.removeRetiredQueues();
+		verify(mockSNSClient, never()).unsubscribe(anyString());
+		verify(mockSQSClient, never()).deleteQueue(anyString());
+	}
+
+	@Test
+	public void testFailureDoesNotStopStartup() {
+		when(mockSNSClient.listSubscriptions((String) null)).thenThrow(new AmazonServiceException("denied"));
+		remover.removeRetiredQueues();
+		// the queue is kept so the removal is tried again at the next startup.
+		verify(mockSQSClient, never()).deleteQueue(anyString());
+	}
+}
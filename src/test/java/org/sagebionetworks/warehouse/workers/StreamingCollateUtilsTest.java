@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
 
 import org.junit.Before;
@@ -119,6 +120,66 @@ public class StreamingCollateUtilsTest {
 		verify(mockCallback, times(expectedOut.size())).progressMade(null);
 	}
 	
+	@Test
+	public void testMergeSortedStreamsTiesInInputOrder() throws IOException{
+		int timestampColumnIndex  = 1;
+		
+		CSVReader one = createReader(new String[][]{
+				new String[]{ "one-a", "1"},
+				new String[]{ "one-b", "2"},
+				new String[]{ "one-c", "2"},
+		});
+		
+		CSVReader two= createReader(new String[][]{
+				new String[]{ "two-a", "1"},
+				new String[]{ "two-b", "2"},
+		});
+		
+		CSVReader three = createReader(new String[][]{
+				new String[]{ "three-a", "2"},
+		});
+		
+		StringWriter stringWriter = new StringWriter();
+		CSVWriter writer = new CSVWriter(stringWriter);
+		StreamingCollateUtils.mergeSortedStreams(mockCallback, Arrays.asList(three, one, two), writer, timestampColumnIndex);
+	
+		List<String[]> expectedOut = Arrays.asList(
+				new String[]{ "one-a", "1"},
+				new String[]{ "two-a", "1"},
+				new String[]{ "three-a", "2"},
+				new String[]{ "one-b", "2"},
+				new String[]{ "one-c", "2"},
+				new String[]{ "two-b", "2"}
+				);
+		validateExpected(expectedOut, stringWriter.toString());
+	}
+	
+	@Test
+	public void testMergeSortedStreamsManyStreams() throws IOException{
+		int timestampColumnIndex  = 1;
+		int numberOfStreams = 1000;
+		int rowsPerStream = 3;
+		// stream i holds the timestamps i, i+numberOfStreams, i+2*numberOfStreams
+		List<CSVReader> readers = new LinkedList<CSVReader>();
+		for (int i = numberOfStreams-1; i >= 0; i--) {
+			String[][] rows = new String[rowsPerStream][];
+			for (int j = 0; j < rowsPerStream; j++) {
+				rows[j] = new String[]{ "s"+i, ""+(i + j*numberOfStreams)};
+			}
+			readers.add(createReader(rows));
+		}
+		StringWriter stringWriter = new StringWriter();
+		CSVWriter writer = new CSVWriter(stringWriter);
+		StreamingCollateUtils.mergeSortedStreams(mockCallback, readers, writer, timestampColumnIndex);
+		
+		List<String[]> expectedOut = new LinkedList<String[]>();
+		for (int t = 0; t < numberOfStreams*rowsPerStream; t++) {
+			expectedOut.add(new String[]{ "s"+(t % numberOfStreams), ""+t});
+		}
+		validateExpected(expectedOut, stringWriter.toString());
+		verify(mockCallback, times(expectedOut.size())).progressMade(null);
+	}
+	
 	@Test (expected=IllegalArgumentException.class)
 	public void testMergeSortedStreamsBadData() throws IOException{
 		// the first column is not a timestamp
@@ -1,9 +1,13 @@
 package org.sagebionetworks.warehouse.workers;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.joda.time.DateTime;
 import org.junit.Before;
@@ -54,8 +58,8 @@ public class TablePartitionWorkerTest {
 		Mockito.when(mockCreator.getExistingPartitionsForTable(Sql.TABLE_ACCESS_RECORD)).thenReturn(set);
 		worker.run(mockProgressCallback);
 		Mockito.verify(mockProgressCallback).progressMade(null);
-		Mockito.verify(mockCreator, Mockito.never()).addPartition(Mockito.anyString(), Mockito.anyString(), Mockito.anyLong());
-		Mockito.verify(mockCreator, Mockito.never()).dropPartition(Mockito.anyString(), Mockito.anyString());
+		Mockito.verify(mockCreator, Mockito.never()).addPartitions(Mockito.anyString(), Mockito.anyMap());
+		Mockito.verify(mockCreator, Mockito.never()).dropPartitions(Mockito.anyString(), Mockito.anyCollection());
 	}
 
 	@Test
@@ -66,10 +70,27 @@ public class TablePartitionWorkerTest {
 		Mockito.verify(mockProgressCallback).progressMade(null);
 		DateTime addDate = endDate.plusDays(1);
 		String toAdd = PartitionUtil.getPartitionName(Sql.TABLE_ACCESS_RECORD, addDate, Period.DAY);
-		Mockito.verify(mockCreator).addPartition(Mockito.eq(Sql.TABLE_ACCESS_RECORD), Mockito.eq(toAdd), Mockito.eq(PartitionUtil.floorDateByPeriod(addDate, Period.DAY).getMillis()));
+		Map<String, Long> expectedToAdd = new HashMap<String, Long>();
+		expectedToAdd.put(toAdd, PartitionUtil.floorDateByPeriod(addDate, Period.DAY).getMillis());
+		Mockito.verify(mockCreator).addPartitions(Mockito.eq(Sql.TABLE_ACCESS_RECORD), Mockito.eq(expectedToAdd));
 		DateTime dateToDrop = startDate.minusDays(1);
 		String toDrop = PartitionUtil.getPartitionName(Sql.TABLE_ACCESS_RECORD, dateToDrop, Period.DAY);
-		Mockito.verify(mockCreator).dropPartition(Mockito.eq(Sql.TABLE_ACCESS_RECORD), Mockito.eq(toDrop));
+		Mockito.verify(mockCreator).dropPartitions(Mockito.eq(Sql.TABLE_ACCESS_RECORD), Mockito.eq(new TreeSet<String>(Arrays.asList(toDrop))));
+	}
+
+	@Test
+	public void batchTest() throws Exception {
+		// every existing partition is out of range
+		Set<String> set = new HashSet<String>();
+		set.add(PartitionUtil.getPartitionName(Sql.TABLE_ACCESS_RECORD, startDate.minusDays(1), Period.DAY));
+		set.add(PartitionUtil.getPartitionName(Sql.TABLE_ACCESS_RECORD, startDate.minusDays(2), Period.DAY));
+		Mockito.when(mockCreator.getExistingPartitionsForTable(Sql.TABLE_ACCESS_RECORD)).thenReturn(set);
+		worker.run(mockProgressCallback);
+		Map<String, Long> required = PartitionUtil.getPartitions(Sql.TABLE_ACCESS_RECORD, Period.DAY, startDate, endDate);
+		Mockito.verify(mockCreator).addPartitions(Mockito.eq(Sql.TABLE_ACCESS_RECORD), Mockito.eq(required));
+		Mockito.verify(mockCreator).dropPartitions(Mockito.eq(Sql.TABLE_ACCESS_RECORD), Mockito.eq(new TreeSet<String>(set)));
+		Mockito.verify(mockCreator, Mockito.never()).addPartition(Mockito.anyString(), Mockito.anyString(), Mockito.anyLong());
+		Mockito.verify(mockCreator, Mockito.never()).dropPartition(Mockito.anyString(), Mockito.anyString());
 	}
 
 	@Test
@@ -79,6 +100,6 @@ public class TablePartitionWorkerTest {
 		Mockito.when(mockCreator.getExistingPartitionsForTable(Sql.TABLE_ACCESS_RECORD)).thenReturn(nullSet);
 		worker.run(mockProgressCallback);
 		Mockito.verify(mockProgressCallback).progressMade(null);
-		Mockito.verify(mockCreator, Mockito.never()).dropPartition(Mockito.anyString(), Mockito.anyString());
+		Mockito.verify(mockCreator, Mockito.never()).dropPartitions(Mockito.anyString(), Mockito.anyCollection());
 	}
 }
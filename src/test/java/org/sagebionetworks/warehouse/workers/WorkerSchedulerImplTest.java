@@ -0,0 +1,323 @@
+package org.sagebionetworks.warehouse.workers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class WorkerSchedulerImplTest {
+
+	WorkerSchedulerImpl scheduler;
+
+	@After
+	public void after() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+		}
+	}
+
+	private WorkerStackConfiguration createConfig(String name, WorkerPriority priority, int weight, int startDelayMS, int periodMS) {
+		WorkerStackConfiguration config = new WorkerStackConfiguration();
+		config.setWorkerName(name);
+		config.setPriority(priority);
+		config.setWeight(weight);
+		config.setStartDelayMs(startDelayMS);
+		config.setPeriodMS(periodMS);
+		return config;
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testZeroCapacity() {
+		new WorkerSchedulerImpl(0, 0);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testReservedCapacityNotLessThanCapacity() {
+		new WorkerSchedulerImpl(2, 2, 0, 0);
+	}
+
+	@Test
+	public void testCapacityBoundsConcurrency() throws InterruptedException {
+		scheduler = new WorkerSchedulerImpl(2, 0);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		Runnable runner = new Runnable() {
+
+			@Override
+			public void run() {
+				int now = running.incrementAndGet();
+				synchronized (maxRunning) {
+					maxRunning.set(Math.max(maxRunning.get(), now));
+				}
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+			}
+		};
+		for (int i = 0; i < 5; i++) {
+			scheduler.schedule(createConfig("worker" + i, WorkerPriority.NORMAL, 1, 0, 10), runner);
+		}
+		Thread.sleep(200);
+		assertTrue(maxRunning.get() <= 2);
+		long runs = 0;
+		for (WorkerStatistics statistics : scheduler.getStatistics()) {
+			runs += statistics.getRuns();
+		}
+		assertTrue(runs > 0);
+	}
+
+	@Test
+	public void testHeavyWorkerRunsAlone() throws InterruptedException {
+		scheduler = new WorkerSchedulerImpl(2, 0);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		Runnable runner = new Runnable() {
+
+			@Override
+			public void run() {
+				int now = running.incrementAndGet();
+				synchronized (maxRunning) {
+					maxRunning.set(Math.max(maxRunning.get(), now));
+				}
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+			}
+		};
+		// heavier than the capacity, so it is capped at the capacity.
+		scheduler.schedule(createConfig("heavy", WorkerPriority.HIGH, 5, 0, 10), runner);
+		scheduler.schedule(createConfig("light", WorkerPriority.LOW, 1, 0, 10), runner);
+		Thread.sleep(200);
+		assertEquals(1, maxRunning.get());
+		for (WorkerStatistics statistics : scheduler.getStatistics()) {
+			assertTrue(statistics.getRuns() > 0);
+		}
+	}
+
+	@Test
+	public void testConcurrentRunnerHoldsWeightPerThread() throws InterruptedException {
+		scheduler = new WorkerSchedulerImpl(3, 0);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final Runnable runner = new Runnable() {
+
+			@Override
+			public void run() {
+				int now = running.incrementAndGet();
+				synchronized (maxRunning) {
+					maxRunning.set(Math.max(maxRunning.get(), now));
+				}
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+			}
+		};
+		// counts as two threads of weight one.
+		scheduler.schedule(createConfig("concurrent", WorkerPriority.NORMAL, 1, 0, 10), new ConcurrentRunner() {
+
+			@Override
+			public void run() {
+				running.incrementAndGet();
+				runner.run();
+				running.decrementAndGet();
+			}
+
+			@Override
+			public int getConcurrency() {
+				return 2;
+			}
+		});
+		scheduler.schedule(createConfig("light1", WorkerPriority.NORMAL, 1, 0, 10), runner);
+		scheduler.schedule(createConfig("light2", WorkerPriority.NORMAL, 1, 0, 10), runner);
+		Thread.sleep(200);
+		assertTrue(maxRunning.get() <= 3);
+		for (WorkerStatistics statistics : scheduler.getStatistics()) {
+			assertTrue(statistics.getRuns() > 0);
+		}
+	}
+
+	@Test
+	public void testPriorityOrder() throws InterruptedException {
+		scheduler = new WorkerSchedulerImpl(1, 0);
+		final CountDownLatch blocker = new CountDownLatch(1);
+		final List<String> order = Collections.synchronizedList(new LinkedList<String>());
+		// hold the only slot while the other workers queue.
+		scheduler.schedule(createConfig("blocker", WorkerPriority.NORMAL, 1, 0, 60000), new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					blocker.await(1, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		Thread.sleep(20);
+		scheduler.schedule(createConfig("low", WorkerPriority.LOW, 1, 0, 60000), createRecorder(order, "low"));
+		scheduler.schedule(createConfig("high", WorkerPriority.HIGH, 1, 0, 60000), createRecorder(order, "high"));
+		scheduler.schedule(createConfig("normal", WorkerPriority.NORMAL, 1, 0, 60000), createRecorder(order, "normal"));
+		Thread.sleep(20);
+		blocker.countDown();
+		Thread.sleep(100);
+		assertEquals(3, order.size());
+		assertEquals("high", order.get(0));
+		assertEquals("normal", order.get(1));
+		assertEquals("low", order.get(2));
+		for (WorkerStatistics statistics : scheduler.getStatistics()) {
+			if (!"blocker".equals(statistics.getWorkerName())) {
+				assertTrue(statistics.getTotalQueueMS() > 0);
+			}
+		}
+	}
+
+	@Test
+	public void testLowRunsWhileHighSaturated() throws InterruptedException {
+		scheduler = new WorkerSchedulerImpl(4, 1, 0, 0);
+		final AtomicInteger runningHigh = new AtomicInteger();
+		final AtomicInteger maxRunningHigh = new AtomicInteger();
+		Runnable highRunner = new Runnable() {
+
+			@Override
+			public void run() {
+				int now = runningHigh.incrementAndGet();
+				synchronized (maxRunningHigh) {
+					maxRunningHigh.set(Math.max(maxRunningHigh.get(), now));
+				}
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				runningHigh.decrementAndGet();
+			}
+		};
+		// far more HIGH workers than the capacity, so some are always waiting.
+		for (int i = 0; i < 12; i++) {
+			scheduler.schedule(createConfig("high" + i, WorkerPriority.HIGH, 1, 0, 1), highRunner);
+		}
+		final AtomicInteger lowRuns = new AtomicInteger();
+		scheduler.schedule(createConfig("low", WorkerPriority.LOW, 1, 5, 1), new Runnable() {
+
+			@Override
+			public void run() {
+				lowRuns.incrementAndGet();
+			}
+		});
+		Thread.sleep(200);
+		assertTrue(lowRuns.get() > 0);
+		assertEquals(3, maxRunningHigh.get());
+	}
+
+	@Test
+	public void testAging() throws InterruptedException {
+		scheduler = new WorkerSchedulerImpl(1, 0, 10, 0);
+		Runnable normalRunner = new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		// a NORMAL worker is always waiting for the only slot.
+		for (int i = 0; i < 3; i++) {
+			scheduler.schedule(createConfig("normal" + i, WorkerPriority.NORMAL, 1, 0, 1), normalRunner);
+		}
+		final AtomicInteger lowRuns = new AtomicInteger();
+		scheduler.schedule(createConfig("low", WorkerPriority.LOW, 1, 5, 1), new Runnable() {
+
+			@Override
+			public void run() {
+				lowRuns.incrementAndGet();
+			}
+		});
+		Thread.sleep(200);
+		assertTrue(lowRuns.get() > 0);
+	}
+
+	@Test
+	public void testSkipTickWhileRunning() throws InterruptedException {
+		scheduler = new WorkerSchedulerImpl(2, 0);
+		scheduler.schedule(createConfig("slow", WorkerPriority.NORMAL, 1, 0, 5), new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		Thread.sleep(120);
+		WorkerStatistics statistics = scheduler.getStatistics().get(0);
+		assertTrue(statistics.getSkippedTicks() > 0);
+		assertTrue(statistics.getRuns() <= 3);
+	}
+
+	@Test
+	public void testCancel() throws InterruptedException {
+		scheduler = new WorkerSchedulerImpl(2, 0);
+		final AtomicInteger count = new AtomicInteger();
+		Future<?> future = scheduler.schedule(createConfig("worker", WorkerPriority.NORMAL, 1, 0, 10), new Runnable() {
+
+			@Override
+			public void run() {
+				count.incrementAndGet();
+			}
+		});
+		Thread.sleep(50);
+		future.cancel(false);
+		Thread.sleep(20);
+		int afterCancel = count.get();
+		Thread.sleep(50);
+		assertEquals(afterCancel, count.get());
+	}
+
+	@Test
+	public void testException() throws InterruptedException {
+		scheduler = new WorkerSchedulerImpl(1, 0);
+		scheduler.schedule(createConfig("worker", WorkerPriority.NORMAL, 1, 0, 10), new Runnable() {
+
+			@Override
+			public void run() {
+				throw new RuntimeException("Something went wrong");
+			}
+		});
+		Thread.sleep(100);
+		// the failure releases the capacity so the worker runs again.
+		assertTrue(scheduler.getStatistics().get(0).getRuns() > 1);
+	}
+
+	private Runnable createRecorder(final List<String> order, final String name) {
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				order.add(name);
+			}
+		};
+	}
+}
@@ -1,5 +1,6 @@
 package org.sagebionetworks.warehouse.workers;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -8,6 +9,7 @@ import static org.mockito.Mockito.*;
 
 public class WorkerStackImplTest {
 
+	WorkerScheduler scheduler;
 	Runnable mockRunnable;
 	WorkerStackConfiguration config;
 	int periodMS;
@@ -23,11 +25,17 @@ public class WorkerStackImplTest {
 		config.setStartDelayMs(startDelayMS);
 		config.setWorkerName("A sample worker");
 		config.setRunner(mockRunnable);
+		scheduler = new WorkerSchedulerImpl(2, 0);
+	}
+	
+	@After
+	public void after(){
+		scheduler.shutdown();
 	}
 	
 	@Test
 	public void testHappy() throws InterruptedException{
-		WorkerStackImpl stack = new WorkerStackImpl(config);
+		WorkerStackImpl stack = new WorkerStackImpl(scheduler, config);
 		try{
 			stack.start();
 			// wait for the timer to fire
@@ -42,7 +50,7 @@ public class WorkerStackImplTest {
 	public void testException() throws InterruptedException{
 		// setup the runner to throw an exception ever time.
 		doThrow(new RuntimeException("Something went wrong")).when(mockRunnable).run();
-		WorkerStackImpl stack = new WorkerStackImpl(config);
+		WorkerStackImpl stack = new WorkerStackImpl(scheduler, config);
 		try{
 			stack.start();
 			// wait for the timer to fire at least 4 times.
@@ -56,19 +64,24 @@ public class WorkerStackImplTest {
 	
 	@Test (expected=IllegalArgumentException.class)
 	public void testNullConfig(){
-		new WorkerStackImpl(null);
+		new WorkerStackImpl(scheduler, null);
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testNullScheduler(){
+		new WorkerStackImpl(null, config);
 	}
 	
 	@Test (expected=IllegalArgumentException.class)
 	public void testRunnerNull(){
 		config.setRunner(null);
-		new WorkerStackImpl(config);
+		new WorkerStackImpl(scheduler, config);
 	}
 	
 	@Test (expected=IllegalArgumentException.class)
 	public void testNameNull(){
 		config.setWorkerName(null);
-		new WorkerStackImpl(config);
+		new WorkerStackImpl(scheduler, config);
 	}
 
 }
@@ -54,8 +54,8 @@ public class UserActivityPerMonthWorkerTest {
 		DateTime prevMonth = DateTimeUtils.getFirstDayOfPreviousMonth(time);
 		when(mockConfig.getMonthlyAuditDay()).thenReturn(time.getDayOfMonth() + 2);
 		worker.run(mockCallback);
-		verify(mockUserActivityPerMonthDao, never()).hasRecordForMonth(prevMonth.toDate());
-		verify(mockUserActivityPerMonthDao, times(MONTHS_TO_PROCESS)).hasRecordForMonth(any(Date.class));
+		verify(mockUserActivityPerMonthDao, never()).isBackfilled(prevMonth.toDate());
+		verify(mockUserActivityPerMonthDao, times(MONTHS_TO_PROCESS)).isBackfilled(any(Date.class));
 	}
 
 	@Test
@@ -63,11 +63,16 @@ public class UserActivityPerMonthWorkerTest {
 		DateTime time = new DateTime();
 		DateTime prevMonth = DateTimeUtils.getFirstDayOfPreviousMonth(time);
 		when(mockConfig.getMonthlyAuditDay()).thenReturn(time.getDayOfMonth());
-		when(mockUserActivityPerMonthDao.hasRecordForMonth(prevMonth.toDate())).thenReturn(false);
+		when(mockUserActivityPerMonthDao.isBackfilled(any(Date.class))).thenReturn(true);
+		when(mockUserActivityPerMonthDao.isBackfilled(prevMonth.toDate())).thenReturn(false);
 		worker.run(mockCallback);
-		verify(mockUserActivityPerMonthDao).hasRecordForMonth(prevMonth.toDate());
-		verify(mockUserActivityPerMonthDao, times(MONTHS_TO_PROCESS)).hasRecordForMonth(any(Date.class));
+		verify(mockUserActivityPerMonthDao).isBackfilled(prevMonth.toDate());
+		verify(mockUserActivityPerMonthDao, times(MONTHS_TO_PROCESS)).isBackfilled(any(Date.class));
 		verify(mockUserActivityPerClientPerDayDao).getUserActivityPerMonth(prevMonth.toDate());
+		verify(mockUserActivityPerMonthDao).setBackfilled(prevMonth.toDate());
+		// only the month that was not backfilled yet is recomputed.
+		verify(mockUserActivityPerClientPerDayDao, times(1)).getUserActivityPerMonth(any(Date.class));
+		verify(mockUserActivityPerMonthDao, times(1)).setBackfilled(any(Date.class));
 	}
 
 	@Test
@@ -75,11 +80,12 @@ public class UserActivityPerMonthWorkerTest {
 		DateTime time = new DateTime();
 		DateTime prevMonth = DateTimeUtils.getFirstDayOfPreviousMonth(time);
 		when(mockConfig.getMonthlyAuditDay()).thenReturn(time.getDayOfMonth());
-		when(mockUserActivityPerMonthDao.hasRecordForMonth(prevMonth.toDate())).thenReturn(true);
+		when(mockUserActivityPerMonthDao.isBackfilled(any(Date.class))).thenReturn(true);
 		worker.run(mockCallback);
-		verify(mockUserActivityPerMonthDao).hasRecordForMonth(prevMonth.toDate());
-		verify(mockUserActivityPerMonthDao, times(MONTHS_TO_PROCESS)).hasRecordForMonth(any(Date.class));
-		verify(mockUserActivityPerClientPerDayDao, never()).getUserActivityPerMonth(prevMonth.toDate());
+		verify(mockUserActivityPerMonthDao).isBackfilled(prevMonth.toDate());
+		verify(mockUserActivityPerMonthDao, times(MONTHS_TO_PROCESS)).isBackfilled(any(Date.class));
+		verify(mockUserActivityPerClientPerDayDao, never()).getUserActivityPerMonth(any(Date.class));
+		verify(mockUserActivityPerMonthDao, never()).setBackfilled(any(Date.class));
 	}
 
 	@Test
@@ -1,18 +1,27 @@
 package org.sagebionetworks.warehouse.workers.bucket;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.sagebionetworks.aws.utils.s3.BucketDao;
 import org.sagebionetworks.warehouse.workers.BucketDaoProvider;
+import org.sagebionetworks.warehouse.workers.db.BucketScanStateDao;
 import org.sagebionetworks.warehouse.workers.db.FileManager;
+import org.sagebionetworks.warehouse.workers.model.BucketScanState;
 import org.sagebionetworks.common.util.progress.ProgressCallback;
 
 import com.amazonaws.services.s3.model.S3ObjectSummary;
@@ -21,6 +30,7 @@ public class BucketScanningWorkerTest {
 
 	BucketDaoProvider mockBucketDaoProvider;
 	FileManager mockFileManager;
+	BucketScanStateDao mockBucketScanStateDao;
 	ProgressCallback<Void> mockProgressCallback;
 	BucketDao bucketDaoOne;
 	BucketDao bucketDaoTwo;
@@ -38,6 +48,7 @@ public class BucketScanningWorkerTest {
 	public void before(){
 		mockBucketDaoProvider = Mockito.mock(BucketDaoProvider.class);
 		mockFileManager = Mockito.mock(FileManager.class);
+		mockBucketScanStateDao = Mockito.mock(BucketScanStateDao.class);
 		mockProgressCallback = Mockito.mock(ProgressCallback.class);
 		bucketDaoOne = Mockito.mock(BucketDao.class);
 		bucketDaoTwo = Mockito.mock(BucketDao.class);
@@ -50,7 +61,7 @@ public class BucketScanningWorkerTest {
 		bucketTwo.setBucketName("two");
 		bucketList = new BucketInfoList(Arrays.asList(bucketOne, bucketTwo));
 		
-		worker = new BucketScanningWorker(mockBucketDaoProvider, bucketList, mockFileManager);
+		worker = new BucketScanningWorker(mockBucketDaoProvider, bucketList, mockFileManager, mockBucketScanStateDao);
 		
 		when(mockBucketDaoProvider.createBucketDao(bucketOne.getBucketName())).thenReturn(bucketDaoOne);
 		when(mockBucketDaoProvider.createBucketDao(bucketTwo.getBucketName())).thenReturn(bucketDaoTwo);
@@ -74,5 +85,86 @@ public class BucketScanningWorkerTest {
 		worker.run(mockProgressCallback);
 		verify(mockFileManager).addS3Objects(oneStream, mockProgressCallback);
 		verify(mockFileManager).addS3Objects(twoStream, mockProgressCallback);
+		// the failed bucket must be scanned again from the beginning.
+		ArgumentCaptor<BucketScanState> captor = ArgumentCaptor.forClass(BucketScanState.class);
+		verify(mockBucketScanStateDao).setBucketScanState(captor.capture());
+		assertEquals("two", captor.getValue().getBucket());
+	}
+
+	@Test
+	public void testFullScanSavesState() throws Exception {
+		long start = System.currentTimeMillis();
+		worker.run(mockProgressCallback);
+		ArgumentCaptor<BucketScanState> captor = ArgumentCaptor.forClass(BucketScanState.class);
+		verify(mockBucketScanStateDao, times(2)).setBucketScanState(captor.capture());
+		BucketScanState state = captor.getAllValues().get(0);
+		assertEquals("one", state.getBucket());
+		assertEquals(BucketScanningWorker.DATE_FOLDER_FORMAT.print(start - BucketScanningWorker.CHECKPOINT_OVERLAP_MS),
+				state.getCheckpoint());
+	}
+
+	@Test
+	public void testIncrementalScan() throws Exception {
+		long now = System.currentTimeMillis();
+		String yesterday = BucketScanningWorker.DATE_FOLDER_FORMAT.print(now - 24*60*60*1000L);
+		String today = BucketScanningWorker.DATE_FOLDER_FORMAT.print(now);
+		Timestamp lastFullScanOn = new Timestamp(now - 60*1000L);
+		when(mockBucketScanStateDao.getBucketScanState("one")).thenReturn(new BucketScanState("one", yesterday, lastFullScanOn));
+		when(mockBucketDaoProvider.listTopLevelFolders("one")).thenReturn(Arrays.asList("000000001/", "000000002/"));
+
+		worker.run(mockProgressCallback);
+		// bucket one is only scanned from its checkpoint.
+		verify(bucketDaoOne, never()).summaryIterator(null);
+		verify(bucketDaoOne).summaryIterator("000000001/" + yesterday + "/");
+		verify(bucketDaoOne).summaryIterator("000000001/" + today + "/");
+		verify(bucketDaoOne).summaryIterator("000000002/" + yesterday + "/");
+		verify(bucketDaoOne).summaryIterator("000000002/" + today + "/");
+		// bucket two has never been scanned.
+		verify(bucketDaoTwo).summaryIterator(null);
+		// The time of the last full scan is kept for an incremental scan.
+		ArgumentCaptor<BucketScanState> captor = ArgumentCaptor.forClass(BucketScanState.class);
+		verify(mockBucketScanStateDao, times(2)).setBucketScanState(captor.capture());
+		assertEquals(lastFullScanOn, captor.getAllValues().get(0).getLastFullScanOn());
+	}
+
+	@Test
+	public void testFullScanAfterPeriod() throws Exception {
+		long now = System.currentTimeMillis();
+		String today = BucketScanningWorker.DATE_FOLDER_FORMAT.print(now);
+		Timestamp lastFullScanOn = new Timestamp(now - BucketScanningWorker.FULL_SCAN_PERIOD_MS);
+		when(mockBucketScanStateDao.getBucketScanState("one")).thenReturn(new BucketScanState("one", today, lastFullScanOn));
+
+		worker.run(mockProgressCallback);
+		verify(bucketDaoOne).summaryIterator(null);
+		verify(mockBucketDaoProvider, never()).listTopLevelFolders(anyString());
+	}
+
+	@Test
+	public void testIncrementalScanThrowsException() throws Exception {
+		long now = System.currentTimeMillis();
+		String today = BucketScanningWorker.DATE_FOLDER_FORMAT.print(now);
+		when(mockBucketScanStateDao.getBucketScanState(anyString())).thenReturn(new BucketScanState("one", today, new Timestamp(now)));
+		when(mockBucketDaoProvider.listTopLevelFolders(anyString())).thenReturn(Arrays.asList("000000001/"));
+		when(bucketDaoOne.summaryIterator("000000001/" + today + "/")).thenReturn(oneStream);
+		doThrow(new IllegalArgumentException()).when(mockFileManager).addS3Objects(oneStream, mockProgressCallback);
+
+		worker.run(mockProgressCallback);
+		// only bucket two moves its checkpoint.
+		ArgumentCaptor<BucketScanState> captor = ArgumentCaptor.forClass(BucketScanState.class);
+		verify(mockBucketScanStateDao).setBucketScanState(captor.capture());
+		assertEquals("two", captor.getValue().getBucket());
+	}
+
+	@Test
+	public void testListDateFolders() {
+		long time = BucketScanningWorker.DATE_FOLDER_FORMAT.parseMillis("2015-08-02") + 1000L;
+		List<String> folders = BucketScanningWorker.listDateFolders("2015-07-31", time);
+		assertEquals(Arrays.asList("2015-07-31", "2015-08-01", "2015-08-02"), folders);
+	}
+
+	@Test
+	public void testListDateFoldersCheckpointAfterTime() {
+		long time = BucketScanningWorker.DATE_FOLDER_FORMAT.parseMillis("2015-08-02");
+		assertEquals(0, BucketScanningWorker.listDateFolders("2015-08-03", time).size());
 	}
 }
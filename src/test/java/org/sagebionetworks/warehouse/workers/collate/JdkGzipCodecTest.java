@@ -0,0 +1,84 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JdkGzipCodecTest {
+
+	JdkGzipCodec codec;
+	byte[] data;
+
+	@Before
+	public void before() {
+		codec = new JdkGzipCodec(1024);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			builder.append(i).append(",\"GET\",\"/repo/v1/entity/syn").append(i % 97).append("\"\n");
+		}
+		data = builder.toString().getBytes();
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testInvalidBufferSize() {
+		new JdkGzipCodec(0);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		OutputStream out = codec.compress(compressed);
+		out.write(data);
+		out.close();
+		InputStream in = codec.decompress(new ByteArrayInputStream(compressed.toByteArray()));
+		assertArrayEquals(data, IOUtils.toByteArray(in));
+		in.close();
+	}
+
+	@Test
+	public void testCompressIsStandardGzip() throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		OutputStream out = codec.compress(compressed);
+		out.write(data);
+		out.close();
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()));
+		assertArrayEquals(data, IOUtils.toByteArray(in));
+		in.close();
+	}
+
+	@Test
+	public void testDecompressStandardGzip() throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		OutputStream out = new GZIPOutputStream(compressed);
+		out.write(data);
+		out.close();
+		InputStream in = codec.decompress(new ByteArrayInputStream(compressed.toByteArray()));
+		assertArrayEquals(data, IOUtils.toByteArray(in));
+		in.close();
+	}
+
+	@Test
+	public void testCloseClosesUnderlyingStream() throws IOException {
+		final boolean[] closed = new boolean[1];
+		OutputStream out = codec.compress(new ByteArrayOutputStream() {
+
+			@Override
+			public void close() throws IOException {
+				closed[0] = true;
+			}
+		});
+		out.write(data);
+		out.close();
+		assertTrue(closed[0]);
+	}
+}
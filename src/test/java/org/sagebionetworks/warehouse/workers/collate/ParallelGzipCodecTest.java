@@ -0,0 +1,67 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelGzipCodecTest {
+
+	int blockSize = ParallelGzipOutputStream.DICTIONARY_SIZE;
+	ParallelGzipCodec codec;
+	byte[] data;
+
+	@Before
+	public void before() {
+		codec = new ParallelGzipCodec(1024, blockSize, 2);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			builder.append(i).append(",\"GET\",\"/repo/v1/entity/syn").append(i % 97).append("\"\n");
+		}
+		data = builder.toString().getBytes();
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testBlockSizeTooSmall() {
+		new ParallelGzipCodec(1024, blockSize - 1, 2);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testNoThreads() {
+		new ParallelGzipCodec(1024, blockSize, 0);
+	}
+
+	@Test
+	public void testStreamsShareThreads() throws IOException {
+		ByteArrayOutputStream one = new ByteArrayOutputStream();
+		ByteArrayOutputStream two = new ByteArrayOutputStream();
+		OutputStream outOne = codec.compress(one);
+		OutputStream outTwo = codec.compress(two);
+		assertSame(((ParallelGzipOutputStream) outOne).executor, ((ParallelGzipOutputStream) outTwo).executor);
+		outOne.write(data);
+		outTwo.write(data);
+		outOne.close();
+		outTwo.close();
+		// the pool outlives the streams and is bounded by the codec.
+		assertFalse(codec.executor.isShutdown());
+		assertTrue(codec.executor.getLargestPoolSize() <= 2);
+		assertArrayEquals(data, decompress(one.toByteArray()));
+		assertArrayEquals(data, decompress(two.toByteArray()));
+	}
+
+	private byte[] decompress(byte[] compressed) throws IOException {
+		InputStream in = codec.decompress(new ByteArrayInputStream(compressed));
+		try {
+			return IOUtils.toByteArray(in);
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+public class ParallelGzipOutputStreamTest {
+
+	int blockSize = ParallelGzipOutputStream.DICTIONARY_SIZE;
+
+	/**
+	 * Compress the data and read it back with the JDK.
+	 */
+	private byte[] roundTrip(byte[] data, int threads) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		ParallelGzipOutputStream out = new ParallelGzipOutputStream(compressed, blockSize, threads);
+		// odd sized writes cross the block boundaries.
+		int offset = 0;
+		while (offset < data.length) {
+			int count = Math.min(1000, data.length - offset);
+			out.write(data, offset, count);
+			offset += count;
+		}
+		out.close();
+		return decompress(compressed.toByteArray());
+	}
+
+	private byte[] decompress(byte[] compressed) throws IOException {
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int count;
+		while ((count = in.read(buffer)) > 0) {
+			result.write(buffer, 0, count);
+		}
+		in.close();
+		return result.toByteArray();
+	}
+
+	/**
+	 * CSV-like text that compresses well across blocks.
+	 */
+	private byte[] createText(int rows) {
+		StringBuilder builder = new StringBuilder();
+		Random random = new Random(123L);
+		for (int i = 0; i < rows; i++) {
+			builder.append(i).append(",\"GET\",\"/repo/v1/entity/syn").append(random.nextInt(1000)).append("\"\n");
+		}
+		return builder.toString().getBytes();
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testBlockSizeTooSmall() throws IOException {
+		new ParallelGzipOutputStream(new ByteArrayOutputStream(), blockSize - 1, 1);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testNoThreads() throws IOException {
+		new ParallelGzipOutputStream(new ByteArrayOutputStream(), blockSize, 0);
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		assertArrayEquals(new byte[0], roundTrip(new byte[0], 2));
+	}
+
+	@Test
+	public void testSingleBlock() throws IOException {
+		byte[] data = createText(10);
+		assertArrayEquals(data, roundTrip(data, 2));
+	}
+
+	@Test
+	public void testExactBlocks() throws IOException {
+		byte[] data = new byte[blockSize * 3];
+		new Random(1L).nextBytes(data);
+		assertArrayEquals(data, roundTrip(data, 2));
+	}
+
+	@Test
+	public void testManyBlocks() throws IOException {
+		byte[] data = createText(50000);
+		assertTrue(data.length > blockSize * 20);
+		assertArrayEquals(data, roundTrip(data, 4));
+		assertArrayEquals(data, roundTrip(data, 1));
+	}
+
+	@Test
+	public void testSingleByteWrites() throws IOException {
+		byte[] data = createText(3000);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		ParallelGzipOutputStream out = new ParallelGzipOutputStream(compressed, blockSize, 2);
+		for (byte b : data) {
+			out.write(b);
+		}
+		out.flush();
+		out.close();
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()));
+		for (byte b : data) {
+			assertEquals(b & 0xff, in.read());
+		}
+		assertEquals(-1, in.read());
+		in.close();
+	}
+
+	@Test
+	public void testSharedExecutor() throws IOException {
+		ExecutorService executor = ParallelGzipOutputStream.createExecutor(2);
+		try {
+			byte[] data = createText(20000);
+			// two streams interleave their blocks on the same threads.
+			ByteArrayOutputStream one = new ByteArrayOutputStream();
+			ByteArrayOutputStream two = new ByteArrayOutputStream();
+			ParallelGzipOutputStream outOne = new ParallelGzipOutputStream(one, blockSize, 2, executor);
+			ParallelGzipOutputStream outTwo = new ParallelGzipOutputStream(two, blockSize, 2, executor);
+			int offset = 0;
+			while (offset < data.length) {
+				int count = Math.min(blockSize, data.length - offset);
+				outOne.write(data, offset, count);
+				outTwo.write(data, offset, count);
+				offset += count;
+			}
+			outOne.close();
+			outTwo.close();
+			// closing a stream leaves the shared executor running.
+			assertFalse(executor.isShutdown());
+			assertArrayEquals(data, decompress(one.toByteArray()));
+			assertArrayEquals(data, decompress(two.toByteArray()));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testNullExecutor() throws IOException {
+		new ParallelGzipOutputStream(new ByteArrayOutputStream(), blockSize, 1, null);
+	}
+
+	@Test (expected=IOException.class)
+	public void testWriteAfterClose() throws IOException {
+		ParallelGzipOutputStream out = new ParallelGzipOutputStream(new ByteArrayOutputStream(), blockSize, 1);
+		out.close();
+		out.write(1);
+	}
+}
@@ -0,0 +1,171 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+
+public class ResumableS3ObjectInputStreamTest {
+
+	AmazonS3Client mockS3Client;
+	String bucket = "someBucket";
+	String key = "someKey";
+	String etag = "someETag";
+	byte[] data = "0123456789".getBytes();
+
+	@Before
+	public void before() {
+		mockS3Client = Mockito.mock(AmazonS3Client.class);
+	}
+
+	/**
+	 * A connection that returns the given bytes and then fails, or ends if
+	 * fail is false.
+	 */
+	private S3Object createObject(byte[] content, final boolean fail) throws IOException {
+		final InputStream in = new ByteArrayInputStream(content);
+		S3ObjectInputStream mockStream = Mockito.mock(S3ObjectInputStream.class);
+		when(mockStream.read(any(byte[].class), anyInt(), anyInt())).thenAnswer(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				Object[] args = invocation.getArguments();
+				int count = in.read((byte[]) args[0], (Integer) args[1], (Integer) args[2]);
+				if (count < 0 && fail) {
+					throw new IOException("Connection reset");
+				}
+				return count;
+			}
+		});
+		S3Object object = new S3Object();
+		ObjectMetadata metadata = new ObjectMetadata();
+		metadata.setContentLength(data.length);
+		metadata.setHeader(Headers.ETAG, etag);
+		object.setObjectMetadata(metadata);
+		object.setObjectContent(mockStream);
+		return object;
+	}
+
+	private byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4];
+		int count;
+		while ((count = in.read(buffer)) > 0) {
+			out.write(buffer, 0, count);
+		}
+		return out.toByteArray();
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testNegativeRetries() {
+		new ResumableS3ObjectInputStream(mockS3Client, bucket, key, -1);
+	}
+
+	@Test
+	public void testReadAll() throws IOException {
+		S3Object object = createObject(data, false);
+		when(mockS3Client.getObject(any(GetObjectRequest.class))).thenReturn(object);
+		ResumableS3ObjectInputStream in = new ResumableS3ObjectInputStream(mockS3Client, bucket, key, 0);
+		assertArrayEquals(data, readAll(in));
+		in.close();
+		verify(object.getObjectContent()).close();
+		verify(object.getObjectContent(), never()).abort();
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		S3Object first = createObject("0123".getBytes(), true);
+		S3Object second = createObject("456789".getBytes(), false);
+		when(mockS3Client.getObject(any(GetObjectRequest.class))).thenReturn(first, second);
+		ResumableS3ObjectInputStream in = new ResumableS3ObjectInputStream(mockS3Client, bucket, key, 1);
+		assertArrayEquals(data, readAll(in));
+		in.close();
+		verify(first.getObjectContent()).abort();
+		ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor.forClass(GetObjectRequest.class);
+		verify(mockS3Client, times(2)).getObject(captor.capture());
+		List<GetObjectRequest> requests = captor.getAllValues();
+		assertNull(requests.get(0).getRange());
+		assertTrue(requests.get(0).getMatchingETagConstraints().isEmpty());
+		assertArrayEquals(new long[]{4L, 9L}, requests.get(1).getRange());
+		// the resumed range must come from the same version of the object.
+		assertEquals(Arrays.asList(etag), requests.get(1).getMatchingETagConstraints());
+	}
+
+	@Test
+	public void testObjectChanged() throws IOException {
+		S3Object first = createObject("0123".getBytes(), true);
+		// S3 returns null when the ETag no longer matches.
+		when(mockS3Client.getObject(any(GetObjectRequest.class))).thenReturn(first, (S3Object) null);
+		ResumableS3ObjectInputStream in = new ResumableS3ObjectInputStream(mockS3Client, bucket, key, 3);
+		try {
+			readAll(in);
+			fail("Expecting an IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		verify(mockS3Client, times(2)).getObject(any(GetObjectRequest.class));
+	}
+
+	@Test
+	public void testConnectionEndsEarly() throws IOException {
+		S3Object first = createObject("0123".getBytes(), false);
+		S3Object second = createObject("456789".getBytes(), false);
+		when(mockS3Client.getObject(any(GetObjectRequest.class))).thenReturn(first, second);
+		ResumableS3ObjectInputStream in = new ResumableS3ObjectInputStream(mockS3Client, bucket, key, 1);
+		assertArrayEquals(data, readAll(in));
+		verify(mockS3Client, times(2)).getObject(any(GetObjectRequest.class));
+	}
+
+	@Test
+	public void testRetriesExhausted() throws IOException {
+		S3Object first = createObject("0123".getBytes(), true);
+		S3Object second = createObject("45".getBytes(), true);
+		when(mockS3Client.getObject(any(GetObjectRequest.class))).thenReturn(first, second);
+		ResumableS3ObjectInputStream in = new ResumableS3ObjectInputStream(mockS3Client, bucket, key, 1);
+		try {
+			readAll(in);
+			fail("Expecting an IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		in.close();
+		verify(second.getObjectContent(), atLeastOnce()).abort();
+	}
+
+	@Test
+	public void testCloseEarly() throws IOException {
+		S3Object object = createObject(data, false);
+		when(mockS3Client.getObject(any(GetObjectRequest.class))).thenReturn(object);
+		ResumableS3ObjectInputStream in = new ResumableS3ObjectInputStream(mockS3Client, bucket, key, 0);
+		in.read();
+		in.close();
+		verify(object.getObjectContent()).abort();
+		verify(object.getObjectContent(), never()).close();
+	}
+
+	@Test (expected=IOException.class)
+	public void testReadAfterClose() throws IOException {
+		when(mockS3Client.getObject(any(GetObjectRequest.class))).thenReturn(createObject(data, false));
+		ResumableS3ObjectInputStream in = new ResumableS3ObjectInputStream(mockS3Client, bucket, key, 0);
+		in.close();
+		in.read();
+	}
+}
@@ -0,0 +1,134 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+
+public class S3MultipartOutputStreamTest {
+
+	AmazonS3Client mockS3Client;
+	String bucket = "someBucket";
+	String key = "someKey";
+	String uploadId = "someUploadId";
+	int partSize = S3MultipartOutputStream.MINIMUM_PART_SIZE;
+
+	@Before
+	public void before() {
+		mockS3Client = Mockito.mock(AmazonS3Client.class);
+		InitiateMultipartUploadResult initResult = new InitiateMultipartUploadResult();
+		initResult.setUploadId(uploadId);
+		when(mockS3Client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initResult);
+		doAnswer(new Answer<UploadPartResult>() {
+			@Override
+			public UploadPartResult answer(InvocationOnMock invocation) throws Throwable {
+				UploadPartRequest request = (UploadPartRequest) invocation.getArguments()[0];
+				UploadPartResult result = new UploadPartResult();
+				result.setPartNumber(request.getPartNumber());
+				result.setETag("etag" + request.getPartNumber());
+				return result;
+			}
+		}).when(mockS3Client).uploadPart(any(UploadPartRequest.class));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testPartSizeTooSmall() {
+		new S3MultipartOutputStream(mockS3Client, bucket, key, CannedAccessControlList.BucketOwnerFullControl, partSize - 1);
+	}
+
+	@Test
+	public void testInitiate() {
+		new S3MultipartOutputStream(mockS3Client, bucket, key, CannedAccessControlList.BucketOwnerFullControl, partSize);
+		ArgumentCaptor<InitiateMultipartUploadRequest> captor = ArgumentCaptor.forClass(InitiateMultipartUploadRequest.class);
+		verify(mockS3Client).initiateMultipartUpload(captor.capture());
+		assertEquals(bucket, captor.getValue().getBucketName());
+		assertEquals(key, captor.getValue().getKey());
+		assertEquals(CannedAccessControlList.BucketOwnerFullControl, captor.getValue().getCannedACL());
+	}
+
+	@Test
+	public void testMultipleParts() throws IOException {
+		S3MultipartOutputStream out = new S3MultipartOutputStream(mockS3Client, bucket, key, CannedAccessControlList.BucketOwnerFullControl, partSize);
+		// two full parts and a partial part.
+		out.write(new byte[partSize + 10]);
+		out.write(new byte[partSize - 10]);
+		out.write(1);
+		out.close();
+		ArgumentCaptor<UploadPartRequest> partCaptor = ArgumentCaptor.forClass(UploadPartRequest.class);
+		verify(mockS3Client, times(3)).uploadPart(partCaptor.capture());
+		List<UploadPartRequest> parts = partCaptor.getAllValues();
+		assertEquals(1, parts.get(0).getPartNumber());
+		assertEquals(partSize, parts.get(0).getPartSize());
+		assertEquals(2, parts.get(1).getPartNumber());
+		assertEquals(partSize, parts.get(1).getPartSize());
+		assertEquals(3, parts.get(2).getPartNumber());
+		assertEquals(1, parts.get(2).getPartSize());
+		ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+		verify(mockS3Client).completeMultipartUpload(completeCaptor.capture());
+		assertEquals(uploadId, completeCaptor.getValue().getUploadId());
+		assertEquals(3, completeCaptor.getValue().getPartETags().size());
+		verify(mockS3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+		// closing again has no effect
+		out.close();
+		verify(mockS3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+	}
+
+	@Test
+	public void testCloseEmpty() throws IOException {
+		S3MultipartOutputStream out = new S3MultipartOutputStream(mockS3Client, bucket, key, CannedAccessControlList.BucketOwnerFullControl, partSize);
+		out.close();
+		// S3 requires at least one part.
+		verify(mockS3Client).uploadPart(any(UploadPartRequest.class));
+		verify(mockS3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+	}
+
+	@Test
+	public void testAbort() throws IOException {
+		S3MultipartOutputStream out = new S3MultipartOutputStream(mockS3Client, bucket, key, CannedAccessControlList.BucketOwnerFullControl, partSize);
+		out.write(new byte[10]);
+		out.abort();
+		out.close();
+		verify(mockS3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+		verify(mockS3Client, never()).uploadPart(any(UploadPartRequest.class));
+		verify(mockS3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+	}
+
+	@Test (expected=IOException.class)
+	public void testWriteAfterAbort() throws IOException {
+		S3MultipartOutputStream out = new S3MultipartOutputStream(mockS3Client, bucket, key, CannedAccessControlList.BucketOwnerFullControl, partSize);
+		out.abort();
+		out.write(1);
+	}
+
+	@Test
+	public void testCompleteFailure() throws IOException {
+		RuntimeException error = new RuntimeException("some error");
+		doThrow(error).when(mockS3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+		S3MultipartOutputStream out = new S3MultipartOutputStream(mockS3Client, bucket, key, CannedAccessControlList.BucketOwnerFullControl, partSize);
+		out.write(1);
+		try {
+			out.close();
+			fail("Should have thrown an exception");
+		} catch (RuntimeException e) {
+			assertEquals(error, e);
+		}
+		verify(mockS3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+	}
+}
@@ -0,0 +1,178 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sagebionetworks.csv.utils.ObjectCSVReader;
+import org.sagebionetworks.csv.utils.ObjectCSVWriter;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.model.SnapshotHeader;
+import org.sagebionetworks.warehouse.workers.utils.AccessRecordTestUtil;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+public class StreamResourceProviderImplTest {
+
+	private static final String SAMPLE = "SampleAccessRecord.csv.gz";
+
+	AmazonS3Client mockS3Client;
+	GzipCodec codec;
+	StreamResourceProviderImpl provider;
+	File file;
+	String bucket = "someBucket";
+	String key = "someKey";
+	List<File> downloaded;
+
+	@Before
+	public void before() {
+		mockS3Client = Mockito.mock(AmazonS3Client.class);
+		codec = Mockito.spy(new JdkGzipCodec(4096));
+		provider = new StreamResourceProviderImpl(codec, false, 4096, 0);
+		downloaded = new LinkedList<File>();
+		file = provider.createTempFile("test", ".csv.gz");
+	}
+
+	@After
+	public void after() {
+		file.delete();
+	}
+
+	/**
+	 * Records the file each download is written to, then copies the sample
+	 * into it or fails.
+	 */
+	private void setDownload(final boolean fail) {
+		when(mockS3Client.getObject(any(GetObjectRequest.class), any(File.class))).thenAnswer(new Answer<ObjectMetadata>() {
+			@Override
+			public ObjectMetadata answer(InvocationOnMock invocation) throws Throwable {
+				File file = (File) invocation.getArguments()[1];
+				downloaded.add(file);
+				if (fail) {
+					throw new AmazonClientException("Unable to execute HTTP request");
+				}
+				InputStream in = getClass().getClassLoader().getResourceAsStream(SAMPLE);
+				try {
+					FileUtils.copyInputStreamToFile(in, file);
+				} finally {
+					in.close();
+				}
+				return new ObjectMetadata();
+			}
+		});
+	}
+
+	@Test
+	public void testFileModeDeletesOnClose() throws Exception {
+		setDownload(false);
+		ObjectCSVReader<AccessRecord> reader = provider.createObjectCSVReader(mockS3Client, bucket, key, AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS);
+		ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor.forClass(GetObjectRequest.class);
+		verify(mockS3Client).getObject(captor.capture(), any(File.class));
+		assertEquals(bucket, captor.getValue().getBucketName());
+		assertEquals(key, captor.getValue().getKey());
+		assertEquals(1, downloaded.size());
+		File file = downloaded.get(0);
+		assertTrue(file.exists());
+		assertNotNull(reader.next());
+		reader.close();
+		assertFalse(file.exists());
+		verify(codec).decompress(any(InputStream.class));
+	}
+
+	@Test
+	public void testFileModeDeletesOnFailure() {
+		setDownload(true);
+		try {
+			provider.createObjectCSVReader(mockS3Client, bucket, key, AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS);
+			fail("Expecting an AmazonClientException");
+		} catch (AmazonClientException e) {
+			// expected
+		}
+		assertEquals(1, downloaded.size());
+		assertFalse(downloaded.get(0).exists());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testNullCodec() {
+		new StreamResourceProviderImpl(null, false, 4096, 0);
+	}
+
+	@Test
+	public void testGzipFileUsesCodec() throws Exception {
+		CSVWriter writer = provider.createGzipWriter(file);
+		writer.writeNext(new String[] { "1", "one" });
+		writer.close();
+		verify(codec).compress(any(OutputStream.class));
+		CSVReader reader = provider.createGzipReader(file);
+		assertArrayEquals(new String[] { "1", "one" }, reader.readNext());
+		assertNull(reader.readNext());
+		reader.close();
+		verify(codec).decompress(any(InputStream.class));
+	}
+
+	@Test
+	public void testGzipStreamUsesCodec() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CSVWriter writer = provider.createGzipWriter(out);
+		writer.writeNext(new String[] { "1", "one" });
+		writer.close();
+		verify(codec).compress(out);
+		InputStream in = codec.decompress(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals("\"1\",\"one\"\n", new String(IOUtils.toByteArray(in), "UTF-8"));
+		in.close();
+	}
+
+	@Test
+	public void testObjectCSVFileUsesCodec() throws Exception {
+		ObjectCSVWriter<AccessRecord> writer = provider.createObjectCSVWriter(file, AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS);
+		AccessRecord record = AccessRecordTestUtil.createValidAccessRecord();
+		writer.append(record);
+		writer.close();
+		verify(codec).compress(any(OutputStream.class));
+		ObjectCSVReader<AccessRecord> reader = provider.createObjectCSVReader(file, AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS);
+		AccessRecord read = reader.next();
+		assertEquals(record.getSessionId(), read.getSessionId());
+		assertEquals(record.getTimestamp(), read.getTimestamp());
+		assertNull(reader.next());
+		reader.close();
+		verify(codec).decompress(any(InputStream.class));
+	}
+
+	@Test
+	public void testCodecFailure() throws Exception {
+		setDownload(false);
+		doThrow(new IOException("Not in gzip format")).when(codec).decompress(any(InputStream.class));
+		try {
+			provider.createObjectCSVReader(mockS3Client, bucket, key, AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS);
+			fail("Expecting a RuntimeException");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		// the downloaded file is closed and deleted.
+		assertEquals(1, downloaded.size());
+		assertFalse(downloaded.get(0).exists());
+	}
+}
@@ -0,0 +1,168 @@
+package org.sagebionetworks.warehouse.workers.collate;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sagebionetworks.common.util.progress.ProgressCallback;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Unit test for the StreamingS3ObjectCollatorImpl
+ *
+ */
+public class StreamingS3ObjectCollatorImplTest {
+
+	ProgressCallback<Void> mockProgressCallback;
+	AmazonS3Client mockS3Client;
+	StreamResourceProvider mockCollateProvider;
+	StreamingS3ObjectCollatorImpl collator;
+	List<File> mockFiles;
+	List<CSVReader> mockReaders;
+	CSVWriter mockWriter;
+
+	String bucket;
+	List<String> keysToCollate;
+	String destinationKey;
+	int sortColumnIndex = 0;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void before(){
+		mockS3Client = Mockito.mock(AmazonS3Client.class);
+		mockCollateProvider = Mockito.mock(StreamResourceProvider.class);
+		mockProgressCallback = Mockito.mock(ProgressCallback.class);
+		bucket = "SomeBucket";
+		keysToCollate = Arrays.asList("a","b","c");
+		destinationKey = "destination";
+		mockFiles = new LinkedList<File>();
+		mockReaders = new LinkedList<CSVReader>();
+		// mock file creation.
+		doAnswer(new Answer<File>(){
+			@Override
+			public File answer(InvocationOnMock invocation) throws Throwable {
+				File mockFile = Mockito.mock(File.class);
+				mockFiles.add(mockFile);
+				return mockFile;
+			}}).when(mockCollateProvider).createTempFile(anyString(), anyString());
+		// mock reader creation
+		doAnswer(new Answer<CSVReader>(){
+			@Override
+			public CSVReader answer(InvocationOnMock invocation) throws Throwable {
+				CSVReader mockReader = Mockito.mock(CSVReader.class);
+				mockReaders.add(mockReader);
+				return mockReader;
+			}}).when(mockCollateProvider).createGzipReader(any(File.class));
+		// mock writers
+		mockWriter = Mockito.mock(CSVWriter.class);
+		when(mockCollateProvider.createGzipWriter(any(OutputStream.class))).thenReturn(mockWriter);
+		InitiateMultipartUploadResult initResult = new InitiateMultipartUploadResult();
+		initResult.setUploadId("uploadId");
+		when(mockS3Client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initResult);
+
+		collator = new StreamingS3ObjectCollatorImpl(mockS3Client, mockCollateProvider, 2, S3MultipartOutputStream.MINIMUM_PART_SIZE);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testNoDownloadThreads(){
+		new StreamingS3ObjectCollatorImpl(mockS3Client, mockCollateProvider, 0, S3MultipartOutputStream.MINIMUM_PART_SIZE);
+	}
+
+	@Test
+	public void testReplaceCSVsWithCollatedCSV() throws IOException{
+		// call under test.
+		collator.replaceCSVsWithCollatedCSV(mockProgressCallback, bucket, keysToCollate, destinationKey, sortColumnIndex);
+		assertEquals("Only the input files should be staged on disk.", 3, mockFiles.size());
+		// The three input files should be down loaded.
+		for(File mockFile: mockFiles){
+			verify(mockS3Client).getObject(any(GetObjectRequest.class), eq(mockFile));
+		}
+		assertEquals("Three readers should have been created",3, mockReaders.size());
+		// collate should be called.
+		verify(mockCollateProvider).mergeSortedStreams(mockProgressCallback, mockReaders, mockWriter, sortColumnIndex);
+		// the result is uploaded by the writer rather than put as a file.
+		verify(mockCollateProvider).createGzipWriter(any(S3MultipartOutputStream.class));
+		verify(mockS3Client, never()).putObject(any(PutObjectRequest.class));
+		verify(mockS3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+		// The input objects should be deleted in S3.
+		for(String key: keysToCollate){
+			verify(mockS3Client).deleteObject(bucket, key);
+		}
+		// each file that is created should get deleted
+		for(File mockFile: mockFiles){
+			verify(mockFile).delete();
+		}
+		// all of the readers should be closed
+		for(CSVReader mockReader: mockReaders){
+			verify(mockReader).close();
+		}
+		// the writer should be closed
+		verify(mockWriter, atLeastOnce()).close();
+	}
+
+	@Test
+	public void testDownloadException() throws IOException{
+		RuntimeException error = new RuntimeException("some error");
+		doThrow(error).when(mockS3Client).getObject(any(GetObjectRequest.class), any(File.class));
+		// call under test.
+		try {
+			collator.replaceCSVsWithCollatedCSV(mockProgressCallback, bucket, keysToCollate, destinationKey, sortColumnIndex);
+			fail("Should have thrown an exception");
+		} catch (Exception e) {
+			assertEquals(error, e);
+		}
+		// All cleanup should still happen
+		for(File mockFile: mockFiles){
+			verify(mockFile).delete();
+		}
+		// nothing should be uploaded or deleted
+		verify(mockS3Client, never()).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+		verify(mockS3Client, never()).deleteObject(anyString(), anyString());
+	}
+
+	@Test
+	public void testMergeException() throws IOException{
+		// simulate an error
+		IOException error = new IOException("some error");
+		doThrow(error).when(mockCollateProvider).mergeSortedStreams(mockProgressCallback, mockReaders, mockWriter, sortColumnIndex);
+		// call under test.
+		try {
+			collator.replaceCSVsWithCollatedCSV(mockProgressCallback, bucket, keysToCollate, destinationKey, sortColumnIndex);
+			fail("Should have thrown an exception");
+		} catch (Exception e) {
+			assertEquals(error, e);
+		}
+		// the partial upload should be discarded
+		verify(mockS3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+		// All cleanup should still happen
+		for(File mockFile: mockFiles){
+			verify(mockFile).delete();
+		}
+		for(CSVReader mockReader: mockReaders){
+			verify(mockReader).close();
+		}
+		verify(mockWriter).close();
+		// The input file should not have been deleted.
+		verify(mockS3Client, never()).deleteObject(anyString(), anyString());
+	}
+}
@@ -0,0 +1,36 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import static org.junit.Assert.*;
+
+import java.sql.Timestamp;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sagebionetworks.warehouse.workers.model.BucketScanState;
+
+public class BucketScanStateDaoImplTest {
+
+	BucketScanStateDao dao = TestContext.singleton().getInstance(BucketScanStateDao.class);
+
+	@After
+	public void after(){
+		dao.truncateAll();
+	}
+
+	@Test
+	public void testDoesNotExist(){
+		assertNull(dao.getBucketScanState("some.bucket"));
+	}
+
+	@Test
+	public void testRoundTrip(){
+		BucketScanState state = new BucketScanState("some.bucket", "2015-08-01", new Timestamp(1438387200000L));
+		dao.setBucketScanState(state);
+		assertEquals(state, dao.getBucketScanState("some.bucket"));
+		// update
+		state.setCheckpoint("2015-08-02");
+		state.setLastFullScanOn(new Timestamp(1438473600000L));
+		dao.setBucketScanState(state);
+		assertEquals(state, dao.getBucketScanState("some.bucket"));
+	}
+}
@@ -0,0 +1,132 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class BulkLoaderTest {
+
+	BulkLoader<Object[]> loader;
+
+	@Before
+	public void before() {
+		loader = new BulkLoader<Object[]>("SOME_TABLE",
+				Arrays.asList("ID", "NAME", "IS_ACTIVE"),
+				new HashSet<String>(Arrays.asList("IS_ACTIVE")),
+				new BulkLoader.ValuesProvider<Object[]>() {
+
+					@Override
+					public Object[] getValues(Object[] record) {
+						return record;
+					}
+				});
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testNullTableName() {
+		new BulkLoader<Object[]>(null, Arrays.asList("ID"), Collections.<String>emptySet(), null);
+	}
+
+	@Test
+	public void testLoadSql() {
+		assertEquals("LOAD DATA LOCAL INFILE 'stream' IGNORE INTO TABLE SOME_TABLE"
+				+ " CHARACTER SET utf8"
+				+ " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'"
+				+ " LINES TERMINATED BY '\\n'"
+				+ " (ID,NAME,@IS_ACTIVE) SET IS_ACTIVE = CAST(@IS_ACTIVE AS UNSIGNED)",
+				loader.getLoadSql());
+	}
+
+	@Test
+	public void testToTabSeparatedValues() {
+		Object[] row1 = new Object[]{1L, "plain", true};
+		Object[] row2 = new Object[]{2L, null, false};
+		byte[] data = loader.toTabSeparatedValues(Arrays.asList(row1, row2));
+		assertEquals("1\tplain\t1\n2\t\\N\t0\n", new String(data, BulkLoader.UTF8));
+	}
+
+	@Test
+	public void testEscaping() {
+		Object[] row = new Object[]{1L, "a\tb\nc\rd\\e\0f", true};
+		byte[] data = loader.toTabSeparatedValues(Arrays.<Object[]>asList(row));
+		assertEquals("1\ta\\tb\\nc\\rd\\\\e\\0f\t1\n", new String(data, BulkLoader.UTF8));
+	}
+
+	@Test
+	public void testMultiByteCharacters() {
+		Object[] row = new Object[]{1L, "caf\u00e9", true};
+		byte[] data = loader.toTabSeparatedValues(Arrays.<Object[]>asList(row));
+		assertEquals("1\tcaf\u00e9\t1\n", new String(data, BulkLoader.UTF8));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testWrongNumberOfValues() {
+		Object[] row = new Object[]{1L, "missing a column"};
+		loader.toTabSeparatedValues(Arrays.<Object[]>asList(row));
+	}
+
+	/**
+	 * A template whose driver and server allow, or do not allow, LOAD DATA LOCAL.
+	 */
+	@SuppressWarnings("unchecked")
+	private JdbcTemplate createTemplate(boolean driverAllows, int serverAllows) throws SQLException {
+		JdbcTemplate mockTemplate = mock(JdbcTemplate.class);
+		final Connection mockConnection = mock(Connection.class);
+		com.mysql.jdbc.Connection mockMysqlConnection = mock(com.mysql.jdbc.Connection.class);
+		when(mockConnection.unwrap(com.mysql.jdbc.Connection.class)).thenReturn(mockMysqlConnection);
+		when(mockMysqlConnection.getAllowLoadLocalInfile()).thenReturn(driverAllows);
+		when(mockTemplate.execute(any(ConnectionCallback.class))).thenAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				return ((ConnectionCallback<Object>) invocation.getArguments()[0]).doInConnection(mockConnection);
+			}
+		});
+		when(mockTemplate.queryForObject(BulkLoader.SQL_LOCAL_INFILE, Integer.class)).thenReturn(serverAllows);
+		return mockTemplate;
+	}
+
+	@Test
+	public void testCheckEnabled() throws SQLException {
+		BulkLoader.checkEnabled(createTemplate(true, 1));
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testCheckEnabledDriverDisallows() throws SQLException {
+		BulkLoader.checkEnabled(createTemplate(false, 1));
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testCheckEnabledServerDisallows() throws SQLException {
+		BulkLoader.checkEnabled(createTemplate(true, 0));
+	}
+
+	@Test
+	public void testSelectInsertModeBulkLoad() throws SQLException {
+		assertEquals(InsertMode.BULK_LOAD, BulkLoader.selectInsertMode(InsertMode.BULK_LOAD, createTemplate(true, 1)));
+	}
+
+	@Test
+	public void testSelectInsertModeFallsBack() throws SQLException {
+		assertEquals(InsertMode.BATCH_INSERT, BulkLoader.selectInsertMode(InsertMode.BULK_LOAD, createTemplate(false, 1)));
+		assertEquals(InsertMode.BATCH_INSERT, BulkLoader.selectInsertMode(InsertMode.BULK_LOAD, createTemplate(true, 0)));
+	}
+
+	@Test
+	public void testSelectInsertModeBatchInsert() {
+		JdbcTemplate mockTemplate = mock(JdbcTemplate.class);
+		assertEquals(InsertMode.BATCH_INSERT, BulkLoader.selectInsertMode(InsertMode.BATCH_INSERT, mockTemplate));
+		verifyZeroInteractions(mockTemplate);
+	}
+}
@@ -0,0 +1,106 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sagebionetworks.warehouse.workers.model.WarehouseWorkersState;
+import org.sagebionetworks.warehouse.workers.utils.Clock;
+
+public class CachedWarehouseWorkersStateDaoTest {
+
+	WarehouseWorkersStateDao mockDao;
+	StubClock clock;
+	CachedWarehouseWorkersStateDao cache;
+
+	@Before
+	public void before() {
+		mockDao = mock(WarehouseWorkersStateDao.class);
+		when(mockDao.getState()).thenReturn(WarehouseWorkersState.NORMAL);
+		clock = new StubClock();
+		cache = new CachedWarehouseWorkersStateDao(mockDao, 50L, 1000L, clock);
+	}
+
+	@Test
+	public void testCached() {
+		for (int i = 0; i < 10; i++) {
+			assertEquals(WarehouseWorkersState.NORMAL, cache.getState());
+		}
+		verify(mockDao, times(1)).getState();
+		assertEquals(1L, cache.getRefreshCount());
+	}
+
+	@Test
+	public void testExpired() {
+		assertEquals(WarehouseWorkersState.NORMAL, cache.getState());
+		// changed by another instance
+		when(mockDao.getState()).thenReturn(WarehouseWorkersState.MAINTENANCE);
+		clock.now += 49L;
+		assertEquals(WarehouseWorkersState.NORMAL, cache.getState());
+		clock.now += 1L;
+		assertEquals(WarehouseWorkersState.MAINTENANCE, cache.getState());
+		verify(mockDao, times(2)).getState();
+		assertEquals(2L, cache.getRefreshCount());
+	}
+
+	@Test
+	public void testRefreshTimes() {
+		when(mockDao.getState()).thenAnswer(new Answer<WarehouseWorkersState>() {
+
+			@Override
+			public WarehouseWorkersState answer(InvocationOnMock invocation) throws Throwable {
+				clock.now += 10L;
+				return WarehouseWorkersState.NORMAL;
+			}
+		});
+		cache.getState();
+		clock.now += 100L;
+		when(mockDao.getState()).thenAnswer(new Answer<WarehouseWorkersState>() {
+
+			@Override
+			public WarehouseWorkersState answer(InvocationOnMock invocation) throws Throwable {
+				clock.now += 30L;
+				return WarehouseWorkersState.NORMAL;
+			}
+		});
+		cache.getState();
+		assertEquals(2L, cache.getRefreshCount());
+		assertEquals(20.0, cache.getAverageRefreshMS(), 0.0);
+		assertEquals(30L, cache.getMaxRefreshMS());
+	}
+
+	@Test
+	public void testSetState() {
+		assertEquals(WarehouseWorkersState.NORMAL, cache.getState());
+		cache.setState(WarehouseWorkersState.MAINTENANCE);
+		verify(mockDao).setState(WarehouseWorkersState.MAINTENANCE);
+		// served without reading the database again.
+		assertEquals(WarehouseWorkersState.MAINTENANCE, cache.getState());
+		verify(mockDao, times(1)).getState();
+	}
+
+	@Test
+	public void testTruncateAll() {
+		assertEquals(WarehouseWorkersState.NORMAL, cache.getState());
+		cache.truncateAll();
+		verify(mockDao).truncateAll();
+		assertEquals(WarehouseWorkersState.NORMAL, cache.getState());
+		verify(mockDao, times(2)).getState();
+	}
+
+	static class StubClock implements Clock {
+
+		long now = 1000L;
+
+		@Override
+		public long currentTimeMillis() {
+			return now;
+		}
+	}
+}
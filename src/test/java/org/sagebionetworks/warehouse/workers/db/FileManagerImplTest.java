@@ -2,12 +2,16 @@ package org.sagebionetworks.warehouse.workers.db;
 
 import java.sql.Timestamp;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import org.sagebionetworks.aws.utils.s3.KeyGeneratorUtil;
@@ -25,6 +29,7 @@ public class FileManagerImplTest {
 	FileMetadataDao mockFileMetadataDao;
 	BucketTopicPublisher mockBucketToTopicManager;
 	ProgressCallback<Void> mockCallback;
+	SubmittedFileFilter submittedFileFilter;
 	
 	S3ObjectSummary rollingOne;
 	S3ObjectSummary rollingTwo;
@@ -41,7 +46,8 @@ public class FileManagerImplTest {
 		mockFileMetadataDao = Mockito.mock(FileMetadataDao.class);
 		mockBucketToTopicManager = Mockito.mock(BucketTopicPublisher.class);
 		mockCallback = Mockito.mock(ProgressCallback.class);
-		manger = new FileManagerImpl(mockFolderMetadataDao, mockFileMetadataDao, mockBucketToTopicManager);
+		submittedFileFilter = new SubmittedFileFilter(100);
+		manger = new FileManagerImpl(mockFolderMetadataDao, mockFileMetadataDao, mockBucketToTopicManager, submittedFileFilter);
 		
 		rollingOne = new S3ObjectSummary();
 		rollingOne.setBucketName("bucketone");
@@ -93,13 +99,26 @@ public class FileManagerImplTest {
 		// unknown state for a new file.
 		FileState stateOne = new FileState();
 		stateOne.setState(State.UNKNOWN);
-		when(mockFileMetadataDao.getFileState(fileOne.getBucketName(), fileOne.getKey())).thenReturn(stateOne);
+		when(mockFileMetadataDao.getFileStates(fileOne.getBucketName(), Arrays.asList(fileOne.getKey()))).thenReturn(createStateMap(fileOne.getKey(), stateOne));
 		// call under test
 		manger.addS3Objects(list.iterator(), mockCallback);
 		// progress should be made for each file.
 		verify(mockCallback, times(1)).progressMade(null);
-		verify(mockFileMetadataDao).setFileState(fileOne.getBucketName(), fileOne.getKey(), State.SUBMITTED);
+		verify(mockFileMetadataDao).setFileStates(fileOne.getBucketName(), Arrays.asList(fileOne.getKey()), State.SUBMITTED);
 		verify(mockBucketToTopicManager).publishS3ObjectToTopic(fileOne.getBucketName(), fileOne.getKey());
+		assertTrue(submittedFileFilter.isSubmitted(fileOne.getBucketName(), fileOne.getKey()));
+	}
+	
+	@Test
+	public void testAddFileInFilter(){
+		submittedFileFilter.add(fileOne.getBucketName(), fileOne.getKey());
+		List<S3ObjectSummary> list = Arrays.asList(fileOne);
+		// call under test
+		manger.addS3Objects(list.iterator(), mockCallback);
+		verify(mockCallback, times(1)).progressMade(null);
+		// The database is not needed for a file that is known to be submitted.
+		verify(mockFileMetadataDao, never()).getFileStates(anyString(), anyList());
+		verify(mockBucketToTopicManager, never()).publishS3ObjectToTopic(anyString(), anyString());
 	}
 	
 	@Test
@@ -108,13 +127,15 @@ public class FileManagerImplTest {
 		// submitted state for an exiting file.
 		FileState stateOne = new FileState();
 		stateOne.setState(State.SUBMITTED);
-		when(mockFileMetadataDao.getFileState(fileOne.getBucketName(), fileOne.getKey())).thenReturn(stateOne);
+		when(mockFileMetadataDao.getFileStates(fileOne.getBucketName(), Arrays.asList(fileOne.getKey()))).thenReturn(createStateMap(fileOne.getKey(), stateOne));
 		// call under test
 		manger.addS3Objects(list.iterator(), mockCallback);
 		// progress should be made for each file.
 		verify(mockCallback, times(1)).progressMade(null);
-		verify(mockFileMetadataDao, never()).setFileState(fileOne.getBucketName(), fileOne.getKey(), State.SUBMITTED);
+		verify(mockFileMetadataDao, never()).setFileStates(fileOne.getBucketName(), Arrays.asList(fileOne.getKey()), State.SUBMITTED);
 		verify(mockBucketToTopicManager, never()).publishS3ObjectToTopic(fileOne.getBucketName(), fileOne.getKey());
+		// The next scan will not need to look it up again.
+		assertTrue(submittedFileFilter.isSubmitted(fileOne.getBucketName(), fileOne.getKey()));
 	}
 
 	@Test
@@ -123,16 +144,94 @@ public class FileManagerImplTest {
 		// unknown state for a new file.
 		FileState stateOne = new FileState();
 		stateOne.setState(State.UNKNOWN);
-		when(mockFileMetadataDao.getFileState(fileOne.getBucketName(), fileOne.getKey())).thenReturn(stateOne);
+		when(mockFileMetadataDao.getFileStates(fileOne.getBucketName(), Arrays.asList(fileOne.getKey()))).thenReturn(createStateMap(fileOne.getKey(), stateOne));
 		// call under test
 		manger.addS3Objects(list.iterator(), mockCallback);
 		// progress should be made for each file.
 		verify(mockCallback, times(2)).progressMade(null);
-		verify(mockFileMetadataDao, never()).getFileState(badKeyFile.getBucketName(), badKeyFile.getKey());
-		verify(mockFileMetadataDao).getFileState(fileOne.getBucketName(), fileOne.getKey());
+		verify(mockFileMetadataDao, never()).getFileStates(badKeyFile.getBucketName(), Arrays.asList(badKeyFile.getKey()));
+		verify(mockFileMetadataDao).getFileStates(fileOne.getBucketName(), Arrays.asList(fileOne.getKey()));
 		verify(mockFolderMetadataDao, never()).createOrUpdateFolderState((FolderState) any());
 	}
 	
+	@Test
+	public void testAddFilesBatchedByBucket(){
+		S3ObjectSummary fileThree = new S3ObjectSummary();
+		fileThree.setBucketName(fileOne.getBucketName());
+		fileThree.setKey(KeyGeneratorUtil.createNewKey(111, 2, false));
+		List<S3ObjectSummary> list = Arrays.asList(fileOne, fileThree, fileTwo);
+		FileState unknown = new FileState();
+		unknown.setState(State.UNKNOWN);
+		FileState submitted = new FileState();
+		submitted.setState(State.SUBMITTED);
+		Map<String, FileState> bucketThreeStates = createStateMap(fileOne.getKey(), unknown);
+		bucketThreeStates.put(fileThree.getKey(), submitted);
+		when(mockFileMetadataDao.getFileStates(fileOne.getBucketName(), Arrays.asList(fileOne.getKey(), fileThree.getKey()))).thenReturn(bucketThreeStates);
+		when(mockFileMetadataDao.getFileStates(fileTwo.getBucketName(), Arrays.asList(fileTwo.getKey()))).thenReturn(createStateMap(fileTwo.getKey(), unknown));
+		// call under test
+		manger.addS3Objects(list.iterator(), mockCallback);
+		verify(mockCallback, times(3)).progressMade(null);
+		// one lookup for each bucket.
+		verify(mockFileMetadataDao, times(2)).getFileStates(anyString(), anyList());
+		verify(mockBucketToTopicManager).publishS3ObjectToTopic(fileOne.getBucketName(), fileOne.getKey());
+		verify(mockBucketToTopicManager, never()).publishS3ObjectToTopic(fileThree.getBucketName(), fileThree.getKey());
+		verify(mockBucketToTopicManager).publishS3ObjectToTopic(fileTwo.getBucketName(), fileTwo.getKey());
+		verify(mockFileMetadataDao).setFileStates(fileOne.getBucketName(), Arrays.asList(fileOne.getKey()), State.SUBMITTED);
+		verify(mockFileMetadataDao).setFileStates(fileTwo.getBucketName(), Arrays.asList(fileTwo.getKey()), State.SUBMITTED);
+	}
+	
+	@Test
+	public void testAddFilesBatchSize(){
+		List<S3ObjectSummary> list = new LinkedList<S3ObjectSummary>();
+		for(int i=0; i<FileManagerImpl.BATCH_SIZE+1; i++){
+			S3ObjectSummary summary = new S3ObjectSummary();
+			summary.setBucketName(fileOne.getBucketName());
+			summary.setKey(KeyGeneratorUtil.createNewKey(i, 1, false));
+			list.add(summary);
+		}
+		// call under test
+		manger.addS3Objects(list.iterator(), mockCallback);
+		verify(mockCallback, times(FileManagerImpl.BATCH_SIZE+1)).progressMade(null);
+		// a full batch and the remaining file.
+		verify(mockFileMetadataDao, times(2)).getFileStates(anyString(), anyList());
+		verify(mockFileMetadataDao).getFileStates(fileOne.getBucketName(), Arrays.asList(list.get(FileManagerImpl.BATCH_SIZE).getKey()));
+	}
+	
+	@Test
+	public void testAddFilesPublishFailure(){
+		S3ObjectSummary fileThree = new S3ObjectSummary();
+		fileThree.setBucketName(fileOne.getBucketName());
+		fileThree.setKey(KeyGeneratorUtil.createNewKey(111, 2, false));
+		List<S3ObjectSummary> list = Arrays.asList(fileOne, fileThree);
+		FileState unknown = new FileState();
+		unknown.setState(State.UNKNOWN);
+		Map<String, FileState> states = createStateMap(fileOne.getKey(), unknown);
+		states.put(fileThree.getKey(), unknown);
+		when(mockFileMetadataDao.getFileStates(fileOne.getBucketName(), Arrays.asList(fileOne.getKey(), fileThree.getKey()))).thenReturn(states);
+		RuntimeException error = new RuntimeException("some error");
+		doThrow(error).when(mockBucketToTopicManager).publishS3ObjectToTopic(fileThree.getBucketName(), fileThree.getKey());
+		// call under test
+		try {
+			manger.addS3Objects(list.iterator(), mockCallback);
+			fail("Should have thrown an exception");
+		} catch (RuntimeException e) {
+			assertEquals(error, e);
+		}
+		// the file that was published should still be marked as submitted.
+		verify(mockFileMetadataDao).setFileStates(fileOne.getBucketName(), Arrays.asList(fileOne.getKey()), State.SUBMITTED);
+		assertTrue(submittedFileFilter.isSubmitted(fileOne.getBucketName(), fileOne.getKey()));
+		assertFalse(submittedFileFilter.isSubmitted(fileThree.getBucketName(), fileThree.getKey()));
+	}
+	
+	/**
+	 * Helper to create a map with a single state.
+	 */
+	private static Map<String, FileState> createStateMap(String key, FileState state){
+		Map<String, FileState> map = new HashMap<String, FileState>();
+		map.put(key, state);
+		return map;
+	}
+	
 	@Test (expected=IllegalArgumentException.class)
 	public void testValidateNull(){
 		FileManagerImpl.validateObjectSummary(null);
@@ -3,6 +3,12 @@ package org.sagebionetworks.warehouse.workers.db;
 import static org.junit.Assert.*;
 import static org.sagebionetworks.warehouse.workers.model.FileState.State.*;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 import org.junit.After;
 import org.junit.Test;
 import org.sagebionetworks.warehouse.workers.model.FileState;
@@ -37,6 +43,14 @@ public class FileMetadataDaoImplTest {
 		assertEquals(state, clone);
 	}
 	
+	@Test
+	public void testTruncateAllClearsSubmittedFileFilter(){
+		SubmittedFileFilter filter = TestContext.singleton().getInstance(SubmittedFileFilter.class);
+		filter.add("some/bucket", "someKey");
+		dao.truncateAll();
+		assertFalse(filter.isSubmitted("some/bucket", "someKey"));
+	}
+	
 	@Test
 	public void testSetFailed(){
 		String bucket = "some/bucket";
@@ -74,5 +88,75 @@ public class FileMetadataDaoImplTest {
 		assertEquals(null, state.getError());
 		assertEquals(null, state.getErrorDetails());
 	}
+	
+	@Test
+	public void testGetFileStates(){
+		String bucket = "some/bucket";
+		// an existing file.
+		dao.getFileState(bucket, "existing");
+		dao.setFileState(bucket, "existing", SUBMITTED);
+		// a file with the same key in another bucket.
+		dao.getFileState("other/bucket", "new");
+		dao.setFileState("other/bucket", "new", SUBMITTED);
+		Map<String, FileState> states = dao.getFileStates(bucket, Arrays.asList("existing", "new"));
+		assertEquals(2, states.size());
+		assertEquals(SUBMITTED, states.get("existing").getState());
+		assertEquals(bucket, states.get("new").getBucket());
+		assertEquals("new", states.get("new").getKey());
+		assertEquals(UNKNOWN, states.get("new").getState());
+		assertTrue(dao.doesFileExist(bucket, "new"));
+		// the other bucket is unchanged.
+		assertEquals(SUBMITTED, dao.getFileState("other/bucket", "new").getState());
+	}
+	
+	@Test
+	public void testGetFileStatesEmpty(){
+		assertTrue(dao.getFileStates("some/bucket", Collections.<String>emptyList()).isEmpty());
+	}
+	
+	@Test
+	public void testSetFileStates(){
+		String bucket = "some/bucket";
+		dao.getFileStates(bucket, Arrays.asList("one", "two", "three"));
+		dao.setFileStateFailed(bucket, "one", new Throwable("Something went wrong"));
+		dao.setFileStates(bucket, Arrays.asList("one", "two"), SUBMITTED);
+		Map<String, FileState> states = dao.getFileStates(bucket, Arrays.asList("one", "two", "three"));
+		assertEquals(SUBMITTED, states.get("one").getState());
+		assertEquals(null, states.get("one").getError());
+		assertEquals(null, states.get("one").getErrorDetails());
+		assertEquals(SUBMITTED, states.get("two").getState());
+		assertEquals(UNKNOWN, states.get("three").getState());
+		// nothing to update
+		dao.setFileStates(bucket, Collections.<String>emptyList(), FAILED);
+	}
+	
+	@Test
+	public void testStreamSubmittedFiles(){
+		String bucket = "some/bucket";
+		dao.getFileStates(bucket, Arrays.asList("one", "two", "three", "four"));
+		dao.setFileStates(bucket, Arrays.asList("one", "two"), SUBMITTED);
+		dao.setFileStateFailed(bucket, "three", new Throwable("Something went wrong"));
+		final Set<String> keys = new HashSet<String>();
+		dao.streamSubmittedFiles(10, new FileMetadataDao.FileKeyHandler() {
+			
+			@Override
+			public void handle(String bucket, String key) {
+				assertEquals("some/bucket", bucket);
+				keys.add(key);
+			}
+		});
+		// UNKNOWN files have not been submitted.
+		assertEquals(new HashSet<String>(Arrays.asList("one", "two", "three")), keys);
+		// limit
+		keys.clear();
+		dao.streamSubmittedFiles(2, new FileMetadataDao.FileKeyHandler() {
+			
+			@Override
+			public void handle(String bucket, String key) {
+				keys.add(key);
+			}
+		});
+		assertEquals(2, keys.size());
+	}
 
 }
@@ -0,0 +1,53 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class FileSinkStateDaoImplTest {
+
+	FileSinkStateDao dao = TestContext.singleton().getInstance(FileSinkStateDao.class);
+
+	@After
+	public void after(){
+		dao.truncateAll();
+	}
+
+	@Test
+	public void testRoundTrip(){
+		String bucket = "some/bucket";
+		String key = "someKey";
+		assertTrue(dao.getCompletedSinks(bucket, key).isEmpty());
+		dao.setSinkCompleted(bucket, key, "SINK_ONE");
+		// setting the same sink again should be ignored.
+		dao.setSinkCompleted(bucket, key, "SINK_ONE");
+		dao.setSinkCompleted(bucket, key, "SINK_TWO");
+		dao.setSinkCompleted(bucket, "otherKey", "SINK_THREE");
+		Set<String> expected = new HashSet<String>();
+		expected.add("SINK_ONE");
+		expected.add("SINK_TWO");
+		assertEquals(expected, dao.getCompletedSinks(bucket, key));
+	}
+
+	@Test
+	public void testDeleteSinks(){
+		String bucket = "some/bucket";
+		String key = "someKey";
+		dao.setSinkCompleted(bucket, key, "SINK_ONE");
+		dao.setSinkCompleted(bucket, key, "SINK_TWO");
+		dao.setSinkCompleted(bucket, "otherKey", "SINK_ONE");
+		dao.deleteSinks(bucket, key);
+		assertTrue(dao.getCompletedSinks(bucket, key).isEmpty());
+		// other files keep their sinks.
+		assertEquals(1, dao.getCompletedSinks(bucket, "otherKey").size());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testNullSink(){
+		dao.setSinkCompleted("some/bucket", "someKey", null);
+	}
+}
@@ -75,6 +75,21 @@ public class FolderStateDaoImplTest {
 		assertEquals(FolderState.State.COLLATED, collatedState.getState());
 	}
 	
+	@Test
+	public void testListFoldersOrderedByPath() {
+		long now = 1437462333000L;
+		String bucket = "someBucket";
+		dao.createOrUpdateFolderState(new FolderState(bucket, "pathC", FolderState.State.ROLLING, new Timestamp(now)));
+		dao.createOrUpdateFolderState(new FolderState(bucket, "pathA", FolderState.State.ROLLING, new Timestamp(now)));
+		dao.createOrUpdateFolderState(new FolderState(bucket, "pathB", FolderState.State.ROLLING, new Timestamp(now)));
+		dao.createOrUpdateFolderState(new FolderState("otherBucket", "pathD", FolderState.State.ROLLING, new Timestamp(now)));
+		List<FolderState> list = createListFromIterator(dao.listFolders(bucket, FolderState.State.ROLLING));
+		assertEquals(3, list.size());
+		assertEquals("pathA", list.get(0).getPath());
+		assertEquals("pathB", list.get(1).getPath());
+		assertEquals("pathC", list.get(2).getPath());
+	}
+	
 	/**
 	 * Convert an interator to a list.
 	 * @param iterator
@@ -0,0 +1,167 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+public class KeysetPagingQueryIteratorTest {
+
+	JdbcTemplate mockTempalte;
+	RowMapper<Integer> mockRowMapper;
+	KeysetPagingQueryIterator.KeyProvider<Integer> keyProvider;
+	List<Integer> tableData;
+	String baseQuery;
+	String expectedFirstPageQuery;
+	String expectedNextPageQuery;
+	String argumentOne;
+	int anotherArgument;
+	
+	@SuppressWarnings("unchecked")
+	@Before
+	public void before(){
+		mockTempalte = Mockito.mock(JdbcTemplate.class);
+		mockRowMapper = Mockito.mock(RowMapper.class);
+		keyProvider = new KeysetPagingQueryIterator.KeyProvider<Integer>() {
+
+			@Override
+			public Object[] getKeys(Integer row) {
+				return new Object[] { row };
+			}
+		};
+		baseQuery = "select * from foo where bar = ? and baz = ?" + KeysetPagingQueryIterator.KEYSET_CONDITION;
+		expectedFirstPageQuery = "select * from foo where bar = ? and baz = ? ORDER BY ID LIMIT ?";
+		expectedNextPageQuery = "select * from foo where bar = ? and baz = ? AND ((ID > ?)) ORDER BY ID LIMIT ?";
+		argumentOne = "someArgument";
+		anotherArgument = 12;
+		int tableSize = 11;
+		tableData = new ArrayList<Integer>(tableSize);
+		// simulate a table of data with gaps between the keys.
+		for(int i=0; i<tableSize; i++){
+			tableData.add(i*10);
+		}
+
+		/*
+		 * mock the template to return the rows after the requested key up to
+		 * the requested limit.
+		 */
+		doAnswer(new Answer<List<Integer>>() {
+			@Override
+			public List<Integer> answer(InvocationOnMock invocation)
+					throws Throwable {
+				Object[] arguments = invocation.getArguments();
+				String query = (String) arguments[0];
+				assertNotNull(arguments[1]);
+				assertEquals(argumentOne, arguments[2]);
+				assertEquals(anotherArgument, arguments[3]);
+				Long limit = (Long) arguments[arguments.length-1];
+				int after = Integer.MIN_VALUE;
+				if(arguments.length == 5){
+					assertEquals(expectedFirstPageQuery, query);
+				}else{
+					assertEquals(expectedNextPageQuery, query);
+					after = (Integer) arguments[4];
+				}
+				List<Integer> page = new LinkedList<Integer>();
+				for(Integer row: tableData){
+					if(row > after && page.size() < limit){
+						page.add(row);
+					}
+				}
+				return page;
+			}
+		}).when(mockTempalte).query(anyString(), any(RowMapper.class), Matchers.<Object>anyVararg());
+	}
+	
+	private List<Integer> readAll(long pageSize){
+		KeysetPagingQueryIterator<Integer> iterator = new KeysetPagingQueryIterator<Integer>(pageSize, mockTempalte,
+				baseQuery, Arrays.asList("ID"), keyProvider, mockRowMapper, argumentOne, anotherArgument);
+		List<Integer> results = new ArrayList<Integer>();
+		while(iterator.hasNext()){
+			results.add(iterator.next());
+		}
+		return results;
+	}
+	
+	@Test
+	public void testFullReadMultiplePage(){
+		assertEquals(tableData, readAll(3));
+		// with a page size of 3, and a table size of 11, it should have taken 4 pages to read all of the data
+		verify(mockTempalte, times(4)).query(anyString(), any(RowMapper.class), Matchers.<Object>anyVararg());
+	}
+
+	@Test
+	public void testPageSizeSameAsTableSize(){
+		assertEquals(tableData, readAll(tableData.size()));
+		// when the page size is the same as the table size it takes two queries to find the end.
+		verify(mockTempalte, times(2)).query(anyString(), any(RowMapper.class), Matchers.<Object>anyVararg());
+	}
+	
+	@Test
+	public void testPageSizeLargerThanTableSize(){
+		assertEquals(tableData, readAll(tableData.size()+1));
+		verify(mockTempalte, times(1)).query(anyString(), any(RowMapper.class), Matchers.<Object>anyVararg());
+	}
+	
+	@Test
+	public void testEmptyTable(){
+		tableData.clear();
+		assertEquals(tableData, readAll(3));
+		verify(mockTempalte, times(1)).query(anyString(), any(RowMapper.class), Matchers.<Object>anyVararg());
+	}
+	
+	@Test
+	public void testRowsRemovedDuringIteration(){
+		KeysetPagingQueryIterator<Integer> iterator = new KeysetPagingQueryIterator<Integer>(3L, mockTempalte,
+				baseQuery, Arrays.asList("ID"), keyProvider, mockRowMapper, argumentOne, anotherArgument);
+		List<Integer> results = new ArrayList<Integer>();
+		for(int i=0; i<3; i++){
+			results.add(iterator.next());
+		}
+		// removing rows that were already read must not cause rows to be skipped.
+		List<Integer> expected = new ArrayList<Integer>(tableData);
+		tableData.subList(0, 3).clear();
+		while(iterator.hasNext()){
+			results.add(iterator.next());
+		}
+		assertEquals(expected, results);
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testQueryWithoutCondition(){
+		new KeysetPagingQueryIterator<Integer>(3L, mockTempalte, "select * from foo where bar = ?",
+				Arrays.asList("ID"), keyProvider, mockRowMapper, argumentOne);
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testNoKeyColumns(){
+		new KeysetPagingQueryIterator<Integer>(3L, mockTempalte, baseQuery,
+				new LinkedList<String>(), keyProvider, mockRowMapper, argumentOne, anotherArgument);
+	}
+	
+	@Test
+	public void testCreateKeysetCondition(){
+		assertEquals(" AND ((A > ?) OR (A = ? AND B > ?) OR (A = ? AND B = ? AND C > ?))",
+				KeysetPagingQueryIterator.createKeysetCondition(Arrays.asList("A", "B", "C")));
+	}
+	
+	@Test
+	public void testCreateKeysetArgs(){
+		KeysetPagingQueryIterator<Integer> iterator = new KeysetPagingQueryIterator<Integer>(3L, mockTempalte,
+				baseQuery, Arrays.asList("ID"), keyProvider, mockRowMapper, argumentOne, anotherArgument);
+		assertArrayEquals(new Object[]{1}, iterator.createKeysetArgs(new Object[]{1}));
+	}
+}
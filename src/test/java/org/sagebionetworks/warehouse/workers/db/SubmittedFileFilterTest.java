@@ -0,0 +1,82 @@
+package org.sagebionetworks.warehouse.workers.db;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SubmittedFileFilterTest {
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testZeroCapacity(){
+		new SubmittedFileFilter(0);
+	}
+
+	@Test
+	public void testAddAndLookup(){
+		SubmittedFileFilter filter = new SubmittedFileFilter(10);
+		assertFalse(filter.isSubmitted("bucket", "key"));
+		assertTrue(filter.add("bucket", "key"));
+		assertTrue(filter.isSubmitted("bucket", "key"));
+		assertFalse(filter.isSubmitted("bucket", "otherKey"));
+		assertFalse(filter.isSubmitted("otherBucket", "key"));
+		// adding the same file again does not use more space.
+		assertTrue(filter.add("bucket", "key"));
+		assertEquals(1, filter.size());
+		assertEquals(2, filter.getHits());
+		assertEquals(3, filter.getMisses());
+	}
+
+	@Test
+	public void testBucketAndKeyBoundary(){
+		SubmittedFileFilter filter = new SubmittedFileFilter(10);
+		filter.add("ab", "c");
+		assertFalse(filter.isSubmitted("a", "bc"));
+	}
+
+	@Test
+	public void testFull(){
+		SubmittedFileFilter filter = new SubmittedFileFilter(3);
+		for(int i=0; i<3; i++){
+			assertTrue(filter.add("bucket", "key"+i));
+		}
+		assertFalse(filter.add("bucket", "key3"));
+		assertFalse(filter.isSubmitted("bucket", "key3"));
+		assertEquals(3, filter.size());
+		for(int i=0; i<3; i++){
+			assertTrue(filter.isSubmitted("bucket", "key"+i));
+		}
+	}
+
+	@Test
+	public void testManyFiles(){
+		int count = 100000;
+		SubmittedFileFilter filter = new SubmittedFileFilter(count);
+		for(int i=0; i<count; i++){
+			assertTrue(filter.add("bucket", "000000123/2015-08-01/"+i+".csv.gz"));
+		}
+		for(int i=0; i<count; i++){
+			assertTrue(filter.isSubmitted("bucket", "000000123/2015-08-01/"+i+".csv.gz"));
+			assertFalse(filter.isSubmitted("bucket", "000000123/2015-08-02/"+i+".csv.gz"));
+		}
+	}
+
+	@Test
+	public void testMetrics(){
+		SubmittedFileFilter filter = new SubmittedFileFilter(3);
+		// the table is a power of two below the load factor.
+		assertEquals(4*8L, filter.getMemoryBytes());
+		assertEquals(0.0, filter.getFalsePositiveRate(), 0.0);
+		filter.add("bucket", "key");
+		assertTrue(filter.getFalsePositiveRate() > 0.0);
+		assertTrue(filter.getFalsePositiveRate() < 1e-18);
+	}
+
+	@Test
+	public void testClear(){
+		SubmittedFileFilter filter = new SubmittedFileFilter(3);
+		filter.add("bucket", "key");
+		filter.clear();
+		assertEquals(0, filter.size());
+		assertFalse(filter.isSubmitted("bucket", "key"));
+	}
+}
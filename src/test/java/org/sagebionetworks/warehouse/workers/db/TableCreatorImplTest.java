@@ -4,6 +4,12 @@ import static org.junit.Assert.*;
 import static org.sagebionetworks.warehouse.workers.db.Sql.*;
 import static org.sagebionetworks.warehouse.workers.db.snapshot.AccessRecordDaoImpl.ACCESS_RECORD_DDL_SQL;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeSet;
+
 import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
@@ -15,6 +21,7 @@ import org.sagebionetworks.warehouse.workers.db.snapshot.AclSnapshotDaoImpl;
 import org.sagebionetworks.warehouse.workers.utils.PartitionUtil;
 import org.sagebionetworks.warehouse.workers.utils.PartitionUtil.Period;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 
 public class TableCreatorImplTest {
 	private JdbcTemplate mockTemplate;
@@ -71,28 +78,139 @@ public class TableCreatorImplTest {
 	}
 
 	@SuppressWarnings("deprecation")
+	@Test
+	public void addColumnIfMissingTest() {
+		Mockito.when(mockTemplate.queryForLong(Mockito.eq(TableCreatorImpl.CHECK_COLUMN), Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn(0L);
+		assertTrue(creator.addColumnIfMissing("TEST", "COL", "int DEFAULT NULL"));
+		Mockito.verify(mockTemplate).execute("ALTER TABLE TEST ADD COLUMN COL int DEFAULT NULL");
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void addColumnIfMissingExistsTest() {
+		Mockito.when(mockTemplate.queryForLong(Mockito.eq(TableCreatorImpl.CHECK_COLUMN), Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn(1L);
+		assertFalse(creator.addColumnIfMissing("TEST", "COL", "int DEFAULT NULL"));
+		Mockito.verify(mockTemplate, Mockito.never()).execute(Mockito.anyString());
+	}
+
 	@Test
 	public void doesPartitionExistForDayTest() {
-		Mockito.when(mockTemplate.queryForLong(Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn(1L);
 		DateTime today = new DateTime();
 		String expectedSameDatePartition = PartitionUtil.getPartitionName("TEST", today, Period.DAY);
 		String expectedNextDatePartition = PartitionUtil.getPartitionName("TEST", today.plusDays(1), Period.DAY);
-		creator.doesPartitionExist("TEST", today.getMillis(), Period.DAY);
-		Mockito.verify(mockTemplate, Mockito.times(2)).queryForLong(Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
-		Mockito.verify(mockTemplate).queryForLong(Mockito.anyString(), Mockito.anyString(), Mockito.eq("TEST"), Mockito.eq(expectedSameDatePartition));
-		Mockito.verify(mockTemplate).queryForLong(Mockito.anyString(), Mockito.anyString(), Mockito.eq("TEST"), Mockito.eq(expectedNextDatePartition));
+		mockPartitions("TEST", expectedSameDatePartition, expectedNextDatePartition);
+		assertTrue(creator.doesPartitionExist("TEST", today.getMillis(), Period.DAY));
+		verifyPartitionsLoaded("TEST", 1);
 	}
 
-	@SuppressWarnings("deprecation")
 	@Test
 	public void doesPartitionExistForMonthTest() {
-		Mockito.when(mockTemplate.queryForLong(Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn(1L);
 		DateTime today = new DateTime();
 		String expectedSameDatePartition = PartitionUtil.getPartitionName("TEST", today, Period.MONTH);
 		String expectedNextDatePartition = PartitionUtil.getPartitionName("TEST", today.plusMonths(1), Period.MONTH);
-		creator.doesPartitionExist("TEST", today.getMillis(), Period.MONTH);
-		Mockito.verify(mockTemplate, Mockito.times(2)).queryForLong(Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
-		Mockito.verify(mockTemplate).queryForLong(Mockito.anyString(), Mockito.anyString(), Mockito.eq("TEST"), Mockito.eq(expectedSameDatePartition));
-		Mockito.verify(mockTemplate).queryForLong(Mockito.anyString(), Mockito.anyString(), Mockito.eq("TEST"), Mockito.eq(expectedNextDatePartition));
+		mockPartitions("TEST", expectedSameDatePartition);
+		assertFalse(creator.doesPartitionExist("TEST", today.getMillis(), Period.MONTH));
+		mockPartitions("TEST", expectedSameDatePartition, expectedNextDatePartition);
+		creator.getExistingPartitionsForTable("TEST");
+		assertTrue(creator.doesPartitionExist("TEST", today.getMillis(), Period.MONTH));
+	}
+
+	@Test
+	public void doesPartitionExistCachedTest() {
+		mockPartitions("TEST", "TEST1", "TEST2");
+		assertTrue(creator.doesPartitionExist("TEST", "TEST1"));
+		assertTrue(creator.doesPartitionExist("TEST", "TEST2"));
+		// a miss right after loading does not reload
+		assertFalse(creator.doesPartitionExist("TEST", "TEST3"));
+		verifyPartitionsLoaded("TEST", 1);
+	}
+
+	@Test
+	public void doesPartitionExistReloadOnMissTest() {
+		creator = new TableCreatorImpl(mockTemplate, mockConfig, TableCreatorImpl.CATALOG_TTL_MS, 0L);
+		mockPartitions("TEST", "TEST1");
+		assertTrue(creator.doesPartitionExist("TEST", "TEST1"));
+		// added by another instance
+		mockPartitions("TEST", "TEST1", "TEST2");
+		assertTrue(creator.doesPartitionExist("TEST", "TEST2"));
+		assertTrue(creator.doesPartitionExist("TEST", "TEST1"));
+		verifyPartitionsLoaded("TEST", 2);
+	}
+
+	@Test
+	public void doesPartitionExistExpiredTest() {
+		creator = new TableCreatorImpl(mockTemplate, mockConfig, 0L, TableCreatorImpl.MISS_RELOAD_MS);
+		mockPartitions("TEST", "TEST1");
+		assertTrue(creator.doesPartitionExist("TEST", "TEST1"));
+		assertTrue(creator.doesPartitionExist("TEST", "TEST1"));
+		verifyPartitionsLoaded("TEST", 2);
+	}
+
+	@Test
+	public void addAndDropPartitionUpdatesCatalogTest() {
+		mockPartitions("TEST", "TEST1");
+		assertFalse(creator.doesPartitionExist("TEST", "TEST2"));
+		creator.addPartition("TEST", "TEST2", 2L);
+		assertTrue(creator.doesPartitionExist("TEST", "TEST2"));
+		creator.dropPartition("TEST", "TEST1");
+		assertFalse(creator.doesPartitionExist("TEST", "TEST1"));
+		verifyPartitionsLoaded("TEST", 1);
+		Mockito.verify(mockTemplate).execute(String.format(TableCreatorImpl.ADD_PARTITION, "TEST", "TEST2", 2L));
+		Mockito.verify(mockTemplate).execute(String.format(TableCreatorImpl.DROP_PARTITION, "TEST", "TEST1"));
+	}
+
+	@Test
+	public void addPartitionsTest() {
+		mockPartitions("TEST", "TEST1");
+		assertFalse(creator.doesPartitionExist("TEST", "TEST3"));
+		Map<String, Long> partitions = new HashMap<String, Long>();
+		partitions.put("TEST3", 3L);
+		partitions.put("TEST2", 2L);
+		creator.addPartitions("TEST", partitions);
+		Mockito.verify(mockTemplate).execute("ALTER TABLE TEST ADD PARTITION "
+				+ "(PARTITION TEST2 VALUES LESS THAN (2), PARTITION TEST3 VALUES LESS THAN (3))");
+		assertTrue(creator.doesPartitionExist("TEST", "TEST2"));
+		assertTrue(creator.doesPartitionExist("TEST", "TEST3"));
+		verifyPartitionsLoaded("TEST", 1);
+	}
+
+	@Test
+	public void addPartitionsEmptyTest() {
+		creator.addPartitions("TEST", new HashMap<String, Long>());
+		Mockito.verify(mockTemplate, Mockito.never()).execute(Mockito.anyString());
+	}
+
+	@Test
+	public void dropPartitionsTest() {
+		mockPartitions("TEST", "TEST1", "TEST2", "TEST3");
+		assertTrue(creator.doesPartitionExist("TEST", "TEST1"));
+		creator.dropPartitions("TEST", new TreeSet<String>(Arrays.asList("TEST1", "TEST2")));
+		Mockito.verify(mockTemplate).execute("ALTER TABLE TEST DROP PARTITION TEST1, TEST2");
+		assertFalse(creator.doesPartitionExist("TEST", "TEST1"));
+		assertFalse(creator.doesPartitionExist("TEST", "TEST2"));
+		assertTrue(creator.doesPartitionExist("TEST", "TEST3"));
+	}
+
+	@Test
+	public void getExistingPartitionsForTableTest() {
+		mockPartitions("TEST", "TEST1", "TEST2");
+		assertEquals(new HashSet<String>(Arrays.asList("TEST1", "TEST2")), creator.getExistingPartitionsForTable("TEST"));
+		assertEquals(new HashSet<String>(Arrays.asList("TEST1", "TEST2")), creator.getExistingPartitionsForTable("TEST"));
+		// always read from the database
+		verifyPartitionsLoaded("TEST", 2);
+		assertTrue(creator.doesPartitionExist("TEST", "TEST1"));
+		verifyPartitionsLoaded("TEST", 2);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void mockPartitions(String tableName, String... partitions) {
+		Mockito.when(mockTemplate.query(Mockito.eq(TableCreatorImpl.ALL_PARTITIONS), (RowMapper<String>) Mockito.any(),
+				Mockito.eq("warehouse"), Mockito.eq(tableName))).thenReturn(Arrays.asList(partitions));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void verifyPartitionsLoaded(String tableName, int times) {
+		Mockito.verify(mockTemplate, Mockito.times(times)).query(Mockito.eq(TableCreatorImpl.ALL_PARTITIONS),
+				(RowMapper<String>) Mockito.any(), Mockito.eq("warehouse"), Mockito.eq(tableName));
 	}
 }
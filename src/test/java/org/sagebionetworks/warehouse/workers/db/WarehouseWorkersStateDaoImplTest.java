@@ -9,7 +9,7 @@ import org.sagebionetworks.warehouse.workers.model.WarehouseWorkersState;
 
 public class WarehouseWorkersStateDaoImplTest {
 
-	WarehouseWorkersStateDao dao = TestContext.singleton().getInstance(WarehouseWorkersStateDao.class);
+	WarehouseWorkersStateDao dao = TestContext.singleton().getInstance(WarehouseWorkersStateDaoImpl.class);
 
 	@Before
 	public void before() {
@@ -2,10 +2,12 @@ package org.sagebionetworks.warehouse.workers.db.audit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Date;
 import java.util.Arrays;
+import java.util.List;
 
 import org.joda.time.DateTime;
 import org.junit.After;
@@ -15,6 +17,8 @@ import org.sagebionetworks.warehouse.workers.db.TableCreator;
 import org.sagebionetworks.warehouse.workers.db.TestContext;
 import org.sagebionetworks.warehouse.workers.db.audit.UserActivityPerMonthDao;
 import org.sagebionetworks.warehouse.workers.db.audit.UserActivityPerMonthDaoImpl;
+import org.sagebionetworks.warehouse.workers.model.Client;
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
 import org.sagebionetworks.warehouse.workers.model.UserActivityPerMonth;
 
 public class UserActivityPerMonthDaoImplTest {
@@ -56,17 +60,92 @@ public class UserActivityPerMonthDaoImplTest {
 	}
 
 	@Test
-	public void testHasRecordForMonthFalse() {
+	public void testBackfilled() {
 		Date month = new DateTime().withDate(2016, 1, 1).withTime(0, 0, 0, 0).toDate();
-		assertFalse(dao.hasRecordForMonth(month));
+		Date nextMonth = new DateTime().withDate(2016, 2, 1).withTime(0, 0, 0, 0).toDate();
+		assertFalse(dao.isBackfilled(month));
+		dao.setBackfilled(month);
+		assertTrue(dao.isBackfilled(month));
+		assertFalse(dao.isBackfilled(nextMonth));
+		// setting it again is a no-op.
+		dao.setBackfilled(month);
+		assertTrue(dao.isBackfilled(month));
 	}
 
 	@Test
-	public void testHasRecordForMonthTrue() {
+	public void testRowsDoNotMarkBackfilled() {
+		// rows added incrementally may miss the earlier days of the month.
 		Date month = new DateTime().withDate(2016, 1, 1).withTime(0, 0, 0, 0).toDate();
-		UserActivityPerMonth uar = createUserActivityPerMonth(1L, "2016-01-01", 2L);
-		dao.insert(Arrays.asList(uar));
-		assertTrue(dao.hasRecordForMonth(month));
+		dao.insert(Arrays.asList(createUserActivityPerMonth(1L, "2016-01-01", 2L)));
+		assertFalse(dao.isBackfilled(month));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testSetBackfilledNullMonth() {
+		dao.setBackfilled(null);
+	}
+
+	@Test
+	public void testAddActiveDays() {
+		List<UserActivityPerClientPerDay> batch = Arrays.asList(
+				createUserActivityPerClientPerDay(1L, "2016-01-13"),
+				createUserActivityPerClientPerDay(1L, "2016-01-02"),
+				createUserActivityPerClientPerDay(1L, "2016-02-01"));
+		dao.addActiveDays(batch);
+		UserActivityPerMonth january = dao.get(1L, "2016-01-01");
+		assertEquals(new Long(2L), january.getUniqueDate());
+		assertEquals(new Integer((1 << 12) | (1 << 1)), january.getActiveDays());
+		UserActivityPerMonth february = dao.get(1L, "2016-02-01");
+		assertEquals(new Long(1L), february.getUniqueDate());
+		assertEquals(new Integer(1), february.getActiveDays());
+
+		// adding the same days again does not change the count
+		dao.addActiveDays(batch);
+		assertEquals(january, dao.get(1L, "2016-01-01"));
+		assertEquals(february, dao.get(1L, "2016-02-01"));
+
+		// the last day of the month
+		dao.addActiveDays(Arrays.asList(createUserActivityPerClientPerDay(1L, "2016-01-31")));
+		january = dao.get(1L, "2016-01-01");
+		assertEquals(new Long(3L), january.getUniqueDate());
+		assertEquals(new Integer((1 << 30) | (1 << 12) | (1 << 1)), january.getActiveDays());
+	}
+
+	@Test
+	public void testAddActiveDaysLegacyRow() {
+		UserActivityPerMonth legacy = createUserActivityPerMonth(1L, "2016-01-01", 5L);
+		dao.insert(Arrays.asList(legacy));
+		dao.addActiveDays(Arrays.asList(createUserActivityPerClientPerDay(1L, "2016-01-13")));
+		UserActivityPerMonth actual = dao.get(1L, "2016-01-01");
+		assertEquals(legacy, actual);
+		assertNull(actual.getActiveDays());
+	}
+
+	@Test
+	public void testToActiveDays() {
+		List<UserActivityPerMonth> months = UserActivityPerMonthDaoImpl.toActiveDays(Arrays.asList(
+				createUserActivityPerClientPerDay(2L, "2016-01-01"),
+				createUserActivityPerClientPerDay(1L, "2016-02-03"),
+				createUserActivityPerClientPerDay(1L, "2016-01-05"),
+				createUserActivityPerClientPerDay(1L, "2016-01-05")));
+		assertEquals(3, months.size());
+		assertEquals(createUserActivityPerMonth(1L, "2016-01-01", 1L, 1 << 4), months.get(0));
+		assertEquals(createUserActivityPerMonth(1L, "2016-02-01", 1L, 1 << 2), months.get(1));
+		assertEquals(createUserActivityPerMonth(2L, "2016-01-01", 1L, 1), months.get(2));
+	}
+
+	private UserActivityPerMonth createUserActivityPerMonth(long userId, String month, long uniqueDate, int activeDays) {
+		UserActivityPerMonth uapm = createUserActivityPerMonth(userId, month, uniqueDate);
+		uapm.setActiveDays(activeDays);
+		return uapm;
+	}
+
+	private UserActivityPerClientPerDay createUserActivityPerClientPerDay(long userId, String date) {
+		UserActivityPerClientPerDay uar = new UserActivityPerClientPerDay();
+		uar.setUserId(userId);
+		uar.setDate(date);
+		uar.setClient(Client.R);
+		return uar;
 	}
 
 	private UserActivityPerMonth createUserActivityPerMonth(long userId, String month, long uniqueDate) {
@@ -34,8 +34,8 @@ public class ProcessedAccessRecordDaoImplTest {
 
 	@Test
 	public void test() {
-		ProcessedAccessRecord par1 = AccessRecordUtils.processAccessRecord(AccessRecordTestUtil.createValidAccessRecord());
-		ProcessedAccessRecord par2 = AccessRecordUtils.processAccessRecord(AccessRecordTestUtil.createValidAccessRecord());
+		ProcessedAccessRecord par1 = AccessRecordUtils.processAccessRecord(AccessRecordTestUtil.createValidAccessRecord(), Client.UNKNOWN);
+		ProcessedAccessRecord par2 = AccessRecordUtils.processAccessRecord(AccessRecordTestUtil.createValidAccessRecord(), Client.UNKNOWN);
 
 		dao.insert(Arrays.asList(par1, par2));
 
@@ -0,0 +1,89 @@
+package org.sagebionetworks.warehouse.workers.db.snapshot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.warehouse.workers.db.TableCreator;
+import org.sagebionetworks.warehouse.workers.db.TestContext;
+import org.sagebionetworks.warehouse.workers.model.Client;
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
+
+public class UserActivityBitmapDaoImplTest {
+
+	UserActivityBitmapDao dao = TestContext.singleton().getInstance(UserActivityBitmapDao.class);
+	TableCreator creator = TestContext.singleton().getInstance(TableCreator.class);
+
+	@Before
+	public void before(){
+		creator.createTable(UserActivityBitmapDaoImpl.USER_ACTIVITY_BITMAP_DDL_SQL);
+		dao.truncateAll();
+	}
+
+	@After
+	public void after(){
+		dao.truncateAll();
+	}
+
+	@Test
+	public void testNoActivity() {
+		assertTrue(dao.getActiveUsers("2016-01-01", "2016-01-31", null).isEmpty());
+		assertEquals(0L, dao.getDailyActiveUsers("2016-01-01"));
+	}
+
+	@Test
+	public void testAddUserActivity() {
+		List<UserActivityPerClientPerDay> batch = Arrays.asList(
+				createUserActivityPerClientPerDay(1L, "2016-01-13", Client.R),
+				createUserActivityPerClientPerDay(2L, "2016-01-13", Client.R),
+				createUserActivityPerClientPerDay(2L, "2016-01-13", Client.WEB),
+				createUserActivityPerClientPerDay(3L, "2016-01-14", Client.WEB));
+		dao.addUserActivity(batch);
+		assertArrayEquals(new long[] { 1L, 2L }, dao.getActiveUsers("2016-01-13", "2016-01-13", Client.R).toArray());
+		assertArrayEquals(new long[] { 2L, 3L }, dao.getActiveUsers("2016-01-13", "2016-01-14", Client.WEB).toArray());
+		assertArrayEquals(new long[] { 1L, 2L, 3L }, dao.getActiveUsers("2016-01-01", "2016-01-31", null).toArray());
+
+		// adding the same activity again has no effect
+		dao.addUserActivity(batch);
+		assertArrayEquals(new long[] { 1L, 2L, 3L }, dao.getActiveUsers("2016-01-01", "2016-01-31", null).toArray());
+
+		// a later batch of the same day
+		dao.addUserActivity(Arrays.asList(createUserActivityPerClientPerDay(4L, "2016-01-13", Client.R)));
+		assertArrayEquals(new long[] { 1L, 2L, 4L }, dao.getActiveUsers("2016-01-13", "2016-01-13", Client.R).toArray());
+	}
+
+	@Test
+	public void testActiveUserCounts() {
+		dao.addUserActivity(Arrays.asList(
+				createUserActivityPerClientPerDay(1L, "2016-01-01", Client.R),
+				createUserActivityPerClientPerDay(2L, "2016-01-08", Client.PYTHON),
+				createUserActivityPerClientPerDay(3L, "2016-01-14", Client.WEB),
+				createUserActivityPerClientPerDay(3L, "2016-01-14", Client.R),
+				createUserActivityPerClientPerDay(4L, "2016-01-31", Client.R),
+				createUserActivityPerClientPerDay(1L, "2016-02-01", Client.R)));
+		// one user with two clients
+		assertEquals(1L, dao.getDailyActiveUsers("2016-01-14"));
+		// 2016-01-08 to 2016-01-14
+		assertEquals(2L, dao.getWeeklyActiveUsers("2016-01-14"));
+		assertEquals(4L, dao.getMonthlyActiveUsers("2016-01-20"));
+		assertEquals(1L, dao.getMonthlyActiveUsers("2016-02-01"));
+		// only user 1 came back in February
+		assertEquals(1L, dao.getRetainedUsers("2016-01-01", "2016-01-31", "2016-02-01", "2016-02-29"));
+		assertEquals(1L, dao.getClientOverlap("2016-01-01", "2016-01-31", Client.R, Client.WEB));
+		assertEquals(0L, dao.getClientOverlap("2016-01-01", "2016-01-31", Client.R, Client.PYTHON));
+	}
+
+	private UserActivityPerClientPerDay createUserActivityPerClientPerDay(Long userId, String date, Client client) {
+		UserActivityPerClientPerDay uar = new UserActivityPerClientPerDay();
+		uar.setClient(client);
+		uar.setUserId(userId);
+		uar.setDate(date);
+		return uar;
+	}
+}
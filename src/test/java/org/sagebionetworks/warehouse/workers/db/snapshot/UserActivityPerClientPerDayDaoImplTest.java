@@ -13,32 +13,41 @@ import org.junit.Before;
 import org.junit.Test;
 import org.sagebionetworks.warehouse.workers.db.TableCreator;
 import org.sagebionetworks.warehouse.workers.db.TestContext;
+import org.sagebionetworks.warehouse.workers.db.audit.UserActivityPerMonthDao;
 import org.sagebionetworks.warehouse.workers.model.Client;
 import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
 import org.sagebionetworks.warehouse.workers.model.UserActivityPerMonth;
+import org.sagebionetworks.warehouse.workers.snapshot.UserActivityFileDao;
 import org.sagebionetworks.warehouse.workers.utils.AccessRecordTestUtil;
 import org.sagebionetworks.warehouse.workers.utils.AccessRecordUtils;
 
 public class UserActivityPerClientPerDayDaoImplTest {
 
 	UserActivityPerClientPerDayDao dao = TestContext.singleton().getInstance(UserActivityPerClientPerDayDao.class);
+	UserActivityPerMonthDao userActivityPerMonthDao = TestContext.singleton().getInstance(UserActivityPerMonthDao.class);
+	UserActivityBitmapDao userActivityBitmapDao = TestContext.singleton().getInstance(UserActivityBitmapDao.class);
 	TableCreator creator = TestContext.singleton().getInstance(TableCreator.class);
 
 	@Before
 	public void before(){
 		creator.createTableWithoutPartitions(UserActivityPerClientPerDayDaoImpl.USER_ACTIVITY_PER_CLIENT_PER_DAY_DDL_SQL);
+		creator.createTable(UserActivityBitmapDaoImpl.USER_ACTIVITY_BITMAP_DDL_SQL);
 		dao.truncateAll();
+		userActivityPerMonthDao.truncateAll();
+		userActivityBitmapDao.truncateAll();
 	}
 
 	@After
 	public void after(){
 		dao.truncateAll();
+		userActivityPerMonthDao.truncateAll();
+		userActivityBitmapDao.truncateAll();
 	}
 
 	@Test
 	public void testCreateUpdate() {
-		UserActivityPerClientPerDay uar1 = AccessRecordUtils.getUserActivityPerClientPerDay(AccessRecordTestUtil.createValidAccessRecord());
-		UserActivityPerClientPerDay uar2 = AccessRecordUtils.getUserActivityPerClientPerDay(AccessRecordTestUtil.createValidAccessRecord());
+		UserActivityPerClientPerDay uar1 = AccessRecordUtils.getUserActivityPerClientPerDay(AccessRecordTestUtil.createValidAccessRecord(), Client.UNKNOWN);
+		UserActivityPerClientPerDay uar2 = AccessRecordUtils.getUserActivityPerClientPerDay(AccessRecordTestUtil.createValidAccessRecord(), Client.UNKNOWN);
 
 		dao.insert(Arrays.asList(uar1, uar2));
 
@@ -88,9 +97,9 @@ public class UserActivityPerClientPerDayDaoImplTest {
 		Iterator<UserActivityPerMonth> results = dao.getUserActivityPerMonth(month);
 		assertNotNull(results);
 
-		UserActivityPerMonth ua1 = createUserActivityPerMonth(1L, "2016-01-01", 2L);
-		UserActivityPerMonth ua2 = createUserActivityPerMonth(2L, "2016-01-01", 1L);
-		UserActivityPerMonth ua3 = createUserActivityPerMonth(3L, "2016-01-01", 1L);
+		UserActivityPerMonth ua1 = createUserActivityPerMonth(1L, "2016-01-01", 2L, (1 << 12) | (1 << 1));
+		UserActivityPerMonth ua2 = createUserActivityPerMonth(2L, "2016-01-01", 1L, 1 << 7);
+		UserActivityPerMonth ua3 = createUserActivityPerMonth(3L, "2016-01-01", 1L, 1 << 13);
 		List<UserActivityPerMonth> expected = Arrays.asList(ua1, ua2, ua3);
 
 		assertTrue(expected.contains(results.next()));
@@ -99,11 +108,48 @@ public class UserActivityPerClientPerDayDaoImplTest {
 		assertFalse(results.hasNext());
 	}
 
-	private UserActivityPerMonth createUserActivityPerMonth(long userId, String month, long uniqueDate) {
+	@Test
+	public void testGetUserActivityPerMonthExcludesNextMonth(){
+		dao.insert(Arrays.asList(createUserActivityPerClientPerDay(1L, "2016-01-13", Client.R),
+				createUserActivityPerClientPerDay(1L, "2016-02-01", Client.R)));
+		Date month = new DateTime().withDate(2016, 1, 1).withTime(0, 0, 0, 0).toDate();
+		Iterator<UserActivityPerMonth> results = dao.getUserActivityPerMonth(month);
+		assertEquals(createUserActivityPerMonth(1L, "2016-01-01", 1L, 1 << 12), results.next());
+		assertFalse(results.hasNext());
+	}
+
+	@Test
+	public void testInsertUpdatesUserActivityPerMonth(){
+		dao.insert(Arrays.asList(createUserActivityPerClientPerDay(1L, "2016-01-13", Client.R),
+				createUserActivityPerClientPerDay(1L, "2016-01-13", Client.JAVA)));
+		assertEquals(createUserActivityPerMonth(1L, "2016-01-01", 1L, 1 << 12),
+				userActivityPerMonthDao.get(1L, "2016-01-01"));
+
+		// a later file of the same month
+		dao.insert(Arrays.asList(createUserActivityPerClientPerDay(1L, "2016-01-02", Client.R),
+				createUserActivityPerClientPerDay(1L, "2016-01-13", Client.R)));
+		assertEquals(createUserActivityPerMonth(1L, "2016-01-01", 2L, (1 << 12) | (1 << 1)),
+				userActivityPerMonthDao.get(1L, "2016-01-01"));
+	}
+
+	@Test
+	public void testFileUpdatesUserActivityBitmapOnComplete(){
+		UserActivityFileDao fileDao = new UserActivityFileDao(dao, userActivityBitmapDao);
+		fileDao.insert(Arrays.asList(createUserActivityPerClientPerDay(1L, "2016-01-13", Client.R)));
+		fileDao.insert(Arrays.asList(createUserActivityPerClientPerDay(2L, "2016-01-13", Client.JAVA)));
+		// held back until the whole file is inserted.
+		assertEquals(0L, userActivityBitmapDao.getDailyActiveUsers("2016-01-13"));
+		fileDao.complete();
+		assertEquals(2L, userActivityBitmapDao.getDailyActiveUsers("2016-01-13"));
+		assertTrue(userActivityBitmapDao.getActiveUsers("2016-01-13", "2016-01-13", Client.JAVA).contains(2L));
+	}
+
+	private UserActivityPerMonth createUserActivityPerMonth(long userId, String month, long uniqueDate, int activeDays) {
 		UserActivityPerMonth ua = new UserActivityPerMonth();
 		ua.setUserId(userId);
 		ua.setMonth(month);
 		ua.setUniqueDate(uniqueDate);
+		ua.setActiveDays(activeDays);
 		return ua;
 	}
 
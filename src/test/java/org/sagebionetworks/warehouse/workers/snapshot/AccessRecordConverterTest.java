@@ -0,0 +1,36 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.utils.AccessRecordTestUtil;
+
+public class AccessRecordConverterTest {
+
+	AccessRecordConverter converter;
+
+	@Before
+	public void before() {
+		converter = new AccessRecordConverter();
+	}
+
+	@Test
+	public void convertValidRecordTest() {
+		AccessRecord record = AccessRecordTestUtil.createValidAccessRecord();
+		List<AccessRecord> converted = converter.convert(record);
+		assertNotNull(converted);
+		assertEquals(1, converted.size());
+		assertEquals(record, converted.get(0));
+	}
+
+	@Test
+	public void convertInvalidRecordTest() {
+		AccessRecord record = AccessRecordTestUtil.createValidAccessRecord();
+		record.setTimestamp(null);
+		assertNull(converter.convert(record));
+	}
+}
@@ -0,0 +1,186 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_ACCESS_RECORD;
+import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_PROCESSED_ACCESS_RECORD;
+import static org.sagebionetworks.warehouse.workers.db.Sql.TABLE_USER_ACTIVITY_PER_CLIENT_PER_DAY;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sagebionetworks.common.util.progress.ProgressCallback;
+import org.sagebionetworks.csv.utils.ObjectCSVReader;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.collate.StreamResourceProvider;
+import org.sagebionetworks.warehouse.workers.db.FileSinkStateDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.AccessRecordDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.ProcessedAccessRecordDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.UserActivityBitmapDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.UserActivityPerClientPerDayDao;
+import org.sagebionetworks.warehouse.workers.model.ProcessedAccessRecord;
+import org.sagebionetworks.warehouse.workers.model.SnapshotHeader;
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
+import org.sagebionetworks.warehouse.workers.utils.AccessRecordTestUtil;
+import org.sagebionetworks.workers.util.aws.message.RecoverableMessageException;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.sqs.model.Message;
+
+public class AccessRecordFanOutWorkerTest {
+
+	private static final String BUCKET = "dev.access.record.sagebase.org";
+	private static final String KEY = "0000000001/node/2015-07-30/23-34-16-308-e4ccd5c9-8f61-4043-bbe2-df6578b4672f.csv.gz";
+
+	AmazonS3Client mockS3Client;
+	AccessRecordDao mockAccessRecordDao;
+	ProcessedAccessRecordDao mockProcessedAccessRecordDao;
+	UserActivityPerClientPerDayDao mockUserActivityDao;
+	UserActivityBitmapDao mockUserActivityBitmapDao;
+	FileSinkStateDao mockSinkStateDao;
+	AccessRecordFanOutWorker worker;
+	ProgressCallback<Message> mockCallback;
+	Message message;
+	StreamResourceProvider mockStreamResourceProvider;
+	ObjectCSVReader<AccessRecord> mockObjectCSVReader;
+	AccessRecord record;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void before() {
+		mockS3Client = Mockito.mock(AmazonS3Client.class);
+		mockAccessRecordDao = Mockito.mock(AccessRecordDao.class);
+		mockProcessedAccessRecordDao = Mockito.mock(ProcessedAccessRecordDao.class);
+		mockUserActivityDao = Mockito.mock(UserActivityPerClientPerDayDao.class);
+		mockUserActivityBitmapDao = Mockito.mock(UserActivityBitmapDao.class);
+		mockSinkStateDao = Mockito.mock(FileSinkStateDao.class);
+		mockStreamResourceProvider = Mockito.mock(StreamResourceProvider.class);
+		ClientClassifier clientClassifier = new ClientClassifier(ClientClassifier.DEFAULT_RULES, 10);
+		worker = new AccessRecordFanOutWorker(mockS3Client, mockAccessRecordDao, mockProcessedAccessRecordDao,
+				mockUserActivityDao, mockUserActivityBitmapDao, mockSinkStateDao, mockStreamResourceProvider,
+				new AccessRecordConverter(), new ProcessAccessRecordConverter(clientClassifier),
+				new UserActivityPerClientPerDayConverter(clientClassifier));
+		mockCallback = Mockito.mock(ProgressCallback.class);
+
+		message = new Message();
+		message.setBody("<Message>\n"
+				+"  <bucket>" + BUCKET + "</bucket>\n"
+				+"  <key>" + KEY + "</key>\n"
+				+"</Message>");
+
+		mockObjectCSVReader = Mockito.mock(ObjectCSVReader.class);
+		record = AccessRecordTestUtil.createValidAccessRecord();
+		Mockito.when(mockObjectCSVReader.next()).thenReturn(record, null);
+		Mockito.when(mockStreamResourceProvider.createObjectCSVReader(mockS3Client, BUCKET, KEY, AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS)).thenReturn(mockObjectCSVReader);
+		Mockito.when(mockAccessRecordDao.doesPartitionExistForTimestamp(Mockito.anyLong())).thenReturn(true);
+		Mockito.when(mockProcessedAccessRecordDao.doesPartitionExistForTimestamp(Mockito.anyLong())).thenReturn(true);
+		Mockito.when(mockSinkStateDao.getCompletedSinks(BUCKET, KEY)).thenReturn(new HashSet<String>());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void runTest() throws RecoverableMessageException, IOException {
+		worker.run(mockCallback, message);
+		// the file is read once for all tables.
+		Mockito.verify(mockStreamResourceProvider, Mockito.times(1)).createObjectCSVReader(mockS3Client, BUCKET, KEY, AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS);
+		Mockito.verify(mockAccessRecordDao).insert((List<AccessRecord>) Mockito.any());
+		Mockito.verify(mockProcessedAccessRecordDao).insert((List<ProcessedAccessRecord>) Mockito.any());
+		Mockito.verify(mockUserActivityDao).insert((List<UserActivityPerClientPerDay>) Mockito.any());
+		Mockito.verify(mockUserActivityBitmapDao).addUserActivity((List<UserActivityPerClientPerDay>) Mockito.any());
+		// the completion state is only kept while some table is missing the file.
+		Mockito.verify(mockSinkStateDao).deleteSinks(BUCKET, KEY);
+		Mockito.verify(mockSinkStateDao, Mockito.never()).setSinkCompleted(Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+		Mockito.verify(mockObjectCSVReader).close();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void bitmapFailureTest() throws IOException {
+		Mockito.doThrow(new IllegalStateException()).when(mockUserActivityBitmapDao).addUserActivity((List<UserActivityPerClientPerDay>) Mockito.any());
+		try {
+			worker.run(mockCallback, message);
+			Assert.fail("The message should be put back");
+		} catch (RecoverableMessageException e) {
+			// expected
+		}
+		Mockito.verify(mockSinkStateDao).setSinkCompleted(BUCKET, KEY, TABLE_ACCESS_RECORD);
+		Mockito.verify(mockSinkStateDao).setSinkCompleted(BUCKET, KEY, TABLE_PROCESSED_ACCESS_RECORD);
+		Mockito.verify(mockSinkStateDao, Mockito.never()).setSinkCompleted(BUCKET, KEY, TABLE_USER_ACTIVITY_PER_CLIENT_PER_DAY);
+		Mockito.verify(mockSinkStateDao, Mockito.never()).deleteSinks(BUCKET, KEY);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void sinkFailureTest() throws IOException {
+		Mockito.doThrow(new IllegalStateException()).when(mockProcessedAccessRecordDao).insert((List<ProcessedAccessRecord>) Mockito.any());
+		try {
+			worker.run(mockCallback, message);
+			Assert.fail("The message should be put back");
+		} catch (RecoverableMessageException e) {
+			// expected
+		}
+		Mockito.verify(mockAccessRecordDao).insert((List<AccessRecord>) Mockito.any());
+		Mockito.verify(mockUserActivityDao).insert((List<UserActivityPerClientPerDay>) Mockito.any());
+		Mockito.verify(mockSinkStateDao).setSinkCompleted(BUCKET, KEY, TABLE_ACCESS_RECORD);
+		Mockito.verify(mockSinkStateDao, Mockito.never()).setSinkCompleted(BUCKET, KEY, TABLE_PROCESSED_ACCESS_RECORD);
+		Mockito.verify(mockSinkStateDao).setSinkCompleted(BUCKET, KEY, TABLE_USER_ACTIVITY_PER_CLIENT_PER_DAY);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void readFailureTest() throws IOException {
+		Mockito.when(mockObjectCSVReader.next()).thenReturn(record).thenThrow(new RuntimeException(new IOException("Connection reset")));
+		try {
+			worker.run(mockCallback, message);
+			Assert.fail("The message should be put back");
+		} catch (RecoverableMessageException e) {
+			// expected
+		}
+		Mockito.verify(mockSinkStateDao, Mockito.never()).setSinkCompleted(Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+		Mockito.verify(mockUserActivityBitmapDao, Mockito.never()).addUserActivity((List<UserActivityPerClientPerDay>) Mockito.any());
+		Mockito.verify(mockObjectCSVReader).close();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void missingFileTest() throws RecoverableMessageException, IOException {
+		// a file that does not exist is not put back.
+		Mockito.when(mockStreamResourceProvider.createObjectCSVReader(mockS3Client, BUCKET, KEY, AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS))
+				.thenThrow(SnapshotWriterTest.createServiceException(404));
+		worker.run(mockCallback, message);
+		Mockito.verify(mockAccessRecordDao, Mockito.never()).insert((List<AccessRecord>) Mockito.any());
+		Mockito.verify(mockSinkStateDao, Mockito.never()).setSinkCompleted(Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+		Mockito.verify(mockSinkStateDao).deleteSinks(BUCKET, KEY);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void retryOnlyPendingSinksTest() throws RecoverableMessageException, IOException {
+		Mockito.when(mockSinkStateDao.getCompletedSinks(BUCKET, KEY)).thenReturn(
+				new HashSet<String>(Arrays.asList(TABLE_ACCESS_RECORD, TABLE_USER_ACTIVITY_PER_CLIENT_PER_DAY)));
+		worker.run(mockCallback, message);
+		Mockito.verify(mockAccessRecordDao, Mockito.never()).insert((List<AccessRecord>) Mockito.any());
+		Mockito.verify(mockProcessedAccessRecordDao).insert((List<ProcessedAccessRecord>) Mockito.any());
+		Mockito.verify(mockUserActivityDao, Mockito.never()).insert((List<UserActivityPerClientPerDay>) Mockito.any());
+		Mockito.verify(mockSinkStateDao).deleteSinks(BUCKET, KEY);
+	}
+
+	@Test
+	public void allSinksCompletedTest() throws RecoverableMessageException, IOException {
+		Mockito.when(mockSinkStateDao.getCompletedSinks(BUCKET, KEY)).thenReturn(
+				new HashSet<String>(Arrays.asList(TABLE_ACCESS_RECORD, TABLE_PROCESSED_ACCESS_RECORD, TABLE_USER_ACTIVITY_PER_CLIENT_PER_DAY)));
+		worker.run(mockCallback, message);
+		Mockito.verify(mockStreamResourceProvider, Mockito.never()).createObjectCSVReader(mockS3Client, BUCKET, KEY, AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS);
+		Mockito.verify(mockSinkStateDao).deleteSinks(BUCKET, KEY);
+	}
+
+	@Test (expected=RecoverableMessageException.class)
+	public void missingPartitionTest() throws RecoverableMessageException, IOException {
+		Mockito.when(mockProcessedAccessRecordDao.doesPartitionExistForTimestamp(Mockito.anyLong())).thenReturn(false);
+		worker.run(mockCallback, message);
+	}
+}
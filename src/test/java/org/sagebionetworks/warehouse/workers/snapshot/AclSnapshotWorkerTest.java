@@ -1,8 +1,8 @@
 package org.sagebionetworks.warehouse.workers.snapshot;
 
-import java.io.File;
 import java.io.IOException;
 
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -17,7 +17,6 @@ import org.sagebionetworks.common.util.progress.ProgressCallback;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.AmazonS3Client;
-import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.sqs.model.Message;
 
 public class AclSnapshotWorkerTest {
@@ -29,7 +28,6 @@ public class AclSnapshotWorkerTest {
 	Message message;
 	String messageBody;
 	StreamResourceProvider mockStreamResourceProvider;
-	File mockFile;
 	ObjectCSVReader<ObjectRecord> mockObjectCSVReader;
 
 	@SuppressWarnings("unchecked")
@@ -40,7 +38,6 @@ public class AclSnapshotWorkerTest {
 		mockStreamResourceProvider = Mockito.mock(StreamResourceProvider.class);
 		worker = new AclSnapshotWorker(mockS3Client, mockDao, mockStreamResourceProvider);
 		mockCallback = Mockito.mock(ProgressCallback.class);
-		mockFile = Mockito.mock(File.class);
 		mockObjectCSVReader = Mockito.mock(ObjectCSVReader.class);
 
 		messageBody = "<Message>\n"
@@ -50,32 +47,35 @@ public class AclSnapshotWorkerTest {
 		message = new Message();
 		message.setBody(messageBody);
 
-		Mockito.when(mockStreamResourceProvider.createTempFile(Mockito.eq(AclSnapshotWorker.TEMP_FILE_NAME_PREFIX), Mockito.eq(AclSnapshotWorker.TEMP_FILE_NAME_SUFFIX))).thenReturn(mockFile);
-		Mockito.when(mockStreamResourceProvider.createObjectCSVReader(mockFile, ObjectRecord.class, SnapshotHeader.OBJECT_RECORD_HEADERS)).thenReturn(mockObjectCSVReader);
+		Mockito.when(mockStreamResourceProvider.createObjectCSVReader(mockS3Client, "bucket", "key", ObjectRecord.class, SnapshotHeader.OBJECT_RECORD_HEADERS)).thenReturn(mockObjectCSVReader);
 	}
 
 	@Test
 	public void runTest() throws RecoverableMessageException, IOException {
 		worker.run(mockCallback, message);
-		Mockito.verify(mockStreamResourceProvider).createTempFile(Mockito.eq(AclSnapshotWorker.TEMP_FILE_NAME_PREFIX), Mockito.eq(AclSnapshotWorker.TEMP_FILE_NAME_SUFFIX));
-		Mockito.verify(mockS3Client).getObject((GetObjectRequest) Mockito.any(), Mockito.eq(mockFile));
-		Mockito.verify(mockStreamResourceProvider).createObjectCSVReader(mockFile, ObjectRecord.class, SnapshotHeader.OBJECT_RECORD_HEADERS);
-		Mockito.verify(mockFile).delete();
+		Mockito.verify(mockStreamResourceProvider).createObjectCSVReader(mockS3Client, "bucket", "key", ObjectRecord.class, SnapshotHeader.OBJECT_RECORD_HEADERS);
 		Mockito.verify(mockObjectCSVReader).close();
 	}
 
 	@Test
-	public void deleteFileTest() throws RecoverableMessageException, IOException {
-		Mockito.when(mockS3Client.getObject((GetObjectRequest) Mockito.any(), Mockito.eq(mockFile))).thenThrow(new AmazonClientException(""));
+	public void readFailureTest() throws RecoverableMessageException, IOException {
+		Mockito.when(mockStreamResourceProvider.createObjectCSVReader(mockS3Client, "bucket", "key", ObjectRecord.class, SnapshotHeader.OBJECT_RECORD_HEADERS)).thenThrow(new AmazonClientException(""));
 		try {
 			worker.run(mockCallback, message);
-		} catch (AmazonClientException e) {
+			Assert.fail("The message should be put back");
+		} catch (RecoverableMessageException e) {
 			// expected
 		}
-		Mockito.verify(mockStreamResourceProvider).createTempFile(Mockito.eq(AclSnapshotWorker.TEMP_FILE_NAME_PREFIX), Mockito.eq(AclSnapshotWorker.TEMP_FILE_NAME_SUFFIX));
-		Mockito.verify(mockS3Client).getObject((GetObjectRequest) Mockito.any(), Mockito.eq(mockFile));
-		Mockito.verify(mockStreamResourceProvider, Mockito.never()).createObjectCSVReader(mockFile, ObjectRecord.class, SnapshotHeader.OBJECT_RECORD_HEADERS);
-		Mockito.verify(mockFile).delete();
+		Mockito.verify(mockStreamResourceProvider).createObjectCSVReader(mockS3Client, "bucket", "key", ObjectRecord.class, SnapshotHeader.OBJECT_RECORD_HEADERS);
+		Mockito.verify(mockObjectCSVReader, Mockito.never()).close();
+	}
+
+	@Test
+	public void missingFileTest() throws RecoverableMessageException, IOException {
+		// a file that does not exist is not put back.
+		Mockito.when(mockStreamResourceProvider.createObjectCSVReader(mockS3Client, "bucket", "key", ObjectRecord.class, SnapshotHeader.OBJECT_RECORD_HEADERS))
+				.thenThrow(SnapshotWriterTest.createServiceException(404));
+		worker.run(mockCallback, message);
 		Mockito.verify(mockObjectCSVReader, Mockito.never()).close();
 	}
 }
@@ -0,0 +1,86 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.warehouse.workers.model.Client;
+
+public class ClientClassifierTest {
+
+	ClientClassifier classifier;
+
+	@Before
+	public void before() {
+		classifier = new ClientClassifier(ClientClassifier.DEFAULT_RULES, 2);
+	}
+
+	@Test
+	public void testDefaultRules() {
+		assertEquals(Client.R, classifier.classify("synapseRClient/1.3-0"));
+		assertEquals(Client.PYTHON, classifier.classify("synapseclient/1.0.1 python-requests/2.1.0 CPython/2.7.3 Linux/3.2.0-54-virtual"));
+		assertEquals(Client.WEB, classifier.classify("Synpase-Java-Client/64.0  Synapse-Web-Client/67.0"));
+		assertEquals(Client.JAVA, classifier.classify("Synpase-Java-Client/64.0"));
+		assertEquals(Client.COMMAND_LINE, classifier.classify("synapsecommandlineclient"));
+		assertEquals(Client.ELB_HEALTHCHECKER, classifier.classify("ELB-HealthChecker/1.0"));
+		assertEquals(Client.UNKNOWN, classifier.classify(""));
+		assertEquals(Client.UNKNOWN, classifier.classify(null));
+	}
+
+	@Test
+	public void testPythonBeforeCommandLine() {
+		assertEquals(Client.PYTHON, classifier.classify("synapsecommandlineclient python-requests/2.1.0"));
+	}
+
+	@Test
+	public void testCache() {
+		assertEquals(Client.R, classifier.classify("synapseRClient/1.3-0"));
+		assertEquals(1, classifier.getCacheSize());
+		assertEquals(Client.R, classifier.classify("synapseRClient/1.3-0"));
+		assertEquals(1, classifier.getCacheSize());
+		classifier.classify("synapseRClient/1.4-0");
+		// full
+		assertEquals(Client.R, classifier.classify("synapseRClient/1.5-0"));
+		assertEquals(2, classifier.getCacheSize());
+	}
+
+	@Test
+	public void testRuleOrder() {
+		classifier = new ClientClassifier(Arrays.asList(
+				ClientRule.parse("R:contains:Client"),
+				ClientRule.parse("WEB:contains:Synapse-Web-Client")), 10);
+		assertEquals(Client.R, classifier.classify("Synapse-Web-Client/67.0"));
+	}
+
+	@Test
+	public void testRegexRule() {
+		classifier = new ClientClassifier(Arrays.asList(ClientRule.parse("PYTHON:regex:^synapseclient/\\d+")), 10);
+		assertEquals(Client.PYTHON, classifier.classify("synapseclient/1.0.1"));
+		assertEquals(Client.UNKNOWN, classifier.classify("Synapse-Web-Client/67.0"));
+	}
+
+	@Test
+	public void testParseRuleWithSeparatorInValue() {
+		ClientRule rule = ClientRule.parse("WEB:contains:a:b");
+		assertEquals(Client.WEB, rule.getClient());
+		assertTrue(rule.matches("xa:by"));
+		assertEquals("WEB:contains:a:b", rule.toString());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testParseMissingType() {
+		ClientRule.parse("WEB:Synapse-Web-Client");
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testParseUnknownType() {
+		ClientRule.parse("WEB:startsWith:Synapse-Web-Client");
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testParseUnknownClient() {
+		ClientRule.parse("BROWSER:contains:Mozilla");
+	}
+}
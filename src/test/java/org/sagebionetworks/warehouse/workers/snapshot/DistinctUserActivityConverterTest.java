@@ -0,0 +1,100 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.model.Client;
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
+
+public class DistinctUserActivityConverterTest {
+
+	SnapshotWorker<AccessRecord, UserActivityPerClientPerDay> mockConverter;
+	DistinctUserActivityConverter converter;
+	AccessRecord record;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void before() {
+		mockConverter = Mockito.mock(SnapshotWorker.class);
+		converter = new DistinctUserActivityConverter(mockConverter);
+		record = new AccessRecord();
+	}
+
+	@Test
+	public void testDropsDuplicates() {
+		UserActivityPerClientPerDay first = createActivity(1L, "2015-04-03", Client.WEB);
+		UserActivityPerClientPerDay same = createActivity(1L, "2015-04-03", Client.WEB);
+		Mockito.when(mockConverter.convert(record)).thenReturn(Arrays.asList(first), Arrays.asList(same));
+		assertEquals(Arrays.asList(first), converter.convert(record));
+		assertNull(converter.convert(record));
+		assertEquals(1L, converter.getDuplicates());
+		assertEquals(1, converter.getDistinct());
+	}
+
+	@Test
+	public void testKeepsDistinct() {
+		List<UserActivityPerClientPerDay> activities = Arrays.asList(
+				createActivity(1L, "2015-04-03", Client.WEB),
+				createActivity(2L, "2015-04-03", Client.WEB),
+				createActivity(1L, "2015-04-04", Client.WEB),
+				createActivity(1L, "2015-04-03", Client.R),
+				createActivity(0L, "2015-04-03", Client.R));
+		Mockito.when(mockConverter.convert(record)).thenReturn(activities);
+		assertEquals(activities, converter.convert(record));
+		assertEquals(0L, converter.getDuplicates());
+		assertEquals(5, converter.getDistinct());
+	}
+
+	@Test
+	public void testDuplicatesWithinOneRecord() {
+		UserActivityPerClientPerDay first = createActivity(1L, "2015-04-03", Client.WEB);
+		UserActivityPerClientPerDay second = createActivity(2L, "2015-04-03", Client.WEB);
+		Mockito.when(mockConverter.convert(record)).thenReturn(Arrays.asList(first, first, second));
+		assertEquals(Arrays.asList(first, second), converter.convert(record));
+		assertEquals(1L, converter.getDuplicates());
+	}
+
+	@Test
+	public void testInvalidRecord() {
+		Mockito.when(mockConverter.convert(record)).thenReturn(null);
+		assertNull(converter.convert(record));
+	}
+
+	@Test
+	public void testUnpackable() {
+		UserActivityPerClientPerDay large = createActivity(DistinctUserActivityConverter.MAX_USER_ID + 1, "2015-04-03", Client.WEB);
+		UserActivityPerClientPerDay noUser = createActivity(null, "2015-04-03", Client.WEB);
+		assertEquals(-1L, converter.pack(large));
+		assertEquals(-1L, converter.pack(noUser));
+		Mockito.when(mockConverter.convert(record)).thenReturn(Arrays.asList(large, noUser),
+				Arrays.asList(createActivity(DistinctUserActivityConverter.MAX_USER_ID + 1, "2015-04-03", Client.WEB)));
+		assertEquals(Arrays.asList(large, noUser), converter.convert(record));
+		assertNull(converter.convert(record));
+		assertEquals(1L, converter.getDuplicates());
+	}
+
+	@Test
+	public void testPack() {
+		long packed = converter.pack(createActivity(DistinctUserActivityConverter.MAX_USER_ID, "2015-04-03", Client.UNKNOWN));
+		assertTrue(packed > 0);
+		assertEquals(DistinctUserActivityConverter.MAX_USER_ID, packed >>> (DistinctUserActivityConverter.DATE_BITS + DistinctUserActivityConverter.CLIENT_BITS));
+		assertEquals(Client.UNKNOWN.ordinal(), packed & ((1 << DistinctUserActivityConverter.CLIENT_BITS) - 1));
+		// the second date gets the next ordinal.
+		long nextDate = converter.pack(createActivity(DistinctUserActivityConverter.MAX_USER_ID, "2015-04-04", Client.UNKNOWN));
+		assertEquals(1L << DistinctUserActivityConverter.CLIENT_BITS, nextDate - packed);
+	}
+
+	private static UserActivityPerClientPerDay createActivity(Long userId, String date, Client client) {
+		UserActivityPerClientPerDay activity = new UserActivityPerClientPerDay();
+		activity.setUserId(userId);
+		activity.setDate(date);
+		activity.setClient(client);
+		return activity;
+	}
+}
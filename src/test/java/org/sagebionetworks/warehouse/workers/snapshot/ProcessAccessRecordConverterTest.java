@@ -0,0 +1,40 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.model.ProcessedAccessRecord;
+import org.sagebionetworks.warehouse.workers.utils.AccessRecordTestUtil;
+import org.sagebionetworks.warehouse.workers.utils.AccessRecordUtils;
+
+public class ProcessAccessRecordConverterTest {
+
+	ClientClassifier clientClassifier;
+	ProcessAccessRecordConverter converter;
+
+	@Before
+	public void before() {
+		clientClassifier = new ClientClassifier(ClientClassifier.DEFAULT_RULES, 10);
+		converter = new ProcessAccessRecordConverter(clientClassifier);
+	}
+
+	@Test
+	public void convertValidRecordTest() {
+		AccessRecord record = AccessRecordTestUtil.createValidAccessRecord();
+		List<ProcessedAccessRecord> converted = converter.convert(record);
+		assertNotNull(converted);
+		assertEquals(1, converted.size());
+		assertEquals(AccessRecordUtils.processAccessRecord(record, clientClassifier.classify(record.getUserAgent())), converted.get(0));
+	}
+
+	@Test
+	public void convertInvalidRecordTest() {
+		AccessRecord record = AccessRecordTestUtil.createValidAccessRecord();
+		record.setTimestamp(null);
+		assertNull(converter.convert(record));
+	}
+}
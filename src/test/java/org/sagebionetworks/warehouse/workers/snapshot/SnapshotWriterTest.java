@@ -1,42 +1,50 @@
 package org.sagebionetworks.warehouse.workers.snapshot;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sagebionetworks.csv.utils.ObjectCSVReader;
 import org.sagebionetworks.repo.model.audit.AccessRecord;
-import org.sagebionetworks.warehouse.workers.collate.StreamResourceProvider;
 import org.sagebionetworks.warehouse.workers.db.snapshot.AccessRecordDao;
 import org.sagebionetworks.warehouse.workers.utils.AccessRecordTestUtil;
 import org.sagebionetworks.common.util.progress.ProgressCallback;
 
-import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.sqs.model.Message;
 
 public class SnapshotWriterTest {
 
-	AmazonS3Client mockS3Client;
 	AccessRecordDao mockDao;
-	AccessRecordWorker worker;
+	AccessRecordConverter worker;
 	ProgressCallback<Message> mockCallback;
 	Message message;
 	String messageBody;
-	StreamResourceProvider mockStreamResourceProvider;
 	ObjectCSVReader<AccessRecord> mockObjectCSVReader;
 	List<AccessRecord> batch;
 
 	@SuppressWarnings("unchecked")
 	@Before
 	public void before() {
-		mockS3Client = Mockito.mock(AmazonS3Client.class);
 		mockDao = Mockito.mock(AccessRecordDao.class);
-		mockStreamResourceProvider = Mockito.mock(StreamResourceProvider.class);
-		worker = new AccessRecordWorker(mockS3Client, mockDao, mockStreamResourceProvider);
+		worker = new AccessRecordConverter();
 		mockCallback = Mockito.mock(ProgressCallback.class);
 
 		messageBody = "<Message>\n"
@@ -92,4 +100,178 @@ public class SnapshotWriterTest {
 		SnapshotWriter.write(mockObjectCSVReader, mockDao, 3, mockCallback, message, worker);
 		Mockito.verify(mockDao, Mockito.times(2)).insert((List<AccessRecord>) Mockito.any());
 	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void writePipelinedEmptyListTest() throws IOException {
+		Mockito.when(mockObjectCSVReader.next()).thenReturn(null);
+		int noRecords = SnapshotWriter.writePipelined(mockObjectCSVReader, mockDao, 2, mockCallback, message, worker);
+		assertEquals(0, noRecords);
+		Mockito.verify(mockDao, Mockito.never()).insert((List<AccessRecord>) Mockito.any());
+	}
+
+	@Test
+	public void writePipelinedOverBatchSizeTest() throws IOException {
+		Mockito.when(mockObjectCSVReader.next()).thenReturn(batch.get(0), batch.get(1), batch.get(2), batch.get(3), batch.get(4), null);
+		int noRecords = SnapshotWriter.writePipelined(mockObjectCSVReader, mockDao, 3, mockCallback, message, worker, 2, 1);
+		assertEquals(5, noRecords);
+		Mockito.verify(mockDao).insert(new ArrayList<AccessRecord>(Arrays.asList(batch.get(0), batch.get(1), batch.get(2))));
+		Mockito.verify(mockDao).insert(new ArrayList<AccessRecord>(Arrays.asList(batch.get(3), batch.get(4))));
+	}
+
+	@Test
+	public void writePipelinedBusyExecutorTest() throws Exception {
+		Mockito.when(mockObjectCSVReader.next()).thenReturn(batch.get(0), batch.get(1), batch.get(2), batch.get(3), batch.get(4), null);
+		ThreadPoolExecutor executor = SnapshotWriter.createInsertExecutor(1);
+		try {
+			// another write holds the only thread for a while.
+			final CountDownLatch started = new CountDownLatch(1);
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					started.countDown();
+					try {
+						Thread.sleep(SnapshotWriter.HEARTBEAT_WAIT_MS / 2);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			started.await();
+			// the second insert task never gets a thread.
+			int noRecords = SnapshotWriter.writePipelined(mockObjectCSVReader, mockDao, 2, mockCallback, message, worker,
+					2, new ArrayBlockingQueue<SnapshotWriter.Batch<AccessRecord>>(1), executor);
+			assertEquals(5, noRecords);
+			Mockito.verify(mockDao).insert(new ArrayList<AccessRecord>(Arrays.asList(batch.get(0), batch.get(1))));
+			Mockito.verify(mockDao).insert(new ArrayList<AccessRecord>(Arrays.asList(batch.get(2), batch.get(3))));
+			Mockito.verify(mockDao).insert(new ArrayList<AccessRecord>(Arrays.asList(batch.get(4))));
+			// the shared pool outlives the write.
+			assertFalse(executor.isShutdown());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void writePipelinedInsertFailureTest() throws IOException {
+		Mockito.when(mockObjectCSVReader.next()).thenReturn(batch.get(0), batch.get(1), batch.get(2), batch.get(3), batch.get(4), null);
+		IllegalStateException failure = new IllegalStateException("insert failed");
+		Mockito.doThrow(failure).when(mockDao).insert((List<AccessRecord>) Mockito.any());
+		try {
+			SnapshotWriter.writePipelined(mockObjectCSVReader, mockDao, 1, mockCallback, message, worker, 1, 1);
+			fail("Expected the insert failure to be thrown");
+		} catch (IllegalStateException e) {
+			assertEquals(failure, e);
+		}
+		// the first failure stops the pipeline.
+		Mockito.verify(mockDao, Mockito.times(1)).insert((List<AccessRecord>) Mockito.any());
+	}
+
+	@Test
+	public void writePipelinedLastBatchRacesPollTimeoutTest() throws IOException {
+		Mockito.when(mockObjectCSVReader.next()).thenReturn(batch.get(0), batch.get(1)).thenAnswer(new Answer<AccessRecord>() {
+
+			@Override
+			public AccessRecord answer(InvocationOnMock invocation) throws Throwable {
+				// the insert thread times out waiting for the last batch.
+				Thread.sleep(SnapshotWriter.POLL_WAIT_MS * 3);
+				return batch.get(2);
+			}
+		}).thenReturn(null);
+		int noRecords = SnapshotWriter.writePipelined(mockObjectCSVReader, mockDao, 2, mockCallback, message, worker,
+				1, new RacingQueue<AccessRecord>());
+		assertEquals(3, noRecords);
+		Mockito.verify(mockDao).insert(new ArrayList<AccessRecord>(Arrays.asList(batch.get(2))));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void writePipelinedSinksTest() throws IOException {
+		Mockito.when(mockObjectCSVReader.next()).thenReturn(batch.get(0), batch.get(1), batch.get(2), batch.get(3), batch.get(4), null);
+		AccessRecordDao mockFailingDao = Mockito.mock(AccessRecordDao.class);
+		IllegalStateException failure = new IllegalStateException("insert failed");
+		Mockito.doThrow(failure).when(mockFailingDao).insert((List<AccessRecord>) Mockito.any());
+		SnapshotSink<AccessRecord, AccessRecord> sink = SnapshotSink.create("sink", worker, mockDao, 2);
+		SnapshotSink<AccessRecord, AccessRecord> failingSink = SnapshotSink.create("failingSink", worker, mockFailingDao, 2);
+		ThreadPoolExecutor executor = SnapshotWriter.createInsertExecutor(1);
+		try {
+			SnapshotWriter.writePipelined(mockObjectCSVReader, Arrays.asList(sink, failingSink), mockCallback, message,
+					new ArrayBlockingQueue<SnapshotWriter.Batch<Runnable>>(1), executor);
+		} finally {
+			executor.shutdownNow();
+		}
+		// the failure of one sink does not stop the other.
+		assertFalse(sink.hasFailed());
+		assertEquals(5, sink.getNumberOfRecords());
+		Mockito.verify(mockDao).insert(new ArrayList<AccessRecord>(Arrays.asList(batch.get(0), batch.get(1))));
+		Mockito.verify(mockDao).insert(new ArrayList<AccessRecord>(Arrays.asList(batch.get(2), batch.get(3))));
+		Mockito.verify(mockDao).insert(new ArrayList<AccessRecord>(Arrays.asList(batch.get(4))));
+		assertTrue(failingSink.hasFailed());
+		assertEquals(failure, failingSink.getFailure());
+		Mockito.verify(mockFailingDao, Mockito.times(1)).insert((List<AccessRecord>) Mockito.any());
+	}
+
+	@Test
+	public void isReadFailureTest() {
+		assertTrue(SnapshotWriter.isReadFailure(new IOException("Connection reset")));
+		assertTrue(SnapshotWriter.isReadFailure(new AmazonClientException("Unable to execute HTTP request")));
+		// the reader wraps its IOExceptions.
+		assertTrue(SnapshotWriter.isReadFailure(new RuntimeException(new IOException("Connection reset"))));
+		assertFalse(SnapshotWriter.isReadFailure(new IllegalArgumentException("Invalid record")));
+		assertFalse(SnapshotWriter.isReadFailure(new RuntimeException(new IllegalStateException())));
+	}
+
+	@Test
+	public void isReadFailureServiceErrorTest() {
+		assertTrue(SnapshotWriter.isReadFailure(createServiceException(500)));
+		assertTrue(SnapshotWriter.isReadFailure(createServiceException(503)));
+		// the same request fails again.
+		assertFalse(SnapshotWriter.isReadFailure(createServiceException(404)));
+		assertFalse(SnapshotWriter.isReadFailure(createServiceException(403)));
+		assertFalse(SnapshotWriter.isReadFailure(new RuntimeException(createServiceException(404))));
+		// a failed resume of the stream is wrapped in an IOException.
+		assertFalse(SnapshotWriter.isReadFailure(new IOException("Failed to resume", createServiceException(404))));
+		assertTrue(SnapshotWriter.isReadFailure(new IOException("Failed to resume", createServiceException(500))));
+	}
+
+	static AmazonServiceException createServiceException(int statusCode) {
+		AmazonServiceException e = new AmazonServiceException("status " + statusCode);
+		e.setStatusCode(statusCode);
+		return e;
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void writePipelinedInvalidThreadsTest() throws IOException {
+		SnapshotWriter.writePipelined(mockObjectCSVReader, mockDao, 3, mockCallback, message, worker, 0, 1);
+	}
+
+	/**
+	 * The first poll that times out only returns once the last batch has been
+	 * queued and the end of the stream signaled.
+	 */
+	private static class RacingQueue<V> extends ArrayBlockingQueue<SnapshotWriter.Batch<V>> {
+
+		private static final long serialVersionUID = 1L;
+		private final AtomicBoolean raced = new AtomicBoolean(false);
+
+		RacingQueue() {
+			super(1);
+		}
+
+		@Override
+		public SnapshotWriter.Batch<V> poll(long timeout, TimeUnit unit) throws InterruptedException {
+			SnapshotWriter.Batch<V> result = super.poll(timeout, unit);
+			if (result == null && raced.compareAndSet(false, true)) {
+				long deadline = System.currentTimeMillis() + 1000L;
+				while (isEmpty() && System.currentTimeMillis() < deadline) {
+					Thread.sleep(5L);
+				}
+				// give the reader time to signal the end of the stream.
+				Thread.sleep(50L);
+			}
+			return result;
+		}
+	}
 }
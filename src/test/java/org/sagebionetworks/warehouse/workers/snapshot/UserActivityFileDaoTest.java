@@ -0,0 +1,75 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.sagebionetworks.warehouse.workers.db.snapshot.UserActivityBitmapDao;
+import org.sagebionetworks.warehouse.workers.db.snapshot.UserActivityPerClientPerDayDao;
+import org.sagebionetworks.warehouse.workers.model.Client;
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
+
+public class UserActivityFileDaoTest {
+
+	UserActivityPerClientPerDayDao mockDao;
+	UserActivityBitmapDao mockBitmapDao;
+	UserActivityFileDao fileDao;
+
+	@Before
+	public void before() {
+		mockDao = Mockito.mock(UserActivityPerClientPerDayDao.class);
+		mockBitmapDao = Mockito.mock(UserActivityBitmapDao.class);
+		fileDao = new UserActivityFileDao(mockDao, mockBitmapDao);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testBitmapsAddedOncePerFile() {
+		List<UserActivityPerClientPerDay> first = Arrays.asList(create(1L, Client.R), create(2L, Client.R));
+		List<UserActivityPerClientPerDay> second = Arrays.asList(create(3L, Client.JAVA));
+		fileDao.insert(first);
+		fileDao.insert(second);
+		Mockito.verify(mockDao).insert(first);
+		Mockito.verify(mockDao).insert(second);
+		Mockito.verify(mockBitmapDao, Mockito.never()).addUserActivity((List<UserActivityPerClientPerDay>) Mockito.any());
+
+		fileDao.complete();
+		ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+		Mockito.verify(mockBitmapDao).addUserActivity(captor.capture());
+		assertEquals(Arrays.asList(create(1L, Client.R), create(2L, Client.R), create(3L, Client.JAVA)), captor.getValue());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testEmptyFile() {
+		fileDao.complete();
+		Mockito.verify(mockBitmapDao, Mockito.never()).addUserActivity((List<UserActivityPerClientPerDay>) Mockito.any());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testInsertFailureHoldsNothingBack() {
+		List<UserActivityPerClientPerDay> batch = Arrays.asList(create(1L, Client.R));
+		Mockito.doThrow(new IllegalStateException()).when(mockDao).insert(batch);
+		try {
+			fileDao.insert(batch);
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		fileDao.complete();
+		Mockito.verify(mockBitmapDao, Mockito.never()).addUserActivity((List<UserActivityPerClientPerDay>) Mockito.any());
+	}
+
+	private static UserActivityPerClientPerDay create(long userId, Client client) {
+		UserActivityPerClientPerDay activity = new UserActivityPerClientPerDay();
+		activity.setUserId(userId);
+		activity.setDate("2016-01-13");
+		activity.setClient(client);
+		return activity;
+	}
+}
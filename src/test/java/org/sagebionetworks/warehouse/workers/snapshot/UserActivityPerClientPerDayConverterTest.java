@@ -0,0 +1,40 @@
+package org.sagebionetworks.warehouse.workers.snapshot;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.audit.AccessRecord;
+import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
+import org.sagebionetworks.warehouse.workers.utils.AccessRecordTestUtil;
+import org.sagebionetworks.warehouse.workers.utils.AccessRecordUtils;
+
+public class UserActivityPerClientPerDayConverterTest {
+
+	ClientClassifier clientClassifier;
+	UserActivityPerClientPerDayConverter converter;
+
+	@Before
+	public void before() {
+		clientClassifier = new ClientClassifier(ClientClassifier.DEFAULT_RULES, 10);
+		converter = new UserActivityPerClientPerDayConverter(clientClassifier);
+	}
+
+	@Test
+	public void convertValidRecordTest() {
+		AccessRecord record = AccessRecordTestUtil.createValidAccessRecord();
+		List<UserActivityPerClientPerDay> converted = converter.convert(record);
+		assertNotNull(converted);
+		assertEquals(1, converted.size());
+		assertEquals(AccessRecordUtils.getUserActivityPerClientPerDay(record, clientClassifier.classify(record.getUserAgent())), converted.get(0));
+	}
+
+	@Test
+	public void convertInvalidRecordTest() {
+		AccessRecord record = AccessRecordTestUtil.createValidAccessRecord();
+		record.setTimestamp(null);
+		assertNull(converter.convert(record));
+	}
+}
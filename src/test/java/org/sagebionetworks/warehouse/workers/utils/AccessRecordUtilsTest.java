@@ -2,85 +2,166 @@ package org.sagebionetworks.warehouse.workers.utils;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
 import org.junit.Test;
+import org.sagebionetworks.csv.utils.ObjectCSVReader;
 import org.sagebionetworks.repo.model.audit.AccessRecord;
 import org.sagebionetworks.warehouse.workers.model.Client;
 import org.sagebionetworks.warehouse.workers.model.ProcessedAccessRecord;
+import org.sagebionetworks.warehouse.workers.model.SnapshotHeader;
 import org.sagebionetworks.warehouse.workers.model.UserActivityPerClientPerDay;
 import org.sagebionetworks.warehouse.workers.utils.AccessRecordUtils;
 
 public class AccessRecordUtilsTest {
 
 	/*
-	 * Client Tests
+	 * Entity ID Tests
 	 */
 	@Test
-	public void rClientTest() {
-		assertEquals(Client.R, AccessRecordUtils.getClient("synapseRClient/1.3-0"));
+	public void entityIdWithPrefixTest() {
+		Long entityId = 4623841L;
+		assertEquals(entityId, AccessRecordUtils.getEntityId("/repo/v1/entity/syn4623841/bundle"));
 	}
 
 	@Test
-	public void pythonClientTest() {
-		assertEquals(Client.PYTHON, AccessRecordUtils.getClient("synapseclient/1.0.1 python-requests/2.1.0 CPython/2.7.3 Linux/3.2.0-54-virtual"));
+	public void entityIdWithUperCasePrefixTest() {
+		assertEquals((Long)4623841L, AccessRecordUtils.getEntityId("/repo/v1/entity/SYN4623841/bundle"));
 	}
 
 	@Test
-	public void webClientTest() {
-		assertEquals(Client.WEB, AccessRecordUtils.getClient("Synpase-Java-Client/64.0  Synapse-Web-Client/67.0"));
+	public void entityIdWithProperCasePrefixTest() {
+		assertEquals((Long)4623841L, AccessRecordUtils.getEntityId("/repo/v1/entity/Syn4623841/bundle"));
 	}
 
 	@Test
-	public void javaClientTest() {
-		assertEquals(Client.JAVA, AccessRecordUtils.getClient("Synpase-Java-Client/64.0"));
+	public void entityIdWithoutPrefixTest() {
+		assertEquals((Long)4623841L, AccessRecordUtils.getEntityId("/repo/v1/entity/4623841/bundle"));
+	}
+
+	@Test
+	public void endingEntityIdTest() {
+		assertEquals((Long)4623841L, AccessRecordUtils.getEntityId("/repo/v1/entity/syn4623841"));
+	}
+
+	@Test
+	public void nullEntityIdTest() {
+		assertNull(AccessRecordUtils.getEntityId("/repo/v1/version"));
 	}
 
 	@Test
-	public void commandLineClientTest() {
-		assertEquals(Client.COMMAND_LINE,AccessRecordUtils. getClient("synapsecommandlineclient"));
+	public void entityIdUpperCasePathTest() {
+		assertEquals((Long)4623841L, AccessRecordUtils.getEntityId("/REPO/V1/ENTITY/SYN4623841/BUNDLE"));
 	}
 
 	@Test
-	public void elbHealthCheckerClientTest() {
-		assertEquals(Client.ELB_HEALTHCHECKER, AccessRecordUtils.getClient("ELB-HealthChecker/1.0"));
+	public void entityIdAfterNonIdEntityPathTest() {
+		assertEquals((Long)5L, AccessRecordUtils.getEntityId("/repo/v1/entity/type/entity/syn5"));
 	}
 
 	@Test
-	public void unknownClientTest() {
-		assertEquals(Client.UNKNOWN, AccessRecordUtils.getClient(""));
+	public void prefixWithoutEntityIdTest() {
+		assertNull(AccessRecordUtils.getEntityId("/repo/v1/entity/syn/bundle"));
+	}
+
+	@Test (expected=NumberFormatException.class)
+	public void entityIdTooLargeTest() {
+		AccessRecordUtils.getEntityId("/repo/v1/entity/syn99999999999999999999");
 	}
 
 	/*
-	 * Entity ID Tests
+	 * Method signature Tests
 	 */
 	@Test
-	public void entityIdWithPrefixTest() {
-		Long entityId = 4623841L;
-		assertEquals(entityId, AccessRecordUtils.getEntityId("/repo/v1/entity/syn4623841/bundle"));
+	public void urlShapeTest() {
+		assertEquals("/repo/v1/entity/#/version/#", AccessRecordUtils.getURLShape("/repo/v1/entity/syn123/version/2"));
+		assertEquals("/repo/v1/entity/#/", AccessRecordUtils.getURLShape("/repo/v1/entity/SYN123/"));
+		assertEquals("/repo/v1/entity/synapse/", AccessRecordUtils.getURLShape("/repo/v1/entity/synapse/"));
 	}
 
 	@Test
-	public void entityIdWithUperCasePrefixTest() {
-		assertEquals((Long)4623841L, AccessRecordUtils.getEntityId("/repo/v1/entity/SYN4623841/bundle"));
+	public void urlWithoutIdsIsItsOwnShapeTest() {
+		String url = "/repo/v1/version";
+		assertSame(url, AccessRecordUtils.getURLShape(url));
 	}
 
 	@Test
-	public void entityIdWithProperCasePrefixTest() {
-		assertEquals((Long)4623841L, AccessRecordUtils.getEntityId("/repo/v1/entity/Syn4623841/bundle"));
+	public void cachedMethodSignatureTest() {
+		assertEquals("GET /entity/#/descendants", AccessRecordUtils.getNormalizedMethodSignature("GET", "/repo/v1/entity/syn1/descendants"));
+		assertEquals("GET /entity/#/descendants", AccessRecordUtils.getNormalizedMethodSignature("GET", "/repo/v1/entity/syn2/descendants"));
+		assertEquals("POST /entity/#/descendants", AccessRecordUtils.getNormalizedMethodSignature("POST", "/repo/v1/entity/syn2/descendants"));
 	}
 
 	@Test
-	public void entityIdWithoutPrefixTest() {
-		assertEquals((Long)4623841L, AccessRecordUtils.getEntityId("/repo/v1/entity/4623841/bundle"));
+	public void cachedNonNormalizableMethodSignatureTest() {
+		assertEquals(AccessRecordUtils.NON_NORMALIZABLE_SIGNATURE, AccessRecordUtils.getNormalizedMethodSignature("GET", "/some/fake/path/"));
+		assertEquals(AccessRecordUtils.NON_NORMALIZABLE_SIGNATURE, AccessRecordUtils.getNormalizedMethodSignature("GET", "/some/fake/path/"));
 	}
 
+	/**
+	 * The cache is keyed on the URL shape, so a signature cached for one set of
+	 * IDs must be the one PathNormalizer gives for any other.
+	 */
 	@Test
-	public void endingEntityIdTest() {
-		assertEquals((Long)4623841L, AccessRecordUtils.getEntityId("/repo/v1/entity/syn4623841"));
+	public void cachedMatchesUncachedForSampleRecordsTest() throws IOException {
+		AccessRecordUtils.clearSignatureCache();
+		ObjectCSVReader<AccessRecord> reader = new ObjectCSVReader<AccessRecord>(new InputStreamReader(
+				new GZIPInputStream(getClass().getClassLoader().getResourceAsStream("SampleAccessRecord.csv.gz")),
+				StandardCharsets.UTF_8), AccessRecord.class, SnapshotHeader.ACCESS_RECORD_HEADERS);
+		int count = 0;
+		try {
+			AccessRecord record = null;
+			while ((record = reader.next()) != null) {
+				String method = record.getMethod();
+				String url = record.getRequestURL();
+				// cache the shape with other IDs first.
+				AccessRecordUtils.getNormalizedMethodSignature(method, changeIds(url));
+				assertEquals(url, AccessRecordUtils.normalizeMethodSignature(method, url),
+						AccessRecordUtils.getNormalizedMethodSignature(method, url));
+				count++;
+			}
+		} finally {
+			reader.close();
+		}
+		assertTrue(count > 0);
 	}
 
 	@Test
-	public void nullEntityIdTest() {
-		assertNull(AccessRecordUtils.getEntityId("/repo/v1/version"));
+	public void cachedMatchesUncachedTest() {
+		AccessRecordUtils.clearSignatureCache();
+		String[] urls = new String[] { "/repo/v1/entity/syn123/version/4", "/repo/v1/entity/123/bundle",
+				"/repo/v1/evaluation/123/submission/all", "/repo/v1/evaluation/submission/123/status",
+				"/file/v1/fileHandle/123", "/file/v1/entity/syn123/version/4/filepreview",
+				"/repo/v1/team/123/member/456", "/repo/v1/userProfile/123", "/repo/v1/userProfile/",
+				"/repo/v1/entity/md5/abc123", "/repo/v1/version", "/some/fake/path/123" };
+		for (String url : urls) {
+			AccessRecordUtils.getNormalizedMethodSignature("GET", changeIds(url));
+			assertEquals(url, AccessRecordUtils.normalizeMethodSignature("GET", url),
+					AccessRecordUtils.getNormalizedMethodSignature("GET", url));
+		}
+	}
+
+	/**
+	 * @return the URL with each ID segment replaced by a different ID.
+	 */
+	private static String changeIds(String url) {
+		StringBuilder builder = new StringBuilder();
+		String[] segments = url.split("/", -1);
+		for (int i = 0; i < segments.length; i++) {
+			if (i > 0) {
+				builder.append('/');
+			}
+			String segment = segments[i];
+			if (segment.matches("(?i)(syn)?[0-9]+")) {
+				int prefix = segment.length() - segment.replaceFirst("(?i)^syn", "").length();
+				segment = segment.substring(0, prefix) + "9" + segment.substring(prefix);
+			}
+			builder.append(segment);
+		}
+		return builder.toString();
 	}
 
 	/*
@@ -89,7 +170,6 @@ public class AccessRecordUtilsTest {
 	@Test
 	public void processAccessRecordTest() {
 		AccessRecord ar = new AccessRecord();
-		ar.setUserAgent("Synpase-Java-Client/64.0  Synapse-Web-Client/67.0");
 		ar.setMethod("GET");
 		ar.setRequestURL("/repo/v1/entity/syn2600225/descendants");
 		ar.setSessionId("28a75682-f056-40f7-9a1e-416cb703bed5");
@@ -100,14 +180,14 @@ public class AccessRecordUtilsTest {
 		expected.setClient(Client.WEB);
 		expected.setNormalizedMethodSignature("GET /entity/#/descendants");
 
-		assertEquals(expected, AccessRecordUtils.processAccessRecord(ar));
+		assertEquals(expected, AccessRecordUtils.processAccessRecord(ar, Client.WEB));
 	}
 	
 	@Test
 	public void testNonNormalizableMethodSignature(){
 		AccessRecord accessRecord = AccessRecordTestUtil.createValidAccessRecord();
 		accessRecord.setRequestURL("/some/fake/path/");
-		ProcessedAccessRecord processedAccessRecord = AccessRecordUtils.processAccessRecord(accessRecord);
+		ProcessedAccessRecord processedAccessRecord = AccessRecordUtils.processAccessRecord(accessRecord, Client.UNKNOWN);
 		assertEquals(AccessRecordUtils.NON_NORMALIZABLE_SIGNATURE, processedAccessRecord.getNormalizedMethodSignature());
 	}
 
@@ -117,7 +197,6 @@ public class AccessRecordUtilsTest {
 	@Test
 	public void getUserAccessRecordTest() {
 		AccessRecord ar = new AccessRecord();
-		ar.setUserAgent("Synpase-Java-Client/64.0  Synapse-Web-Client/67.0");
 		ar.setUserId(123L);
 		ar.setDate("date");
 
@@ -126,7 +205,7 @@ public class AccessRecordUtilsTest {
 		expected.setDate("date");
 		expected.setClient(Client.WEB);
 
-		assertEquals(expected, AccessRecordUtils.getUserActivityPerClientPerDay(ar));
+		assertEquals(expected, AccessRecordUtils.getUserActivityPerClientPerDay(ar, Client.WEB));
 	}
 
 	/*
@@ -0,0 +1,143 @@
+package org.sagebionetworks.warehouse.workers.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class CompressedBitmapTest {
+
+	@Test
+	public void testEmpty() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		assertTrue(bitmap.isEmpty());
+		assertEquals(0L, bitmap.getCardinality());
+		assertFalse(bitmap.contains(1L));
+		assertEquals(bitmap, CompressedBitmap.deserialize(bitmap.serialize()));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddNegative() {
+		new CompressedBitmap().add(-1L);
+	}
+
+	@Test
+	public void testAdd() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		bitmap.add(3L);
+		bitmap.add(1L << 40);
+		bitmap.add(65536L);
+		bitmap.add(3L);
+		assertEquals(3L, bitmap.getCardinality());
+		assertTrue(bitmap.contains(3L));
+		assertTrue(bitmap.contains(65536L));
+		assertTrue(bitmap.contains(1L << 40));
+		assertFalse(bitmap.contains(4L));
+		assertFalse(bitmap.contains(-3L));
+		assertArrayEquals(new long[] { 3L, 65536L, 1L << 40 }, bitmap.toArray());
+	}
+
+	@Test
+	public void testDenseContainer() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		for (long i = 0; i < CompressedBitmap.ARRAY_MAX * 2; i++) {
+			bitmap.add(i * 3);
+		}
+		assertEquals(CompressedBitmap.ARRAY_MAX * 2, bitmap.getCardinality());
+		assertTrue(bitmap.contains(300L));
+		assertFalse(bitmap.contains(301L));
+		byte[] bytes = bitmap.serialize();
+		// a bitmap container is written as 1024 words.
+		assertTrue(bytes.length < CompressedBitmap.BITMAP_WORDS * 8 + 100);
+		assertEquals(bitmap, CompressedBitmap.deserialize(bytes));
+	}
+
+	@Test
+	public void testSparseSize() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		for (long i = 0; i < 1000; i++) {
+			bitmap.add(3000000L + i * 50);
+		}
+		// one byte for each value in the array container
+		assertTrue(bitmap.serialize().length < 1100);
+	}
+
+	@Test
+	public void testAndOr() {
+		Random random = new Random(7L);
+		for (int round = 0; round < 20; round++) {
+			// vary the density so both forms of container are used
+			int range = 1 + random.nextInt(500000);
+			TreeSet<Long> one = new TreeSet<Long>();
+			TreeSet<Long> two = new TreeSet<Long>();
+			CompressedBitmap first = new CompressedBitmap();
+			CompressedBitmap second = new CompressedBitmap();
+			for (int i = 0; i < 20000; i++) {
+				long value = random.nextInt(range);
+				one.add(value);
+				first.add(value);
+				value = random.nextInt(range);
+				two.add(value);
+				second.add(value);
+			}
+			TreeSet<Long> union = new TreeSet<Long>(one);
+			union.addAll(two);
+			TreeSet<Long> intersection = new TreeSet<Long>(one);
+			intersection.retainAll(two);
+
+			assertArrayEquals(toArray(union), first.or(second).toArray());
+			assertArrayEquals(toArray(intersection), first.and(second).toArray());
+			assertEquals(intersection.size(), first.andCardinality(second));
+			assertEquals(first.or(second), CompressedBitmap.or(Arrays.asList(first, second)));
+			// the inputs are not changed
+			assertArrayEquals(toArray(one), first.toArray());
+			assertArrayEquals(toArray(two), second.toArray());
+
+			assertEquals(first, CompressedBitmap.deserialize(first.serialize()));
+			assertEquals(first.and(second), CompressedBitmap.deserialize(first.and(second).serialize()));
+		}
+	}
+
+	@Test
+	public void testOrDoesNotShareContainers() {
+		CompressedBitmap first = new CompressedBitmap();
+		first.add(1L);
+		CompressedBitmap union = first.or(new CompressedBitmap());
+		union.add(2L);
+		assertFalse(first.contains(2L));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testDeserializeUnknownVersion() {
+		CompressedBitmap.deserialize(new byte[] { 2, 0 });
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testDeserializeTrailingBytes() {
+		CompressedBitmap.deserialize(new byte[] { CompressedBitmap.VERSION_1, 0, 0 });
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testDeserializeTruncated() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		bitmap.add(1L);
+		bitmap.add(2L);
+		byte[] bytes = bitmap.serialize();
+		CompressedBitmap.deserialize(Arrays.copyOf(bytes, bytes.length - 1));
+	}
+
+	private static long[] toArray(TreeSet<Long> set) {
+		long[] values = new long[set.size()];
+		int index = 0;
+		for (Long value : set) {
+			values[index++] = value;
+		}
+		return values;
+	}
+}
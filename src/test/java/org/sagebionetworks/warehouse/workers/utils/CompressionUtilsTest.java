@@ -2,6 +2,20 @@ package org.sagebionetworks.warehouse.workers.utils;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Test;
 
@@ -22,4 +36,115 @@ public class CompressionUtilsTest {
 		String unzipped = CompressionUtils.decompressUTF8(compressed);
 		assertEquals(longString, unzipped);
 	}
+
+	@Test
+	public void testEmptyString() {
+		byte[] compressed = CompressionUtils.compressStringUTF8("");
+		assertEquals("", CompressionUtils.decompressUTF8(compressed));
+	}
+
+	@Test
+	public void testLargerThanPooledBuffer() {
+		String longString = RandomStringUtils.random(CompressionUtils.MAX_POOLED_BUFFER_SIZE);
+		byte[] compressed = CompressionUtils.compressStringUTF8(longString);
+		assertEquals(longString, CompressionUtils.decompressUTF8(compressed));
+		// the pooled buffers still work after a large value.
+		assertEquals("small", CompressionUtils.decompressUTF8(CompressionUtils.compressStringUTF8("small")));
+	}
+
+	@Test
+	public void testReadableByGZIPInputStream() throws IOException {
+		String toCompress = RandomStringUtils.random(1500);
+		byte[] compressed = CompressionUtils.compressStringUTF8(toCompress);
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+		assertEquals(toCompress, IOUtils.toString(in, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testReadsGZIPOutputStream() throws IOException {
+		String toCompress = RandomStringUtils.random(1500);
+		assertEquals(toCompress, CompressionUtils.decompressUTF8(gzip(toCompress)));
+	}
+
+	@Test
+	public void testMultipleMembers() throws IOException {
+		byte[] first = gzip("first,");
+		byte[] second = CompressionUtils.compressStringUTF8("second");
+		byte[] both = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, both, first.length, second.length);
+		assertEquals("first,second", CompressionUtils.decompressUTF8(both));
+	}
+
+	@Test (expected=RuntimeException.class)
+	public void testCorrupt() {
+		byte[] compressed = CompressionUtils.compressStringUTF8("some value to corrupt");
+		compressed[compressed.length - CompressionUtils.GZIP_TRAILER_SIZE] ^= 1;
+		CompressionUtils.decompressUTF8(compressed);
+	}
+
+	@Test
+	public void testCompressionLevel() {
+		String toCompress = RandomStringUtils.randomAlphabetic(10000);
+		byte[] stored = CompressionUtils.compressStringUTF8(toCompress, Deflater.NO_COMPRESSION);
+		byte[] best = CompressionUtils.compressStringUTF8(toCompress, Deflater.BEST_COMPRESSION);
+		assertTrue(best.length < stored.length);
+		assertEquals(toCompress, CompressionUtils.decompressUTF8(stored));
+		assertEquals(toCompress, CompressionUtils.decompressUTF8(best));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testInvalidCompressionLevel() {
+		CompressionUtils.compressStringUTF8("value", 10);
+	}
+
+	@Test
+	public void testCompressBatch() {
+		List<String> batch = Arrays.asList("one", "", RandomStringUtils.random(1500));
+		List<byte[]> compressed = CompressionUtils.compressStringsUTF8(batch, Deflater.BEST_SPEED);
+		assertEquals(batch.size(), compressed.size());
+		for (int i = 0; i < batch.size(); i++) {
+			assertEquals(batch.get(i), CompressionUtils.decompressUTF8(compressed.get(i)));
+		}
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testCompressBatchNullString() {
+		CompressionUtils.compressStringsUTF8(Arrays.asList("one", null), CompressionUtils.DEFAULT_COMPRESSION_LEVEL);
+	}
+
+	@Test
+	public void testHeaderMatchesGZIPOutputStream() throws IOException {
+		// all but the OS byte, which depends on the JDK version.
+		int osIndex = CompressionUtils.GZIP_HEADER_SIZE - 1;
+		byte[] compressed = CompressionUtils.compressStringUTF8("header");
+		assertArrayEquals(Arrays.copyOf(gzip("header"), osIndex), Arrays.copyOf(compressed, osIndex));
+		assertEquals(CompressionUtils.GZIP_OS_UNKNOWN, compressed[osIndex] & 0xFF);
+	}
+
+	@Test
+	public void testPoolIsBounded() throws InterruptedException {
+		// more threads than the pool holds, each using its own Codec at once.
+		int threads = CompressionUtils.MAX_POOLED_CODECS * 2;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads * 10; i++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					String value = RandomStringUtils.random(500);
+					assertEquals(value, CompressionUtils.decompressUTF8(CompressionUtils.compressStringUTF8(value)));
+				}
+			});
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		assertTrue(CompressionUtils.getPooledCodecCount() <= CompressionUtils.MAX_POOLED_CODECS);
+	}
+
+	private static byte[] gzip(String value) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GZIPOutputStream zipper = new GZIPOutputStream(out);
+		zipper.write(value.getBytes(StandardCharsets.UTF_8));
+		zipper.close();
+		return out.toByteArray();
+	}
 }
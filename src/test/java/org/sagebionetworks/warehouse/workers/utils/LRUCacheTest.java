@@ -0,0 +1,36 @@
+package org.sagebionetworks.warehouse.workers.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LRUCacheTest {
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		LRUCache<String, Integer> cache = new LRUCache<String, Integer>(2);
+		cache.put("one", 1);
+		cache.put("two", 2);
+		// using one makes two the least recently used.
+		assertEquals((Integer) 1, cache.get("one"));
+		cache.put("three", 3);
+		assertEquals(2, cache.size());
+		assertEquals((Integer) 1, cache.get("one"));
+		assertNull(cache.get("two"));
+		assertEquals((Integer) 3, cache.get("three"));
+	}
+
+	@Test
+	public void testClear() {
+		LRUCache<String, Integer> cache = new LRUCache<String, Integer>(2);
+		cache.put("one", 1);
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertNull(cache.get("one"));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testInvalidMaxSize() {
+		new LRUCache<String, Integer>(0);
+	}
+}
@@ -0,0 +1,69 @@
+package org.sagebionetworks.warehouse.workers.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class LongHashSetTest {
+
+	@Test
+	public void testAdd() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.add(1L));
+		assertFalse(set.add(1L));
+		assertTrue(set.contains(1L));
+		assertFalse(set.contains(2L));
+		assertEquals(1, set.size());
+	}
+
+	@Test
+	public void testZeroAndNegative() {
+		LongHashSet set = new LongHashSet();
+		assertFalse(set.contains(0L));
+		assertTrue(set.add(0L));
+		assertFalse(set.add(0L));
+		assertTrue(set.add(-1L));
+		assertTrue(set.add(Long.MIN_VALUE));
+		assertTrue(set.contains(0L));
+		assertTrue(set.contains(-1L));
+		assertTrue(set.contains(Long.MIN_VALUE));
+		assertEquals(3, set.size());
+	}
+
+	@Test
+	public void testGrow() {
+		LongHashSet set = new LongHashSet(1);
+		Set<Long> expected = new HashSet<Long>();
+		Random random = new Random(42L);
+		for (int i = 0; i < 10000; i++) {
+			// values that only differ in their high bits.
+			long value = (long) random.nextInt(5000) << 24;
+			assertEquals(expected.add(value), set.add(value));
+		}
+		assertEquals(expected.size(), set.size());
+		for (Long value : expected) {
+			assertTrue(set.contains(value));
+		}
+	}
+
+	@Test
+	public void testClear() {
+		LongHashSet set = new LongHashSet();
+		set.add(0L);
+		set.add(5L);
+		set.clear();
+		assertEquals(0, set.size());
+		assertFalse(set.contains(0L));
+		assertFalse(set.contains(5L));
+		assertTrue(set.add(5L));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new LongHashSet(0);
+	}
+}
@@ -0,0 +1,116 @@
+package org.sagebionetworks.warehouse.workers.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.ACCESS_TYPE;
+import org.sagebionetworks.repo.model.ResourceAccess;
+
+public class ResourceAccessCodecTest {
+
+	Set<ResourceAccess> resourceAccess;
+
+	@Before
+	public void before() {
+		resourceAccess = new HashSet<ResourceAccess>();
+		resourceAccess.add(createResourceAccess(273948L, EnumSet.of(ACCESS_TYPE.READ, ACCESS_TYPE.DOWNLOAD)));
+		resourceAccess.add(createResourceAccess(3L, EnumSet.allOf(ACCESS_TYPE.class)));
+		resourceAccess.add(createResourceAccess(Long.MAX_VALUE, EnumSet.noneOf(ACCESS_TYPE.class)));
+	}
+
+	@Test
+	public void testRoundTrip() {
+		byte[] bytes = ResourceAccessCodec.encode(resourceAccess);
+		assertEquals(ResourceAccessCodec.VERSION_1, bytes[0]);
+		assertEquals(resourceAccess, ResourceAccessCodec.decode(bytes));
+	}
+
+	@Test
+	public void testRoundTripEmpty() {
+		Set<ResourceAccess> empty = new HashSet<ResourceAccess>();
+		byte[] bytes = ResourceAccessCodec.encode(empty);
+		assertArrayEquals(new byte[] { ResourceAccessCodec.VERSION_1, 0 }, bytes);
+		assertEquals(empty, ResourceAccessCodec.decode(bytes));
+	}
+
+	@Test
+	public void testSmallerThanLegacy() {
+		byte[] bytes = ResourceAccessCodec.encode(resourceAccess);
+		byte[] legacy = ResourceAccessCodec.encodeLegacy(resourceAccess);
+		assertTrue(bytes.length < legacy.length);
+	}
+
+	@Test
+	public void testDecodeLegacy() {
+		byte[] legacy = ResourceAccessCodec.encodeLegacy(resourceAccess);
+		assertTrue(ResourceAccessCodec.isLegacy(legacy));
+		assertEquals(resourceAccess, ResourceAccessCodec.decode(legacy));
+	}
+
+	@Test
+	public void testEncodeNullFieldsUsesLegacy() {
+		resourceAccess.add(new ResourceAccess());
+		byte[] bytes = ResourceAccessCodec.encode(resourceAccess);
+		assertTrue(ResourceAccessCodec.isLegacy(bytes));
+		assertEquals(resourceAccess, ResourceAccessCodec.decode(bytes));
+	}
+
+	@Test
+	public void testEveryAccessTypeHasABit() {
+		for (ACCESS_TYPE type : ACCESS_TYPE.values()) {
+			Set<ResourceAccess> single = new HashSet<ResourceAccess>();
+			single.add(createResourceAccess(1L, EnumSet.of(type)));
+			byte[] bytes = ResourceAccessCodec.encode(single);
+			assertFalse(type.name(), ResourceAccessCodec.isLegacy(bytes));
+			assertEquals(single, ResourceAccessCodec.decode(bytes));
+		}
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testEncodeNull() {
+		ResourceAccessCodec.encode(null);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testDecodeEmpty() {
+		ResourceAccessCodec.decode(new byte[0]);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testDecodeUnknownVersion() {
+		ResourceAccessCodec.decode(new byte[] { 2, 0 });
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testDecodeTrailingBytes() {
+		ResourceAccessCodec.decode(new byte[] { ResourceAccessCodec.VERSION_1, 0, 0 });
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testDecodeTruncated() {
+		byte[] bytes = ResourceAccessCodec.encode(resourceAccess);
+		byte[] truncated = new byte[bytes.length - 1];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		ResourceAccessCodec.decode(truncated);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testDecodeUnknownBit() {
+		// one entry for principal 1 with only the highest bit set.
+		byte[] bytes = new byte[] { ResourceAccessCodec.VERSION_1, 1, 1, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+				(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01 };
+		ResourceAccessCodec.decode(bytes);
+	}
+
+	private static ResourceAccess createResourceAccess(Long principalId, Set<ACCESS_TYPE> accessType) {
+		ResourceAccess ra = new ResourceAccess();
+		ra.setPrincipalId(principalId);
+		ra.setAccessType(accessType);
+		return ra;
+	}
+}
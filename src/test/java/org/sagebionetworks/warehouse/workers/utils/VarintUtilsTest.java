@@ -0,0 +1,54 @@
+package org.sagebionetworks.warehouse.workers.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class VarintUtilsTest {
+
+	@Test
+	public void testRoundTrip() {
+		long[] values = new long[] { 0L, 1L, 127L, 128L, 16383L, 16384L, Integer.MAX_VALUE, Long.MAX_VALUE, -1L };
+		for (long value : values) {
+			int size = VarintUtils.varintSize(value);
+			byte[] bytes = new byte[size];
+			assertEquals(size, VarintUtils.writeVarint(bytes, 0, value));
+			int[] cursor = new int[] { 0 };
+			assertEquals(value, VarintUtils.readVarint(bytes, cursor));
+			assertEquals(size, cursor[0]);
+		}
+	}
+
+	@Test
+	public void testSize() {
+		assertEquals(1, VarintUtils.varintSize(0L));
+		assertEquals(1, VarintUtils.varintSize(127L));
+		assertEquals(2, VarintUtils.varintSize(128L));
+		assertEquals(10, VarintUtils.varintSize(-1L));
+	}
+
+	@Test
+	public void testReadAtCursor() {
+		byte[] bytes = new byte[] { 0x01, (byte) 0xAC, 0x02, 0x05 };
+		int[] cursor = new int[] { 1 };
+		assertEquals(300L, VarintUtils.readVarint(bytes, cursor));
+		assertEquals(3, cursor[0]);
+		assertEquals(5L, VarintUtils.readVarint(bytes, cursor));
+		assertEquals(4, cursor[0]);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testReadTruncated() {
+		VarintUtils.readVarint(new byte[] { (byte) 0x80 }, new int[] { 0 });
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testReadTooLong() {
+		byte[] bytes = new byte[11];
+		for (int i = 0; i < 10; i++) {
+			bytes[i] = (byte) 0x80;
+		}
+		bytes[10] = 0x01;
+		VarintUtils.readVarint(bytes, new int[] { 0 });
+	}
+}
@@ -2,6 +2,13 @@ package org.sagebionetworks.warehouse.workers.utils;
 
 import static org.junit.Assert.*;
 
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.sagebionetworks.warehouse.workers.bucket.TestDto;
@@ -28,6 +35,49 @@ public class XMLUtilsTest {
 		assertEquals(dto, clone);
 	}
 
+	@Test
+	public void testXStreamCached(){
+		assertSame(XMLUtils.getXStream(alias, TestDto.class), XMLUtils.getXStream(alias, TestDto.class));
+		assertNotSame(XMLUtils.getXStream(alias, TestDto.class), XMLUtils.getXStream("otherAlias", TestDto.class));
+		assertNotSame(XMLUtils.getXStream(alias, TestDto.class), XMLUtils.getXStream(alias, Object.class));
+	}
+	
+	@Test
+	public void testDifferentAliasesForSameClass(){
+		String xml = XMLUtils.toXML(dto, alias);
+		String otherXml = XMLUtils.toXML(dto, "otherAlias");
+		assertTrue(xml.startsWith("<"+alias+">"));
+		assertTrue(otherXml.startsWith("<otherAlias>"));
+		assertEquals(dto, XMLUtils.fromXML(otherXml, TestDto.class, "otherAlias"));
+	}
+	
+	@Test
+	public void testConcurrentRoundTrip() throws Exception{
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<TestDto>> futures = new LinkedList<Future<TestDto>>();
+			for(int i=0; i<100; i++){
+				final TestDto toWrite = new TestDto();
+				toWrite.setAnInt(i);
+				toWrite.setaString("string "+i);
+				futures.add(executor.submit(new Callable<TestDto>() {
+
+					@Override
+					public TestDto call() throws Exception {
+						TestDto clone = XMLUtils.fromXML(XMLUtils.toXML(toWrite, alias), TestDto.class, alias);
+						assertEquals(toWrite, clone);
+						return clone;
+					}
+				}));
+			}
+			for(Future<TestDto> future: futures){
+				assertNotNull(future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	@Test (expected=IllegalArgumentException.class)
 	public void testToXmlDtoNull(){
 		XMLUtils.toXML(null, alias);